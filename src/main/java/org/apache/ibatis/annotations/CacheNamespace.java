@@ -22,7 +22,9 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.JdkCacheSerializer;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 
 /**
@@ -92,6 +94,39 @@ public @interface CacheNamespace {
      */
     boolean blocking() default false;
 
+    /**
+     * Returns whether concurrent misses of the same key wait for a single load and share its result. Takes precedence
+     * over {@link #blocking()}.
+     *
+     * @return {@code true} if coalesce the loads; {@code false} if otherwise
+     * @since 3.5.5
+     */
+    boolean coalescing() default false;
+
+    /**
+     * Returns the time to live of the entries. Entries read shortly before they expire are reloaded in the background.
+     *
+     * @return the time to live in milliseconds, {@code 0} if the entries do not expire
+     * @since 3.5.5
+     */
+    long timeToLive() default 0;
+
+    /**
+     * Returns how long before an entry expires a read of it triggers a reload.
+     *
+     * @return the refresh-ahead window in milliseconds, a negative value for a fifth of the time to live
+     * @since 3.5.5
+     */
+    long refreshAhead() default -1;
+
+    /**
+     * Returns the serializer a read/write cache copies its values with.
+     *
+     * @return the serializer type
+     * @since 3.5.5
+     */
+    Class<? extends CacheSerializer> serializer() default JdkCacheSerializer.class;
+
     /**
      * Returns property values for a implementation object.
      *
@@ -100,4 +135,22 @@ public @interface CacheNamespace {
      */
     Property[] properties() default {};
 
+    /**
+     * Returns the mapper types whose caches this cache depends on. When one of their caches is flushed, this cache is
+     * flushed as well.
+     *
+     * @return the mapper types
+     * @since 3.5.5
+     */
+    Class<?>[] dependsOn() default {};
+
+    /**
+     * Returns the namespaces whose caches this cache depends on, like {@link #dependsOn()}. Use this when the
+     * namespace is not a mapper type.
+     *
+     * @return the namespaces
+     * @since 3.5.5
+     */
+    String[] dependsOnNames() default {};
+
 }
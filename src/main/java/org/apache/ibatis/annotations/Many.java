@@ -63,4 +63,28 @@ public @interface Many {
      */
     FetchType fetchType() default FetchType.DEFAULT;
 
+    /**
+     * Returns the statement id that retrieves the collections of many parents at once, given the list of their keys.
+     *
+     * @return the statement id
+     * @since 3.5.5
+     */
+    String batchSelect() default "";
+
+    /**
+     * Returns the property of the elements retrieved by the batch statement that holds the key of their parent.
+     *
+     * @return the property
+     * @since 3.5.5
+     */
+    String batchKey() default "";
+
+    /**
+     * Returns how many keys the batch statement gets at most, 0 for the default.
+     *
+     * @return the batch size
+     * @since 3.5.5
+     */
+    int batchSize() default 0;
+
 }
@@ -63,4 +63,28 @@ public @interface One {
      */
     FetchType fetchType() default FetchType.DEFAULT;
 
+    /**
+     * Returns the statement id that retrieves the single objects of many parents at once, given the list of their keys.
+     *
+     * @return the statement id
+     * @since 3.5.5
+     */
+    String batchSelect() default "";
+
+    /**
+     * Returns the property of the objects retrieved by the batch statement that holds the key they belong to.
+     *
+     * @return the property
+     * @since 3.5.5
+     */
+    String batchKey() default "";
+
+    /**
+     * Returns how many keys the batch statement gets at most, 0 for the default.
+     *
+     * @return the batch size
+     * @since 3.5.5
+     */
+    int batchSize() default 0;
+
 }
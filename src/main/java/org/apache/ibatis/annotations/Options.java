@@ -138,6 +138,50 @@ public @interface Options {
      */
     String resultSets() default "";
 
+    /**
+     * Returns the tags of the tables or entities the statement reads, which its 2nd level cache entries depend on.
+     * <p>
+     * If you specify multiple tag, please separate using comma(','). A tag may refer to a parameter property
+     * like {@code order:#{id}}.
+     * </p>
+     *
+     * @return tags that separate with comma(',')
+     * @since 3.5.5
+     */
+    String cacheTags() default "";
+
+    /**
+     * Returns the tags of the tables or entities the statement writes. When flushing the 2nd level cache, only the
+     * entries depending on these tags are removed instead of all entries.
+     * <p>
+     * If you specify multiple tag, please separate using comma(','). A tag may refer to a parameter property
+     * like {@code order:#{id}}.
+     * </p>
+     *
+     * @return tags that separate with comma(',')
+     * @since 3.5.5
+     */
+    String flushTags() default "";
+
+    /**
+     * Returns whether the rows are mapped in parallel. They are read on the calling thread and mapped in chunks on the
+     * common fork-join pool or the parallel mapping executor of the configuration, for big selects of wide rows whose
+     * type handlers are expensive.
+     *
+     * @return {@code true} if the rows are mapped in parallel; {@code false} if otherwise
+     * @since 3.5.5
+     */
+    boolean parallelMapping() default false;
+
+    /**
+     * Returns whether the rows of the {@link #resultSets()} are ordered by the columns linking them, ascending. Children
+     * rows are then attached to their parent as the parent rows are read, without holding the whole result sets.
+     *
+     * @return {@code true} if the result sets are ordered by their keys; {@code false} if otherwise
+     * @since 3.5.5
+     */
+    boolean resultSetsOrdered() default false;
+
     /**
      * @return A database id that correspond this options
      * @since 3.5.5
@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.ErrorContext;
@@ -157,6 +158,20 @@ public class MapperBuilderAssistant extends BaseBuilder {
         }
     }
 
+    /**
+     * 声明当前命名空间的缓存依赖其他命名空间
+     * 其他命名空间的缓存被清空时，当前命名空间的缓存也一起清空，两者各自保留自己的缓存实例
+     *
+     * @param namespaces
+     */
+    public void addCacheDependencies(String... namespaces) {
+        for (String namespace : namespaces) {
+            if (namespace != null && !namespace.trim().isEmpty()) {
+                configuration.addCacheDependency(currentNamespace, namespace.trim());
+            }
+        }
+    }
+
     /**
      * 使用新缓存
      * 重新创建一个新的缓存，放入到主配置类中，设该缓存为当前缓存，然后返回出去
@@ -177,6 +192,88 @@ public class MapperBuilderAssistant extends BaseBuilder {
                              boolean readWrite,
                              boolean blocking,
                              Properties props) {
+        return useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, false, props);
+    }
+
+    /**
+     * 使用新缓存，可合并并发的缓存未命中
+     *
+     * @param typeClass
+     * @param evictionClass
+     * @param flushInterval
+     * @param size
+     * @param readWrite
+     * @param blocking
+     * @param coalescing 同一个key并发未命中时只查询一次数据库，其他调用等待并共享结果
+     * @param props
+     * @return
+     */
+    public Cache useNewCache(Class<? extends Cache> typeClass,
+                             Class<? extends Cache> evictionClass,
+                             Long flushInterval,
+                             Integer size,
+                             boolean readWrite,
+                             boolean blocking,
+                             boolean coalescing,
+                             Properties props) {
+        return useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, coalescing, null, null, null, props);
+    }
+
+    /**
+     * 使用新缓存，可为缓存项设置存活时间并在过期前后台刷新
+     *
+     * @param typeClass
+     * @param evictionClass
+     * @param flushInterval
+     * @param size
+     * @param readWrite
+     * @param blocking
+     * @param coalescing
+     * @param timeToLive 缓存项的存活时间（毫秒），为null则不过期
+     * @param refreshAhead 过期前多久内读取缓存项会触发后台刷新（毫秒），为null则取存活时间的五分之一
+     * @param props
+     * @return
+     */
+    public Cache useNewCache(Class<? extends Cache> typeClass,
+                             Class<? extends Cache> evictionClass,
+                             Long flushInterval,
+                             Integer size,
+                             boolean readWrite,
+                             boolean blocking,
+                             boolean coalescing,
+                             Long timeToLive,
+                             Long refreshAhead,
+                             Properties props) {
+        return useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, coalescing, timeToLive, refreshAhead, null, props);
+    }
+
+    /**
+     * 使用新缓存，可指定读写缓存复制缓存项的序列化方式
+     *
+     * @param typeClass
+     * @param evictionClass
+     * @param flushInterval
+     * @param size
+     * @param readWrite
+     * @param blocking
+     * @param coalescing
+     * @param timeToLive
+     * @param refreshAhead
+     * @param serializerClass 序列化器类型，为null则使用Java序列化
+     * @param props
+     * @return
+     */
+    public Cache useNewCache(Class<? extends Cache> typeClass,
+                             Class<? extends Cache> evictionClass,
+                             Long flushInterval,
+                             Integer size,
+                             boolean readWrite,
+                             boolean blocking,
+                             boolean coalescing,
+                             Long timeToLive,
+                             Long refreshAhead,
+                             Class<? extends CacheSerializer> serializerClass,
+                             Properties props) {
         Cache cache = new CacheBuilder(currentNamespace)
                 .implementation(valueOrDefault(typeClass, PerpetualCache.class))
                 .addDecorator(valueOrDefault(evictionClass, LruCache.class))
@@ -184,6 +281,11 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .size(size)
                 .readWrite(readWrite)
                 .blocking(blocking)
+                .coalescing(coalescing)
+                .timeToLive(timeToLive)
+                .refreshAhead(refreshAhead)
+                .serializer(serializerClass)
+                .hotKeys(configuration.getCacheHotKeys())
                 .properties(props)
                 .build();
         configuration.addCache(cache);
@@ -320,7 +422,11 @@ public class MapperBuilderAssistant extends BaseBuilder {
             String keyColumn,
             String databaseId,
             LanguageDriver lang,
-            String resultSets) {
+            String resultSets,
+            String cacheTags,
+            String flushTags,
+            boolean parallelMapping,
+            boolean resultSetsOrdered) {
 
         if (unresolvedCacheRef) {
             throw new IncompleteElementException("Cache-ref not yet resolved");
@@ -340,11 +446,15 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .databaseId(databaseId)
                 .lang(lang)
                 .resultOrdered(resultOrdered)
+                .parallelMapping(parallelMapping)
                 .resultSets(resultSets)
+                .resultSetsOrdered(resultSetsOrdered)
                 .resultMaps(getStatementResultMaps(resultMap, resultType, id))
                 .resultSetType(resultSetType)
                 .flushCacheRequired(valueOrDefault(flushCache, !isSelect))
                 .useCache(valueOrDefault(useCache, isSelect))
+                .cacheTags(cacheTags)
+                .flushTags(flushTags)
                 .cache(currentCache);
 
         ParameterMap statementParameterMap = getStatementParameterMap(parameterMap, parameterType, id);
@@ -357,6 +467,122 @@ public class MapperBuilderAssistant extends BaseBuilder {
         return statement;
     }
 
+    /**
+     * Backward compatibility signature 'addMappedStatement'.
+     *
+     * @param id              the id
+     * @param sqlSource       the sql source
+     * @param statementType   the statement type
+     * @param sqlCommandType  the sql command type
+     * @param fetchSize       the fetch size
+     * @param timeout         the timeout
+     * @param parameterMap    the parameter map
+     * @param parameterType   the parameter type
+     * @param resultMap       the result map
+     * @param resultType      the result type
+     * @param resultSetType   the result set type
+     * @param flushCache      the flush cache
+     * @param useCache        the use cache
+     * @param resultOrdered   the result ordered
+     * @param keyGenerator    the key generator
+     * @param keyProperty     the key property
+     * @param keyColumn       the key column
+     * @param databaseId      the database id
+     * @param lang            the lang
+     * @param resultSets      the result sets
+     * @param cacheTags       the cache tags
+     * @param flushTags       the flush tags
+     * @param parallelMapping the parallel mapping
+     * @return the mapped statement
+     */
+    public MappedStatement addMappedStatement(String id, SqlSource sqlSource, StatementType statementType,
+                                              SqlCommandType sqlCommandType, Integer fetchSize, Integer timeout, String parameterMap, Class<?> parameterType,
+                                              String resultMap, Class<?> resultType, ResultSetType resultSetType, boolean flushCache, boolean useCache,
+                                              boolean resultOrdered, KeyGenerator keyGenerator, String keyProperty, String keyColumn, String databaseId,
+                                              LanguageDriver lang, String resultSets, String cacheTags, String flushTags, boolean parallelMapping) {
+        return addMappedStatement(
+                id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+                parameterMap, parameterType, resultMap, resultType, resultSetType,
+                flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+                keyColumn, databaseId, lang, resultSets, cacheTags, flushTags, parallelMapping, false);
+    }
+
+    /**
+     * Backward compatibility signature 'addMappedStatement'.
+     *
+     * @param id             the id
+     * @param sqlSource      the sql source
+     * @param statementType  the statement type
+     * @param sqlCommandType the sql command type
+     * @param fetchSize      the fetch size
+     * @param timeout        the timeout
+     * @param parameterMap   the parameter map
+     * @param parameterType  the parameter type
+     * @param resultMap      the result map
+     * @param resultType     the result type
+     * @param resultSetType  the result set type
+     * @param flushCache     the flush cache
+     * @param useCache       the use cache
+     * @param resultOrdered  the result ordered
+     * @param keyGenerator   the key generator
+     * @param keyProperty    the key property
+     * @param keyColumn      the key column
+     * @param databaseId     the database id
+     * @param lang           the lang
+     * @param resultSets     the result sets
+     * @param cacheTags      the cache tags
+     * @param flushTags      the flush tags
+     * @return the mapped statement
+     */
+    public MappedStatement addMappedStatement(String id, SqlSource sqlSource, StatementType statementType,
+                                              SqlCommandType sqlCommandType, Integer fetchSize, Integer timeout, String parameterMap, Class<?> parameterType,
+                                              String resultMap, Class<?> resultType, ResultSetType resultSetType, boolean flushCache, boolean useCache,
+                                              boolean resultOrdered, KeyGenerator keyGenerator, String keyProperty, String keyColumn, String databaseId,
+                                              LanguageDriver lang, String resultSets, String cacheTags, String flushTags) {
+        return addMappedStatement(
+                id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+                parameterMap, parameterType, resultMap, resultType, resultSetType,
+                flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+                keyColumn, databaseId, lang, resultSets, cacheTags, flushTags, false, false);
+    }
+
+    /**
+     * Backward compatibility signature 'addMappedStatement'.
+     *
+     * @param id             the id
+     * @param sqlSource      the sql source
+     * @param statementType  the statement type
+     * @param sqlCommandType the sql command type
+     * @param fetchSize      the fetch size
+     * @param timeout        the timeout
+     * @param parameterMap   the parameter map
+     * @param parameterType  the parameter type
+     * @param resultMap      the result map
+     * @param resultType     the result type
+     * @param resultSetType  the result set type
+     * @param flushCache     the flush cache
+     * @param useCache       the use cache
+     * @param resultOrdered  the result ordered
+     * @param keyGenerator   the key generator
+     * @param keyProperty    the key property
+     * @param keyColumn      the key column
+     * @param databaseId     the database id
+     * @param lang           the lang
+     * @param resultSets     the result sets
+     * @return the mapped statement
+     */
+    public MappedStatement addMappedStatement(String id, SqlSource sqlSource, StatementType statementType,
+                                              SqlCommandType sqlCommandType, Integer fetchSize, Integer timeout, String parameterMap, Class<?> parameterType,
+                                              String resultMap, Class<?> resultType, ResultSetType resultSetType, boolean flushCache, boolean useCache,
+                                              boolean resultOrdered, KeyGenerator keyGenerator, String keyProperty, String keyColumn, String databaseId,
+                                              LanguageDriver lang, String resultSets) {
+        return addMappedStatement(
+                id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+                parameterMap, parameterType, resultMap, resultType, resultSetType,
+                flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+                keyColumn, databaseId, lang, resultSets, null, null, false, false);
+    }
+
     /**
      * Backward compatibility signature 'addMappedStatement'.
      *
@@ -390,7 +616,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
                 parameterMap, parameterType, resultMap, resultType, resultSetType,
                 flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
-                keyColumn, databaseId, lang, null);
+                keyColumn, databaseId, lang, null, null, null, false, false);
     }
 
     private <T> T valueOrDefault(T value, T defaultValue) {
@@ -462,7 +688,10 @@ public class MapperBuilderAssistant extends BaseBuilder {
             List<ResultFlag> flags,
             String resultSet,
             String foreignColumn,
-            boolean lazy) {
+            boolean lazy,
+            String batchSelect,
+            String batchKey,
+            Integer batchSize) {
         Class<?> javaTypeClass = resolveResultJavaType(resultType, property, javaType);
         TypeHandler<?> typeHandlerInstance = resolveTypeHandler(javaTypeClass, typeHandler);
         List<ResultMapping> composites;
@@ -483,9 +712,40 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .columnPrefix(columnPrefix)
                 .foreignColumn(foreignColumn)
                 .lazy(lazy)
+                .batchQueryId(applyCurrentNamespace(batchSelect, true))
+                .batchKey(batchKey)
+                .batchSize(batchSize == null ? 0 : batchSize)
                 .build();
     }
 
+    /**
+     * Backward compatibility signature 'buildResultMapping'.
+     *
+     * @param resultType      the result type
+     * @param property        the property
+     * @param column          the column
+     * @param javaType        the java type
+     * @param jdbcType        the jdbc type
+     * @param nestedSelect    the nested select
+     * @param nestedResultMap the nested result map
+     * @param notNullColumn   the not null column
+     * @param columnPrefix    the column prefix
+     * @param typeHandler     the type handler
+     * @param flags           the flags
+     * @param resultSet       the result set
+     * @param foreignColumn   the foreign column
+     * @param lazy            the lazy
+     * @return the result mapping
+     */
+    public ResultMapping buildResultMapping(Class<?> resultType, String property, String column, Class<?> javaType,
+                                            JdbcType jdbcType, String nestedSelect, String nestedResultMap, String notNullColumn, String columnPrefix,
+                                            Class<? extends TypeHandler<?>> typeHandler, List<ResultFlag> flags, String resultSet, String foreignColumn,
+                                            boolean lazy) {
+        return buildResultMapping(
+                resultType, property, column, javaType, jdbcType, nestedSelect,
+                nestedResultMap, notNullColumn, columnPrefix, typeHandler, flags, resultSet, foreignColumn, lazy, null, null, null);
+    }
+
     /**
      * Backward compatibility signature 'buildResultMapping'.
      *
@@ -186,8 +186,14 @@ public class MapperAnnotationBuilder {
         if (cacheDomain != null) {
             Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
             Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
+            Long timeToLive = cacheDomain.timeToLive() == 0 ? null : cacheDomain.timeToLive();
+            Long refreshAhead = cacheDomain.refreshAhead() < 0 ? null : cacheDomain.refreshAhead();
             Properties props = convertToProperties(cacheDomain.properties());
-            assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+            assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), cacheDomain.coalescing(), timeToLive, refreshAhead, cacheDomain.serializer(), props);
+            for (Class<?> dependsOn : cacheDomain.dependsOn()) {
+                assistant.addCacheDependencies(dependsOn.getName());
+            }
+            assistant.addCacheDependencies(cacheDomain.dependsOnNames());
         }
     }
 
@@ -378,7 +384,11 @@ public class MapperAnnotationBuilder {
                     statementAnnotation.getDatabaseId(),
                     languageDriver,
                     // ResultSets
-                    options != null ? nullOrEmpty(options.resultSets()) : null);
+                    options != null ? nullOrEmpty(options.resultSets()) : null,
+                    options != null ? nullOrEmpty(options.cacheTags()) : null,
+                    options != null ? nullOrEmpty(options.flushTags()) : null,
+                    options != null && options.parallelMapping(),
+                    options != null && options.resultSetsOrdered());
         });
     }
 
@@ -488,7 +498,10 @@ public class MapperAnnotationBuilder {
                     flags,
                     null,
                     null,
-                    isLazy(result));
+                    isLazy(result),
+                    batchSelectId(result),
+                    nullOrEmpty(result.one().select().length() > 0 ? result.one().batchKey() : result.many().batchKey()),
+                    result.one().select().length() > 0 ? result.one().batchSize() : result.many().batchSize());
             resultMappings.add(resultMapping);
         }
     }
@@ -530,6 +543,17 @@ public class MapperAnnotationBuilder {
         return nestedSelect;
     }
 
+    private String batchSelectId(Result result) {
+        String batchSelect = result.one().select().length() > 0 ? result.one().batchSelect() : result.many().batchSelect();
+        if (batchSelect.length() < 1) {
+            return null;
+        }
+        if (!batchSelect.contains(".")) {
+            batchSelect = type.getName() + "." + batchSelect;
+        }
+        return batchSelect;
+    }
+
     private boolean isLazy(Result result) {
         boolean isLazy = configuration.isLazyLoadingEnabled();
         if (result.one().select().length() > 0 && FetchType.DEFAULT != result.one().fetchType()) {
@@ -412,6 +412,9 @@ public class XMLConfigBuilder extends BaseBuilder {
         configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
         configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
         configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
+        configuration.setLocalCacheType(resolveClass(props.getProperty("localCacheType")));
+        configuration.setLocalCacheSize(integerValueOf(props.getProperty("localCacheSize"), null));
+        configuration.setCacheHotKeys(integerValueOf(props.getProperty("cacheHotKeys"), 0));
         configuration.setJdbcTypeForNull(JdbcType.valueOf(props.getProperty("jdbcTypeForNull", "OTHER")));
         configuration.setLazyLoadTriggerMethods(stringSetValueOf(props.getProperty("lazyLoadTriggerMethods"), "equals,clone,hashCode,toString"));
         configuration.setSafeResultHandlerEnabled(booleanValueOf(props.getProperty("safeResultHandlerEnabled"), true));
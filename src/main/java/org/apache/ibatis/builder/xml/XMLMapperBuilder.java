@@ -34,6 +34,7 @@ import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.Discriminator;
@@ -279,8 +280,17 @@ public class XMLMapperBuilder extends BaseBuilder {
             Integer size = context.getIntAttribute("size");
             boolean readWrite = !context.getBooleanAttribute("readOnly", false);
             boolean blocking = context.getBooleanAttribute("blocking", false);
+            boolean coalescing = context.getBooleanAttribute("coalescing", false);
+            Long timeToLive = context.getLongAttribute("timeToLive");
+            Long refreshAhead = context.getLongAttribute("refreshAhead");
+            String serializer = context.getStringAttribute("serializer");
+            Class<? extends CacheSerializer> serializerClass = typeAliasRegistry.resolveAlias(serializer);
             Properties props = context.getChildrenAsProperties();
-            builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+            builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, coalescing, timeToLive, refreshAhead, serializerClass, props);
+            String dependsOn = context.getStringAttribute("dependsOn");
+            if (dependsOn != null) {
+                builderAssistant.addCacheDependencies(dependsOn.split(","));
+            }
         }
     }
 
@@ -517,10 +527,14 @@ public class XMLMapperBuilder extends BaseBuilder {
         String resultSet = context.getStringAttribute("resultSet");
         String foreignColumn = context.getStringAttribute("foreignColumn");
         boolean lazy = "lazy".equals(context.getStringAttribute("fetchType", configuration.isLazyLoadingEnabled() ? "lazy" : "eager"));
+        String batchSelect = context.getStringAttribute("batchSelect");
+        String batchKey = context.getStringAttribute("batchKey");
+        Integer batchSize = context.getIntAttribute("batchSize");
         Class<?> javaTypeClass = resolveClass(javaType);
         Class<? extends TypeHandler<?>> typeHandlerClass = resolveClass(typeHandler);
         JdbcType jdbcTypeEnum = resolveJdbcType(jdbcType);
-        return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy);
+        return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy,
+                batchSelect, batchKey, batchSize);
     }
 
     private String processNestedResultMappings(XNode context, List<ResultMapping> resultMappings, Class<?> enclosingType) {
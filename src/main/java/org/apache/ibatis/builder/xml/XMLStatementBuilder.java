@@ -94,6 +94,8 @@ public class XMLStatementBuilder extends BaseBuilder {
         boolean flushCache = context.getBooleanAttribute("flushCache", !isSelect);
         boolean useCache = context.getBooleanAttribute("useCache", isSelect);
         boolean resultOrdered = context.getBooleanAttribute("resultOrdered", false);
+        boolean parallelMapping = context.getBooleanAttribute("parallelMapping", false);
+        boolean resultSetsOrdered = context.getBooleanAttribute("resultSetsOrdered", false);
 
         XMLIncludeTransformer includeParser = new XMLIncludeTransformer(configuration, builderAssistant);
         includeParser.applyIncludes(context.getNode());
@@ -136,11 +138,13 @@ public class XMLStatementBuilder extends BaseBuilder {
         String keyProperty = context.getStringAttribute("keyProperty");
         String keyColumn = context.getStringAttribute("keyColumn");
         String resultSets = context.getStringAttribute("resultSets");
+        String cacheTags = context.getStringAttribute("cacheTags");
+        String flushTags = context.getStringAttribute("flushTags");
 
         builderAssistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType,
                 fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass,
                 resultSetTypeEnum, flushCache, useCache, resultOrdered,
-                keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets);
+                keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets, cacheTags, flushTags, parallelMapping, resultSetsOrdered);
     }
 
     private void processSelectKeyNodes(String id, Class<?> parameterTypeClass, LanguageDriver langDriver) {
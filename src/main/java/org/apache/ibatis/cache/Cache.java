@@ -15,7 +15,10 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * SPI for cache providers.
@@ -54,6 +57,48 @@ public interface Cache {
      */
     void putObject(Object key, Object value);
 
+    /**
+     * Puts a value that depends on the given tags, the tables or entities declared in the {@code cacheTags} of the
+     * statement that produced it. The value is removed by a later {@link #invalidate(Set)} naming one of its tags.
+     * <p>
+     * The default implementation ignores the tags, so that {@link #invalidate(Set)} must clear the whole cache.
+     * Decorators should pass the tags on to their delegate.
+     *
+     * @param key
+     *          Can be any object but usually it is a {@link CacheKey}
+     * @param value
+     *          The result of a select.
+     * @param tags
+     *          The tags the value depends on, never null
+     * @since 3.5.5
+     */
+    default void putObject(Object key, Object value, Set<String> tags) {
+        putObject(key, value);
+    }
+
+    /**
+     * Puts the entries of a committed transaction at once. Decorators taking a lock per put should take it once for
+     * the whole batch and pass the batch on to their delegate.
+     * <p>
+     * The default implementation puts the entries one by one.
+     *
+     * @param entries
+     *          The values by key, a null value only releases what a miss of the key may have locked
+     * @param tags
+     *          The tags of the entries put with tags, by key
+     * @since 3.5.5
+     */
+    default void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            Set<String> entryTags = tags.get(entry.getKey());
+            if (entryTags != null) {
+                putObject(entry.getKey(), entry.getValue(), entryTags);
+            } else {
+                putObject(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     /**
      * @param key
      *          The key
@@ -83,6 +128,49 @@ public interface Cache {
      */
     void clear();
 
+    /**
+     * Removes the values that depend on any of the given tags, the {@code flushTags} of a statement that changed them.
+     * Values put without tags are removed as well, as what they depend on is unknown.
+     * <p>
+     * The default implementation clears the whole cache.
+     *
+     * @param tags
+     *          The tags whose values are stale, never null
+     * @since 3.5.5
+     */
+    default void invalidate(Set<String> tags) {
+        clear();
+    }
+
+    /**
+     * Removes the values that depend on any of the given tags like {@link #invalidate(Set)}, and hands the key of each
+     * removed value to the given consumer. Decorators keeping track of the keys use it to forget the removed ones.
+     * <p>
+     * The default implementation calls {@link #invalidate(Set)} and returns false, it cannot tell the removed keys.
+     *
+     * @param tags
+     *          The tags whose values are stale, never null
+     * @param removedKeys
+     *          Receives the key of each removed value
+     * @return true if the removed keys were handed over, false if the caller has to find them out itself
+     * @since 3.5.5
+     */
+    default boolean invalidate(Set<String> tags, Consumer<Object> removedKeys) {
+        invalidate(tags);
+        return false;
+    }
+
+    /**
+     * Returns the statistics of this cache. The standard decorators collect them, so every cache built for a
+     * namespace has statistics. Decorators should return the statistics of their delegate.
+     *
+     * @return The statistics, or null if this cache does not collect any
+     * @since 3.5.5
+     */
+    default CacheStatistics getStatistics() {
+        return null;
+    }
+
     /**
      * Optional. This method is not called by the core.
      *
@@ -15,9 +15,15 @@
  */
 package org.apache.ibatis.cache;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.StringJoiner;
 
 import org.apache.ibatis.reflection.ArrayUtil;
@@ -29,6 +35,15 @@ public class CacheKey implements Cloneable, Serializable {
 
     private static final long serialVersionUID = 1146682552656046210L;
 
+    // keys are serialized in their former form, with the components in a List, so that serialized keys stay readable
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("multiplier", int.class),
+        new ObjectStreamField("hashcode", int.class),
+        new ObjectStreamField("checksum", long.class),
+        new ObjectStreamField("count", int.class),
+        new ObjectStreamField("updateList", List.class)
+    };
+
     public static final CacheKey NULL_CACHE_KEY = new CacheKey() {
 
         @Override
@@ -36,6 +51,11 @@ public class CacheKey implements Cloneable, Serializable {
             throw new CacheException("Not allowed to update a null cache key instance.");
         }
 
+        @Override
+        public void update(int value) {
+            throw new CacheException("Not allowed to update a null cache key instance.");
+        }
+
         @Override
         public void updateAll(Object[] objects) {
             throw new CacheException("Not allowed to update a null cache key instance.");
@@ -44,47 +64,95 @@ public class CacheKey implements Cloneable, Serializable {
 
     private static final int DEFAULT_MULTIPLIER = 37;
     private static final int DEFAULT_HASHCODE = 17;
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final Object[] EMPTY_UPDATE_LIST = {};
 
-    private final int multiplier;
+    private int multiplier;
     private int hashcode;
     private long checksum;
     private int count;
     // 8/21/2017 - Sonarlint flags this as needing to be marked transient. While true if content is not serializable, this
     // is not always true and thus should not be marked transient.
-    private List<Object> updateList;
+    private Object[] updateList;
+    // values added by update(int); the matching updateList slot holds IntSlot.INSTANCE
+    private int[] intValues;
 
     public CacheKey() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a key sized for the given number of updates, so that building it does not need to grow its storage.
+     *
+     * @param expectedUpdateCount
+     *          the number of components the key is expected to have
+     */
+    public CacheKey(int expectedUpdateCount) {
         this.hashcode = DEFAULT_HASHCODE;
         this.multiplier = DEFAULT_MULTIPLIER;
         this.count = 0;
-        this.updateList = new ArrayList<>();
+        this.updateList = expectedUpdateCount > 0 ? new Object[expectedUpdateCount] : EMPTY_UPDATE_LIST;
     }
 
     public CacheKey(Object[] objects) {
-        this();
+        this(objects.length);
         updateAll(objects);
     }
 
     public int getUpdateCount() {
-        return updateList.size();
+        return count;
     }
 
     public void update(Object object) {
         int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
+        add(baseHashCode);
+        updateList[count - 1] = object;
+    }
+
+    /**
+     * Adds an int component without boxing it. The key is equal to one built with the boxed value.
+     *
+     * @param value
+     *          the component
+     */
+    public void update(int value) {
+        add(Integer.hashCode(value));
+        int index = count - 1;
+        if (intValues == null) {
+            intValues = new int[updateList.length];
+        }
+        updateList[index] = IntSlot.INSTANCE;
+        intValues[index] = value;
+    }
+
+    public void updateAll(Object[] objects) {
+        for (Object o : objects) {
+            update(o);
+        }
+    }
+
+    private void add(int baseHashCode) {
+        if (count == updateList.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, count << 1);
+            updateList = Arrays.copyOf(updateList, capacity);
+            if (intValues != null) {
+                intValues = Arrays.copyOf(intValues, capacity);
+            }
+        }
 
         count++;
         checksum += baseHashCode;
         baseHashCode *= count;
 
         hashcode = multiplier * hashcode + baseHashCode;
-
-        updateList.add(object);
     }
 
-    public void updateAll(Object[] objects) {
-        for (Object o : objects) {
-            update(o);
-        }
+    /**
+     * Returns the component at the given index, boxing int components.
+     */
+    private Object get(int index) {
+        Object object = updateList[index];
+        return object == IntSlot.INSTANCE ? (Object) intValues[index] : object;
     }
 
     @Override
@@ -108,10 +176,19 @@ public class CacheKey implements Cloneable, Serializable {
             return false;
         }
 
-        for (int i = 0; i < updateList.size(); i++) {
-            Object thisObject = updateList.get(i);
-            Object thatObject = cacheKey.updateList.get(i);
-            if (!ArrayUtil.equals(thisObject, thatObject)) {
+        for (int i = 0; i < count; i++) {
+            Object thisObject = updateList[i];
+            Object thatObject = cacheKey.updateList[i];
+            // the statement id and static SQL are the same instances on every query
+            if (thisObject == thatObject) {
+                if (thisObject == IntSlot.INSTANCE && intValues[i] != cacheKey.intValues[i]) {
+                    return false;
+                }
+            } else if (thisObject == IntSlot.INSTANCE || thatObject == IntSlot.INSTANCE) {
+                if (!Objects.equals(get(i), cacheKey.get(i))) {
+                    return false;
+                }
+            } else if (!ArrayUtil.equals(thisObject, thatObject)) {
                 return false;
             }
         }
@@ -128,15 +205,51 @@ public class CacheKey implements Cloneable, Serializable {
         StringJoiner returnValue = new StringJoiner(":");
         returnValue.add(String.valueOf(hashcode));
         returnValue.add(String.valueOf(checksum));
-        updateList.stream().map(ArrayUtil::toString).forEach(returnValue::add);
+        for (int i = 0; i < count; i++) {
+            returnValue.add(ArrayUtil.toString(get(i)));
+        }
         return returnValue.toString();
     }
 
     @Override
     public CacheKey clone() throws CloneNotSupportedException {
         CacheKey clonedCacheKey = (CacheKey) super.clone();
-        clonedCacheKey.updateList = new ArrayList<>(updateList);
+        clonedCacheKey.updateList = updateList.clone();
+        if (intValues != null) {
+            clonedCacheKey.intValues = intValues.clone();
+        }
         return clonedCacheKey;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        List<Object> components = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            components.add(get(i));
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("multiplier", multiplier);
+        fields.put("hashcode", hashcode);
+        fields.put("checksum", checksum);
+        fields.put("count", count);
+        fields.put("updateList", components);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        multiplier = fields.get("multiplier", DEFAULT_MULTIPLIER);
+        hashcode = fields.get("hashcode", DEFAULT_HASHCODE);
+        checksum = fields.get("checksum", 0L);
+        List<?> components = (List<?>) fields.get("updateList", null);
+        updateList = components == null ? EMPTY_UPDATE_LIST : components.toArray();
+        count = Math.min(fields.get("count", 0), updateList.length);
+    }
+
+    /**
+     * Marks an int component.
+     */
+    private enum IntSlot {
+        INSTANCE
+    }
+
 }
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * SPI for the way a read/write cache copies the values it stores.
+ * <p>
+ * {@link org.apache.ibatis.cache.decorators.SerializedCache} stores what {@link #serialize(Object)} returns and hands
+ * every caller a fresh copy created by {@link #deserialize(byte[])}. Implementations must be thread-safe and need a
+ * public no-argument constructor to be configured by type.
+ *
+ * @since 3.5.5
+ * @see org.apache.ibatis.cache.impl.JdkCacheSerializer
+ * @see org.apache.ibatis.cache.impl.CompactCacheSerializer
+ */
+public interface CacheSerializer {
+
+    /**
+     * @param value
+     *          the value to store, may be null
+     * @return the serialized form
+     * @throws CacheException
+     *           if the value can't be serialized
+     */
+    byte[] serialize(Object value);
+
+    /**
+     * @param bytes
+     *          a serialized form returned by {@link #serialize(Object)}
+     * @return a copy of the value
+     * @throws CacheException
+     *           if the value can't be deserialized
+     */
+    Object deserialize(byte[] bytes);
+
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a namespace cache, collected by its decorators and read through {@link Cache#getStatistics()}.
+ * <p>
+ * Counts are cumulative since the cache was built. The hot keys are optional: when enabled, one in
+ * {@value #HOT_KEY_SAMPLE_RATE} requests is sampled into a fixed number of counters (the space-saving algorithm), so
+ * the most requested keys and their approximate request counts can be listed at a small, bounded cost.
+ *
+ * @since 3.5.5
+ */
+public class CacheStatistics {
+
+    public static final int HOT_KEY_SAMPLE_RATE = 16;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+    private final LongAdder serializations = new LongAdder();
+    private final LongAdder serializedBytes = new LongAdder();
+    private final HotKeySampler hotKeys;
+    private volatile Cache cache;
+
+    public CacheStatistics() {
+        this(0);
+    }
+
+    /**
+     * @param hotKeys
+     *          how many of the most requested keys to track, 0 to track none
+     */
+    public CacheStatistics(int hotKeys) {
+        this.hotKeys = hotKeys > 0 ? new HotKeySampler(hotKeys) : null;
+    }
+
+    /**
+     * Sets the cache whose entries {@link #getSize()} counts.
+     *
+     * @param cache
+     *          the cache
+     */
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public void recordRequest(Object key, boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        if (hotKeys != null) {
+            hotKeys.sample(key);
+        }
+    }
+
+    public void recordPut() {
+        puts.increment();
+    }
+
+    /**
+     * @param count
+     *          the number of entries put at once
+     */
+    public void recordPuts(int count) {
+        puts.add(count);
+    }
+
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * @param nanos
+     *          the time in nanoseconds a miss took to load from the database
+     */
+    public void recordLoad(long nanos) {
+        loads.increment();
+        loadTime.add(nanos);
+    }
+
+    /**
+     * @param bytes
+     *          the size of a value as stored
+     */
+    public void recordSerialization(int bytes) {
+        serializations.increment();
+        serializedBytes.add(bytes);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRequestCount() {
+        return getHitCount() + getMissCount();
+    }
+
+    /**
+     * @return the share of requests that hit, 0 if there was no request
+     */
+    public double getHitRatio() {
+        long hitCount = getHitCount();
+        long requestCount = hitCount + getMissCount();
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    /**
+     * @return the number of entries removed to make room for others or collected by the garbage collector
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return the total time in nanoseconds spent loading misses
+     */
+    public long getTotalLoadTime() {
+        return loadTime.sum();
+    }
+
+    /**
+     * @return the average time in nanoseconds a load took, 0 if there was none
+     */
+    public long getAverageLoadTime() {
+        long count = getLoadCount();
+        return count == 0 ? 0 : getTotalLoadTime() / count;
+    }
+
+    /**
+     * @return the current number of entries
+     */
+    public int getSize() {
+        Cache counted = cache;
+        return counted == null ? 0 : counted.getSize();
+    }
+
+    /**
+     * Estimates the memory the entries take from the average size of the values stored so far. Only caches storing
+     * serialized values (those that are not {@code readOnly}) can tell.
+     *
+     * @return the estimated size in bytes, -1 if unknown
+     */
+    public long getEstimatedBytes() {
+        long count = serializations.sum();
+        return count == 0 ? -1 : serializedBytes.sum() / count * getSize();
+    }
+
+    public boolean isHotKeyTracking() {
+        return hotKeys != null;
+    }
+
+    /**
+     * @return the most requested keys, most requested first, empty if hot keys are not tracked
+     */
+    public List<HotKey> getHotKeys() {
+        return hotKeys == null ? new ArrayList<>() : hotKeys.top();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{hits=" + getHitCount() + ", misses=" + getMissCount() + ", hitRatio=" + getHitRatio()
+                + ", puts=" + getPutCount() + ", evictions=" + getEvictionCount() + ", averageLoadTime=" + getAverageLoadTime()
+                + "ns, size=" + getSize() + ", estimatedBytes=" + getEstimatedBytes() + "}";
+    }
+
+    /**
+     * A frequently requested key.
+     */
+    public static class HotKey {
+
+        private final Object key;
+        private final long requests;
+
+        HotKey(Object key, long requests) {
+            this.key = key;
+            this.requests = requests;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        /**
+         * @return the estimated number of requests
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + requests;
+        }
+    }
+
+    private static class HotKeySampler {
+
+        private final int size;
+        private final int capacity;
+        // guarded by this
+        private final Map<Object, long[]> counters = new HashMap<>();
+
+        HotKeySampler(int size) {
+            this.size = size;
+            // extra counters keep the estimate of the reported keys accurate
+            this.capacity = size * 8;
+        }
+
+        void sample(Object key) {
+            if (ThreadLocalRandom.current().nextInt(HOT_KEY_SAMPLE_RATE) != 0) {
+                return;
+            }
+            synchronized (this) {
+                long[] counter = counters.get(key);
+                if (counter != null) {
+                    counter[0]++;
+                } else if (counters.size() < capacity) {
+                    counters.put(key, new long[] { 1 });
+                } else {
+                    // the new key takes over the smallest counter
+                    Iterator<Map.Entry<Object, long[]>> iterator = counters.entrySet().iterator();
+                    Map.Entry<Object, long[]> smallest = iterator.next();
+                    while (iterator.hasNext()) {
+                        Map.Entry<Object, long[]> entry = iterator.next();
+                        if (entry.getValue()[0] < smallest.getValue()[0]) {
+                            smallest = entry;
+                        }
+                    }
+                    counters.remove(smallest.getKey());
+                    counters.put(key, new long[] { smallest.getValue()[0] + 1 });
+                }
+            }
+        }
+
+        synchronized List<HotKey> top() {
+            List<HotKey> top = new ArrayList<>(counters.size());
+            for (Map.Entry<Object, long[]> entry : counters.entrySet()) {
+                top.add(new HotKey(entry.getKey(), entry.getValue()[0] * HOT_KEY_SAMPLE_RATE));
+            }
+            top.sort((a, b) -> Long.compare(b.requests, a.requests));
+            return top.size() > size ? new ArrayList<>(top.subList(0, size)) : top;
+        }
+    }
+
+}
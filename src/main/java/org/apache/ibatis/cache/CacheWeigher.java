@@ -0,0 +1,39 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * SPI for the weight of a cache entry, used by the eviction decorators configured with a {@code maxWeight}.
+ * <p>
+ * The weight is meant to approximate the memory an entry holds, in whatever unit {@code maxWeight} is given. It is
+ * computed once when the entry is put. Implementations need a public no-argument constructor, they are configured by
+ * class name through the {@code weigher} property of the cache.
+ *
+ * @since 3.5.5
+ */
+@FunctionalInterface
+public interface CacheWeigher {
+
+    /**
+     * @param key
+     *          the key of the entry
+     * @param value
+     *          the value put, the serialized form if the cache is read/write
+     * @return the weight, not negative
+     */
+    long weigh(Object key, Object value);
+
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Marks a {@link Cache} implementation that can be called by several threads at once without external locking.
+ * <p>
+ * {@link org.apache.ibatis.mapping.CacheBuilder} applies the standard decorators to such an implementation but does not
+ * wrap it in a {@link org.apache.ibatis.cache.decorators.SynchronizedCache}. The implementation is expected to bound
+ * its own size, so eviction decorators are not applied either.
+ *
+ * @since 3.5.5
+ * @see org.apache.ibatis.cache.impl.ConcurrentCache
+ */
+public interface ThreadSafeCache extends Cache {
+
+}
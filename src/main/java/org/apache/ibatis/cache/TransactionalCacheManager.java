@@ -15,8 +15,10 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.cache.decorators.TransactionalCache;
 
@@ -31,14 +33,110 @@ public class TransactionalCacheManager {
         getTransactionalCache(cache).clear();
     }
 
+    /**
+     * Clears the cache and the caches depending on it when the transaction commits.
+     *
+     * @param cache
+     *          the cache
+     * @param dependentCaches
+     *          the caches holding data of the cache
+     * @since 3.5.5
+     */
+    public void clear(Cache cache, Collection<Cache> dependentCaches) {
+        clear(cache);
+        for (Cache dependentCache : dependentCaches) {
+            clear(dependentCache);
+        }
+    }
+
+    /**
+     * Removes the entries of the cache depending on any of the tags when the transaction commits.
+     *
+     * @param cache
+     *          the cache
+     * @param tags
+     *          the tags whose entries are stale
+     * @since 3.5.5
+     */
+    public void invalidate(Cache cache, Set<String> tags) {
+        getTransactionalCache(cache).invalidate(tags);
+    }
+
+    /**
+     * Removes the entries of the cache and of the caches depending on it that depend on any of the tags when the
+     * transaction commits.
+     *
+     * @param cache
+     *          the cache
+     * @param tags
+     *          the tags whose entries are stale
+     * @param dependentCaches
+     *          the caches holding data of the cache
+     * @since 3.5.5
+     */
+    public void invalidate(Cache cache, Set<String> tags, Collection<Cache> dependentCaches) {
+        invalidate(cache, tags);
+        for (Cache dependentCache : dependentCaches) {
+            invalidate(dependentCache, tags);
+        }
+    }
+
     public Object getObject(Cache cache, CacheKey key) {
         return getTransactionalCache(cache).getObject(key);
     }
 
+    /**
+     * Gets an entry put with the given tags.
+     *
+     * @param cache
+     *          the cache
+     * @param key
+     *          the key
+     * @param tags
+     *          the tags the entry depends on, null if unknown
+     * @return the entry, null if missing or invalidated in this transaction
+     * @since 3.5.5
+     */
+    public Object getObject(Cache cache, CacheKey key, Set<String> tags) {
+        return getTransactionalCache(cache).getObject(key, tags);
+    }
+
     public void putObject(Cache cache, CacheKey key, Object value) {
         getTransactionalCache(cache).putObject(key, value);
     }
 
+    /**
+     * Puts an entry depending on the given tags when the transaction commits.
+     *
+     * @param cache
+     *          the cache
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     * @param tags
+     *          the tags the entry depends on, null if unknown
+     * @since 3.5.5
+     */
+    public void putObject(Cache cache, CacheKey key, Object value, Set<String> tags) {
+        getTransactionalCache(cache).putObject(key, value, tags);
+    }
+
+    /**
+     * Notifies that loading an entry missed in the cache failed, releasing the callers waiting for it.
+     *
+     * @param cache
+     *          the cache
+     * @param key
+     *          the key
+     * @param cause
+     *          the failure
+     * @since 3.5.5
+     */
+    public void loadFailed(Cache cache, CacheKey key, Throwable cause) {
+        getTransactionalCache(cache).loadFailed(key, cause);
+    }
+
     public void commit() {
         for (TransactionalCache txCache : transactionalCaches.values()) {
             txCache.commit();
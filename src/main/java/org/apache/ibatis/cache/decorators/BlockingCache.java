@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -22,6 +24,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
 
 /**
  * Simple blocking decorator
@@ -63,6 +66,26 @@ public class BlockingCache implements Cache {
         }
     }
 
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        try {
+            delegate.putObject(key, value, tags);
+        } finally {
+            releaseLock(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        try {
+            delegate.putAll(entries, tags);
+        } finally {
+            for (Object key : entries.keySet()) {
+                releaseLock(key);
+            }
+        }
+    }
+
     @Override
     public Object getObject(Object key) {
         acquireLock(key);
@@ -85,6 +108,16 @@ public class BlockingCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public void invalidate(Set<String> tags) {
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
     private ReentrantLock getLockForKey(Object key) {
         return locks.computeIfAbsent(key, k -> new ReentrantLock());
     }
@@ -112,6 +145,14 @@ public class BlockingCache implements Cache {
         }
     }
 
+    /**
+     * @return the decorated cache
+     * @since 3.5.5
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
     public long getTimeout() {
         return timeout;
     }
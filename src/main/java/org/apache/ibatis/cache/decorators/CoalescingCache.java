@@ -0,0 +1,251 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.impl.JdkCacheSerializer;
+
+/**
+ * Request coalescing decorator, an alternative to {@link BlockingCache}.
+ * <p>
+ * The first caller missing a key becomes its loader and gets null, the callers missing the same key meanwhile wait for
+ * that load instead of hitting the database. The loader hands its result over with {@link #complete(Object, Object)}
+ * as soon as it is loaded, or its failure with {@link #fail(Object, Throwable)}, which the waiting callers then get as
+ * a {@link CacheException}. A load ended by {@link #putObject(Object, Object)} or {@link #removeObject(Object)}
+ * without a result lets the waiting callers try again.
+ * <p>
+ * Loads only live in a map while in flight, there is no lock per key left behind.
+ *
+ * @since 3.5.5
+ */
+public class CoalescingCache implements Cache {
+
+    private final Cache delegate;
+    private final ConcurrentHashMap<Object, Load> loads = new ConcurrentHashMap<>();
+    private long timeout;
+    private boolean readWrite;
+    private CacheSerializer serializer = new JdkCacheSerializer();
+
+    public CoalescingCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        try {
+            delegate.putObject(key, value);
+        } finally {
+            end(key, null, null);
+        }
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        try {
+            delegate.putObject(key, value, tags);
+        } finally {
+            end(key, null, null);
+        }
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        try {
+            delegate.putAll(entries, tags);
+        } finally {
+            for (Object key : entries.keySet()) {
+                end(key, null, null);
+            }
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        while (true) {
+            Object value = delegate.getObject(key);
+            if (value != null) {
+                return value;
+            }
+            Load load = new Load();
+            Load inFlight = loads.putIfAbsent(key, load);
+            if (inFlight == null || inFlight.loader == load.loader) {
+                // this caller loads the value
+                return null;
+            }
+            value = inFlight.await(key);
+            if (value != null) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        // like in BlockingCache this method is called to end a load without a result
+        end(key, null, null);
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    /**
+     * Hands the loaded value over to the callers waiting for it, without putting it into the cache.
+     *
+     * @param key
+     *          the key the calling thread loaded
+     * @param value
+     *          the value, null to let the waiting callers load it themselves
+     */
+    public void complete(Object key, Object value) {
+        end(key, value, null);
+    }
+
+    /**
+     * Hands the failure of a load over to the callers waiting for it.
+     *
+     * @param key
+     *          the key the calling thread failed to load
+     * @param cause
+     *          the failure
+     */
+    public void fail(Object key, Throwable cause) {
+        end(key, null, cause);
+    }
+
+    /**
+     * @return the decorated cache
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets how long a caller waits for a load of another caller.
+     *
+     * @param timeout
+     *          the timeout in milliseconds, 0 to wait until the load ends
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public boolean isReadWrite() {
+        return readWrite;
+    }
+
+    /**
+     * Sets whether each waiting caller gets its own copy of the loaded value, like the copies a read/write cache
+     * returns.
+     *
+     * @param readWrite
+     *          whether to copy the values handed over
+     */
+    public void setReadWrite(boolean readWrite) {
+        this.readWrite = readWrite;
+    }
+
+    public CacheSerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets how the copies of a read/write cache are made, it should be the serializer of the cache.
+     *
+     * @param serializer
+     *          the serializer, Java serialization by default
+     */
+    public void setSerializer(CacheSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    private void end(Object key, Object value, Throwable cause) {
+        Load load = loads.get(key);
+        // only the loader ends its load
+        if (load == null || load.loader != Thread.currentThread() || !loads.remove(key, load)) {
+            return;
+        }
+        if (cause != null) {
+            load.completeExceptionally(cause);
+        } else if (readWrite && value != null) {
+            try {
+                load.complete(serializer.serialize(value));
+            } catch (CacheException e) {
+                load.completeExceptionally(e);
+            }
+        } else {
+            load.complete(value);
+        }
+    }
+
+    private class Load extends CompletableFuture<Object> {
+
+        private final Thread loader = Thread.currentThread();
+
+        Object await(Object key) {
+            Object value;
+            try {
+                value = timeout > 0 ? get(timeout, TimeUnit.MILLISECONDS) : get();
+            } catch (TimeoutException e) {
+                throw new CacheException("Couldn't get a value in " + timeout + " for the key " + key + " at the cache " + getId(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CacheException("Got interrupted while waiting for the value of key " + key, e);
+            } catch (ExecutionException e) {
+                throw new CacheException("Error loading the value of key " + key + " at the cache " + getId() + ". Cause: " + e.getCause(), e.getCause());
+            }
+            return readWrite && value instanceof byte[] ? serializer.deserialize((byte[]) value) : value;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheWeigher;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Weights of the entries of an eviction decorator bounded by a maximum weight.
+ * <p>
+ * Without a {@link CacheWeigher} a serialized value weighs its length, a list weighs its size times the estimated row
+ * size, anything else weighs one row.
+ */
+class EntryWeights {
+
+    private final Map<Object, Long> weights = new HashMap<>();
+    private long maxWeight;
+    private int rowSize = 256;
+    private CacheWeigher weigher;
+    private long weight;
+
+    boolean isEnabled() {
+        return maxWeight > 0;
+    }
+
+    long getMaxWeight() {
+        return maxWeight;
+    }
+
+    void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    int getRowSize() {
+        return rowSize;
+    }
+
+    void setRowSize(int rowSize) {
+        this.rowSize = rowSize;
+    }
+
+    void setWeigher(String type) {
+        try {
+            weigher = (CacheWeigher) Resources.classForName(type).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new CacheException("Error creating the cache weigher " + type + ". Cause: " + e, e);
+        }
+    }
+
+    long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return false if the value alone outweighs the maximum
+     */
+    boolean add(Object key, Object value) {
+        long entryWeight = weigh(key, value);
+        Long previous = weights.put(key, entryWeight);
+        weight += entryWeight - (previous == null ? 0 : previous);
+        return entryWeight <= maxWeight;
+    }
+
+    void remove(Object key) {
+        Long entryWeight = weights.remove(key);
+        if (entryWeight != null) {
+            weight -= entryWeight;
+        }
+    }
+
+    boolean isOverweight() {
+        return weight > maxWeight;
+    }
+
+    /**
+     * Forgets the keys the cache dropped on its own, e.g. on an invalidation by tags, when it cannot tell them. Reads
+     * every tracked key.
+     */
+    void retainCached(Cache cache) {
+        for (Object key : new ArrayList<>(weights.keySet())) {
+            if (cache.getObject(key) == null) {
+                remove(key);
+            }
+        }
+    }
+
+    void clear() {
+        weights.clear();
+        weight = 0;
+    }
+
+    private long weigh(Object key, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (weigher != null) {
+            return weigher.weigh(key, value);
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Collection) {
+            return Math.max(1, ((Collection<?>) value).size()) * (long) rowSize;
+        }
+        return rowSize;
+    }
+
+}
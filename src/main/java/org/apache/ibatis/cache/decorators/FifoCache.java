@@ -17,11 +17,17 @@ package org.apache.ibatis.cache.decorators;
 
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 
 /**
  * FIFO (first in, first out) cache decorator.
+ * <p>
+ * Bounded by the number of entries, and by their total weight as well if a {@code maxWeight} is set.
  *
  * @author Clinton Begin
  */
@@ -30,6 +36,8 @@ public class FifoCache implements Cache {
     private final Cache delegate;
     private final Deque<Object> keyList;
     private int size;
+    private CacheStatistics statistics;
+    private final EntryWeights weights = new EntryWeights();
 
     public FifoCache(Cache delegate) {
         this.delegate = delegate;
@@ -51,10 +59,89 @@ public class FifoCache implements Cache {
         this.size = size;
     }
 
+    /**
+     * Sets the statistics to count the oldest entries evicted in.
+     *
+     * @param statistics
+     *          the statistics
+     * @since 3.5.5
+     */
+    public void setStatistics(CacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public long getMaxWeight() {
+        return weights.getMaxWeight();
+    }
+
+    /**
+     * Sets the total weight of the entries beyond which the oldest ones are evicted. A value heavier than that on its
+     * own isn't kept at all.
+     *
+     * @param maxWeight
+     *          the maximum weight, 0 to bound the number of entries only
+     * @since 3.5.5
+     */
+    public void setMaxWeight(long maxWeight) {
+        weights.setMaxWeight(maxWeight);
+    }
+
+    public int getRowSize() {
+        return weights.getRowSize();
+    }
+
+    /**
+     * Sets the estimated size of a row, lists weigh their size times this unless a weigher is set.
+     *
+     * @param rowSize
+     *          the estimated row size, 256 by default
+     * @since 3.5.5
+     */
+    public void setRowSize(int rowSize) {
+        weights.setRowSize(rowSize);
+    }
+
+    /**
+     * Sets how the entries are weighed.
+     *
+     * @param type
+     *          the class name of a {@link org.apache.ibatis.cache.CacheWeigher}
+     * @since 3.5.5
+     */
+    public void setWeigher(String type) {
+        weights.setWeigher(type);
+    }
+
+    /**
+     * @return the total weight of the entries, 0 unless a maximum weight is set
+     * @since 3.5.5
+     */
+    public long getWeight() {
+        return weights.getWeight();
+    }
+
     @Override
     public void putObject(Object key, Object value) {
         cycleKeyList(key);
         delegate.putObject(key, value);
+        weigh(key, value);
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        cycleKeyList(key);
+        delegate.putObject(key, value, tags);
+        weigh(key, value);
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        // put first, the keys of the batch evicted while cycling must not be put afterwards
+        delegate.putAll(entries, tags);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            cycleKeyList(entry.getKey());
+            weigh(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
@@ -64,6 +151,7 @@ public class FifoCache implements Cache {
 
     @Override
     public Object removeObject(Object key) {
+        weights.remove(key);
         return delegate.removeObject(key);
     }
 
@@ -71,13 +159,60 @@ public class FifoCache implements Cache {
     public void clear() {
         delegate.clear();
         keyList.clear();
+        weights.clear();
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        invalidate(tags, key -> { });
+    }
+
+    @Override
+    public boolean invalidate(Set<String> tags, Consumer<Object> removedKeys) {
+        if (!weights.isEnabled()) {
+            return delegate.invalidate(tags, removedKeys);
+        }
+        boolean reported = delegate.invalidate(tags, key -> {
+            weights.remove(key);
+            removedKeys.accept(key);
+        });
+        if (!reported) {
+            weights.retainCached(delegate);
+        }
+        return reported;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
     }
 
     private void cycleKeyList(Object key) {
         keyList.addLast(key);
         if (keyList.size() > size) {
-            Object oldestKey = keyList.removeFirst();
-            delegate.removeObject(oldestKey);
+            evict(keyList.removeFirst());
+        }
+    }
+
+    private void weigh(Object key, Object value) {
+        if (!weights.isEnabled()) {
+            return;
+        }
+        if (!weights.add(key, value)) {
+            keyList.removeLastOccurrence(key);
+            evict(key);
+            return;
+        }
+        while (weights.isOverweight() && !keyList.isEmpty()) {
+            evict(keyList.removeFirst());
+        }
+    }
+
+    private void evict(Object key) {
+        weights.remove(key);
+        delegate.removeObject(key);
+        if (statistics != null) {
+            statistics.recordEviction();
         }
     }
 
@@ -15,7 +15,12 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -26,12 +31,27 @@ public class LoggingCache implements Cache {
 
     private final Log log;
     private final Cache delegate;
-    protected int requests = 0;
-    protected int hits = 0;
+    // not guarded by a SynchronizedCache around a ThreadSafeCache
+    protected final LongAdder requests = new LongAdder();
+    protected final LongAdder hits = new LongAdder();
+    private final CacheStatistics statistics;
 
     public LoggingCache(Cache delegate) {
+        this(delegate, new CacheStatistics());
+    }
+
+    /**
+     * @param delegate
+     *          the cache to decorate
+     * @param statistics
+     *          the statistics to collect the hits, misses and puts in, shared with the other decorators of the cache
+     * @since 3.5.5
+     */
+    public LoggingCache(Cache delegate, CacheStatistics statistics) {
         this.delegate = delegate;
         this.log = LogFactory.getLog(getId());
+        this.statistics = statistics;
+        statistics.setCache(delegate);
     }
 
     @Override
@@ -47,15 +67,29 @@ public class LoggingCache implements Cache {
     @Override
     public void putObject(Object key, Object object) {
         delegate.putObject(key, object);
+        statistics.recordPut();
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        delegate.putObject(key, value, tags);
+        statistics.recordPut();
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        delegate.putAll(entries, tags);
+        statistics.recordPuts(entries.size());
     }
 
     @Override
     public Object getObject(Object key) {
-        requests++;
+        requests.increment();
         final Object value = delegate.getObject(key);
         if (value != null) {
-            hits++;
+            hits.increment();
         }
+        statistics.recordRequest(key, value != null);
         if (log.isDebugEnabled()) {
             log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
         }
@@ -72,6 +106,16 @@ public class LoggingCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public void invalidate(Set<String> tags) {
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
     @Override
     public int hashCode() {
         return delegate.hashCode();
@@ -83,7 +127,7 @@ public class LoggingCache implements Cache {
     }
 
     private double getHitRatio() {
-        return (double) hits / (double) requests;
+        return (double) hits.sum() / (double) requests.sum();
     }
 
 }
@@ -15,13 +15,19 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 
 /**
  * Lru (least recently used) cache decorator.
+ * <p>
+ * Bounded by the number of entries, and by their total weight as well if a {@code maxWeight} is set.
  *
  * @author Clinton Begin
  */
@@ -30,6 +36,8 @@ public class LruCache implements Cache {
     private final Cache delegate;
     private Map<Object, Object> keyMap;
     private Object eldestKey;
+    private CacheStatistics statistics;
+    private final EntryWeights weights = new EntryWeights();
 
     public LruCache(Cache delegate) {
         this.delegate = delegate;
@@ -46,6 +54,17 @@ public class LruCache implements Cache {
         return delegate.getSize();
     }
 
+    /**
+     * Sets the statistics to count the least recently used entries evicted in.
+     *
+     * @param statistics
+     *          the statistics
+     * @since 3.5.5
+     */
+    public void setStatistics(CacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     public void setSize(final int size) {
         keyMap = new LinkedHashMap<Object, Object>(size, .75F, true) {
             private static final long serialVersionUID = 4267176411845948333L;
@@ -61,10 +80,77 @@ public class LruCache implements Cache {
         };
     }
 
+    public long getMaxWeight() {
+        return weights.getMaxWeight();
+    }
+
+    /**
+     * Sets the total weight of the entries beyond which the least recently used ones are evicted. A value heavier than
+     * that on its own isn't kept at all.
+     *
+     * @param maxWeight
+     *          the maximum weight, 0 to bound the number of entries only
+     * @since 3.5.5
+     */
+    public void setMaxWeight(long maxWeight) {
+        weights.setMaxWeight(maxWeight);
+    }
+
+    public int getRowSize() {
+        return weights.getRowSize();
+    }
+
+    /**
+     * Sets the estimated size of a row, lists weigh their size times this unless a weigher is set.
+     *
+     * @param rowSize
+     *          the estimated row size, 256 by default
+     * @since 3.5.5
+     */
+    public void setRowSize(int rowSize) {
+        weights.setRowSize(rowSize);
+    }
+
+    /**
+     * Sets how the entries are weighed.
+     *
+     * @param type
+     *          the class name of a {@link org.apache.ibatis.cache.CacheWeigher}
+     * @since 3.5.5
+     */
+    public void setWeigher(String type) {
+        weights.setWeigher(type);
+    }
+
+    /**
+     * @return the total weight of the entries, 0 unless a maximum weight is set
+     * @since 3.5.5
+     */
+    public long getWeight() {
+        return weights.getWeight();
+    }
+
     @Override
     public void putObject(Object key, Object value) {
         delegate.putObject(key, value);
         cycleKeyList(key);
+        weigh(key, value);
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        delegate.putObject(key, value, tags);
+        cycleKeyList(key);
+        weigh(key, value);
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        delegate.putAll(entries, tags);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            cycleKeyList(entry.getKey());
+            weigh(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
@@ -75,6 +161,7 @@ public class LruCache implements Cache {
 
     @Override
     public Object removeObject(Object key) {
+        weights.remove(key);
         return delegate.removeObject(key);
     }
 
@@ -82,14 +169,65 @@ public class LruCache implements Cache {
     public void clear() {
         delegate.clear();
         keyMap.clear();
+        weights.clear();
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        invalidate(tags, key -> { });
+    }
+
+    @Override
+    public boolean invalidate(Set<String> tags, Consumer<Object> removedKeys) {
+        if (!weights.isEnabled()) {
+            return delegate.invalidate(tags, removedKeys);
+        }
+        boolean reported = delegate.invalidate(tags, key -> {
+            weights.remove(key);
+            removedKeys.accept(key);
+        });
+        if (!reported) {
+            weights.retainCached(delegate);
+        }
+        return reported;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
     }
 
     private void cycleKeyList(Object key) {
         keyMap.put(key, key);
         if (eldestKey != null) {
-            delegate.removeObject(eldestKey);
+            evict(eldestKey);
             eldestKey = null;
         }
     }
 
+    private void weigh(Object key, Object value) {
+        if (!weights.isEnabled()) {
+            return;
+        }
+        if (!weights.add(key, value)) {
+            keyMap.remove(key);
+            evict(key);
+            return;
+        }
+        Iterator<Object> keys = keyMap.keySet().iterator();
+        while (weights.isOverweight() && keys.hasNext()) {
+            Object eldest = keys.next();
+            keys.remove();
+            evict(eldest);
+        }
+    }
+
+    private void evict(Object key) {
+        weights.remove(key);
+        delegate.removeObject(key);
+        if (statistics != null) {
+            statistics.recordEviction();
+        }
+    }
+
 }
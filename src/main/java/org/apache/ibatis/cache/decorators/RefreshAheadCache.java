@@ -0,0 +1,281 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Refresh-ahead decorator giving every entry a time to live.
+ * <p>
+ * An entry read within the refresh-ahead window before it expires gets reloaded on a background thread with the
+ * {@link Loader} registered for its key by {@link #setLoader(Object, Loader)}, and the stale value keeps being served
+ * until the reload is done. So keys read often enough never miss, while an entry nobody read within the window expires
+ * and misses as usual. A failed reload is logged and not retried, the entry then expires. Decorate it with a
+ * {@link CoalescingCache} or a {@link BlockingCache}, so that the callers missing an expired entry wait for one load.
+ * <p>
+ * The reloads of all caches run on a shared pool of daemon threads. Reloads the pool can't keep up with are dropped.
+ *
+ * @since 3.5.5
+ */
+public class RefreshAheadCache implements Cache {
+
+    private static final Log log = LogFactory.getLog(RefreshAheadCache.class);
+
+    private static final ThreadPoolExecutor refresher;
+
+    static {
+        int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        refresher = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.allowCoreThreadTimeOut(true);
+    }
+
+    private final Cache delegate;
+    private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<>();
+    private long timeToLive = 60 * 60 * 1000;
+    private long refreshAhead = -1;
+    private volatile int trimThreshold = 1024;
+
+    public RefreshAheadCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        putObject(key, value, null);
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        putDelegate(key, value, tags);
+        track(key, value, tags);
+    }
+
+    private void putDelegate(Object key, Object value, Set<String> tags) {
+        if (tags == null) {
+            delegate.putObject(key, value);
+        } else {
+            delegate.putObject(key, value, tags);
+        }
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        delegate.putAll(entries, tags);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            track(entry.getKey(), entry.getValue(), tags.get(entry.getKey()));
+        }
+    }
+
+    private void track(Object key, Object value, Set<String> tags) {
+        if (value == null) {
+            entries.remove(key);
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        entry.tags = tags;
+        entry.loadedAt = System.nanoTime();
+        entry.loaded = true;
+        if (entries.size() > trimThreshold) {
+            trim();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Object value = delegate.getObject(key);
+        Entry entry = entries.get(key);
+        if (value == null || entry == null || !entry.loaded) {
+            // without an entry the value expired and got trimmed
+            return null;
+        }
+        long age = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.loadedAt);
+        if (age >= timeToLive - getRefreshAhead() && age < timeToLive) {
+            refresh(key, entry);
+        }
+        if (age >= timeToLive && !entry.refreshing.get()) {
+            return null;
+        }
+        // fresh, or stale while a reload is on its way
+        return value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        // removed first, so that a reload ending meanwhile does not put the value back
+        entries.remove(key);
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        // like the caches supporting tags, entries put without tags go too
+        entries.values().removeIf(entry -> entry.tags == null || !Collections.disjoint(entry.tags, tags));
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    /**
+     * Registers how to reload the value of a key. The loader is kept as long as the entry is.
+     *
+     * @param key
+     *          the key
+     * @param loader
+     *          the loader, called on a background thread
+     */
+    public void setLoader(Object key, Loader loader) {
+        entries.computeIfAbsent(key, k -> {
+            Entry entry = new Entry();
+            // trimmed after the time to live if the transaction that registered the loader does not put the value
+            entry.loadedAt = System.nanoTime();
+            return entry;
+        }).loader = loader;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Sets how long an entry is served after it was put.
+     *
+     * @param timeToLive
+     *          the time to live in milliseconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getRefreshAhead() {
+        return refreshAhead < 0 ? timeToLive / 5 : refreshAhead;
+    }
+
+    /**
+     * Sets how long before an entry expires a read of it triggers a reload. Defaults to a fifth of the time to live.
+     *
+     * @param refreshAhead
+     *          the refresh-ahead window in milliseconds
+     */
+    public void setRefreshAhead(long refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    private void refresh(Object key, Entry entry) {
+        Loader loader = entry.loader;
+        if (loader == null || !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    Object value = loader.load();
+                    if (value != null) {
+                        // skip the value if the entry got removed meanwhile, e.g. by a flush. Removals wait for the
+                        // entry to be written
+                        entries.computeIfPresent(key, (k, current) -> {
+                            if (current == entry) {
+                                putDelegate(key, value, entry.tags);
+                                entry.loadedAt = System.nanoTime();
+                            }
+                            return current;
+                        });
+                    }
+                } catch (Exception e) {
+                    log.warn("Error reloading the value of key " + key + " at the cache " + getId() + ". Cause: " + e);
+                    entry.loader = null;
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void trim() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.refreshing.get() && TimeUnit.NANOSECONDS.toMillis(now - entry.loadedAt) >= timeToLive) {
+                iterator.remove();
+            }
+        }
+        trimThreshold = Math.max(1024, entries.size() * 2);
+    }
+
+    /**
+     * Reloads the value of a key.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Loads the current value.
+         *
+         * @return the value, null to keep the stale one until it expires
+         * @throws Exception
+         *           if the value could not be loaded
+         */
+        Object load() throws Exception;
+    }
+
+    private static class Entry {
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile Loader loader;
+        private volatile Set<String> tags;
+        private volatile long loadedAt;
+        private volatile boolean loaded;
+    }
+
+}
@@ -15,9 +15,12 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 
 /**
  * @author Clinton Begin
@@ -25,8 +28,9 @@ import org.apache.ibatis.cache.Cache;
 public class ScheduledCache implements Cache {
 
     private final Cache delegate;
-    protected long clearInterval;
-    protected long lastClear;
+    protected volatile long clearInterval;
+    // read without a lock around a ThreadSafeCache
+    protected volatile long lastClear;
 
     public ScheduledCache(Cache delegate) {
         this.delegate = delegate;
@@ -55,6 +59,18 @@ public class ScheduledCache implements Cache {
         delegate.putObject(key, object);
     }
 
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        clearWhenStale();
+        delegate.putObject(key, value, tags);
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        clearWhenStale();
+        delegate.putAll(entries, tags);
+    }
+
     @Override
     public Object getObject(Object key) {
         return clearWhenStale() ? null : delegate.getObject(key);
@@ -72,6 +88,17 @@ public class ScheduledCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public void invalidate(Set<String> tags) {
+        clearWhenStale();
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
     @Override
     public int hashCode() {
         return delegate.hashCode();
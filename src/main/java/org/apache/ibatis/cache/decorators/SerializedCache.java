@@ -15,17 +15,20 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.ibatis.cache.Cache;
-import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.impl.JdkCacheSerializer;
 import org.apache.ibatis.io.Resources;
 
 /**
@@ -33,7 +36,16 @@ import org.apache.ibatis.io.Resources;
  */
 public class SerializedCache implements Cache {
 
+    private static final JdkCacheSerializer jdkSerializer = new JdkCacheSerializer();
+
     private final Cache delegate;
+    private CacheSerializer serializer = jdkSerializer;
+    private final LongAdder serializations = new LongAdder();
+    private final LongAdder serializedBytes = new LongAdder();
+    private final LongAdder serializationTime = new LongAdder();
+    private final LongAdder deserializations = new LongAdder();
+    private final LongAdder deserializationTime = new LongAdder();
+    private CacheStatistics statistics;
 
     public SerializedCache(Cache delegate) {
         this.delegate = delegate;
@@ -51,17 +63,27 @@ public class SerializedCache implements Cache {
 
     @Override
     public void putObject(Object key, Object object) {
-        if (object == null || object instanceof Serializable) {
-            delegate.putObject(key, serialize((Serializable) object));
-        } else {
-            throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
+        delegate.putObject(key, write(object));
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        delegate.putObject(key, write(value), tags);
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        Map<Object, Object> serialized = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            serialized.put(entry.getKey(), write(entry.getValue()));
         }
+        delegate.putAll(serialized, tags);
     }
 
     @Override
     public Object getObject(Object key) {
         Object object = delegate.getObject(key);
-        return object == null ? null : deserialize((byte[]) object);
+        return object == null ? null : read((byte[]) object);
     }
 
     @Override
@@ -74,6 +96,16 @@ public class SerializedCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public void invalidate(Set<String> tags) {
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
     @Override
     public int hashCode() {
         return delegate.hashCode();
@@ -84,26 +116,123 @@ public class SerializedCache implements Cache {
         return delegate.equals(obj);
     }
 
-    private byte[] serialize(Serializable value) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-            oos.writeObject(value);
-            oos.flush();
-            return bos.toByteArray();
-        } catch (Exception e) {
-            throw new CacheException("Error serializing object.  Cause: " + e, e);
-        }
+    public CacheSerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets how the values are copied, Java serialization by default.
+     *
+     * @param serializer
+     *          the serializer
+     * @since 3.5.5
+     */
+    public void setSerializer(CacheSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Sets the statistics to report the size of the stored values to, for their memory estimate.
+     *
+     * @param statistics
+     *          the statistics
+     * @since 3.5.5
+     */
+    public void setStatistics(CacheStatistics statistics) {
+        this.statistics = statistics;
     }
 
-    private Serializable deserialize(byte[] value) {
-        Serializable result;
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-             ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-            result = (Serializable) ois.readObject();
-        } catch (Exception e) {
-            throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    /**
+     * @return the number of values serialized so far
+     * @since 3.5.5
+     */
+    public long getSerializationCount() {
+        return serializations.sum();
+    }
+
+    /**
+     * @return the total size in bytes of the values serialized so far
+     * @since 3.5.5
+     */
+    public long getSerializedBytes() {
+        return serializedBytes.sum();
+    }
+
+    /**
+     * @return the total time in nanoseconds spent serializing
+     * @since 3.5.5
+     */
+    public long getSerializationTime() {
+        return serializationTime.sum();
+    }
+
+    /**
+     * @return the number of values deserialized so far
+     * @since 3.5.5
+     */
+    public long getDeserializationCount() {
+        return deserializations.sum();
+    }
+
+    /**
+     * @return the total time in nanoseconds spent deserializing
+     * @since 3.5.5
+     */
+    public long getDeserializationTime() {
+        return deserializationTime.sum();
+    }
+
+    /**
+     * @return the average size in bytes of a serialized value, 0 if none has been serialized
+     * @since 3.5.5
+     */
+    public long getAverageSerializedSize() {
+        long count = serializations.sum();
+        return count == 0 ? 0 : serializedBytes.sum() / count;
+    }
+
+    private byte[] write(Object value) {
+        long start = System.nanoTime();
+        byte[] bytes = serializer.serialize(value);
+        serializationTime.add(System.nanoTime() - start);
+        serializations.increment();
+        serializedBytes.add(bytes.length);
+        if (statistics != null) {
+            statistics.recordSerialization(bytes.length);
         }
-        return result;
+        return bytes;
+    }
+
+    private Object read(byte[] bytes) {
+        long start = System.nanoTime();
+        Object value = serializer.deserialize(bytes);
+        deserializationTime.add(System.nanoTime() - start);
+        deserializations.increment();
+        return value;
+    }
+
+    /**
+     * Serializes a value with Java serialization, the default of this decorator.
+     *
+     * @param value
+     *          the value, may be null
+     * @return the serialized form
+     * @since 3.5.5
+     */
+    public static byte[] serialize(Serializable value) {
+        return jdkSerializer.serialize(value);
+    }
+
+    /**
+     * Deserializes a value produced by {@link #serialize(Serializable)}.
+     *
+     * @param value
+     *          the serialized form
+     * @return the value
+     * @since 3.5.5
+     */
+    public static Serializable deserialize(byte[] value) {
+        return (Serializable) jdkSerializer.deserialize(value);
     }
 
     public static class CustomObjectInputStream extends ObjectInputStream {
@@ -19,8 +19,10 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 
 /**
  * Soft Reference cache decorator
@@ -33,6 +35,7 @@ public class SoftCache implements Cache {
     private final ReferenceQueue<Object> queueOfGarbageCollectedEntries;
     private final Cache delegate;
     private int numberOfHardLinks;
+    private CacheStatistics statistics;
 
     public SoftCache(Cache delegate) {
         this.delegate = delegate;
@@ -56,12 +59,29 @@ public class SoftCache implements Cache {
         this.numberOfHardLinks = size;
     }
 
+    /**
+     * Sets the statistics to count the entries taken by the garbage collector in.
+     *
+     * @param statistics
+     *          the statistics
+     * @since 3.5.5
+     */
+    public void setStatistics(CacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     @Override
     public void putObject(Object key, Object value) {
         removeGarbageCollectedItems();
         delegate.putObject(key, new SoftEntry(key, value, queueOfGarbageCollectedEntries));
     }
 
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        removeGarbageCollectedItems();
+        delegate.putObject(key, new SoftEntry(key, value, queueOfGarbageCollectedEntries), tags);
+    }
+
     @Override
     public Object getObject(Object key) {
         Object result = null;
@@ -99,10 +119,24 @@ public class SoftCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public void invalidate(Set<String> tags) {
+        removeGarbageCollectedItems();
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
     private void removeGarbageCollectedItems() {
         SoftEntry sv;
         while ((sv = (SoftEntry) queueOfGarbageCollectedEntries.poll()) != null) {
             delegate.removeObject(sv.key);
+            if (statistics != null) {
+                statistics.recordEviction();
+            }
         }
     }
 
@@ -15,7 +15,11 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 
 /**
  * @author Clinton Begin
@@ -43,6 +47,16 @@ public class SynchronizedCache implements Cache {
         delegate.putObject(key, object);
     }
 
+    @Override
+    public synchronized void putObject(Object key, Object value, Set<String> tags) {
+        delegate.putObject(key, value, tags);
+    }
+
+    @Override
+    public synchronized void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+        delegate.putAll(entries, tags);
+    }
+
     @Override
     public synchronized Object getObject(Object key) {
         return delegate.getObject(key);
@@ -58,6 +72,16 @@ public class SynchronizedCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public synchronized void invalidate(Set<String> tags) {
+        delegate.invalidate(tags);
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
     @Override
     public int hashCode() {
         return delegate.hashCode();
@@ -15,12 +15,14 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -31,6 +33,9 @@ import org.apache.ibatis.logging.LogFactory;
  * Entries are sent to the cache when commit is called or discarded if the Session is rolled back.
  * Blocking cache support has been added. Therefore any get() that returns a cache miss
  * will be followed by a put() so any lock associated with the key can be released.
+ * <p>
+ * Tag invalidations are deferred to commit as well. Until then, entries depending on an invalidated tag are treated
+ * as cache misses by this Session, as they do not reflect its own changes.
  *
  * @author Clinton Begin
  * @author Eduardo Macarron
@@ -42,13 +47,17 @@ public class TransactionalCache implements Cache {
     private final Cache delegate;
     private boolean clearOnCommit;
     private final Map<Object, Object> entriesToAddOnCommit;
+    private final Map<Object, Set<String>> tagsOfEntriesToAdd;
     private final Set<Object> entriesMissedInCache;
+    private final Set<String> tagsToInvalidateOnCommit;
 
     public TransactionalCache(Cache delegate) {
         this.delegate = delegate;
         this.clearOnCommit = false;
         this.entriesToAddOnCommit = new HashMap<>();
+        this.tagsOfEntriesToAdd = new HashMap<>();
         this.entriesMissedInCache = new HashSet<>();
+        this.tagsToInvalidateOnCommit = new HashSet<>();
     }
 
     @Override
@@ -63,13 +72,27 @@ public class TransactionalCache implements Cache {
 
     @Override
     public Object getObject(Object key) {
+        return getObject(key, null);
+    }
+
+    /**
+     * Gets a value put with the given tags.
+     *
+     * @param key
+     *          the key
+     * @param tags
+     *          the tags the value depends on, null if unknown
+     * @return the value, null if missing or invalidated by this Session
+     * @since 3.5.5
+     */
+    public Object getObject(Object key, Set<String> tags) {
         // issue #116
         Object object = delegate.getObject(key);
         if (object == null) {
             entriesMissedInCache.add(key);
         }
         // issue #146
-        if (clearOnCommit) {
+        if (clearOnCommit || isInvalidated(tags)) {
             return null;
         } else {
             return object;
@@ -78,7 +101,45 @@ public class TransactionalCache implements Cache {
 
     @Override
     public void putObject(Object key, Object object) {
+        putObject(key, object, null);
+    }
+
+    @Override
+    public void putObject(Object key, Object object, Set<String> tags) {
         entriesToAddOnCommit.put(key, object);
+        if (tags != null) {
+            tagsOfEntriesToAdd.put(key, tags);
+        } else {
+            tagsOfEntriesToAdd.remove(key);
+        }
+        if (delegate instanceof CoalescingCache && entriesMissedInCache.contains(key)) {
+            // the value may reflect changes of this Session, do not share it before they are committed
+            ((CoalescingCache) delegate).complete(key, clearOnCommit || isInvalidated(tags) ? null : object);
+        }
+    }
+
+    /**
+     * Notifies that loading a value missed in the cache failed, so that callers waiting for it stop waiting.
+     *
+     * @param key
+     *          the key
+     * @param cause
+     *          the failure
+     * @since 3.5.5
+     */
+    public void loadFailed(Object key, Throwable cause) {
+        if (!entriesMissedInCache.remove(key)) {
+            return;
+        }
+        try {
+            if (delegate instanceof CoalescingCache) {
+                ((CoalescingCache) delegate).fail(key, cause);
+            } else {
+                delegate.removeObject(key);
+            }
+        } catch (Exception e) {
+            log.warn("Unexpected exception while notifiying a failed load to the cache adapter. Cause: " + e);
+        }
     }
 
     @Override
@@ -90,11 +151,34 @@ public class TransactionalCache implements Cache {
     public void clear() {
         clearOnCommit = true;
         entriesToAddOnCommit.clear();
+        tagsOfEntriesToAdd.clear();
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        if (!clearOnCommit) {
+            tagsToInvalidateOnCommit.addAll(tags);
+        }
+        entriesToAddOnCommit.keySet().removeIf(key -> {
+            Set<String> entryTags = tagsOfEntriesToAdd.get(key);
+            if (entryTags == null || !Collections.disjoint(entryTags, tags)) {
+                tagsOfEntriesToAdd.remove(key);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
     }
 
     public void commit() {
         if (clearOnCommit) {
             delegate.clear();
+        } else if (!tagsToInvalidateOnCommit.isEmpty()) {
+            delegate.invalidate(tagsToInvalidateOnCommit);
         }
         flushPendingEntries();
         reset();
@@ -105,21 +189,31 @@ public class TransactionalCache implements Cache {
         reset();
     }
 
+    private boolean isInvalidated(Set<String> tags) {
+        if (tagsToInvalidateOnCommit.isEmpty()) {
+            return false;
+        }
+        return tags == null || !Collections.disjoint(tags, tagsToInvalidateOnCommit);
+    }
+
     private void reset() {
         clearOnCommit = false;
         entriesToAddOnCommit.clear();
+        tagsOfEntriesToAdd.clear();
         entriesMissedInCache.clear();
+        tagsToInvalidateOnCommit.clear();
     }
 
     private void flushPendingEntries() {
-        for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-            delegate.putObject(entry.getKey(), entry.getValue());
-        }
         for (Object entry : entriesMissedInCache) {
             if (!entriesToAddOnCommit.containsKey(entry)) {
-                delegate.putObject(entry, null);
+                entriesToAddOnCommit.put(entry, null);
             }
         }
+        if (!entriesToAddOnCommit.isEmpty()) {
+            // one batch, so that the decorators lock once per commit instead of once per entry
+            delegate.putAll(entriesToAddOnCommit, tagsOfEntriesToAdd);
+        }
     }
 
     private void unlockMissedEntries() {
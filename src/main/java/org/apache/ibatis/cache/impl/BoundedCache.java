@@ -0,0 +1,176 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Base of the bounded local caches. Entries are kept in least recently used order and the eldest ones are evicted
+ * once the total weight of the cache exceeds its size.
+ * <p>
+ * Entries weighing 0 are never evicted. The executor relies on this for the placeholders and output parameters it
+ * keeps next to query results.
+ *
+ * @see org.apache.ibatis.session.Configuration#setLocalCacheType(Class)
+ */
+public abstract class BoundedCache implements Cache {
+
+    private final String id;
+
+    private final LinkedHashMap<Object, Weighted> cache = new LinkedHashMap<>(16, .75F, true);
+    private int size;
+    private long weight;
+    private long evictionCount;
+
+    protected BoundedCache(String id, int size) {
+        this.id = id;
+        this.size = size;
+    }
+
+    /**
+     * Returns the weight of a value.
+     *
+     * @param value
+     *          the value being put
+     * @return the weight, 0 if the value must never be evicted
+     */
+    protected abstract int weigh(Object value);
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+        evict();
+    }
+
+    public int getMaximumSize() {
+        return size;
+    }
+
+    /**
+     * Gets the total weight of the cached values.
+     *
+     * @return the weight
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Gets the number of entries evicted because the cache was full, not counting removals and clears.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        Weighted weighted = new Weighted(value, weigh(value));
+        Weighted previous = cache.put(key, weighted);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += weighted.weight;
+        if (weight > size) {
+            evict();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Weighted weighted = cache.get(key);
+        return weighted == null ? null : weighted.value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Weighted weighted = cache.remove(key);
+        if (weighted == null) {
+            return null;
+        }
+        weight -= weighted.weight;
+        return weighted.value;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        weight = 0;
+    }
+
+    private void evict() {
+        Iterator<Weighted> iterator = cache.values().iterator();
+        while (weight > size && iterator.hasNext()) {
+            Weighted weighted = iterator.next();
+            if (weighted.weight > 0) {
+                iterator.remove();
+                weight -= weighted.weight;
+                evictionCount++;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+    private static final class Weighted {
+
+        private final Object value;
+        private final int weight;
+
+        Weighted(Object value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+}
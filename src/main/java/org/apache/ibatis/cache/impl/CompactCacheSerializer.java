@@ -0,0 +1,615 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Externalizable;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * Compact binary serializer, several times faster than Java serialization and producing smaller entries.
+ * <p>
+ * Result objects are written property by property, as described by their {@link Reflector}, and restored with their
+ * default constructor and setters, so they do not need to be {@link Serializable}. A result class qualifies when
+ * every field of it is a readable and writable property and it does not customize Java serialization. Numbers,
+ * strings, dates, enums and the collections and maps of {@code java.util} are written in a compact form, shared and
+ * circular references are kept. Other values fall back to Java serialization.
+ * <p>
+ * The output is only meant to be read back by the same version of the classes, it is not a storage format.
+ *
+ * @since 3.5.5
+ */
+public class CompactCacheSerializer implements CacheSerializer {
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte CHAR = 9;
+    private static final byte STRING = 10;
+    private static final byte BIG_DECIMAL = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte DATE = 13;
+    private static final byte SQL_DATE = 14;
+    private static final byte SQL_TIME = 15;
+    private static final byte SQL_TIMESTAMP = 16;
+    private static final byte BYTES = 17;
+    private static final byte ENUM = 18;
+    private static final byte COLLECTION = 19;
+    private static final byte MAP = 20;
+    private static final byte ARRAY = 21;
+    private static final byte BEAN = 22;
+    private static final byte REFERENCE = 23;
+    private static final byte SERIALIZED = 24;
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    // larger buffers are not kept by the threads
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    private final JdkCacheSerializer fallback = new JdkCacheSerializer();
+    private final ConcurrentHashMap<Class<?>, ClassCodec> codecs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Class<?>> classes = new ConcurrentHashMap<>();
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
+
+    @Override
+    public byte[] serialize(Object value) {
+        Output out = outputs.get();
+        if (out.inUse) {
+            // serializing from within a getter
+            out = new Output();
+        }
+        out.inUse = true;
+        try {
+            write(out, value);
+            return Arrays.copyOf(out.buffer, out.position);
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CacheException("Error serializing object.  Cause: " + e, e);
+        } finally {
+            out.reset();
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        try {
+            return read(new Input(bytes));
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CacheException("Error deserializing object.  Cause: " + e, e);
+        }
+    }
+
+    private void write(Output out, Object value) throws Exception {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (type == Integer.class) {
+            out.writeByte(INT);
+            out.writeVarLong((Integer) value);
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            out.writeVarLong((Long) value);
+        } else if (type == Boolean.class) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (type == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeVarLong(Float.floatToRawIntBits((Float) value));
+        } else if (type == Short.class) {
+            out.writeByte(SHORT);
+            out.writeVarLong((Short) value);
+        } else if (type == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (type == Character.class) {
+            out.writeByte(CHAR);
+            out.writeVarLong((Character) value);
+        } else if (type == BigDecimal.class) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+            out.writeVarLong(((BigDecimal) value).scale());
+        } else if (type == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            out.writeBytes(((BigInteger) value).toByteArray());
+        } else if (type == java.util.Date.class) {
+            out.writeByte(DATE);
+            out.writeVarLong(((java.util.Date) value).getTime());
+        } else if (type == java.sql.Date.class) {
+            out.writeByte(SQL_DATE);
+            out.writeVarLong(((java.sql.Date) value).getTime());
+        } else if (type == java.sql.Time.class) {
+            out.writeByte(SQL_TIME);
+            out.writeVarLong(((java.sql.Time) value).getTime());
+        } else if (type == java.sql.Timestamp.class) {
+            out.writeByte(SQL_TIMESTAMP);
+            out.writeVarLong(((java.sql.Timestamp) value).getTime());
+            out.writeVarLong(((java.sql.Timestamp) value).getNanos());
+        } else if (type == byte[].class) {
+            out.writeByte(BYTES);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof Enum) {
+            out.writeByte(ENUM);
+            writeClass(out, ((Enum<?>) value).getDeclaringClass());
+            out.writeVarInt(((Enum<?>) value).ordinal());
+        } else {
+            Integer handle = out.handles.get(value);
+            if (handle != null) {
+                out.writeByte(REFERENCE);
+                out.writeVarInt(handle);
+            } else {
+                writeObject(out, value, type);
+            }
+        }
+    }
+
+    private void writeObject(Output out, Object value, Class<?> type) throws Exception {
+        ClassCodec codec = codecOf(type);
+        if (codec.kind == COLLECTION && !(value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null)) {
+            out.handles.put(value, out.handles.size());
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(COLLECTION);
+            writeClass(out, type);
+            out.writeVarInt(collection.size());
+            for (Object element : collection) {
+                write(out, element);
+            }
+        } else if (codec.kind == MAP && !(value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null)) {
+            out.handles.put(value, out.handles.size());
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            writeClass(out, type);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else if (codec.kind == ARRAY) {
+            out.handles.put(value, out.handles.size());
+            int length = Array.getLength(value);
+            out.writeByte(ARRAY);
+            writeClass(out, type.getComponentType());
+            out.writeVarInt(length);
+            for (int i = 0; i < length; i++) {
+                write(out, Array.get(value, i));
+            }
+        } else if (codec.kind == BEAN) {
+            out.handles.put(value, out.handles.size());
+            out.writeByte(BEAN);
+            writeClass(out, type);
+            for (Invoker getter : codec.getters) {
+                write(out, getter.invoke(value, NO_ARGUMENTS));
+            }
+        } else {
+            out.writeByte(SERIALIZED);
+            out.writeBytes(fallback.serialize(value));
+        }
+    }
+
+    private void writeClass(Output out, Class<?> type) {
+        Integer index = out.classes.get(type);
+        if (index != null) {
+            out.writeVarInt(index + 1);
+        } else {
+            out.classes.put(type, out.classes.size());
+            out.writeVarInt(0);
+            out.writeString(type.getName());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object read(Input in) throws Exception {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return (short) in.readVarLong();
+            case INT:
+                return (int) in.readVarLong();
+            case LONG:
+                return in.readVarLong();
+            case FLOAT:
+                return Float.intBitsToFloat((int) in.readVarLong());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case CHAR:
+                return (char) in.readVarLong();
+            case STRING:
+                return in.readString();
+            case BIG_DECIMAL:
+                return new BigDecimal(new BigInteger(in.readBytes()), (int) in.readVarLong());
+            case BIG_INTEGER:
+                return new BigInteger(in.readBytes());
+            case DATE:
+                return new java.util.Date(in.readVarLong());
+            case SQL_DATE:
+                return new java.sql.Date(in.readVarLong());
+            case SQL_TIME:
+                return new java.sql.Time(in.readVarLong());
+            case SQL_TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readVarLong());
+                timestamp.setNanos((int) in.readVarLong());
+                return timestamp;
+            case BYTES:
+                return in.readBytes();
+            case ENUM:
+                return readClass(in).getEnumConstants()[in.readVarInt()];
+            case REFERENCE:
+                return in.handles.get(in.readVarInt());
+            case COLLECTION: {
+                ClassCodec codec = codecOf(readClass(in));
+                int size = in.readVarInt();
+                Collection<Object> collection = codec.type == ArrayList.class ? new ArrayList<>(size) : (Collection<Object>) codec.constructor.newInstance();
+                in.handles.add(collection);
+                for (int i = 0; i < size; i++) {
+                    collection.add(read(in));
+                }
+                return collection;
+            }
+            case MAP: {
+                ClassCodec codec = codecOf(readClass(in));
+                int size = in.readVarInt();
+                Map<Object, Object> map = codec.type == HashMap.class ? new HashMap<>(size * 4 / 3 + 1) : (Map<Object, Object>) codec.constructor.newInstance();
+                in.handles.add(map);
+                for (int i = 0; i < size; i++) {
+                    Object key = read(in);
+                    map.put(key, read(in));
+                }
+                return map;
+            }
+            case ARRAY: {
+                Class<?> componentType = readClass(in);
+                int length = in.readVarInt();
+                Object array = Array.newInstance(componentType, length);
+                in.handles.add(array);
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, read(in));
+                }
+                return array;
+            }
+            case BEAN: {
+                ClassCodec codec = codecOf(readClass(in));
+                Object bean = codec.constructor.newInstance();
+                in.handles.add(bean);
+                for (Invoker setter : codec.setters) {
+                    setter.invoke(bean, new Object[] { read(in) });
+                }
+                return bean;
+            }
+            case SERIALIZED:
+                return fallback.deserialize(in.readBytes());
+            default:
+                throw new CacheException("Unknown tag " + tag + " at position " + (in.position - 1));
+        }
+    }
+
+    private Class<?> readClass(Input in) throws ClassNotFoundException {
+        int index = in.readVarInt();
+        if (index > 0) {
+            return in.classes.get(index - 1);
+        }
+        String name = in.readString();
+        Class<?> type = classes.get(name);
+        if (type == null) {
+            type = Resources.classForName(name);
+            classes.putIfAbsent(name, type);
+        }
+        in.classes.add(type);
+        return type;
+    }
+
+    private ClassCodec codecOf(Class<?> type) {
+        ClassCodec codec = codecs.get(type);
+        if (codec == null) {
+            codec = codecs.computeIfAbsent(type, this::newCodec);
+        }
+        return codec;
+    }
+
+    private ClassCodec newCodec(Class<?> type) {
+        if (type.isArray()) {
+            return new ClassCodec(type, type.getComponentType().isPrimitive() ? SERIALIZED : ARRAY);
+        }
+        boolean plainType = !type.isInterface() && !Modifier.isAbstract(type.getModifiers()) && !type.isAnonymousClass();
+        if (plainType && type.getName().startsWith("java.util.") && (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))) {
+            Constructor<?> constructor = defaultConstructor(type);
+            if (constructor != null && Modifier.isPublic(constructor.getModifiers())) {
+                return new ClassCodec(type, Collection.class.isAssignableFrom(type) ? COLLECTION : MAP, constructor);
+            }
+        } else if (plainType && !type.getName().startsWith("java.") && !type.getName().startsWith("javax.") && isBean(type)) {
+            Reflector reflector = reflectorFactory.findForClass(type);
+            String[] properties = Arrays.stream(reflector.getGetablePropertyNames()).filter(reflector::hasSetter).sorted().toArray(String[]::new);
+            Invoker[] getters = new Invoker[properties.length];
+            Invoker[] setters = new Invoker[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                getters[i] = reflector.getGetInvoker(properties[i]);
+                setters[i] = reflector.getSetInvoker(properties[i]);
+            }
+            return new ClassCodec(type, defaultConstructor(type), getters, setters);
+        }
+        return new ClassCodec(type, SERIALIZED);
+    }
+
+    private boolean isBean(Class<?> type) {
+        if (Externalizable.class.isAssignableFrom(type) || defaultConstructor(type) == null) {
+            return false;
+        }
+        Reflector reflector = reflectorFactory.findForClass(type);
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                String name = method.getName();
+                // custom serialization, which also marks lazy loading proxies
+                if ("writeObject".equals(name) || "readObject".equals(name) || "writeReplace".equals(name) || "readResolve".equals(name)) {
+                    return false;
+                }
+            }
+            for (Field field : current.getDeclaredFields()) {
+                String name = field.getName();
+                if (!Modifier.isStatic(field.getModifiers()) && !"serialVersionUID".equals(name)
+                        && !(reflector.hasGetter(name) && reflector.hasSetter(name))) {
+                    // state the properties would not restore
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Constructor<?> defaultConstructor(Class<?> type) {
+        Reflector reflector = reflectorFactory.findForClass(type);
+        if (!reflector.hasDefaultConstructor()) {
+            return null;
+        }
+        Constructor<?> constructor = reflector.getDefaultConstructor();
+        if (Reflector.canControlMemberAccessible()) {
+            constructor.setAccessible(true);
+        }
+        return constructor;
+    }
+
+    private static class ClassCodec {
+
+        private final Class<?> type;
+        private final byte kind;
+        private final Constructor<?> constructor;
+        private final Invoker[] getters;
+        private final Invoker[] setters;
+
+        ClassCodec(Class<?> type, byte kind) {
+            this(type, kind, null);
+        }
+
+        ClassCodec(Class<?> type, byte kind, Constructor<?> constructor) {
+            this.type = type;
+            this.kind = kind;
+            this.constructor = constructor;
+            this.getters = null;
+            this.setters = null;
+        }
+
+        ClassCodec(Class<?> type, Constructor<?> constructor, Invoker[] getters, Invoker[] setters) {
+            this.type = type;
+            this.kind = BEAN;
+            this.constructor = constructor;
+            this.getters = getters;
+            this.setters = setters;
+        }
+    }
+
+    private static class Output {
+
+        private final IdentityHashMap<Object, Integer> handles = new IdentityHashMap<>();
+        private final Map<Class<?>, Integer> classes = new HashMap<>();
+        private byte[] buffer = new byte[256];
+        private int position;
+        private boolean inUse;
+
+        void reset() {
+            handles.clear();
+            classes.clear();
+            position = 0;
+            inUse = false;
+            if (buffer.length > MAX_RETAINED_BUFFER) {
+                buffer = new byte[256];
+            }
+        }
+
+        void ensureCapacity(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            // zigzag, small negative numbers stay small
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[position++] = (byte) zigzag;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeString(String value) {
+            int length = value.length();
+            writeVarInt(length);
+            ensureCapacity(length * 3);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x4000) {
+                    buffer[position++] = (byte) ((c & 0x7F) | 0x80);
+                    buffer[position++] = (byte) (c >>> 7);
+                } else {
+                    buffer[position++] = (byte) ((c & 0x7F) | 0x80);
+                    buffer[position++] = (byte) (((c >>> 7) & 0x7F) | 0x80);
+                    buffer[position++] = (byte) (c >>> 14);
+                }
+            }
+        }
+    }
+
+    private static class Input {
+
+        private final List<Object> handles = new ArrayList<>();
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = readVarInt();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                int c = buffer[position++];
+                if (c < 0) {
+                    c &= 0x7F;
+                    int b = buffer[position++];
+                    if (b < 0) {
+                        c |= (b & 0x7F) << 7;
+                        c |= buffer[position++] << 14;
+                    } else {
+                        c |= b << 7;
+                    }
+                }
+                chars[i] = (char) c;
+            }
+            return new String(chars);
+        }
+    }
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * A bounded second level cache for concurrent use.
+ * <p>
+ * Reads are lock free: entries live in a {@link ConcurrentHashMap} and a read only marks its entry as referenced.
+ * Writes, removals and invalidations only change the map. A new entry is queued and whichever writer gets the lock
+ * places the queued entries on the clock, picking victims with the CLOCK algorithm, an approximation of LRU that
+ * evicts an entry not read since the clock hand last passed it. Removed entries leave their slot to be reused when the
+ * hand passes by. With the {@code tinylfu} admission policy a new entry only stays when it has been requested more
+ * often recently than the victim, which keeps one-off queries from flushing popular results.
+ * <p>
+ * Properties: {@code size} (entries, 1024 by default), {@code timeToLive} (milliseconds each entry stays valid after it
+ * was put, 0 for no expiry) and {@code admission} ({@code lru}, the default, or {@code tinylfu}).
+ *
+ * <pre>
+ * &lt;cache type="CONCURRENT" size="10000"&gt;
+ *   &lt;property name="timeToLive" value="60000"/&gt;
+ *   &lt;property name="admission" value="tinylfu"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * @since 3.5.5
+ */
+public class ConcurrentCache implements ThreadSafeCache {
+
+    private final String id;
+    private final ConcurrentHashMap<Object, Node> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // new entries not yet placed on the clock
+    private final ConcurrentLinkedQueue<Node> writeBuffer = new ConcurrentLinkedQueue<>();
+    private CacheStatistics statistics;
+
+    private volatile int size;
+    private volatile long timeToLive;
+    private volatile boolean tinyLfu;
+    private volatile FrequencySketch sketch;
+
+    // guarded by evictionLock
+    private Node[] clock;
+    private int used;
+    private int hand;
+
+    public ConcurrentCache(String id) {
+        this.id = id;
+        setSize(1024);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    public int getMaximumSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        if (size <= 0) {
+            throw new CacheException("The size of cache '" + id + "' must be positive but was " + size);
+        }
+        evictionLock.lock();
+        try {
+            this.size = size;
+            this.clock = new Node[size];
+            this.used = 0;
+            this.hand = 0;
+            this.sketch = tinyLfu ? new FrequencySketch(size) : null;
+            // entries beyond the new size are dropped, the remaining ones are placed on the new clock
+            for (Node node : cache.values()) {
+                if (used < size) {
+                    node.slot = used;
+                    clock[used++] = node;
+                } else {
+                    cache.remove(node.key, node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Sets the statistics to count the victims of the clock in.
+     *
+     * @param statistics
+     *          the statistics
+     * @since 3.5.5
+     */
+    public void setStatistics(CacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public String getAdmission() {
+        return tinyLfu ? "tinylfu" : "lru";
+    }
+
+    public void setAdmission(String admission) {
+        String policy = admission.toLowerCase(Locale.ENGLISH);
+        if (!"lru".equals(policy) && !"tinylfu".equals(policy)) {
+            throw new CacheException("Unknown admission policy '" + admission + "' for cache '" + id + "', expected lru or tinylfu");
+        }
+        evictionLock.lock();
+        try {
+            this.tinyLfu = "tinylfu".equals(policy);
+            this.sketch = tinyLfu ? new FrequencySketch(size) : null;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        FrequencySketch frequencies = sketch;
+        if (frequencies != null) {
+            frequencies.increment(key);
+        }
+        Node node = cache.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.isExpired(System.nanoTime())) {
+            cache.remove(key, node);
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        putObject(key, value, null);
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        long ttl = timeToLive;
+        long expiresAt = ttl > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl) : 0;
+        for (;;) {
+            Node node = cache.get(key);
+            if (node == null) {
+                node = new Node(key, value, tags, expiresAt);
+                if (cache.putIfAbsent(key, node) == null) {
+                    writeBuffer.add(node);
+                    drainWriteBuffer();
+                    return;
+                }
+            } else {
+                node.value = value;
+                node.tags = tags;
+                node.expiresAt = expiresAt;
+                node.referenced = true;
+                if (cache.get(key) == node) {
+                    return;
+                }
+            }
+            // raced with another put or a removal, try again
+        }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Node node = cache.remove(key);
+        return node == null ? null : release(node);
+    }
+
+    @Override
+    public void clear() {
+        for (Node node : cache.values()) {
+            if (cache.remove(node.key, node)) {
+                release(node);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        for (Node node : cache.values()) {
+            Set<String> nodeTags = node.tags;
+            if ((nodeTags == null || !Collections.disjoint(nodeTags, tags)) && cache.remove(node.key, node)) {
+                release(node);
+            }
+        }
+    }
+
+    /**
+     * Drops the value of a node removed from the map, its slot keeps the node until the clock hand passes by.
+     */
+    private Object release(Node node) {
+        Object value = node.value;
+        node.value = null;
+        return value;
+    }
+
+    /**
+     * Places the queued entries on the clock unless another writer holds the lock, that writer will place them.
+     * Writers wait for the lock when the queue holds more entries than the cache, so the cache stays bounded.
+     */
+    private void drainWriteBuffer() {
+        while (!writeBuffer.isEmpty()) {
+            if (cache.size() - size > size) {
+                evictionLock.lock();
+            } else if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                Node node;
+                while ((node = writeBuffer.poll()) != null) {
+                    // skips entries removed in the meantime or already placed when the clock was resized
+                    if (cache.get(node.key) != node || node.slot >= 0 && node.slot < clock.length && clock[node.slot] == node) {
+                        continue;
+                    }
+                    int slot = used < clock.length ? used++ : findSlot(node);
+                    if (slot < 0) {
+                        // not admitted
+                        if (cache.remove(node.key, node)) {
+                            release(node);
+                        }
+                        continue;
+                    }
+                    node.slot = slot;
+                    clock[slot] = node;
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            // entries queued after the last poll but before the unlock are drained by the next turn
+        }
+    }
+
+    /**
+     * Moves the clock hand to a free slot or to the victim to replace. Returns -1 if the candidate is not admitted.
+     */
+    private int findSlot(Node candidate) {
+        long now = System.nanoTime();
+        // after one full turn all reference bits are cleared, so two turns always find a victim
+        for (int i = 0, n = clock.length << 1; i <= n; i++) {
+            int slot = hand;
+            hand = slot + 1 == clock.length ? 0 : slot + 1;
+            Node node = clock[slot];
+            if (node == null || cache.get(node.key) != node) {
+                // removed, expired or cleared
+                return slot;
+            }
+            if (node.isExpired(now)) {
+                cache.remove(node.key, node);
+                return slot;
+            }
+            if (node.referenced) {
+                node.referenced = false;
+                continue;
+            }
+            FrequencySketch frequencies = sketch;
+            if (frequencies != null && frequencies.frequency(candidate.key) <= frequencies.frequency(node.key)) {
+                // the victim keeps its place, it will be checked again when the hand passes by
+                return -1;
+            }
+            cache.remove(node.key, node);
+            if (statistics != null) {
+                statistics.recordEviction();
+            }
+            return slot;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+    private static final class Node {
+
+        private final Object key;
+        private volatile Object value;
+        // null if put without tags
+        private volatile Set<String> tags;
+        private volatile long expiresAt;
+        private volatile boolean referenced;
+        // guarded by evictionLock, -1 until placed on the clock
+        private int slot = -1;
+
+        Node(Object key, Object value, Set<String> tags, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.tags = tags;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            long expiry = expiresAt;
+            return expiry != 0 && now - expiry >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+/**
+ * A count-min sketch estimating how often keys were accessed recently, used for TinyLFU admission.
+ * <p>
+ * Counters are 4 bits wide and are all halved once the number of recorded accesses reaches ten times the cache size,
+ * so that the estimates follow changes of the access pattern. Updates are not atomic; a lost increment only makes an
+ * estimate slightly lower.
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97cb3127, 0xb5ad4ece, 0x7c0d2b0f, 0x2f1ba8e1};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, maximumSize - 1)) << 1);
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = 10 * Math.max(1, maximumSize);
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of the key, at most 15.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int offset = counterOffset(hash, i);
+            frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key.
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int offset = counterOffset(hash, i);
+            long mask = 0xfL << offset;
+            long word = table[index];
+            if ((word & mask) != mask) {
+                table[index] = word + (1L << offset);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions >>> 1);
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) & (DEPTH - 1)];
+        return (h ^ (h >>> 16)) & tableMask;
+    }
+
+    private static int counterOffset(int hash, int row) {
+        // each row uses its own group of four counters in a word
+        return ((row << 2) + ((hash >>> (row << 3)) & 3)) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.ThreadSafeCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+
+/**
+ * A cache keeping its values outside of the Java heap, in direct {@link ByteBuffer} slabs.
+ * <p>
+ * Values are appended to the current slab; when all slabs are in use the oldest slab is reclaimed. Entries of that
+ * slab read since it was last reclaimed get a second chance and are compacted to its start, the others are evicted.
+ * Only the keys and a small index entry per value stay on the heap.
+ * <p>
+ * The cache is meant to sit below a {@link SerializedCache} (the default for a cache that is not {@code readOnly}),
+ * which hands it byte arrays. Other serializable values are serialized by the cache itself and deserialized on every
+ * {@link #getObject(Object)}.
+ * <p>
+ * Properties: {@code capacity} (bytes in total, 64 MB by default) and {@code slabSize} (bytes per slab, 4 MB by
+ * default, also the size limit of a single value). At least two slabs are used.
+ *
+ * <pre>
+ * &lt;cache type="OFF_HEAP"&gt;
+ *   &lt;property name="capacity" value="1073741824"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * @since 3.5.5
+ */
+public class OffHeapCache implements ThreadSafeCache {
+
+    private final String id;
+    private final ConcurrentHashMap<Object, Entry> index = new ConcurrentHashMap<>();
+    // guards the slabs; readers copy values out optimistically and retry under the read lock if a writer interfered
+    private final StampedLock lock = new StampedLock();
+
+    private long capacity = 64L * 1024 * 1024;
+    private int slabSize = 4 * 1024 * 1024;
+    private CacheStatistics statistics;
+
+    // guarded by lock
+    private ByteBuffer[] slabs;
+    private List<Entry>[] slabEntries;
+    private int currentSlab;
+    private int writeOffset;
+    private long evictionCount;
+
+    public OffHeapCache(String id) {
+        this.id = id;
+        reset();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        return index.size();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+        reset();
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public void setSlabSize(int slabSize) {
+        this.slabSize = slabSize;
+        reset();
+    }
+
+    /**
+     * Gets the number of values evicted to make room for new ones.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        long stamp = lock.readLock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sets the statistics to count the values evicted by reclaiming a slab in.
+     *
+     * @param statistics
+     *          the statistics of the namespace cache
+     * @since 3.5.5
+     */
+    public void setStatistics(CacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        putObject(key, value, null);
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        if (value == null) {
+            index.remove(key);
+            return;
+        }
+        byte[] bytes;
+        boolean serialized;
+        if (value instanceof byte[]) {
+            bytes = (byte[]) value;
+            serialized = false;
+        } else if (value instanceof Serializable) {
+            bytes = SerializedCache.serialize((Serializable) value);
+            serialized = true;
+        } else {
+            throw new CacheException("OffHeapCache failed to store a non-serializable object: " + value);
+        }
+        if (bytes.length > slabSize) {
+            // too large to ever fit, do not keep a stale value either
+            index.remove(key);
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (slabs[currentSlab] == null) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+            }
+            int attempts = 0;
+            while (writeOffset + bytes.length > slabSize) {
+                // readers may keep setting reference bits, stop granting second chances after two turns
+                reclaimNextSlab(attempts++ < slabs.length << 1);
+            }
+            ByteBuffer slab = slabs[currentSlab];
+            slab.position(writeOffset);
+            slab.put(bytes);
+            Entry entry = new Entry(key, currentSlab, writeOffset, bytes.length, serialized, tags);
+            writeOffset += bytes.length;
+            slabEntries[currentSlab].add(entry);
+            index.put(key, entry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        long stamp = lock.tryOptimisticRead();
+        Entry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        byte[] bytes = null;
+        if (stamp != 0) {
+            try {
+                bytes = read(entry);
+            } catch (RuntimeException e) {
+                // the slabs were being replaced, validation fails below
+            }
+            if (!lock.validate(stamp)) {
+                bytes = null;
+            }
+        }
+        if (bytes == null) {
+            stamp = lock.readLock();
+            try {
+                entry = index.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                bytes = read(entry);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.serialized ? SerializedCache.deserialize(bytes) : bytes;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        // the space is reclaimed together with its slab, the read lock keeps it from being reclaimed while reading
+        Entry entry;
+        byte[] bytes;
+        long stamp = lock.readLock();
+        try {
+            entry = index.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            bytes = read(entry);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return entry.serialized ? SerializedCache.deserialize(bytes) : bytes;
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            index.clear();
+            for (List<Entry> entries : slabEntries) {
+                entries.clear();
+            }
+            currentSlab = 0;
+            writeOffset = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        for (Entry entry : index.values()) {
+            if (entry.tags == null || !Collections.disjoint(entry.tags, tags)) {
+                index.remove(entry.key, entry);
+            }
+        }
+    }
+
+    private byte[] read(Entry entry) {
+        byte[] bytes = new byte[entry.length];
+        ByteBuffer slab = slabs[entry.slab].duplicate();
+        slab.position(entry.offset);
+        slab.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Makes the next slab the current one, keeping its referenced entries if secondChance is set.
+     */
+    private void reclaimNextSlab(boolean secondChance) {
+        int next = currentSlab + 1 == slabs.length ? 0 : currentSlab + 1;
+        if (slabs[next] == null) {
+            slabs[next] = ByteBuffer.allocateDirect(slabSize);
+            currentSlab = next;
+            writeOffset = 0;
+            return;
+        }
+        ByteBuffer slab = slabs[next];
+        List<Entry> kept = new ArrayList<>();
+        int offset = 0;
+        for (Entry entry : slabEntries[next]) {
+            if (index.get(entry.key) != entry) {
+                continue;
+            }
+            if (secondChance && entry.referenced) {
+                Entry moved = new Entry(entry.key, next, offset, entry.length, entry.serialized, entry.tags);
+                // invalidate removes entries without the lock, the entry may be gone since it was checked
+                if (!index.replace(entry.key, entry, moved)) {
+                    continue;
+                }
+                if (entry.offset != offset) {
+                    byte[] bytes = read(entry);
+                    slab.position(offset);
+                    slab.put(bytes);
+                }
+                offset += entry.length;
+                kept.add(moved);
+            } else {
+                index.remove(entry.key, entry);
+                evictionCount++;
+                if (statistics != null) {
+                    statistics.recordEviction();
+                }
+            }
+        }
+        slabEntries[next] = kept;
+        currentSlab = next;
+        writeOffset = offset;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void reset() {
+        if (slabSize <= 0) {
+            throw new CacheException("The slab size of cache '" + id + "' must be positive but was " + slabSize);
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slabCount = (int) Math.min(Integer.MAX_VALUE, Math.max(2, capacity / slabSize));
+            index.clear();
+            // slabs are allocated when first needed
+            slabs = new ByteBuffer[slabCount];
+            slabEntries = new List[slabCount];
+            for (int i = 0; i < slabCount; i++) {
+                slabEntries[i] = new ArrayList<>();
+            }
+            currentSlab = 0;
+            writeOffset = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+    private static final class Entry {
+
+        private final Object key;
+        private final int slab;
+        private final int offset;
+        private final int length;
+        private final boolean serialized;
+        // null if put without tags
+        private final Set<String> tags;
+        private volatile boolean referenced;
+
+        Entry(Object key, int slab, int offset, int length, boolean serialized, Set<String> tags) {
+            this.key = key;
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+            this.serialized = serialized;
+            this.tags = tags;
+        }
+    }
+
+}
@@ -15,8 +15,12 @@
  */
 package org.apache.ibatis.cache.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
@@ -29,6 +33,8 @@ public class PerpetualCache implements Cache {
     private final String id;
 
     private final Map<Object, Object> cache = new HashMap<>();
+    // tags of the entries put with tags, created on the first one
+    private Map<Object, Set<String>> tags;
 
     public PerpetualCache(String id) {
         this.id = id;
@@ -47,6 +53,18 @@ public class PerpetualCache implements Cache {
     @Override
     public void putObject(Object key, Object value) {
         cache.put(key, value);
+        if (tags != null) {
+            tags.remove(key);
+        }
+    }
+
+    @Override
+    public void putObject(Object key, Object value, Set<String> tags) {
+        cache.put(key, value);
+        if (this.tags == null) {
+            this.tags = new HashMap<>();
+        }
+        this.tags.put(key, tags);
     }
 
     @Override
@@ -56,12 +74,40 @@ public class PerpetualCache implements Cache {
 
     @Override
     public Object removeObject(Object key) {
+        if (tags != null) {
+            tags.remove(key);
+        }
         return cache.remove(key);
     }
 
     @Override
     public void clear() {
         cache.clear();
+        tags = null;
+    }
+
+    @Override
+    public void invalidate(Set<String> tags) {
+        invalidate(tags, key -> { });
+    }
+
+    @Override
+    public boolean invalidate(Set<String> tags, Consumer<Object> removedKeys) {
+        if (this.tags == null) {
+            cache.keySet().forEach(removedKeys);
+            clear();
+            return true;
+        }
+        for (Iterator<Object> keys = cache.keySet().iterator(); keys.hasNext(); ) {
+            Object key = keys.next();
+            Set<String> entryTags = this.tags.get(key);
+            if (entryTags == null || !Collections.disjoint(entryTags, tags)) {
+                keys.remove();
+                this.tags.remove(key);
+                removedKeys.accept(key);
+            }
+        }
+        return true;
     }
 
     @Override
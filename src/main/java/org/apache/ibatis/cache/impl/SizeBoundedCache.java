@@ -0,0 +1,34 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.List;
+
+/**
+ * Local cache holding at most {@code size} query results (1024 by default), evicting the least recently used ones.
+ */
+public class SizeBoundedCache extends BoundedCache {
+
+    public SizeBoundedCache(String id) {
+        super(id, 1024);
+    }
+
+    @Override
+    protected int weigh(Object value) {
+        return value instanceof List ? 1 : 0;
+    }
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.List;
+
+/**
+ * Local cache holding query results with at most {@code size} rows in total (100000 by default), evicting the least
+ * recently used results. An empty result counts as one row.
+ */
+public class WeightBoundedCache extends BoundedCache {
+
+    public WeightBoundedCache(String id) {
+        super(id, 100000);
+    }
+
+    @Override
+    protected int weigh(Object value) {
+        return value instanceof List ? Math.max(1, ((List<?>) value).size()) : 0;
+    }
+
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 并发模式（{@link PoolMode#CONCURRENT}）下存放连接的容器
+ *   每个连接对应一个 {@link Entry}，借出与归还都通过CAS修改其状态，不需要全局锁
+ *   借出时优先尝试当前线程上一次使用的连接
+ *   没有可用连接时，等待线程在公平的 {@link SynchronousQueue} 中按先来后到的顺序接收归还的连接
+ *   连接被移除后空出的名额同样通过该队列通知等待最久的线程，由它创建新连接
+ *
+ * @see PooledDataSource
+ */
+class ConnectionBag {
+
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = -1;
+    static final int STATE_RESERVED = -2;
+
+    /**
+     * 空出的连接名额：移除连接时移交给等待线程，{@link #borrow(long, int)} 为调用者占用了名额时返回
+     */
+    static final Entry FREE_SLOT = new Entry();
+
+    //所有连接（只在创建或移除连接时修改）
+    private final CopyOnWriteArrayList<Entry> sharedList = new CopyOnWriteArrayList<>();
+    //线程最近使用过的连接
+    private final ThreadLocal<WeakReference<Entry>> lastUsed = new ThreadLocal<>();
+    //公平的移交队列，归还的连接直接交给等待最久的线程
+    private final SynchronousQueue<Entry> handoffQueue = new SynchronousQueue<>(true);
+    //正在等待的线程数
+    private final AtomicInteger waiters = new AtomicInteger();
+    //正在等待的线程，用于统计每个线程的等待时间
+    private final ConcurrentLinkedQueue<PoolState.Waiter> waitingThreads = new ConcurrentLinkedQueue<>();
+    //已创建（包括正在创建）的连接数
+    private final AtomicInteger totalCount = new AtomicInteger();
+    //空闲的连接数
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * 不等待地借出一个空闲连接，没有则返回null
+     */
+    Entry tryBorrow() {
+        WeakReference<Entry> reference = lastUsed.get();
+        if (reference != null) {
+            Entry entry = reference.get();
+            if (entry != null && claim(entry)) {
+                return entry;
+            }
+        }
+        for (Entry entry : sharedList) {
+            if (claim(entry)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private boolean claim(Entry entry) {
+        if (entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+            idleCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 最多等待timeout毫秒来借出一个连接，超时返回null
+     *   等待期间有连接被移除时，在不超过maximum的前提下为调用者占用名额并返回 {@link #FREE_SLOT}，
+     *   由调用者创建连接并 {@link #add(Entry)}
+     */
+    Entry borrow(long timeout, int maximum) throws InterruptedException {
+        waiters.incrementAndGet();
+        PoolState.Waiter waiter = new PoolState.Waiter();
+        waitingThreads.add(waiter);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            do {
+                // 进入队列前再扫描一次，避免错过刚归还的连接
+                Entry entry = tryBorrow();
+                if (entry != null) {
+                    return entry;
+                }
+                if (reserveSlot(maximum)) {
+                    return FREE_SLOT;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                //收到FREE_SLOT时回到循环开头占用名额
+                if (entry != null && entry != FREE_SLOT && claim(entry)) {
+                    return entry;
+                }
+            } while (deadline - System.nanoTime() > 0);
+            return null;
+        } finally {
+            waitingThreads.remove(waiter);
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * 归还预留的连接，有线程在等待时直接移交
+     *   连接在预留期间已被强制移除时返回false
+     */
+    boolean requite(Entry entry) {
+        if (!entry.compareAndSetState(STATE_RESERVED, STATE_NOT_IN_USE)) {
+            return false;
+        }
+        idleCount.incrementAndGet();
+        handOff(entry);
+        lastUsed.set(new WeakReference<>(entry));
+        return true;
+    }
+
+    /**
+     * 有线程在等待时把空闲连接或空出的名额移交给等待最久的线程，
+     *   连接在移交前已被其他线程借出时放弃
+     */
+    private void handOff(Entry entry) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if ((entry != FREE_SLOT && entry.getState() != STATE_NOT_IN_USE) || handoffQueue.offer(entry)) {
+                break;
+            } else if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 在不超过maximum的前提下占用一个连接名额，成功后由调用者创建连接并 {@link #add(Entry)}
+     */
+    boolean reserveSlot(int maximum) {
+        for (; ; ) {
+            int count = totalCount.get();
+            if (count >= maximum) {
+                return false;
+            }
+            if (totalCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 创建连接失败时释放占用的名额，并唤醒一个等待线程
+     */
+    void releaseSlot() {
+        totalCount.decrementAndGet();
+        handOff(FREE_SLOT);
+    }
+
+    void add(Entry entry) {
+        sharedList.add(entry);
+    }
+
+    /**
+     * 将连接标记为已移除，只有当前持有者（借出或预留）才能移除
+     */
+    boolean remove(Entry entry) {
+        if (!entry.compareAndSetState(STATE_IN_USE, STATE_REMOVED)
+                && !entry.compareAndSetState(STATE_RESERVED, STATE_REMOVED)) {
+            return false;
+        }
+        freeSlot(entry);
+        return true;
+    }
+
+    /**
+     * 不论状态强制移除连接（关闭连接池时使用）
+     */
+    boolean forceRemove(Entry entry) {
+        int previousState = entry.getAndSetState(STATE_REMOVED);
+        if (previousState == STATE_REMOVED) {
+            return false;
+        }
+        if (previousState == STATE_NOT_IN_USE) {
+            idleCount.decrementAndGet();
+        }
+        freeSlot(entry);
+        return true;
+    }
+
+    /**
+     * 释放已移除连接的名额，并唤醒一个等待线程来创建新连接
+     */
+    private void freeSlot(Entry entry) {
+        if (sharedList.remove(entry)) {
+            totalCount.decrementAndGet();
+            handOff(FREE_SLOT);
+        }
+    }
+
+    /**
+     * 预留一个空闲连接，使其不会被借出
+     */
+    boolean reserve(Entry entry) {
+        if (entry.compareAndSetState(STATE_NOT_IN_USE, STATE_RESERVED)) {
+            idleCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    List<Entry> values() {
+        return sharedList;
+    }
+
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    int getCount(int state) {
+        int count = 0;
+        for (Entry entry : sharedList) {
+            if (entry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return totalCount.get();
+    }
+
+    int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    Collection<PoolState.Waiter> getWaiters() {
+        return waitingThreads;
+    }
+
+    /**
+     * 容器中的一项，持有当前的 {@link PooledConnection}
+     *   连接每次归还都会换成新的 {@link PooledConnection}，而Entry本身不变
+     */
+    static final class Entry {
+
+        private static final AtomicIntegerFieldUpdater<Entry> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        private volatile int state;
+        private volatile PooledConnection connection;
+
+        private Entry() {
+            this.state = STATE_REMOVED;
+        }
+
+        Entry(PooledConnection connection, int state) {
+            this.connection = connection;
+            this.state = state;
+            connection.setBagEntry(this);
+        }
+
+        PooledConnection getConnection() {
+            return connection;
+        }
+
+        void setConnection(PooledConnection connection) {
+            connection.setBagEntry(this);
+            this.connection = connection;
+        }
+
+        int getState() {
+            return state;
+        }
+
+        void setState(int state) {
+            this.state = state;
+        }
+
+        boolean compareAndSetState(int expect, int update) {
+            return STATE_UPDATER.compareAndSet(this, expect, update);
+        }
+
+        int getAndSetState(int update) {
+            return STATE_UPDATER.getAndSet(this, update);
+        }
+    }
+
+}
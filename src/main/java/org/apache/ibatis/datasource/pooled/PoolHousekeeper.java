@@ -0,0 +1,66 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接池的后台维护任务
+ *   按固定间隔调用 {@link PooledDataSource#houseKeep()}，在请求线程之外检查空闲连接、淘汰过期连接、补足最少空闲连接
+ *   只弱引用数据源，数据源被回收后任务自动停止
+ */
+class PoolHousekeeper implements Runnable {
+
+    private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+    private final WeakReference<PooledDataSource> dataSourceReference;
+    private final ScheduledExecutorService scheduler;
+
+    PoolHousekeeper(PooledDataSource dataSource, long interval) {
+        this.dataSourceReference = new WeakReference<>(dataSource);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        PooledDataSource dataSource = dataSourceReference.get();
+        if (dataSource == null) {
+            scheduler.shutdown();
+            return;
+        }
+        try {
+            dataSource.houseKeep();
+        } catch (Exception e) {
+            log.warn("PooledDataSource housekeeping failed. Cause: " + e);
+        }
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接泄漏检测
+ *   借出连接时记录借出位置并安排一个任务，连接在阈值内归还则取消任务，否则报告泄漏
+ *   所有连接池共用一个后台线程
+ */
+final class PoolLeakDetector {
+
+    private static final ScheduledThreadPoolExecutor scheduler;
+
+    static {
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-pool-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //归还时取消的任务立即移出队列，避免队列随借出次数增长
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    private PoolLeakDetector() {
+        // Prevent Instantiation
+    }
+
+    /**
+     * 借出连接时调用
+     *
+     * @param dataSource
+     * @param conn
+     * @param threshold
+     */
+    static void watch(PooledDataSource dataSource, PooledConnection conn, long threshold) {
+        Thread borrower = Thread.currentThread();
+        Throwable borrowSite = new Throwable("Connection " + conn.getRealHashCode() + " checked out by " + borrower.getName());
+        ScheduledFuture<?> task = scheduler.schedule(
+                () -> dataSource.connectionLeaked(conn, borrower.getName(), borrowSite), threshold, TimeUnit.MILLISECONDS);
+        conn.setLeakTask(task);
+    }
+
+    /**
+     * 归还连接时调用
+     *
+     * @param conn
+     */
+    static void unwatch(PooledConnection conn) {
+        ScheduledFuture<?> task = conn.getLeakTask();
+        if (task != null) {
+            task.cancel(false);
+            conn.setLeakTask(null);
+        }
+    }
+
+}
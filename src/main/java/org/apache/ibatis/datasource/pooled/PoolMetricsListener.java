@@ -0,0 +1,58 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池事件的监听器，用于将连接池的指标桥接到外部的监控系统
+ *   活跃、空闲、等待数等实时值可直接从 {@link PoolState} 读取
+ *   回调可能在连接池的锁内执行，实现必须快速且不能阻塞
+ *
+ * @see PooledDataSource#setPoolMetricsListener(PoolMetricsListener)
+ */
+public interface PoolMetricsListener {
+
+    /**
+     * Called when a connection has been checked out.
+     *
+     * @param waitTime
+     *          the time in milliseconds the caller waited for the connection
+     */
+    default void connectionCheckedOut(long waitTime) {
+    }
+
+    /**
+     * Called when a checked out connection has been returned or claimed back by the pool.
+     *
+     * @param holdTime
+     *          the time in milliseconds the connection was checked out
+     */
+    default void connectionReturned(long holdTime) {
+    }
+
+    /**
+     * Called when a connection has been checked out for longer than the leak detection threshold.
+     *
+     * @param holdTime
+     *          the time in milliseconds the connection has been checked out so far
+     * @param borrowerThread
+     *          the name of the thread that checked the connection out
+     * @param borrowerStack
+     *          the stack trace of the checkout
+     */
+    default void connectionLeaked(long holdTime, String borrowerThread, StackTraceElement[] borrowerStack) {
+    }
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池的工作模式
+ *   SYNCHRONIZED：默认模式，借出与归还都在 {@link PoolState} 的锁内完成
+ *   CONCURRENT：无锁模式，连接存放在 {@link ConnectionBag} 中
+ */
+public enum PoolMode {
+    SYNCHRONIZED, CONCURRENT
+}
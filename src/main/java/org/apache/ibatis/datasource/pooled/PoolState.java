@@ -15,11 +15,18 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 表示连接池状态
+ *   统计值使用 {@link LongAdder} 累加，并发模式下不需要持有锁也能保证准确
  */
 public class PoolState {
 
@@ -30,72 +37,207 @@ public class PoolState {
     protected final List<PooledConnection> idleConnections = new ArrayList<>();
     //正在使用连接
     protected final List<PooledConnection> activeConnections = new ArrayList<>();
+    //等待连接的线程，按等待的先后排列
+    protected final Deque<Waiter> waiters = new ArrayDeque<>();
     //请求次数
-    protected long requestCount = 0;
-    protected long accumulatedRequestTime = 0;
-    protected long accumulatedCheckoutTime = 0;
+    protected final LongAdder requestCount = new LongAdder();
+    protected final LongAdder accumulatedRequestTime = new LongAdder();
+    protected final LongAdder accumulatedCheckoutTime = new LongAdder();
     //过期连接数
-    protected long claimedOverdueConnectionCount = 0;
+    protected final LongAdder claimedOverdueConnectionCount = new LongAdder();
     //全部连接的过期时间
-    protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
-    protected long accumulatedWaitTime = 0;
-    protected long hadToWaitCount = 0;
+    protected final LongAdder accumulatedCheckoutTimeOfOverdueConnections = new LongAdder();
+    protected final LongAdder accumulatedWaitTime = new LongAdder();
+    protected final LongAdder hadToWaitCount = new LongAdder();
+    //单次等待的最长时间
+    protected final LongAccumulator maxWaitTime = new LongAccumulator(Long::max, 0);
+    //获取连接所用时间的分布
+    protected final Histogram checkoutWaitHistogram = new Histogram();
+    //连接被借出时长的分布
+    protected final Histogram holdTimeHistogram = new Histogram();
+    //检测到的泄漏连接数
+    protected final LongAdder leakedConnectionCount = new LongAdder();
+    //语句缓存命中、未命中和淘汰的次数
+    protected final LongAdder statementCacheHitCount = new LongAdder();
+    protected final LongAdder statementCacheMissCount = new LongAdder();
+    protected final LongAdder statementCacheEvictionCount = new LongAdder();
     //坏连接数
-    protected long badConnectionCount = 0;
+    protected final LongAdder badConnectionCount = new LongAdder();
 
     public PoolState(PooledDataSource dataSource) {
         this.dataSource = dataSource;
     }
 
-    public synchronized long getRequestCount() {
-        return requestCount;
+    public long getRequestCount() {
+        return requestCount.sum();
     }
 
-    public synchronized long getAverageRequestTime() {
-        return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+    public long getAverageRequestTime() {
+        long requests = requestCount.sum();
+        return requests == 0 ? 0 : accumulatedRequestTime.sum() / requests;
     }
 
-    public synchronized long getAverageWaitTime() {
-        return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+    public long getAverageWaitTime() {
+        long waits = hadToWaitCount.sum();
+        return waits == 0 ? 0 : accumulatedWaitTime.sum() / waits;
 
     }
 
-    public synchronized long getHadToWaitCount() {
-        return hadToWaitCount;
+    /**
+     * Gets the distribution of the time callers spent getting a connection.
+     *
+     * @return the histogram in milliseconds
+     */
+    public Histogram getCheckoutWaitHistogram() {
+        return checkoutWaitHistogram;
     }
 
-    public synchronized long getBadConnectionCount() {
-        return badConnectionCount;
+    /**
+     * Gets the distribution of the time connections were checked out.
+     *
+     * @return the histogram in milliseconds
+     */
+    public Histogram getHoldTimeHistogram() {
+        return holdTimeHistogram;
     }
 
-    public synchronized long getClaimedOverdueConnectionCount() {
-        return claimedOverdueConnectionCount;
+    public long getLeakedConnectionCount() {
+        return leakedConnectionCount.sum();
     }
 
-    public synchronized long getAverageOverdueCheckoutTime() {
-        return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+    public long getStatementCacheHitCount() {
+        return statementCacheHitCount.sum();
     }
 
-    public synchronized long getAverageCheckoutTime() {
-        return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+    public long getStatementCacheMissCount() {
+        return statementCacheMissCount.sum();
     }
 
-    public synchronized int getIdleConnectionCount() {
-        return idleConnections.size();
+    public long getStatementCacheEvictionCount() {
+        return statementCacheEvictionCount.sum();
     }
 
-    public synchronized int getActiveConnectionCount() {
-        return activeConnections.size();
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    /**
+     * Gets the number of threads currently waiting for a connection.
+     *
+     * @return the number of waiting threads
+     */
+    public int getWaitingThreadCount() {
+        ConnectionBag bag = dataSource.getConnectionBag();
+        if (bag != null) {
+            return bag.getWaitingThreadCount();
+        }
+        synchronized (this) {
+            return waiters.size();
+        }
+    }
+
+    /**
+     * Gets how long each waiting thread has been waiting so far, longest waiting thread first.
+     *
+     * @return the wait times in milliseconds
+     */
+    public List<Long> getCurrentWaitTimes() {
+        ConnectionBag bag = dataSource.getConnectionBag();
+        if (bag != null) {
+            return toWaitTimes(bag.getWaiters());
+        }
+        synchronized (this) {
+            return toWaitTimes(waiters);
+        }
+    }
+
+    public long getLongestCurrentWaitTime() {
+        List<Long> waitTimes = getCurrentWaitTimes();
+        return waitTimes.isEmpty() ? 0 : waitTimes.get(0);
+    }
+
+    private static List<Long> toWaitTimes(Collection<Waiter> waiters) {
+        long now = System.currentTimeMillis();
+        List<Long> waitTimes = new ArrayList<>(waiters.size());
+        for (Waiter waiter : waiters) {
+            waitTimes.add(now - waiter.startTimestamp);
+        }
+        return waitTimes;
+    }
+
+    /**
+     * 唤醒队首的等待线程（不移交连接），调用者需持有锁
+     */
+    void wakeUpFirstWaiter() {
+        Waiter waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter.thread);
+        }
+    }
+
+    public long getHadToWaitCount() {
+        return hadToWaitCount.sum();
+    }
+
+    public long getBadConnectionCount() {
+        return badConnectionCount.sum();
+    }
+
+    public long getClaimedOverdueConnectionCount() {
+        return claimedOverdueConnectionCount.sum();
+    }
+
+    public long getAverageOverdueCheckoutTime() {
+        long overdue = claimedOverdueConnectionCount.sum();
+        return overdue == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.sum() / overdue;
+    }
+
+    public long getAverageCheckoutTime() {
+        long requests = requestCount.sum();
+        return requests == 0 ? 0 : accumulatedCheckoutTime.sum() / requests;
+    }
+
+    public int getIdleConnectionCount() {
+        ConnectionBag bag = dataSource.getConnectionBag();
+        if (bag != null) {
+            return bag.getIdleCount();
+        }
+        synchronized (this) {
+            return idleConnections.size();
+        }
+    }
+
+    public int getActiveConnectionCount() {
+        ConnectionBag bag = dataSource.getConnectionBag();
+        if (bag != null) {
+            return bag.getCount(ConnectionBag.STATE_IN_USE);
+        }
+        synchronized (this) {
+            return activeConnections.size();
+        }
+    }
+
+    /**
+     * 一个等待连接的线程
+     *   归还连接的线程将连接放入connection后只唤醒该线程
+     */
+    static final class Waiter {
+
+        final Thread thread = Thread.currentThread();
+        final long startTimestamp = System.currentTimeMillis();
+        volatile PooledConnection connection;
+
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("\n===CONFINGURATION==============================================");
         builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
         builder.append("\n jdbcUrl                        ").append(dataSource.getUrl());
         builder.append("\n jdbcUsername                   ").append(dataSource.getUsername());
         builder.append("\n jdbcPassword                   ").append(dataSource.getPassword() == null ? "NULL" : "************");
+        builder.append("\n poolMode                       ").append(dataSource.getPoolMode());
         builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
         builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
         builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
@@ -103,6 +245,12 @@ public class PoolState {
         builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
         builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
         builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+        builder.append("\n poolHousekeepingInterval       ").append(dataSource.poolHousekeepingInterval);
+        builder.append("\n poolMaximumLifetime            ").append(dataSource.poolMaximumLifetime);
+        builder.append("\n poolMaximumIdleTime            ").append(dataSource.poolMaximumIdleTime);
+        builder.append("\n poolMinimumIdleConnections     ").append(dataSource.poolMinimumIdleConnections);
+        builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+        builder.append("\n poolPreparedStatementCacheSize ").append(dataSource.poolPreparedStatementCacheSize);
         builder.append("\n ---STATUS-----------------------------------------------------");
         builder.append("\n activeConnections              ").append(getActiveConnectionCount());
         builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -113,7 +261,16 @@ public class PoolState {
         builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
         builder.append("\n hadToWait                      ").append(getHadToWaitCount());
         builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
+        builder.append("\n maxWaitTime                    ").append(getMaxWaitTime());
+        builder.append("\n waitingThreads                 ").append(getWaitingThreadCount());
+        builder.append("\n longestCurrentWaitTime         ").append(getLongestCurrentWaitTime());
         builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+        builder.append("\n leakedConnectionCount          ").append(getLeakedConnectionCount());
+        builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+        builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
+        builder.append("\n statementCacheEvictions        ").append(getStatementCacheEvictionCount());
+        builder.append("\n checkoutWait                   ").append(checkoutWaitHistogram);
+        builder.append("\n holdTime                       ").append(holdTimeHistogram);
         builder.append("\n===============================================================");
         return builder.toString();
     }
@@ -19,7 +19,9 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
 
@@ -29,6 +31,7 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
     private static final String CLOSE = "close";
+    private static final String PREPARE_STATEMENT = "prepareStatement";
     private static final Class<?>[] IFACES = new Class<?>[]{Connection.class};
 
     private final int hashCode;
@@ -37,12 +40,20 @@ class PooledConnection implements InvocationHandler {
     private final Connection realConnection;
     //代理连接
     private final Connection proxyConnection;
-    private long checkoutTimestamp;
+    private volatile long checkoutTimestamp;
     private long createdTimestamp;
     private long lastUsedTimestamp;
+    //最近一次被后台任务检查的时间
+    private volatile long lastValidatedTimestamp;
     private int connectionTypeCode;
     //有效？
-    private boolean valid;
+    private volatile boolean valid;
+    //并发模式下所属的容器项
+    private ConnectionBag.Entry bagEntry;
+    //泄漏检测任务，未开启泄漏检测时为null
+    private volatile ScheduledFuture<?> leakTask;
+    //真实连接上的语句缓存，随真实连接传递，第一次预编译语句时创建
+    private PreparedStatementCache statementCache;
 
     /**
      * 设置实际连接和连接池
@@ -74,6 +85,14 @@ class PooledConnection implements InvocationHandler {
         return valid && realConnection != null && dataSource.pingConnection(this);
     }
 
+    /**
+     * 是否已被设置为无效（不检查实际连接）
+     * @return
+     */
+    boolean isInvalidated() {
+        return !valid;
+    }
+
     /**
      * 获取真实连接
      * @return
@@ -155,6 +174,34 @@ class PooledConnection implements InvocationHandler {
         this.lastUsedTimestamp = lastUsedTimestamp;
     }
 
+    /**
+     * Getter for the time that the connection was last validated by the housekeeper.
+     *
+     * @return - the timestamp, 0 if it has never been validated
+     */
+    public long getLastValidatedTimestamp() {
+        return lastValidatedTimestamp;
+    }
+
+    /**
+     * Setter for the time that the connection was last validated by the housekeeper.
+     *
+     * @param lastValidatedTimestamp
+     *          - the timestamp
+     */
+    public void setLastValidatedTimestamp(long lastValidatedTimestamp) {
+        this.lastValidatedTimestamp = lastValidatedTimestamp;
+    }
+
+    /**
+     * Getter for the time since this connection was last validated.
+     *
+     * @return - the time since the last validation
+     */
+    public long getTimeElapsedSinceLastValidation() {
+        return System.currentTimeMillis() - lastValidatedTimestamp;
+    }
+
     /**
      * Getter for the time since this connection was last used.
      *
@@ -201,6 +248,34 @@ class PooledConnection implements InvocationHandler {
         return System.currentTimeMillis() - checkoutTimestamp;
     }
 
+    /**
+     * 获取并发模式下所属的容器项，同步模式下为null
+     * @return
+     */
+    ConnectionBag.Entry getBagEntry() {
+        return bagEntry;
+    }
+
+    void setBagEntry(ConnectionBag.Entry bagEntry) {
+        this.bagEntry = bagEntry;
+    }
+
+    ScheduledFuture<?> getLeakTask() {
+        return leakTask;
+    }
+
+    void setLeakTask(ScheduledFuture<?> leakTask) {
+        this.leakTask = leakTask;
+    }
+
+    PreparedStatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    void setStatementCache(PreparedStatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
     @Override
     public int hashCode() {
         return hashCode;
@@ -243,6 +318,12 @@ class PooledConnection implements InvocationHandler {
             if (!Object.class.equals(method.getDeclaringClass())) {
                 checkConnection();
             }
+            if (PREPARE_STATEMENT.equals(methodName) && dataSource.getPoolPreparedStatementCacheSize() > 0) {
+                PreparedStatementCache.Key key = PreparedStatementCache.Key.of(method.getParameterTypes(), args);
+                if (key != null) {
+                    return prepareStatement(key, method, args);
+                }
+            }
             return method.invoke(realConnection, args);
         } catch (Throwable t) {
             throw ExceptionUtil.unwrapThrowable(t);
@@ -250,6 +331,25 @@ class PooledConnection implements InvocationHandler {
 
     }
 
+    /**
+     * 优先使用缓存的语句
+     * @param key
+     * @param method
+     * @param args
+     * @return
+     * @throws Throwable
+     */
+    private Object prepareStatement(PreparedStatementCache.Key key, Method method, Object[] args) throws Throwable {
+        if (statementCache == null) {
+            statementCache = new PreparedStatementCache(dataSource.getPoolPreparedStatementCacheSize(), dataSource.getPoolState());
+        }
+        PreparedStatement statement = statementCache.take(key);
+        if (statement == null) {
+            statement = (PreparedStatement) method.invoke(realConnection, args);
+        }
+        return new PooledPreparedStatement(statementCache, key, statement, proxyConnection).getProxyStatement();
+    }
+
     /**
      * 检查连接是否有效
      * @throws SQLException
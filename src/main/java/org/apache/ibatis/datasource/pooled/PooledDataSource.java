@@ -16,13 +16,21 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -38,6 +46,9 @@ public class PooledDataSource implements DataSource {
 
     private static final Log log = LogFactory.getLog(PooledDataSource.class);
 
+    //预热时最多同时创建的连接数
+    private static final int MAXIMUM_WARM_UP_PARALLELISM = 8;
+
     //储存连接池状态
     private final PoolState state = new PoolState(this);
 
@@ -61,8 +72,36 @@ public class PooledDataSource implements DataSource {
     protected boolean poolPingEnabled;
 
     protected int poolPingConnectionsNotUsedFor;
+    //连接池模式
+    protected PoolMode poolMode = PoolMode.SYNCHRONIZED;
+    //后台维护任务的执行间隔，0表示不启用
+    protected int poolHousekeepingInterval;
+    //连接最长存活时间，0表示不限
+    protected int poolMaximumLifetime;
+    //空闲连接最长空闲时间，0表示不限
+    protected int poolMaximumIdleTime;
+    //后台维护任务保持的最少空闲连接数
+    protected int poolMinimumIdleConnections;
+    //后台检查连接时 Connection.isValid 的超时秒数
+    protected int poolValidationTimeout = 5;
+    //预热时创建的连接数
+    protected int poolInitialSize;
+    //连接借出超过该时间视为泄漏，0表示不检测
+    protected int poolLeakDetectionThreshold;
+    //每个连接缓存的PreparedStatement数，0表示不缓存
+    protected int poolPreparedStatementCacheSize;
     //连接的哈希码
-    private int expectedConnectionTypeCode;
+    private volatile int expectedConnectionTypeCode;
+    //并发模式下存放连接的容器，同步模式下为null
+    private volatile ConnectionBag connectionBag;
+    //后台维护任务，第一次获取连接时启动，关闭所有连接时停止
+    private volatile PoolHousekeeper housekeeper;
+    //每次关闭所有连接时加一，后台任务据此丢弃关闭前取出的连接
+    private volatile int poolGeneration;
+    //预热的结果，未预热时为null
+    private volatile CompletableFuture<Integer> warmUp;
+    //连接池事件的监听器
+    private volatile PoolMetricsListener poolMetricsListener;
 
     /**
      * 默认使用“不具有连接池功能的数据源”
@@ -97,11 +136,18 @@ public class PooledDataSource implements DataSource {
 
     @Override
     public Connection getConnection() throws SQLException {
-        return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+        return getConnection(dataSource.getUsername(), dataSource.getPassword());
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
+        if (poolHousekeepingInterval > 0 && housekeeper == null) {
+            startHousekeeper();
+        }
+        ConnectionBag bag = connectionBag;
+        if (bag != null) {
+            return popConnection(bag, username, password).getProxyConnection();
+        }
         return popConnection(username, password).getProxyConnection();
     }
 
@@ -265,6 +311,125 @@ public class PooledDataSource implements DataSource {
         forceCloseAll();
     }
 
+    /**
+     * The pool mode. {@link PoolMode#SYNCHRONIZED} (the default) guards the pool with a single lock,
+     * {@link PoolMode#CONCURRENT} checks out and returns connections with CAS state transitions.
+     *
+     * @param poolMode
+     *          The pool mode
+     */
+    public void setPoolMode(PoolMode poolMode) {
+        forceCloseAll();
+        this.poolMode = poolMode == null ? PoolMode.SYNCHRONIZED : poolMode;
+        this.connectionBag = this.poolMode == PoolMode.CONCURRENT ? new ConnectionBag() : null;
+    }
+
+    /**
+     * The interval of the background housekeeping task which validates idle connections,
+     * evicts expired ones and keeps the minimum number of idle connections. 0 (the default) disables it.
+     *
+     * @param milliseconds
+     *          The interval in milliseconds
+     */
+    public void setPoolHousekeepingInterval(int milliseconds) {
+        this.poolHousekeepingInterval = milliseconds;
+        forceCloseAll();
+    }
+
+    /**
+     * The maximum lifetime of a connection. Expired connections are closed when they are returned
+     * or by the housekeeping task. 0 (the default) means no limit.
+     *
+     * @param milliseconds
+     *          The maximum lifetime in milliseconds
+     */
+    public void setPoolMaximumLifetime(int milliseconds) {
+        this.poolMaximumLifetime = milliseconds;
+        forceCloseAll();
+    }
+
+    /**
+     * The maximum time a connection may sit idle before the housekeeping task closes it,
+     * as long as more than {@link #setPoolMinimumIdleConnections(int)} connections are idle.
+     * 0 (the default) means no limit.
+     *
+     * @param milliseconds
+     *          The maximum idle time in milliseconds
+     */
+    public void setPoolMaximumIdleTime(int milliseconds) {
+        this.poolMaximumIdleTime = milliseconds;
+        forceCloseAll();
+    }
+
+    /**
+     * The minimum number of idle connections the housekeeping task keeps in the pool.
+     *
+     * @param poolMinimumIdleConnections
+     *          The minimum number of idle connections
+     */
+    public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+        this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+        forceCloseAll();
+    }
+
+    /**
+     * The timeout passed to {@link Connection#isValid(int)} when the housekeeping task validates
+     * an idle connection and no ping query is enabled.
+     *
+     * @param seconds
+     *          The timeout in seconds
+     */
+    public void setPoolValidationTimeout(int seconds) {
+        this.poolValidationTimeout = seconds;
+        forceCloseAll();
+    }
+
+    /**
+     * The number of connections {@link #warmUp()} creates up front. The pool is filled up to the larger of
+     * this and {@link #setPoolMinimumIdleConnections(int)}, but never beyond the maximum number of idle connections.
+     *
+     * @param poolInitialSize
+     *          The initial number of connections
+     */
+    public void setPoolInitialSize(int poolInitialSize) {
+        this.poolInitialSize = poolInitialSize;
+        forceCloseAll();
+    }
+
+    /**
+     * The time a connection may be checked out before it is reported as a possible leak, together with the stack
+     * of the code that checked it out. 0 (the default) disables leak detection.
+     *
+     * @param milliseconds
+     *          The threshold in milliseconds
+     */
+    public void setPoolLeakDetectionThreshold(int milliseconds) {
+        this.poolLeakDetectionThreshold = milliseconds;
+        forceCloseAll();
+    }
+
+    /**
+     * The number of prepared statements cached on each pooled connection. Closing a statement returns it to the cache
+     * of its connection, so later sessions preparing the same SQL reuse it. 0 (the default) disables the cache.
+     *
+     * @param poolPreparedStatementCacheSize
+     *          The number of statements per connection
+     */
+    public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+        this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+        forceCloseAll();
+    }
+
+    /**
+     * Registers a listener which receives checkout, return and leak events, e.g. to bridge them to a metrics registry.
+     *
+     * @param poolMetricsListener
+     *          The listener, or null to remove it
+     */
+    public void setPoolMetricsListener(PoolMetricsListener poolMetricsListener) {
+        this.poolMetricsListener = poolMetricsListener;
+    }
+
     public String getDriver() {
         return dataSource.getDriver();
     }
@@ -335,6 +500,127 @@ public class PooledDataSource implements DataSource {
         return poolPingConnectionsNotUsedFor;
     }
 
+    public PoolMode getPoolMode() {
+        return poolMode;
+    }
+
+    public int getPoolHousekeepingInterval() {
+        return poolHousekeepingInterval;
+    }
+
+    public int getPoolMaximumLifetime() {
+        return poolMaximumLifetime;
+    }
+
+    public int getPoolMaximumIdleTime() {
+        return poolMaximumIdleTime;
+    }
+
+    public int getPoolMinimumIdleConnections() {
+        return poolMinimumIdleConnections;
+    }
+
+    public int getPoolValidationTimeout() {
+        return poolValidationTimeout;
+    }
+
+    public int getPoolInitialSize() {
+        return poolInitialSize;
+    }
+
+    public int getPoolLeakDetectionThreshold() {
+        return poolLeakDetectionThreshold;
+    }
+
+    public int getPoolPreparedStatementCacheSize() {
+        return poolPreparedStatementCacheSize;
+    }
+
+    public PoolMetricsListener getPoolMetricsListener() {
+        return poolMetricsListener;
+    }
+
+    /**
+     * Fills the pool with its initial connections, connecting several of them concurrently. Calling it again
+     * returns the same result until {@link #forceCloseAll()} empties the pool.
+     *
+     * @return a future completed with the number of connections created once the warm-up is finished
+     * @see #isReady()
+     */
+    public CompletableFuture<Integer> warmUp() {
+        CompletableFuture<Integer> current = warmUp;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (warmUp == null) {
+                warmUp = startWarmUp();
+            }
+            return warmUp;
+        }
+    }
+
+    /**
+     * Whether the pool is ready to serve requests without connecting, i.e. the warm-up has finished
+     * or no initial connections are configured.
+     *
+     * @return true if the pool is ready
+     */
+    public boolean isReady() {
+        CompletableFuture<Integer> current = warmUp;
+        if (current == null) {
+            return getWarmUpSize() <= 0;
+        }
+        return current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    private int getWarmUpSize() {
+        return Math.min(Math.max(poolInitialSize, poolMinimumIdleConnections),
+                Math.min(poolMaximumIdleConnections, poolMaximumActiveConnections));
+    }
+
+    /**
+     * 并行创建预热连接，每个任务创建一个连接
+     *
+     * @return
+     */
+    private CompletableFuture<Integer> startWarmUp() {
+        if (poolHousekeepingInterval > 0 && housekeeper == null) {
+            startHousekeeper();
+        }
+        int target = getWarmUpSize();
+        int missing = target - state.getIdleConnectionCount();
+        if (missing <= 0) {
+            return CompletableFuture.completedFuture(0);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(missing, MAXIMUM_WARM_UP_PARALLELISM), runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-pool-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<CompletableFuture<Boolean>> tasks = new ArrayList<>(missing);
+        for (int i = 0; i < missing; i++) {
+            tasks.add(CompletableFuture.supplyAsync(() -> addIdleConnection(target), executor));
+        }
+        long start = System.currentTimeMillis();
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            int created = 0;
+            for (CompletableFuture<Boolean> task : tasks) {
+                if (task.join()) {
+                    created++;
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("PooledDataSource warmed up " + created + " connections in " + (System.currentTimeMillis() - start) + " ms.");
+            }
+            return created;
+        }).whenComplete((created, e) -> executor.shutdown());
+    }
+
+    ConnectionBag getConnectionBag() {
+        return connectionBag;
+    }
+
     /**
      * 关闭所有连接
      *   先取出所有有效连接
@@ -349,7 +635,14 @@ public class PooledDataSource implements DataSource {
      *    4、关闭实际连接
      */
     public void forceCloseAll() {
+        PoolHousekeeper currentHousekeeper = housekeeper;
+        if (currentHousekeeper != null) {
+            housekeeper = null;
+            currentHousekeeper.shutdown();
+        }
+        warmUp = null;
         synchronized (state) {
+            poolGeneration++;
             expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
             for (int i = state.activeConnections.size(); i > 0; i--) {
                 try {
@@ -379,6 +672,29 @@ public class PooledDataSource implements DataSource {
                     // ignore
                 }
             }
+            //所有连接都已关闭，让等待的线程重新创建连接
+            for (PoolState.Waiter waiter : state.waiters) {
+                LockSupport.unpark(waiter.thread);
+            }
+            ConnectionBag bag = connectionBag;
+            if (bag != null) {
+                for (ConnectionBag.Entry entry : bag.values()) {
+                    if (bag.forceRemove(entry)) {
+                        try {
+                            PooledConnection conn = entry.getConnection();
+                            conn.invalidate();
+
+                            Connection realConn = conn.getRealConnection();
+                            if (!realConn.getAutoCommit()) {
+                                realConn.rollback();
+                            }
+                            realConn.close();
+                        } catch (Exception e) {
+                            // ignore
+                        }
+                    }
+                }
+            }
         }
         if (log.isDebugEnabled()) {
             log.debug("PooledDataSource forcefully closed/removed all connections.");
@@ -407,12 +723,38 @@ public class PooledDataSource implements DataSource {
      * @throws SQLException
      */
     protected void pushConnection(PooledConnection conn) throws SQLException {
+        connectionReturned(conn);
+        ConnectionBag.Entry entry = conn.getBagEntry();
+        if (entry != null) {
+            pushConnection(entry, conn);
+            return;
+        }
 
         synchronized (state) {
             state.activeConnections.remove(conn);
             if (conn.isValid()) {
-                if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-                    state.accumulatedCheckoutTime += conn.getCheckoutTime();
+                if (!state.waiters.isEmpty() && conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)) {
+                    state.accumulatedCheckoutTime.add(conn.getCheckoutTime());
+                    if (!conn.getRealConnection().getAutoCommit()) {
+                        conn.getRealConnection().rollback();
+                    }
+                    //直接移交给等待最久的线程，不经过空闲连接，也只唤醒这一个线程
+                    PoolState.Waiter waiter = state.waiters.poll();
+                    PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+                    newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+                    newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+                    newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
+                    newConn.setStatementCache(conn.getStatementCache());
+                    newConn.setCheckoutTimestamp(System.currentTimeMillis());
+                    state.activeConnections.add(newConn);
+                    conn.invalidate();
+                    waiter.connection = newConn;
+                    if (log.isDebugEnabled()) {
+                        log.debug("Handed connection " + newConn.getRealHashCode() + " over to a waiting thread.");
+                    }
+                    LockSupport.unpark(waiter.thread);
+                } else if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)) {
+                    state.accumulatedCheckoutTime.add(conn.getCheckoutTime());
                     if (!conn.getRealConnection().getAutoCommit()) {
                         conn.getRealConnection().rollback();
                     }
@@ -420,13 +762,14 @@ public class PooledDataSource implements DataSource {
                     state.idleConnections.add(newConn);
                     newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
                     newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+                    newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
+                    newConn.setStatementCache(conn.getStatementCache());
                     conn.invalidate();
                     if (log.isDebugEnabled()) {
                         log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
                     }
-                    state.notifyAll();
                 } else {
-                    state.accumulatedCheckoutTime += conn.getCheckoutTime();
+                    state.accumulatedCheckoutTime.add(conn.getCheckoutTime());
                     if (!conn.getRealConnection().getAutoCommit()) {
                         conn.getRealConnection().rollback();
                     }
@@ -435,12 +778,15 @@ public class PooledDataSource implements DataSource {
                         log.debug("Closed connection " + conn.getRealHashCode() + ".");
                     }
                     conn.invalidate();
+                    //空出了一个名额，让队首的线程去创建新连接
+                    state.wakeUpFirstWaiter();
                 }
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
                 }
-                state.badConnectionCount++;
+                state.badConnectionCount.increment();
+                state.wakeUpFirstWaiter();
             }
         }
     }
@@ -462,99 +808,156 @@ public class PooledDataSource implements DataSource {
         PooledConnection conn = null;
         long t = System.currentTimeMillis();
         int localBadConnectionCount = 0;
+        //当前线程在等待队列中的位置
+        PoolState.Waiter waiter = null;
+        //连接是否由归还的线程直接移交
+        boolean handedOver = false;
 
-        while (conn == null) {
-            synchronized (state) {
-                if (!state.idleConnections.isEmpty()) {
-                    //若有可用连接
-                    conn = state.idleConnections.remove(0);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
-                    }
-                } else {
-                    if (state.activeConnections.size() < poolMaximumActiveConnections) {
-                        //创建一个连接
-                        conn = new PooledConnection(dataSource.getConnection(), this);
+        try {
+            while (conn == null) {
+                synchronized (state) {
+                    if (waiter != null && waiter.connection != null) {
+                        //归还的连接已直接交给当前线程，并已放入正在使用的连接中
+                        conn = waiter.connection;
+                        handedOver = true;
                         if (log.isDebugEnabled()) {
-                            log.debug("Created connection " + conn.getRealHashCode() + ".");
+                            log.debug("Checked out connection " + conn.getRealHashCode() + " handed over by returning thread.");
+                        }
+                    } else if (!state.idleConnections.isEmpty()) {
+                        //若有可用连接
+                        conn = state.idleConnections.remove(0);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
                         }
                     } else {
-                        PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-                        long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-                        //若连接过期
-                        if (longestCheckoutTime > poolMaximumCheckoutTime) {
-                            state.claimedOverdueConnectionCount++;
-                            state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-                            state.accumulatedCheckoutTime += longestCheckoutTime;
-                            state.activeConnections.remove(oldestActiveConnection);
-                            //若未提交，则回滚
-                            if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-                                try {
-                                    oldestActiveConnection.getRealConnection().rollback();
-                                } catch (SQLException e) {
-                                    log.debug("Bad connection. Could not roll back");
-                                }
-                            }
-                            conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-                            conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
-                            conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
-                            //设置无效连接
-                            oldestActiveConnection.invalidate();
+                        if (state.activeConnections.size() < poolMaximumActiveConnections) {
+                            //创建一个连接
+                            conn = new PooledConnection(dataSource.getConnection(), this);
                             if (log.isDebugEnabled()) {
-                                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+                                log.debug("Created connection " + conn.getRealHashCode() + ".");
                             }
                         } else {
-                            try {
+                            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
+                            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+                            //若连接过期
+                            if (longestCheckoutTime > poolMaximumCheckoutTime) {
+                                state.claimedOverdueConnectionCount.increment();
+                                state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+                                state.accumulatedCheckoutTime.add(longestCheckoutTime);
+                                state.activeConnections.remove(oldestActiveConnection);
+                                //若未提交，则回滚
+                                if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
+                                    try {
+                                        oldestActiveConnection.getRealConnection().rollback();
+                                    } catch (SQLException e) {
+                                        log.debug("Bad connection. Could not roll back");
+                                    }
+                                }
+                                conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+                                conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
+                                conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+                                conn.setLastValidatedTimestamp(oldestActiveConnection.getLastValidatedTimestamp());
+                                //设置无效连接
+                                connectionReturned(oldestActiveConnection);
+                                oldestActiveConnection.invalidate();
+                                closeStatementCache(oldestActiveConnection);
+                                if (log.isDebugEnabled()) {
+                                    log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+                                }
+                            } else {
                                 if (!countedWait) {
-                                    state.hadToWaitCount++;
+                                    state.hadToWaitCount.increment();
                                     countedWait = true;
                                 }
+                                if (waiter == null) {
+                                    //排到等待队列的末尾，归还的连接按先来后到交给等待的线程
+                                    waiter = new PoolState.Waiter();
+                                    state.waiters.add(waiter);
+                                }
                                 if (log.isDebugEnabled()) {
                                     log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
                                 }
-                                long wt = System.currentTimeMillis();
-                                state.wait(poolTimeToWait);
-                                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-                            } catch (InterruptedException e) {
-                                break;
                             }
                         }
                     }
-                }
-                if (conn != null) {
-                    //检查连接使用可用
-                    if (conn.isValid()) {
-                        if (!conn.getRealConnection().getAutoCommit()) {
-                            //非自动提交，则回滚
-                            conn.getRealConnection().rollback();
+                    if (conn != null) {
+                        if (waiter != null) {
+                            state.waiters.remove(waiter);
+                            waiter = null;
                         }
-                        //设置连接哈希码
-                        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
-                        //检查时间
-                        conn.setCheckoutTimestamp(System.currentTimeMillis());
-                        //最近使用时间
-                        conn.setLastUsedTimestamp(System.currentTimeMillis());
-                        //放入正在使用的连接中
-                        state.activeConnections.add(conn);
-                        state.requestCount++;
-                        state.accumulatedRequestTime += System.currentTimeMillis() - t;
-                    } else {
-                        if (log.isDebugEnabled()) {
-                            log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
-                        }
-                        state.badConnectionCount++;
-                        localBadConnectionCount++;
-                        conn = null;
-                        if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+                        //检查连接使用可用
+                        if (conn.isValid()) {
+                            if (!conn.getRealConnection().getAutoCommit()) {
+                                //非自动提交，则回滚
+                                conn.getRealConnection().rollback();
+                            }
+                            //设置连接哈希码
+                            conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+                            //检查时间
+                            conn.setCheckoutTimestamp(System.currentTimeMillis());
+                            //最近使用时间
+                            conn.setLastUsedTimestamp(System.currentTimeMillis());
+                            //放入正在使用的连接中（移交的连接已经在其中）
+                            if (!handedOver) {
+                                state.activeConnections.add(conn);
+                            }
+                            connectionCheckedOut(conn, System.currentTimeMillis() - t);
+                        } else {
                             if (log.isDebugEnabled()) {
-                                log.debug("PooledDataSource: Could not get a good connection to the database.");
+                                log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                            }
+                            state.badConnectionCount.increment();
+                            if (handedOver) {
+                                state.activeConnections.remove(conn);
+                                handedOver = false;
+                            }
+                            localBadConnectionCount++;
+                            conn = null;
+                            if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+                                if (log.isDebugEnabled()) {
+                                    log.debug("PooledDataSource: Could not get a good connection to the database.");
+                                }
+                                throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
                             }
-                            throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
                         }
                     }
                 }
-            }
 
+                if (conn == null && waiter != null) {
+                    //在锁外等待，只有归还连接的线程会唤醒队首的等待者
+                    long wt = System.currentTimeMillis();
+                    LockSupport.parkNanos(state, TimeUnit.MILLISECONDS.toNanos(poolTimeToWait));
+                    long waited = System.currentTimeMillis() - wt;
+                    state.accumulatedWaitTime.add(waited);
+                    state.maxWaitTime.accumulate(waited);
+                    if (Thread.interrupted()) {
+                        synchronized (state) {
+                            if (waiter.connection == null) {
+                                break;
+                            }
+                        }
+                        //中断前已经拿到了连接，保留中断状态继续完成借出
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        } finally {
+            if (waiter != null) {
+                synchronized (state) {
+                    state.waiters.remove(waiter);
+                    if (waiter.connection != null) {
+                        //已移交的连接没有被取走，不算一次借出和归还，直接交给下一个等待者或放回空闲连接
+                        PooledConnection unclaimed = waiter.connection;
+                        state.activeConnections.remove(unclaimed);
+                        if (unclaimed.isValid() && (!state.waiters.isEmpty() || state.idleConnections.size() < poolMaximumIdleConnections)) {
+                            handOverOrIdle(unclaimed);
+                        } else {
+                            closeQuietly(unclaimed);
+                            state.wakeUpFirstWaiter();
+                        }
+                    }
+                }
+            }
         }
 
         if (conn == null) {
@@ -567,6 +970,338 @@ public class PooledDataSource implements DataSource {
         return conn;
     }
 
+    /**
+     * 并发模式下归还连接
+     *   与同步模式的处理相同，只是用CAS代替了锁：
+     *   归还者与回收过期连接的线程都要先把连接从IN_USE预留为RESERVED，只有一方能成功
+     *
+     * @param entry
+     * @param conn
+     * @throws SQLException
+     */
+    private void pushConnection(ConnectionBag.Entry entry, PooledConnection conn) throws SQLException {
+        ConnectionBag bag = connectionBag;
+        if (bag == null || !reserveForReturn(entry, conn)) {
+            //连接已被回收或连接池已关闭
+            if (log.isDebugEnabled()) {
+                log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+            }
+            state.badConnectionCount.increment();
+            return;
+        }
+        if (conn.isValid()) {
+            state.accumulatedCheckoutTime.add(conn.getCheckoutTime());
+            if (bag.getIdleCount() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)) {
+                if (!conn.getRealConnection().getAutoCommit()) {
+                    conn.getRealConnection().rollback();
+                }
+                PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+                newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+                newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+                newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
+                newConn.setStatementCache(conn.getStatementCache());
+                entry.setConnection(newConn);
+                conn.invalidate();
+                if (log.isDebugEnabled()) {
+                    log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+                }
+                if (!bag.requite(entry)) {
+                    //归还期间连接池已关闭
+                    closeQuietly(newConn);
+                }
+            } else {
+                bag.remove(entry);
+                try {
+                    if (!conn.getRealConnection().getAutoCommit()) {
+                        conn.getRealConnection().rollback();
+                    }
+                    conn.getRealConnection().close();
+                } finally {
+                    conn.invalidate();
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Closed connection " + conn.getRealHashCode() + ".");
+                }
+            }
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+            }
+            state.badConnectionCount.increment();
+            bag.remove(entry);
+            closeQuietly(conn);
+        }
+    }
+
+    /**
+     * 将借出的连接预留下来准备归还，连接已被回收时返回false
+     *
+     * @param entry
+     * @param conn
+     * @return
+     */
+    private boolean reserveForReturn(ConnectionBag.Entry entry, PooledConnection conn) {
+        while (entry.getConnection() == conn) {
+            if (entry.compareAndSetState(ConnectionBag.STATE_IN_USE, ConnectionBag.STATE_RESERVED)) {
+                if (entry.getConnection() == conn) {
+                    return true;
+                }
+                //预留前连接已被回收并交给了其他线程
+                entry.setState(ConnectionBag.STATE_IN_USE);
+                return false;
+            }
+            if (entry.getState() != ConnectionBag.STATE_RESERVED) {
+                return false;
+            }
+            //其他线程正在检查该连接是否过期
+            Thread.yield();
+        }
+        return false;
+    }
+
+    /**
+     * 并发模式下获取一个连接
+     *    先尝试线程最近使用的连接和其他空闲连接
+     *    连接数未达到上限则创建一个新连接
+     *    否则尝试回收过期连接，再否则公平地等待最多poolTimeToWait毫秒
+     *
+     * @param bag
+     * @param username
+     * @param password
+     * @return
+     * @throws SQLException
+     */
+    private PooledConnection popConnection(ConnectionBag bag, String username, String password) throws SQLException {
+        boolean countedWait = false;
+        long t = System.currentTimeMillis();
+        int localBadConnectionCount = 0;
+
+        while (true) {
+            ConnectionBag.Entry entry = bag.tryBorrow();
+            if (entry != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Checked out connection " + entry.getConnection().getRealHashCode() + " from pool.");
+                }
+            } else if (bag.reserveSlot(poolMaximumActiveConnections)) {
+                entry = createConnection(bag);
+            } else {
+                entry = claimOverdueConnection(bag);
+                if (entry == null) {
+                    if (!countedWait) {
+                        state.hadToWaitCount.increment();
+                        countedWait = true;
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+                    }
+                    long wt = System.currentTimeMillis();
+                    try {
+                        entry = bag.borrow(poolTimeToWait, poolMaximumActiveConnections);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("PooledDataSource: Interrupted while waiting for a connection.", e);
+                    } finally {
+                        long waited = System.currentTimeMillis() - wt;
+                        state.accumulatedWaitTime.add(waited);
+                        state.maxWaitTime.accumulate(waited);
+                    }
+                    if (entry == ConnectionBag.FREE_SLOT) {
+                        //等待期间有连接被移除
+                        entry = createConnection(bag);
+                    } else if (entry == null) {
+                        entry = claimOverdueConnection(bag);
+                    }
+                    if (entry == null) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("PooledDataSource: Timed out after " + poolTimeToWait + " milliseconds waiting for a connection.");
+                        }
+                        throw new SQLException("PooledDataSource: Timed out after " + poolTimeToWait + " milliseconds waiting for a connection.");
+                    }
+                }
+            }
+
+            PooledConnection conn = entry.getConnection();
+            //检查连接使用可用
+            if (conn.isValid()) {
+                if (!conn.getRealConnection().getAutoCommit()) {
+                    //非自动提交，则回滚
+                    conn.getRealConnection().rollback();
+                }
+                conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+                conn.setCheckoutTimestamp(System.currentTimeMillis());
+                conn.setLastUsedTimestamp(System.currentTimeMillis());
+                connectionCheckedOut(conn, System.currentTimeMillis() - t);
+                return conn;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+            }
+            state.badConnectionCount.increment();
+            bag.remove(entry);
+            closeQuietly(conn);
+            localBadConnectionCount++;
+            if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("PooledDataSource: Could not get a good connection to the database.");
+                }
+                throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+            }
+        }
+    }
+
+    /**
+     * 并发模式下在已占用的名额上创建一个借出的连接
+     *
+     * @param bag
+     * @return
+     * @throws SQLException
+     */
+    private ConnectionBag.Entry createConnection(ConnectionBag bag) throws SQLException {
+        ConnectionBag.Entry entry;
+        try {
+            entry = new ConnectionBag.Entry(new PooledConnection(dataSource.getConnection(), this), ConnectionBag.STATE_IN_USE);
+        } catch (SQLException | RuntimeException e) {
+            bag.releaseSlot();
+            throw e;
+        }
+        bag.add(entry);
+        if (log.isDebugEnabled()) {
+            log.debug("Created connection " + entry.getConnection().getRealHashCode() + ".");
+        }
+        return entry;
+    }
+
+    /**
+     * 并发模式下回收借出时间超过poolMaximumCheckoutTime的连接，没有则返回null
+     *
+     * @param bag
+     * @return
+     */
+    private ConnectionBag.Entry claimOverdueConnection(ConnectionBag bag) {
+        for (ConnectionBag.Entry entry : bag.values()) {
+            PooledConnection oldConn = entry.getConnection();
+            //借出时间戳为0表示借出者尚未完成借出
+            if (entry.getState() != ConnectionBag.STATE_IN_USE || oldConn.getCheckoutTimestamp() == 0
+                    || oldConn.getCheckoutTime() <= poolMaximumCheckoutTime
+                    || !entry.compareAndSetState(ConnectionBag.STATE_IN_USE, ConnectionBag.STATE_RESERVED)) {
+                continue;
+            }
+            if (entry.getConnection() != oldConn) {
+                //预留前连接已被归还并再次借出
+                entry.setState(ConnectionBag.STATE_IN_USE);
+                continue;
+            }
+            long longestCheckoutTime = oldConn.getCheckoutTime();
+            state.claimedOverdueConnectionCount.increment();
+            state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+            state.accumulatedCheckoutTime.add(longestCheckoutTime);
+            try {
+                if (!oldConn.getRealConnection().getAutoCommit()) {
+                    oldConn.getRealConnection().rollback();
+                }
+            } catch (SQLException e) {
+                log.debug("Bad connection. Could not roll back");
+            }
+            PooledConnection conn = new PooledConnection(oldConn.getRealConnection(), this);
+            conn.setCreatedTimestamp(oldConn.getCreatedTimestamp());
+            conn.setLastUsedTimestamp(oldConn.getLastUsedTimestamp());
+            conn.setLastValidatedTimestamp(oldConn.getLastValidatedTimestamp());
+            entry.setConnection(conn);
+            connectionReturned(oldConn);
+            oldConn.invalidate();
+            closeStatementCache(oldConn);
+            entry.setState(ConnectionBag.STATE_IN_USE);
+            if (log.isDebugEnabled()) {
+                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次借出
+     *
+     * @param conn
+     * @param requestTime
+     */
+    private void connectionCheckedOut(PooledConnection conn, long requestTime) {
+        state.requestCount.increment();
+        state.accumulatedRequestTime.add(requestTime);
+        state.checkoutWaitHistogram.record(requestTime);
+        if (poolLeakDetectionThreshold > 0) {
+            PoolLeakDetector.watch(this, conn, poolLeakDetectionThreshold);
+        }
+        PoolMetricsListener listener = poolMetricsListener;
+        if (listener != null) {
+            listener.connectionCheckedOut(requestTime);
+        }
+    }
+
+    /**
+     * 记录一次归还（或被回收），重复关闭的连接不再记录
+     *
+     * @param conn
+     */
+    private void connectionReturned(PooledConnection conn) {
+        if (conn.isInvalidated() || conn.getCheckoutTimestamp() == 0) {
+            return;
+        }
+        PoolLeakDetector.unwatch(conn);
+        long holdTime = conn.getCheckoutTime();
+        state.holdTimeHistogram.record(holdTime);
+        PoolMetricsListener listener = poolMetricsListener;
+        if (listener != null) {
+            listener.connectionReturned(holdTime);
+        }
+    }
+
+    /**
+     * 连接借出超过泄漏检测阈值时由 {@link PoolLeakDetector} 调用
+     *
+     * @param conn
+     * @param borrowerThread
+     * @param borrowSite
+     */
+    void connectionLeaked(PooledConnection conn, String borrowerThread, Throwable borrowSite) {
+        conn.setLeakTask(null);
+        //连接池关闭时被强制回收的连接不再报告
+        if (conn.isInvalidated()) {
+            return;
+        }
+        long holdTime = conn.getCheckoutTime();
+        state.leakedConnectionCount.increment();
+        StringWriter stack = new StringWriter();
+        borrowSite.printStackTrace(new PrintWriter(stack));
+        log.warn("Connection leak detection triggered for connection " + conn.getRealHashCode() + " held by thread " + borrowerThread
+                + " for " + holdTime + " milliseconds, checked out at: " + stack);
+        PoolMetricsListener listener = poolMetricsListener;
+        if (listener != null) {
+            listener.connectionLeaked(holdTime, borrowerThread, borrowSite.getStackTrace());
+        }
+    }
+
+    /**
+     * 被回收的连接的原持有者可能仍在使用缓存的语句，新的持有者不再沿用这些语句
+     *
+     * @param conn
+     */
+    private void closeStatementCache(PooledConnection conn) {
+        PreparedStatementCache statementCache = conn.getStatementCache();
+        if (statementCache != null) {
+            statementCache.close();
+        }
+    }
+
+    private void closeQuietly(PooledConnection conn) {
+        conn.invalidate();
+        try {
+            conn.getRealConnection().close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
     /**
      * Method to check to see if a connection is still usable
      *
@@ -586,37 +1321,287 @@ public class PooledDataSource implements DataSource {
             result = false;
         }
 
+        //后台任务近期检查过的连接不再在请求线程上ping
         if (result && poolPingEnabled && poolPingConnectionsNotUsedFor >= 0
-                && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
+                && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor
+                && conn.getTimeElapsedSinceLastValidation() > poolPingConnectionsNotUsedFor) {
+            result = executePingQuery(conn);
+        }
+        return result;
+    }
+
+    /**
+     * 执行ping语句，失败时关闭实际连接
+     *
+     * @param conn
+     * @return
+     */
+    private boolean executePingQuery(PooledConnection conn) {
+        boolean result;
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Testing connection " + conn.getRealHashCode() + " ...");
+            }
+            Connection realConn = conn.getRealConnection();
+            try (Statement statement = realConn.createStatement()) {
+                statement.executeQuery(poolPingQuery).close();
+            }
+            if (!realConn.getAutoCommit()) {
+                realConn.rollback();
+            }
+            result = true;
+            if (log.isDebugEnabled()) {
+                log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
+            }
+        } catch (Exception e) {
+            log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
             try {
-                if (log.isDebugEnabled()) {
-                    log.debug("Testing connection " + conn.getRealHashCode() + " ...");
-                }
-                Connection realConn = conn.getRealConnection();
-                try (Statement statement = realConn.createStatement()) {
-                    statement.executeQuery(poolPingQuery).close();
-                }
-                if (!realConn.getAutoCommit()) {
-                    realConn.rollback();
+                conn.getRealConnection().close();
+            } catch (Exception e2) {
+                // ignore
+            }
+            result = false;
+            if (log.isDebugEnabled()) {
+                log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 后台任务检查一个空闲连接：启用ping时执行ping语句，否则调用 {@link Connection#isValid(int)}
+     *
+     * @param conn
+     * @return
+     */
+    private boolean validateConnection(PooledConnection conn) {
+        boolean result;
+        if (poolPingEnabled) {
+            result = executePingQuery(conn);
+        } else {
+            try {
+                result = conn.getRealConnection().isValid(poolValidationTimeout);
+            } catch (SQLException e) {
+                result = false;
+            }
+            if (!result && log.isDebugEnabled()) {
+                log.debug("Connection " + conn.getRealHashCode() + " is BAD.");
+            }
+        }
+        if (result) {
+            conn.setLastValidatedTimestamp(System.currentTimeMillis());
+        }
+        return result;
+    }
+
+    /**
+     * 连接是否超过了最长存活时间
+     *
+     * @param conn
+     * @return
+     */
+    private boolean isExpired(PooledConnection conn) {
+        return poolMaximumLifetime > 0 && conn.getAge() > poolMaximumLifetime;
+    }
+
+    /**
+     * 空闲连接是否应被淘汰，空闲超时只在空闲连接多于poolMinimumIdleConnections时生效
+     *
+     * @param conn
+     * @param idleCount
+     * @return
+     */
+    private boolean isEvictable(PooledConnection conn, int idleCount) {
+        return isExpired(conn) || (poolMaximumIdleTime > 0 && idleCount > poolMinimumIdleConnections
+                && conn.getTimeElapsedSinceLastUse() > poolMaximumIdleTime);
+    }
+
+    private synchronized void startHousekeeper() {
+        if (housekeeper == null) {
+            housekeeper = new PoolHousekeeper(this, poolHousekeepingInterval);
+        }
+    }
+
+    /**
+     * 后台维护：
+     *    1、逐个取出空闲连接，淘汰过期或空闲过久的连接，检查其余连接是否可用
+     *    2、补足最少空闲连接
+     * 被检查的连接不会被借出，检查完成后优先交给等待的线程
+     */
+    void houseKeep() {
+        ConnectionBag bag = connectionBag;
+        if (bag != null) {
+            houseKeep(bag);
+        } else {
+            houseKeepIdleConnections();
+        }
+    }
+
+    private void houseKeepIdleConnections() {
+        List<PooledConnection> candidates;
+        int generation;
+        synchronized (state) {
+            candidates = new ArrayList<>(state.idleConnections);
+            generation = poolGeneration;
+        }
+        int idleCount = candidates.size();
+        for (PooledConnection conn : candidates) {
+            synchronized (state) {
+                if (generation != poolGeneration || !state.idleConnections.remove(conn)) {
+                    //已被借出或连接池已关闭
+                    continue;
                 }
-                result = true;
+            }
+            if (isEvictable(conn, idleCount)) {
+                idleCount--;
+                closeQuietly(conn);
                 if (log.isDebugEnabled()) {
-                    log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
+                    log.debug("Evicted idle connection " + conn.getRealHashCode() + ".");
                 }
-            } catch (Exception e) {
-                log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
-                try {
-                    conn.getRealConnection().close();
-                } catch (Exception e2) {
-                    // ignore
+                continue;
+            }
+            if (!validateConnection(conn)) {
+                idleCount--;
+                state.badConnectionCount.increment();
+                closeQuietly(conn);
+                continue;
+            }
+            synchronized (state) {
+                if (generation == poolGeneration) {
+                    handOverOrIdle(conn);
+                    continue;
                 }
-                result = false;
+            }
+            closeQuietly(conn);
+        }
+
+        int target = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+        while (addIdleConnection(target)) {
+            // 补足最少空闲连接
+        }
+    }
+
+    private void houseKeep(ConnectionBag bag) {
+        int idleCount = bag.getIdleCount();
+        for (ConnectionBag.Entry entry : bag.values()) {
+            if (!bag.reserve(entry)) {
+                continue;
+            }
+            PooledConnection conn = entry.getConnection();
+            if (isEvictable(conn, idleCount)) {
+                idleCount--;
+                bag.remove(entry);
+                closeQuietly(conn);
                 if (log.isDebugEnabled()) {
-                    log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+                    log.debug("Evicted idle connection " + conn.getRealHashCode() + ".");
                 }
+            } else if (!validateConnection(conn)) {
+                idleCount--;
+                state.badConnectionCount.increment();
+                bag.remove(entry);
+                closeQuietly(conn);
+            } else if (!bag.requite(entry)) {
+                closeQuietly(conn);
             }
         }
-        return result;
+
+        int target = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+        while (addIdleConnection(target)) {
+            // 补足最少空闲连接
+        }
+    }
+
+    /**
+     * 创建一个空闲连接放入连接池
+     *   空闲连接已达到target、连接数已满或创建失败时返回false
+     *
+     * @param target
+     * @return
+     */
+    private boolean addIdleConnection(int target) {
+        ConnectionBag bag = connectionBag;
+        if (bag != null) {
+            if (bag.getIdleCount() >= target || !bag.reserveSlot(poolMaximumActiveConnections)) {
+                return false;
+            }
+            int generation = poolGeneration;
+            PooledConnection conn = createIdleConnection();
+            if (conn == null) {
+                bag.releaseSlot();
+                return false;
+            }
+            ConnectionBag.Entry entry = new ConnectionBag.Entry(conn, ConnectionBag.STATE_RESERVED);
+            bag.add(entry);
+            //先放入再检查，创建期间关闭了所有连接时由这里移除，之后关闭的由forceCloseAll移除
+            if (generation != poolGeneration) {
+                bag.remove(entry);
+                closeQuietly(conn);
+                return false;
+            }
+            if (!bag.requite(entry)) {
+                closeQuietly(conn);
+                return false;
+            }
+            return true;
+        }
+        int generation;
+        synchronized (state) {
+            if (state.idleConnections.size() >= target
+                    || state.idleConnections.size() + state.activeConnections.size() >= poolMaximumActiveConnections) {
+                return false;
+            }
+            generation = poolGeneration;
+        }
+        PooledConnection conn = createIdleConnection();
+        if (conn == null) {
+            return false;
+        }
+        synchronized (state) {
+            if (generation == poolGeneration && state.idleConnections.size() < target
+                    && state.idleConnections.size() + state.activeConnections.size() < poolMaximumActiveConnections) {
+                handOverOrIdle(conn);
+                return true;
+            }
+        }
+        closeQuietly(conn);
+        return false;
+    }
+
+    /**
+     * 创建一个空闲连接，失败时返回null
+     *
+     * @return
+     */
+    private PooledConnection createIdleConnection() {
+        try {
+            PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+            conn.setConnectionTypeCode(expectedConnectionTypeCode);
+            conn.setLastValidatedTimestamp(System.currentTimeMillis());
+            if (log.isDebugEnabled()) {
+                log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+            }
+            return conn;
+        } catch (SQLException e) {
+            log.warn("PooledDataSource could not create an idle connection. Cause: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 将空闲连接交给等待最久的线程，没有等待的线程则放入空闲连接，调用者需持有锁
+     *
+     * @param conn
+     */
+    private void handOverOrIdle(PooledConnection conn) {
+        PoolState.Waiter waiter = state.waiters.poll();
+        if (waiter == null) {
+            state.idleConnections.add(conn);
+            return;
+        }
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        state.activeConnections.add(conn);
+        waiter.connection = conn;
+        LockSupport.unpark(waiter.thread);
     }
 
     /**
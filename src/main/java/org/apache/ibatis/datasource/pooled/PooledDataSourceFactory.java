@@ -20,6 +20,7 @@ import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 /**
  * 用于产生具有连接池功能的数据源
  * 在创建Configuration类时，已经建该类注册到别名注册中心中
+ * 通过poolMode属性选择连接池模式，见 {@link PoolMode}
  */
 public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
 
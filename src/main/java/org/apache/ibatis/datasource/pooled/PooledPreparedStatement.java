@@ -0,0 +1,147 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 缓存语句的增强类
+ *   关闭时将真实语句放回 {@link PreparedStatementCache}，每次借出都使用新的代理，关闭后的代理不能再使用
+ */
+class PooledPreparedStatement implements InvocationHandler {
+
+    private static final Class<?>[] IFACES = new Class<?>[]{PreparedStatement.class};
+
+    private final PreparedStatementCache cache;
+    private final PreparedStatementCache.Key key;
+    //真实语句
+    private final PreparedStatement realStatement;
+    //代理语句
+    private final PreparedStatement proxyStatement;
+    //代理连接
+    private final Connection proxyConnection;
+    private boolean closed;
+    //有未执行的批处理
+    private boolean batched;
+    //修改过需要在放回缓存前恢复的属性
+    private boolean queryTimeoutChanged;
+    private boolean fetchSizeChanged;
+    private boolean maxRowsChanged;
+
+    PooledPreparedStatement(PreparedStatementCache cache, PreparedStatementCache.Key key, PreparedStatement realStatement, Connection proxyConnection) {
+        this.cache = cache;
+        this.key = key;
+        this.realStatement = realStatement;
+        this.proxyConnection = proxyConnection;
+        this.proxyStatement = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES, this);
+    }
+
+    PreparedStatement getProxyStatement() {
+        return proxyStatement;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String methodName = method.getName();
+        switch (methodName) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed || realStatement.isClosed();
+            case "getConnection":
+                checkStatement();
+                return proxyConnection;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "addBatch":
+                batched = true;
+                break;
+            case "executeBatch":
+            case "clearBatch":
+                batched = false;
+                break;
+            case "setQueryTimeout":
+                queryTimeoutChanged = true;
+                break;
+            case "setFetchSize":
+                fetchSizeChanged = true;
+                break;
+            case "setMaxRows":
+            case "setLargeMaxRows":
+                maxRowsChanged = true;
+                break;
+            default:
+                break;
+        }
+        try {
+            if (!Object.class.equals(method.getDeclaringClass())) {
+                checkStatement();
+            }
+            return method.invoke(realStatement, args);
+        } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+        }
+    }
+
+    /**
+     * 清除参数和批处理、恢复修改过的属性后放回缓存，失败则关闭真实语句
+     */
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (realStatement.isClosed()) {
+                return;
+            }
+            realStatement.clearParameters();
+            if (batched) {
+                realStatement.clearBatch();
+            }
+            if (queryTimeoutChanged) {
+                realStatement.setQueryTimeout(0);
+            }
+            if (fetchSizeChanged) {
+                realStatement.setFetchSize(0);
+            }
+            if (maxRowsChanged) {
+                realStatement.setMaxRows(0);
+            }
+        } catch (SQLException e) {
+            PreparedStatementCache.closeQuietly(realStatement);
+            return;
+        }
+        cache.release(key, realStatement);
+    }
+
+    private void checkStatement() throws SQLException {
+        if (closed) {
+            throw new SQLException("Error accessing PooledPreparedStatement. Statement is closed.");
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 真实连接上的PreparedStatement缓存（LRU）
+ *   随真实连接在多次借出之间保留，借出的语句关闭时放回缓存而不是真正关闭
+ *   同一个key同时只会借出一个语句，缓存中已有相同key的语句时多余的语句直接关闭
+ *
+ * @see PooledDataSource#setPoolPreparedStatementCacheSize(int)
+ */
+class PreparedStatementCache {
+
+    private final int size;
+    private final PoolState state;
+    //按访问顺序排列，最久未使用的在最前
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+    private boolean closed;
+
+    PreparedStatementCache(int size, PoolState state) {
+        this.size = size;
+        this.state = state;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 取出缓存的语句，没有则返回null
+     *   通过 {@link ResultSet#getStatement()} 拿到的是真实语句，可能已被调用者关闭，这样的语句直接丢弃
+     */
+    synchronized PreparedStatement take(Key key) {
+        PreparedStatement statement = statements.remove(key);
+        if (statement != null && isClosed(statement)) {
+            closeQuietly(statement);
+            statement = null;
+        }
+        if (statement != null) {
+            state.statementCacheHitCount.increment();
+        } else {
+            state.statementCacheMissCount.increment();
+        }
+        return statement;
+    }
+
+    /**
+     * 放回语句，超出容量时关闭最久未使用的语句
+     *   调用者没有关闭的结果集在放回前关闭
+     */
+    void release(Key key, PreparedStatement statement) {
+        try {
+            ResultSet resultSet = statement.getResultSet();
+            if (resultSet != null) {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        List<PreparedStatement> evicted = new ArrayList<>(1);
+        synchronized (this) {
+            if (closed || statements.containsKey(key)) {
+                evicted.add(statement);
+            } else {
+                statements.put(key, statement);
+                Iterator<PreparedStatement> iterator = statements.values().iterator();
+                while (statements.size() > size) {
+                    evicted.add(iterator.next());
+                    iterator.remove();
+                    state.statementCacheEvictionCount.increment();
+                }
+            }
+        }
+        for (PreparedStatement stmt : evicted) {
+            closeQuietly(stmt);
+        }
+    }
+
+    /**
+     * 关闭缓存中的所有语句，之后放回的语句也会直接关闭
+     */
+    void close() {
+        List<PreparedStatement> cached;
+        synchronized (this) {
+            closed = true;
+            cached = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+        for (PreparedStatement statement : cached) {
+            closeQuietly(statement);
+        }
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 语句的key，由SQL、结果集类型、结果集并发性和是否返回自动生成的主键组成
+     */
+    static final class Key {
+
+        private final String sql;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final int autoGeneratedKeys;
+        private final int hashCode;
+
+        Key(String sql, int resultSetType, int resultSetConcurrency, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            int hash = sql.hashCode();
+            hash = 31 * hash + resultSetType;
+            hash = 31 * hash + resultSetConcurrency;
+            this.hashCode = 31 * hash + autoGeneratedKeys;
+        }
+
+        /**
+         * 根据prepareStatement的参数创建key，不支持缓存的重载返回null
+         */
+        static Key of(Class<?>[] parameterTypes, Object[] args) {
+            if (args == null || !(args[0] instanceof String)) {
+                return null;
+            }
+            String sql = (String) args[0];
+            if (args.length == 1) {
+                return new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.NO_GENERATED_KEYS);
+            } else if (args.length == 2 && parameterTypes[1] == int.class) {
+                return new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, (Integer) args[1]);
+            } else if (args.length == 3) {
+                return new Key(sql, (Integer) args[1], (Integer) args[2], Statement.NO_GENERATED_KEYS);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && resultSetType == other.resultSetType
+                    && resultSetConcurrency == other.resultSetConcurrency
+                    && autoGeneratedKeys == other.autoGeneratedKeys
+                    && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -20,9 +20,13 @@ import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOL
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
@@ -55,7 +59,10 @@ public abstract class BaseExecutor implements Executor {
     protected Executor wrapper;
 
     protected ConcurrentLinkedQueue<DeferredLoad> deferredLoads;
-    protected PerpetualCache localCache;
+    // the deferred loads by the key of the query they wait for
+    private final Map<CacheKey, List<DeferredLoad>> waitingDeferredLoads = new HashMap<>();
+    // a PerpetualCache before 3.5.5, now the cache type of the configuration
+    protected Cache localCache;
     protected PerpetualCache localOutputParameterCache;
     protected Configuration configuration;
 
@@ -65,7 +72,7 @@ public abstract class BaseExecutor implements Executor {
     protected BaseExecutor(Configuration configuration, Transaction transaction) {
         this.transaction = transaction;
         this.deferredLoads = new ConcurrentLinkedQueue<>();
-        this.localCache = new PerpetualCache("LocalCache");
+        this.localCache = configuration.newLocalCache("LocalCache");
         this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
         this.closed = false;
         this.configuration = configuration;
@@ -96,6 +103,7 @@ public abstract class BaseExecutor implements Executor {
         } finally {
             transaction = null;
             deferredLoads = null;
+            waitingDeferredLoads.clear();
             localCache = null;
             localOutputParameterCache = null;
             closed = true;
@@ -164,6 +172,7 @@ public abstract class BaseExecutor implements Executor {
             }
             // issue #601
             deferredLoads.clear();
+            waitingDeferredLoads.clear();
             if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
                 // issue #482
                 clearLocalCache();
@@ -187,7 +196,8 @@ public abstract class BaseExecutor implements Executor {
         if (deferredLoad.canLoad()) {
             deferredLoad.load();
         } else {
-            deferredLoads.add(new DeferredLoad(resultObject, property, key, localCache, configuration, targetType));
+            deferredLoads.add(deferredLoad);
+            waitingDeferredLoads.computeIfAbsent(key, k -> new ArrayList<>()).add(deferredLoad);
         }
     }
 
@@ -196,12 +206,13 @@ public abstract class BaseExecutor implements Executor {
         if (closed) {
             throw new ExecutorException("Executor was closed.");
         }
-        CacheKey cacheKey = new CacheKey();
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        // statement id, offset, limit, sql, parameters and environment id
+        CacheKey cacheKey = new CacheKey(parameterMappings.size() + 5);
         cacheKey.update(ms.getId());
         cacheKey.update(rowBounds.getOffset());
         cacheKey.update(rowBounds.getLimit());
         cacheKey.update(boundSql.getSql());
-        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
         TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
         // mimic DefaultParameterHandler logic
         for (ParameterMapping parameterMapping : parameterMappings) {
@@ -327,6 +338,13 @@ public abstract class BaseExecutor implements Executor {
             localCache.removeObject(key);
         }
         localCache.putObject(key, list);
+        // a bounded local cache may evict the list before the loads deferred on it run
+        List<DeferredLoad> waiting = waitingDeferredLoads.remove(key);
+        if (waiting != null) {
+            for (DeferredLoad deferredLoad : waiting) {
+                deferredLoad.resolve(list);
+            }
+        }
         if (ms.getStatementType() == StatementType.CALLABLE) {
             localOutputParameterCache.putObject(key, parameter);
         }
@@ -342,6 +360,17 @@ public abstract class BaseExecutor implements Executor {
         }
     }
 
+    /**
+     * Returns the local (first level) cache of this executor, e.g. to read the eviction count of a bounded one.
+     *
+     * @return the local cache
+     * @since 3.5.5
+     * @see Configuration#setLocalCacheType(Class)
+     */
+    public Cache getLocalCache() {
+        return localCache;
+    }
+
     @Override
     public void setExecutorWrapper(Executor wrapper) {
         this.wrapper = wrapper;
@@ -353,15 +382,16 @@ public abstract class BaseExecutor implements Executor {
         private final String property;
         private final Class<?> targetType;
         private final CacheKey key;
-        private final PerpetualCache localCache;
+        private final Cache localCache;
         private final ObjectFactory objectFactory;
         private final ResultExtractor resultExtractor;
+        private List<Object> list;
 
         // issue #781
         public DeferredLoad(MetaObject resultObject,
                             String property,
                             CacheKey key,
-                            PerpetualCache localCache,
+                            Cache localCache,
                             Configuration configuration,
                             Class<?> targetType) {
             this.resultObject = resultObject;
@@ -373,14 +403,32 @@ public abstract class BaseExecutor implements Executor {
             this.targetType = targetType;
         }
 
+        /**
+         * @deprecated since 3.5.5, the local cache may be any {@link Cache}
+         */
+        @Deprecated
+        public DeferredLoad(MetaObject resultObject,
+                            String property,
+                            CacheKey key,
+                            PerpetualCache localCache,
+                            Configuration configuration,
+                            Class<?> targetType) {
+            this(resultObject, property, key, (Cache) localCache, configuration, targetType);
+        }
+
         public boolean canLoad() {
             return localCache.getObject(key) != null && localCache.getObject(key) != EXECUTION_PLACEHOLDER;
         }
 
+        @SuppressWarnings("unchecked")
+        public void resolve(List<?> list) {
+            this.list = (List<Object>) list;
+        }
+
         public void load() {
             @SuppressWarnings("unchecked")
             // we suppose we get back a List
-                    List<Object> list = (List<Object>) localCache.getObject(key);
+                    List<Object> list = this.list != null ? this.list : (List<Object>) localCache.getObject(key);
             Object value = resultExtractor.extractObjectFromList(list, targetType);
             resultObject.setValue(property, value);
         }
@@ -17,17 +17,24 @@ package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.CoalescingCache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -72,13 +79,13 @@ public class CachingExecutor implements Executor {
 
     @Override
     public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-        flushCacheIfRequired(ms);
+        flushCacheIfRequired(ms, parameterObject);
         return delegate.update(ms, parameterObject);
     }
 
     @Override
     public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
-        flushCacheIfRequired(ms);
+        flushCacheIfRequired(ms, parameter);
         return delegate.queryCursor(ms, parameter, rowBounds);
     }
 
@@ -94,14 +101,30 @@ public class CachingExecutor implements Executor {
             throws SQLException {
         Cache cache = ms.getCache();
         if (cache != null) {
-            flushCacheIfRequired(ms);
+            flushCacheIfRequired(ms, parameterObject);
             if (ms.isUseCache() && resultHandler == null) {
                 ensureNoOutParams(ms, boundSql);
+                Set<String> tags = ms.getCacheTags(parameterObject);
                 @SuppressWarnings("unchecked")
-                List<E> list = (List<E>) tcm.getObject(cache, key);
+                List<E> list = (List<E>) tcm.getObject(cache, key, tags);
                 if (list == null) {
-                    list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-                    tcm.putObject(cache, key, list); // issue #578 and #116
+                    long start = System.nanoTime();
+                    try {
+                        list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+                    } catch (Throwable t) {
+                        // do not keep blocked callers waiting until the session ends
+                        tcm.loadFailed(cache, key, t);
+                        throw t;
+                    }
+                    CacheStatistics statistics = cache.getStatistics();
+                    if (statistics != null) {
+                        statistics.recordLoad(System.nanoTime() - start);
+                    }
+                    tcm.putObject(cache, key, list, tags); // issue #578 and #116
+                    RefreshAheadCache refreshAheadCache = getRefreshAheadCache(cache);
+                    if (refreshAheadCache != null) {
+                        refreshAheadCache.setLoader(key, () -> reload(ms, parameterObject, rowBounds, key));
+                    }
                 }
                 return list;
             }
@@ -131,6 +154,36 @@ public class CachingExecutor implements Executor {
         }
     }
 
+    /**
+     * Runs the statement again on its own connection, for a refresh-ahead cache.
+     */
+    private static RefreshAheadCache getRefreshAheadCache(Cache cache) {
+        // the coalescing and blocking decorators stay on top, see CacheBuilder
+        if (cache instanceof CoalescingCache) {
+            cache = ((CoalescingCache) cache).getDelegate();
+        } else if (cache instanceof BlockingCache) {
+            cache = ((BlockingCache) cache).getDelegate();
+        }
+        return cache instanceof RefreshAheadCache ? (RefreshAheadCache) cache : null;
+    }
+
+    private static List<Object> reload(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        Environment environment = configuration.getEnvironment();
+        Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true);
+        Executor executor = configuration.newUncachedExecutor(tx);
+        try {
+            BoundSql boundSql = ms.getBoundSql(parameterObject);
+            if (!key.equals(executor.createCacheKey(ms, parameterObject, rowBounds, boundSql))) {
+                // the parameter object has changed since, it would load a different value
+                return null;
+            }
+            return executor.query(ms, parameterObject, rowBounds, NO_RESULT_HANDLER, key, boundSql);
+        } finally {
+            executor.close(false);
+        }
+    }
+
     private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
         if (ms.getStatementType() == StatementType.CALLABLE) {
             for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
@@ -161,10 +214,17 @@ public class CachingExecutor implements Executor {
         delegate.clearLocalCache();
     }
 
-    private void flushCacheIfRequired(MappedStatement ms) {
+    private void flushCacheIfRequired(MappedStatement ms, Object parameterObject) {
         Cache cache = ms.getCache();
         if (cache != null && ms.isFlushCacheRequired()) {
-            tcm.clear(cache);
+            Set<String> tags = ms.getFlushTags(parameterObject);
+            List<Cache> dependentCaches = ms.getConfiguration().getDependentCaches(cache);
+            if (tags == null) {
+                tcm.clear(cache, dependentCaches);
+            } else {
+                // only the entries depending on what the statement changes
+                tcm.invalidate(cache, tags, dependentCaches);
+            }
         }
     }
 
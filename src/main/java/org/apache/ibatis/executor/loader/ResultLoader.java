@@ -75,7 +75,7 @@ public class ResultLoader {
     private <E> List<E> selectList() throws SQLException {
         Executor localExecutor = executor;
         if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
-            localExecutor = newExecutor();
+            localExecutor = newExecutor(configuration);
         }
         try {
             return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
@@ -86,7 +86,7 @@ public class ResultLoader {
         }
     }
 
-    private Executor newExecutor() {
+    static Executor newExecutor(Configuration configuration) {
         final Environment environment = configuration.getEnvironment();
         if (environment == null) {
             throw new ExecutorException("ResultLoader could not load lazily.  Environment was not configured.");
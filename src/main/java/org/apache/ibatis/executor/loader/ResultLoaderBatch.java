@@ -0,0 +1,244 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * Loads the nested select of a result mapping for many parents with one batch statement.
+ * <p>
+ * The loaders of the parents are collected while their rows are mapped. Loading one of them runs the batch statement
+ * of the mapping with the list of the keys of up to {@link ResultMapping#getBatchSize()} pending loaders, and hands
+ * each loader the rows whose {@link ResultMapping#getBatchKey()} property matches its key. So a lazy property loads
+ * the properties of the next parents too, and eager loads are done by batch once the mapping is over. Like for a
+ * single nested select, the results already in the local cache are not selected again.
+ *
+ * @since 3.5.5
+ */
+public class ResultLoaderBatch {
+
+    private final Configuration configuration;
+    private final Executor executor;
+    private final MappedStatement batchStatement;
+    private final String batchKey;
+    private final int batchSize;
+    private final long creatorThreadId;
+    // in the order of the parents
+    private final Set<Loader> pendingLoaders = new LinkedHashSet<>();
+    private int pendingLoads;
+
+    public ResultLoaderBatch(Configuration configuration, Executor executor, ResultMapping resultMapping) {
+        this.configuration = configuration;
+        this.executor = executor;
+        this.batchStatement = configuration.getMappedStatement(resultMapping.getBatchQueryId());
+        this.batchKey = resultMapping.getBatchKey();
+        this.batchSize = resultMapping.getBatchSize();
+        this.creatorThreadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * Adds the loader of a lazy property. The loader can be registered to a {@link ResultLoaderMap} like any other.
+     *
+     * @return the loader
+     */
+    public ResultLoader addLoader(MappedStatement nestedQuery, Object parameterObject, Class<?> targetType, CacheKey cacheKey, BoundSql boundSql) {
+        Loader loader = new Loader(this, nestedQuery, parameterObject, targetType, cacheKey, boundSql, null, null);
+        synchronized (this) {
+            pendingLoaders.add(loader);
+        }
+        return loader;
+    }
+
+    /**
+     * Adds an eager load, the value is set to the property once the batch of the load is loaded. A full batch gets
+     * loaded right away.
+     *
+     * @throws SQLException
+     *           if loading a full batch fails
+     */
+    public void addLoad(MetaObject resultObject, String property, MappedStatement nestedQuery, Object parameterObject, Class<?> targetType, CacheKey cacheKey,
+                        BoundSql boundSql) throws SQLException {
+        Loader loader = new Loader(this, nestedQuery, parameterObject, targetType, cacheKey, boundSql, resultObject, property);
+        synchronized (this) {
+            pendingLoaders.add(loader);
+            if (++pendingLoads >= batchSize) {
+                loadAll();
+            }
+        }
+    }
+
+    /**
+     * Loads all pending loaders, a batch statement per batch size.
+     *
+     * @throws SQLException
+     *           if a batch statement fails
+     */
+    public synchronized void loadAll() throws SQLException {
+        while (!pendingLoaders.isEmpty()) {
+            load(null);
+        }
+    }
+
+    private synchronized void load(Loader trigger) throws SQLException {
+        if (trigger != null && trigger.batch == null) {
+            // loaded meanwhile by another thread
+            return;
+        }
+        final List<Loader> batch = new ArrayList<>(batchSize);
+        if (trigger != null) {
+            pendingLoaders.remove(trigger);
+            batch.add(trigger);
+        }
+        for (Iterator<Loader> iterator = pendingLoaders.iterator(); iterator.hasNext() && batch.size() < batchSize; ) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        // the local cache belongs to the executor of the thread that created the batch
+        final boolean localCacheUsable = Thread.currentThread().getId() == creatorThreadId && !executor.isClosed();
+        final List<Loader> selected = new ArrayList<>(batch.size());
+        final Map<Object, Object> keys = new LinkedHashMap<>();
+        for (Loader loader : batch) {
+            if (loader.target != null) {
+                pendingLoads--;
+            }
+            if (localCacheUsable && executor.isCached(loader.mappedStatement, loader.cacheKey)) {
+                loadFromLocalCache(loader);
+            } else {
+                selected.add(loader);
+                keys.putIfAbsent(normalizeKey(loader.parameterObject), loader.parameterObject);
+            }
+        }
+        if (selected.isEmpty()) {
+            return;
+        }
+        final Map<Object, List<Object>> rowsByKey = new HashMap<>();
+        for (Object row : selectList(new ArrayList<>(keys.values()))) {
+            final Object key = row == null ? null : configuration.newMetaObject(row).getValue(batchKey);
+            rowsByKey.computeIfAbsent(normalizeKey(key), k -> new ArrayList<>()).add(row);
+        }
+        for (Loader loader : selected) {
+            final List<Object> rows = rowsByKey.getOrDefault(normalizeKey(loader.parameterObject), Collections.emptyList());
+            loader.resultObject = loader.resultExtractor.extractObjectFromList(new ArrayList<>(rows), loader.targetType);
+            if (loader.target != null) {
+                loader.target.setValue(loader.property, loader.resultObject);
+            }
+            loader.loaded();
+        }
+    }
+
+    private void loadFromLocalCache(Loader loader) throws SQLException {
+        if (loader.target != null) {
+            // like a single nested select, as the cached result may still be loading
+            executor.deferLoad(loader.mappedStatement, loader.target, loader.property, loader.cacheKey, loader.targetType);
+        } else {
+            loader.loadNestedQuery();
+        }
+        loader.loaded();
+    }
+
+    private List<Object> selectList(List<Object> keys) throws SQLException {
+        Executor localExecutor = executor;
+        if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
+            localExecutor = ResultLoader.newExecutor(configuration);
+        }
+        try {
+            return localExecutor.query(batchStatement, ParamNameResolver.wrapToMapIfCollection(keys, null), RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        } finally {
+            if (localExecutor != executor) {
+                localExecutor.close(false);
+            }
+        }
+    }
+
+    /**
+     * Makes keys of the same number equal whatever their type, as the type handler of the parent column and the type
+     * of the key property often differ.
+     */
+    private static Object normalizeKey(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        if (key instanceof BigInteger) {
+            key = new BigDecimal((BigInteger) key);
+        }
+        if (key instanceof BigDecimal) {
+            final BigDecimal number = ((BigDecimal) key).stripTrailingZeros();
+            try {
+                return number.longValueExact();
+            } catch (ArithmeticException e) {
+                return number;
+            }
+        }
+        return key;
+    }
+
+    private static class Loader extends ResultLoader {
+
+        // null once loaded, so that a loaded object does not keep the batch and the loaders still pending
+        private volatile ResultLoaderBatch batch;
+        // the property an eager load sets, null for a lazy loader
+        private final MetaObject target;
+        private final String property;
+
+        Loader(ResultLoaderBatch batch, MappedStatement nestedQuery, Object parameterObject, Class<?> targetType, CacheKey cacheKey, BoundSql boundSql,
+               MetaObject target, String property) {
+            super(batch.configuration, batch.executor, nestedQuery, parameterObject, targetType, cacheKey, boundSql);
+            this.batch = batch;
+            this.target = target;
+            this.property = property;
+        }
+
+        @Override
+        public Object loadResult() throws SQLException {
+            final ResultLoaderBatch batch = this.batch;
+            if (batch != null) {
+                batch.load(this);
+            }
+            return resultObject;
+        }
+
+        void loadNestedQuery() throws SQLException {
+            super.loadResult();
+        }
+
+        void loaded() {
+            loaded = true;
+            batch = null;
+        }
+    }
+
+}
@@ -16,17 +16,29 @@
 package org.apache.ibatis.executor.resultset;
 
 import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.CallableStatement;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.ibatis.annotations.AutomapConstructor;
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
@@ -37,6 +49,7 @@ import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.loader.ResultLoader;
+import org.apache.ibatis.executor.loader.ResultLoaderBatch;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
@@ -84,16 +97,35 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     private final ReflectorFactory reflectorFactory;
 
     // nested resultmaps
-    private final Map<CacheKey, Object> nestedResultObjects = new HashMap<>();
+    private final Map<RowKey, Object> nestedResultObjects = new HashMap<>();
     private final Map<String, Object> ancestorObjects = new HashMap<>();
     private Object previousRowValue;
+    // row key of previousRowValue when streaming ordered results
+    private RowKey previousRowKey;
+    // id columns of the result maps by column prefix, resolved for the result set being handled
+    private final Map<ResultMap, Map<String, RowKey.Columns>> rowKeyColumns = new HashMap<>();
+    private ResultSetWrapper rowKeyColumnsResultSet;
 
     // multiple resultsets
     private final Map<String, ResultMapping> nextResultMaps = new HashMap<>();
     private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
+    // result sets ordered by key, the children result sets kept open by name while the parents are read
+    private Map<String, MergedResultSet> mergedResultSets;
 
-    // Cached Automappings
-    private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
+    // row mapping plans of the result maps by column prefix, resolved for the result set being handled and indexed by
+    // whether automatic mappings apply, as a result map may be mapped both as nested and not
+    private final Map<ResultMap, Map<String, RowMappingPlan[]>> rowMappingPlans = new HashMap<>();
+    private ResultSetWrapper rowMappingPlansResultSet;
+    // row mapping plans whose unknown columns got reported for this statement
+    private final Set<RowMappingPlan> reportedPlans;
+
+    // parallel mapping, rows are read ahead and mapped in chunks on the common pool
+    private static final int PARALLEL_MAPPING_CHUNK_SIZE = 256;
+    // cursors fetch one row at a time, they must not read ahead
+    private boolean readAheadAllowed = true;
+
+    // nested selects loaded by batch, by result mapping
+    private final Map<ResultMapping, ResultLoaderBatch> nestedSelectBatches = new IdentityHashMap<>();
 
     // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
     private boolean useConstructorMappings;
@@ -103,17 +135,31 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         public ResultMapping propertyMapping;
     }
 
-    private static class UnMappedColumnAutoMapping {
-        private final String column;
-        private final String property;
-        private final TypeHandler<?> typeHandler;
-        private final boolean primitive;
+    private static class MergedResultSet {
+        private final ResultSetWrapper rsw;
+        private ResultMapping parentMapping;
+        private boolean started;
+        private boolean hasRow;
+        // the children of the last parent, for the next parents with the same key
+        private Object[] lastParentKey;
+        private List<Object> lastChildren;
+        // the key of the last child row read, the keys must not decrease
+        private Object[] lastChildKey;
+
+        MergedResultSet(ResultSetWrapper rsw) {
+            this.rsw = rsw;
+        }
+
+        boolean hasRow() throws SQLException {
+            if (!started) {
+                next();
+            }
+            return hasRow;
+        }
 
-        public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
-            this.column = column;
-            this.property = property;
-            this.typeHandler = typeHandler;
-            this.primitive = primitive;
+        void next() throws SQLException {
+            started = true;
+            hasRow = rsw.getResultSet().next();
         }
     }
 
@@ -129,6 +175,24 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         this.objectFactory = configuration.getObjectFactory();
         this.reflectorFactory = configuration.getReflectorFactory();
         this.resultHandler = resultHandler;
+        this.reportedPlans = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Creates a handler mapping rows for another one on a worker thread, it shares the reported unknown columns.
+     */
+    private DefaultResultSetHandler(DefaultResultSetHandler handler) {
+        this.executor = handler.executor;
+        this.configuration = handler.configuration;
+        this.mappedStatement = handler.mappedStatement;
+        this.rowBounds = handler.rowBounds;
+        this.parameterHandler = handler.parameterHandler;
+        this.boundSql = handler.boundSql;
+        this.typeHandlerRegistry = handler.typeHandlerRegistry;
+        this.objectFactory = handler.objectFactory;
+        this.reflectorFactory = handler.reflectorFactory;
+        this.resultHandler = handler.resultHandler;
+        this.reportedPlans = handler.reportedPlans;
     }
 
     //
@@ -189,6 +253,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         List<ResultMap> resultMaps = mappedStatement.getResultMaps();
         int resultMapCount = resultMaps.size();
         validateResultMapsCount(rsw, resultMapCount);
+        if (rsw != null && shouldMergeResultSets(stmt, resultMaps)) {
+            handleMergedResultSets(stmt, rsw, resultMaps.get(0), multipleResults);
+            rsw = null;
+        }
         while (rsw != null && resultMapCount > resultSetCount) {
             ResultMap resultMap = resultMaps.get(resultSetCount);
             handleResultSet(rsw, resultMap, multipleResults, null);
@@ -212,6 +280,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             }
         }
 
+        for (ResultLoaderBatch batch : nestedSelectBatches.values()) {
+            batch.loadAll();
+        }
         return collapseSingleResultList(multipleResults);
     }
 
@@ -230,6 +301,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
 
         ResultMap resultMap = resultMaps.get(0);
+        readAheadAllowed = false;
         return new DefaultCursor<>(this, resultMap, rsw, rowBounds);
     }
 
@@ -349,10 +421,166 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
         ResultSet resultSet = rsw.getResultSet();
         skipRows(resultSet, rowBounds);
+        boolean mapInParallel = shouldMapInParallel(rsw, resultMap, parentMapping);
         while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
             ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
             Object rowValue = getRowValue(rsw, discriminatedResultMap, null);
             storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
+            // the first rows are mapped here until the type handlers reading the result set are resolved
+            if (mapInParallel && isRowMappingResolved(rsw, resultMap)) {
+                if (canMapBufferedRows(rsw, resultMap)) {
+                    handleRowValuesInParallel(rsw, resultMap, resultHandler, resultContext, rowBounds);
+                    return;
+                }
+                mapInParallel = false;
+            }
+        }
+    }
+
+    //
+    // HANDLE ROWS IN PARALLEL
+    //
+
+    private boolean shouldMapInParallel(ResultSetWrapper rsw, ResultMap resultMap, ResultMapping parentMapping) {
+        if (!mappedStatement.isParallelMapping() || !readAheadAllowed || parentMapping != null) {
+            return false;
+        }
+        // the rows of child result sets are linked to the pending relations of their parents, and nested selects would
+        // share the executor between threads
+        if (mappedStatement.getResultSets() != null || resultMap.getDiscriminator() != null || resultMap.hasNestedQueries()) {
+            return false;
+        }
+        if (configuration.getParallelMappingExecutor() == null && ForkJoinPool.getCommonPoolParallelism() <= 1) {
+            return false;
+        }
+        // the buffered rows only reproduce the driver getters for standard column types and built-in type handlers
+        if (!RowBuffer.supportsColumns(rsw.getClassNames())) {
+            return false;
+        }
+        for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+            if (!RowBuffer.supportsTypeHandler(resultMapping.getTypeHandler())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRowMappingResolved(ResultSetWrapper rsw, ResultMap resultMap) {
+        return hasTypeHandlerForResultObject(rsw, resultMap.getType()) || getResolvedRowMappingPlan(rsw, resultMap) != null;
+    }
+
+    private RowMappingPlan getResolvedRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap) {
+        final Map<String, RowMappingPlan[]> plans = rowMappingPlansResultSet == rsw ? rowMappingPlans.get(resultMap) : null;
+        final RowMappingPlan[] prefixPlans = plans == null ? null : plans.get(null);
+        return prefixPlans == null ? null : prefixPlans[shouldApplyAutomaticMappings(resultMap, false) ? 1 : 0];
+    }
+
+    /**
+     * Checks the type handlers resolved for the result set, including the ones of the automatic mappings, against the
+     * classes of the columns they read.
+     */
+    private boolean canMapBufferedRows(ResultSetWrapper rsw, ResultMap resultMap) {
+        final Class<?> resultType = resultMap.getType();
+        if (hasTypeHandlerForResultObject(rsw, resultType)) {
+            final List<ResultMapping> resultMappings = resultMap.getResultMappings();
+            final String column = resultMappings.isEmpty() ? rsw.getColumnNames().get(0) : resultMappings.get(0).getColumn();
+            return RowBuffer.supportsColumn(rsw.getTypeHandler(resultType, column), rsw.getClassName(column));
+        }
+        final List<ResultMapping> constructorMappings = resultMap.getConstructorResultMappings();
+        if (constructorMappings.isEmpty() && !resultType.isInterface() && !MetaClass.forClass(resultType, reflectorFactory).hasDefaultConstructor()) {
+            // the constructor arguments are mapped automatically
+            return false;
+        }
+        for (ResultMapping constructorMapping : constructorMappings) {
+            if (!RowBuffer.supportsColumn(constructorMapping.getTypeHandler(), rsw.getClassName(constructorMapping.getColumn()))) {
+                return false;
+            }
+        }
+        for (RowMappingPlan.Step step : getResolvedRowMappingPlan(rsw, resultMap).steps) {
+            if (!RowBuffer.supportsColumn(step.typeHandler, rsw.getClassName(step.column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void handleRowValuesInParallel(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext,
+                                           RowBounds rowBounds) throws SQLException {
+        final ResultSet resultSet = rsw.getResultSet();
+        final ResultSetMetaData metaData = resultSet.getMetaData();
+        final Map<String, Integer> columnIndexes = RowBuffer.columnIndexes(metaData);
+        final int columnCount = rsw.getColumnNames().size();
+        final ExecutorService executor = configuration.getParallelMappingExecutor() != null
+                ? configuration.getParallelMappingExecutor() : ForkJoinPool.commonPool();
+        // bounds the rows read ahead
+        final int maxChunks = Math.max(2, (executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors()) * 2);
+        final Deque<CompletableFuture<Object[]>> chunks = new ArrayDeque<>();
+        try {
+            int rowsLeft = rowBounds.getLimit() - resultContext.getResultCount();
+            List<Object[]> rows = new ArrayList<>(PARALLEL_MAPPING_CHUNK_SIZE);
+            while (rowsLeft > 0 && shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
+                rows.add(RowBuffer.read(resultSet, columnCount));
+                rowsLeft--;
+                if (rows.size() == PARALLEL_MAPPING_CHUNK_SIZE) {
+                    chunks.add(mapRowsAsync(rsw, resultMap, RowBuffer.newResultSet(metaData, columnIndexes, rows), executor));
+                    rows = new ArrayList<>(PARALLEL_MAPPING_CHUNK_SIZE);
+                    if (chunks.size() >= maxChunks) {
+                        storeRowValues(chunks.poll(), resultHandler, resultContext, rowBounds, resultSet);
+                    }
+                }
+            }
+            if (!rows.isEmpty()) {
+                chunks.add(mapRowsAsync(rsw, resultMap, RowBuffer.newResultSet(metaData, columnIndexes, rows), executor));
+            }
+            while (!chunks.isEmpty()) {
+                storeRowValues(chunks.poll(), resultHandler, resultContext, rowBounds, resultSet);
+            }
+        } finally {
+            // the rows of a failed or stopped handling are not needed anymore
+            for (CompletableFuture<Object[]> chunk : chunks) {
+                chunk.cancel(false);
+            }
+        }
+    }
+
+    private CompletableFuture<Object[]> mapRowsAsync(ResultSetWrapper rsw, ResultMap resultMap, ResultSet rows, ExecutorService executor) {
+        final ResultSetWrapper rowsWrapper = new ResultSetWrapper(rsw, rows);
+        final DefaultResultSetHandler worker = new DefaultResultSetHandler(this);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final List<Object> rowValues = new ArrayList<>(PARALLEL_MAPPING_CHUNK_SIZE);
+                while (rows.next()) {
+                    rowValues.add(worker.getRowValue(rowsWrapper, resultMap, null));
+                }
+                return rowValues.toArray();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private void storeRowValues(CompletableFuture<Object[]> chunk, ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, RowBounds rowBounds, ResultSet rs)
+            throws SQLException {
+        final Object[] rowValues;
+        try {
+            rowValues = chunk.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ExecutorException("Error mapping rows in parallel.  Cause: " + cause, cause);
+        }
+        for (Object rowValue : rowValues) {
+            if (!shouldProcessMoreRows(resultContext, rowBounds)) {
+                break;
+            }
+            storeObject(resultHandler, resultContext, rowValue, null, rs);
         }
     }
 
@@ -396,12 +624,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         final ResultLoaderMap lazyLoader = new ResultLoaderMap();
         Object rowValue = createResultObject(rsw, resultMap, lazyLoader, columnPrefix);
         if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
-            final MetaObject metaObject = configuration.newMetaObject(rowValue);
             boolean foundValues = this.useConstructorMappings;
-            if (shouldApplyAutomaticMappings(resultMap, false)) {
-                foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
-            }
-            foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
+            foundValues = applyRowMappingPlan(rsw, resultMap, rowValue, null, lazyLoader, columnPrefix, false) || foundValues;
             foundValues = lazyLoader.size() > 0 || foundValues;
             rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
         }
@@ -412,7 +636,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     // GET VALUE FROM ROW FOR NESTED RESULT MAP
     //
 
-    private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, CacheKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
+    private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, RowKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
         final String resultMapId = resultMap.getId();
         Object rowValue = partialObject;
         if (rowValue != null) {
@@ -426,17 +650,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
                 final MetaObject metaObject = configuration.newMetaObject(rowValue);
                 boolean foundValues = this.useConstructorMappings;
-                if (shouldApplyAutomaticMappings(resultMap, true)) {
-                    foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
-                }
-                foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
+                foundValues = applyRowMappingPlan(rsw, resultMap, rowValue, metaObject, lazyLoader, columnPrefix, true) || foundValues;
                 putAncestor(rowValue, resultMapId);
                 foundValues = applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, combinedKey, true) || foundValues;
                 ancestorObjects.remove(resultMapId);
                 foundValues = lazyLoader.size() > 0 || foundValues;
                 rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
             }
-            if (combinedKey != CacheKey.NULL_CACHE_KEY) {
+            if (combinedKey != RowKey.NULL) {
                 nestedResultObjects.put(combinedKey, rowValue);
             }
         }
@@ -463,12 +684,85 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     // PROPERTY MAPPINGS
     //
 
-    private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, ResultLoaderMap lazyLoader, String columnPrefix)
+    private boolean applyRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, MetaObject metaObject, ResultLoaderMap lazyLoader,
+                                        String columnPrefix, boolean isNested) throws SQLException {
+        final RowMappingPlan plan = getRowMappingPlan(rsw, resultMap, rowValue, metaObject, columnPrefix, isNested);
+        if (metaObject == null && plan.needsMetaObject(rowValue)) {
+            metaObject = configuration.newMetaObject(rowValue);
+        }
+        final boolean invokeSetters = plan.canInvokeSetters(rowValue);
+        final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+        final ResultSet rs = rsw.getResultSet();
+        final RowMappingPlan.Step[] steps = plan.steps;
+        boolean foundValues = false;
+        for (int i = 0; i < steps.length; i++) {
+            final RowMappingPlan.Step step = steps[i];
+            final Object value;
+            if (step.mapping != null) {
+                value = getPropertyMappingValue(rs, metaObject, step.mapping, lazyLoader, columnPrefix);
+                // issue #541 make property optional
+                if (step.property == null) {
+                    continue;
+                } else if (value == DEFERRED) {
+                    foundValues = true;
+                    continue;
+                }
+            } else {
+                value = step.getValue(rs);
+            }
+            if (value != null) {
+                foundValues = true;
+            }
+            if (value != null || (callSettersOnNulls && !step.primitive)) {
+                // gcode issue #377, call setter on nulls (value is not 'found')
+                if (invokeSetters && step.setter != null) {
+                    step.setValue(rowValue, value);
+                } else {
+                    metaObject.setValue(step.property, value);
+                }
+            }
+        }
+        return foundValues;
+    }
+
+    private RowMappingPlan getRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, MetaObject metaObject, String columnPrefix, boolean isNested)
+            throws SQLException {
+        final boolean autoMapping = shouldApplyAutomaticMappings(resultMap, isNested);
+        if (rowMappingPlansResultSet != rsw) {
+            rowMappingPlans.clear();
+            rowMappingPlansResultSet = rsw;
+        }
+        final RowMappingPlan[] plans = rowMappingPlans.computeIfAbsent(resultMap, k -> new HashMap<>())
+                .computeIfAbsent(columnPrefix, k -> new RowMappingPlan[2]);
+        RowMappingPlan plan = plans[autoMapping ? 1 : 0];
+        if (plan != null) {
+            return plan;
+        }
+        final RowMappingPlan.Key key = new RowMappingPlan.Key(resultMap.getId(), columnPrefix, autoMapping, rsw.getColumnLayout());
+        plan = configuration.getRowMappingPlan(key);
+        if (plan == null) {
+            plan = compileRowMappingPlan(rsw, resultMap, rowValue, metaObject != null ? metaObject : configuration.newMetaObject(rowValue), columnPrefix, autoMapping);
+            configuration.addRowMappingPlan(key, plan);
+        }
+        plans[autoMapping ? 1 : 0] = plan;
+        // the plan is shared, but the unknown columns are reported for each statement
+        if (plan.unknownColumns.length > 0 && reportedPlans.add(plan)) {
+            for (RowMappingPlan.UnknownColumn unknownColumn : plan.unknownColumns) {
+                configuration.getAutoMappingUnknownColumnBehavior()
+                        .doAction(mappedStatement, unknownColumn.column, unknownColumn.property, unknownColumn.propertyType);
+            }
+        }
+        return plan;
+    }
+
+    private RowMappingPlan compileRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, MetaObject metaObject, String columnPrefix, boolean autoMapping)
             throws SQLException {
+        final RowMappingPlan.Builder plan = new RowMappingPlan.Builder(rowValue, reflectorFactory, configuration.getObjectWrapperFactory());
+        if (autoMapping) {
+            addAutomaticMappings(plan, rsw, resultMap, metaObject, columnPrefix);
+        }
         final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
-        boolean foundValues = false;
-        final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
-        for (ResultMapping propertyMapping : propertyMappings) {
+        for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
             String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
             if (propertyMapping.getNestedResultMapId() != null) {
                 // the user added a column attribute to a nested result map, ignore it
@@ -477,25 +771,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             if (propertyMapping.isCompositeResult()
                     || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
                     || propertyMapping.getResultSet() != null) {
-                Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
-                // issue #541 make property optional
                 final String property = propertyMapping.getProperty();
-                if (property == null) {
-                    continue;
-                } else if (value == DEFERRED) {
-                    foundValues = true;
-                    continue;
-                }
-                if (value != null) {
-                    foundValues = true;
-                }
-                if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
-                    // gcode issue #377, call setter on nulls (value is not 'found')
-                    metaObject.setValue(property, value);
+                final boolean primitive = property != null && metaObject.hasSetter(property) && metaObject.getSetterType(property).isPrimitive();
+                if (propertyMapping.getNestedQueryId() != null || propertyMapping.getResultSet() != null) {
+                    plan.addMapping(propertyMapping, primitive);
+                } else if (property != null) {
+                    plan.addColumn(column, rsw.getColumnIndex(column), propertyMapping.getTypeHandler(), property, primitive);
                 }
             }
         }
-        return foundValues;
+        return plan.build();
     }
 
     private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
@@ -503,7 +788,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (propertyMapping.getNestedQueryId() != null) {
             return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
         } else if (propertyMapping.getResultSet() != null) {
-            addPendingChildRelation(rs, metaResultObject, propertyMapping);   // TODO is that OK?
+            if (mergedResultSets != null) {
+                mergeChildren(rs, metaResultObject, propertyMapping);
+            } else {
+                addPendingChildRelation(rs, metaResultObject, propertyMapping);   // TODO is that OK?
+            }
             return DEFERRED;
         } else {
             final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
@@ -512,62 +801,35 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
     }
 
-    private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-        final String mapKey = resultMap.getId() + ":" + columnPrefix;
-        List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
-        if (autoMapping == null) {
-            autoMapping = new ArrayList<>();
-            final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
-            for (String columnName : unmappedColumnNames) {
-                String propertyName = columnName;
-                if (columnPrefix != null && !columnPrefix.isEmpty()) {
-                    // When columnPrefix is specified,
-                    // ignore columns without the prefix.
-                    if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
-                        propertyName = columnName.substring(columnPrefix.length());
-                    } else {
-                        continue;
-                    }
-                }
-                final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
-                if (property != null && metaObject.hasSetter(property)) {
-                    if (resultMap.getMappedProperties().contains(property)) {
-                        continue;
-                    }
-                    final Class<?> propertyType = metaObject.getSetterType(property);
-                    if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
-                        final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
-                    } else {
-                        configuration.getAutoMappingUnknownColumnBehavior()
-                                .doAction(mappedStatement, columnName, property, propertyType);
-                    }
+    private void addAutomaticMappings(RowMappingPlan.Builder plan, ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+        final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
+        for (String columnName : unmappedColumnNames) {
+            String propertyName = columnName;
+            if (columnPrefix != null && !columnPrefix.isEmpty()) {
+                // When columnPrefix is specified,
+                // ignore columns without the prefix.
+                if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+                    propertyName = columnName.substring(columnPrefix.length());
                 } else {
-                    configuration.getAutoMappingUnknownColumnBehavior()
-                            .doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
+                    continue;
                 }
             }
-            autoMappingsCache.put(mapKey, autoMapping);
-        }
-        return autoMapping;
-    }
-
-    private boolean applyAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-        List<UnMappedColumnAutoMapping> autoMapping = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
-        boolean foundValues = false;
-        if (!autoMapping.isEmpty()) {
-            for (UnMappedColumnAutoMapping mapping : autoMapping) {
-                final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
-                if (value != null) {
-                    foundValues = true;
+            final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
+            if (property != null && metaObject.hasSetter(property)) {
+                if (resultMap.getMappedProperties().contains(property)) {
+                    continue;
                 }
-                if (value != null || (configuration.isCallSettersOnNulls() && !mapping.primitive)) {
-                    // gcode issue #377, call setter on nulls (value is not 'found')
-                    metaObject.setValue(mapping.property, value);
+                final Class<?> propertyType = metaObject.getSetterType(property);
+                if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+                    final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+                    plan.addColumn(columnName, rsw.getColumnIndex(columnName), typeHandler, property, propertyType.isPrimitive());
+                } else {
+                    plan.addUnknownColumn(columnName, property, propertyType);
                 }
+            } else {
+                plan.addUnknownColumn(columnName, (property != null) ? property : propertyName, null);
             }
         }
-        return foundValues;
     }
 
     // MULTIPLE RESULT SETS
@@ -619,6 +881,193 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return cacheKey;
     }
 
+    // MULTIPLE RESULT SETS ORDERED BY KEY
+
+    private boolean shouldMergeResultSets(Statement stmt, List<ResultMap> resultMaps) {
+        if (!mappedStatement.isResultSetsOrdered() || mappedStatement.getResultSets() == null || resultMaps.size() != 1
+                || !canMergeResultSets(resultMaps.get(0), new HashSet<>())) {
+            return false;
+        }
+        // Making this method tolerant of bad JDBC drivers
+        try {
+            final DatabaseMetaData metaData = stmt.getConnection().getMetaData();
+            return metaData.supportsMultipleResultSets() && metaData.supportsMultipleOpenResults();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean canMergeResultSets(ResultMap resultMap, Set<String> checkedResultMaps) {
+        if (!checkedResultMaps.add(resultMap.getId())) {
+            return true;
+        }
+        // a child row is mapped while its parent row is, joined rows would need both result sets grouped
+        if (resultMap.hasNestedResultMaps()) {
+            return false;
+        }
+        for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
+            if (resultMapping.getResultSet() != null && !canMergeResultSets(configuration.getResultMap(resultMapping.getNestedResultMapId()), checkedResultMaps)) {
+                return false;
+            }
+        }
+        final Discriminator discriminator = resultMap.getDiscriminator();
+        if (discriminator != null) {
+            for (String caseResultMapId : discriminator.getDiscriminatorMap().values()) {
+                if (!canMergeResultSets(configuration.getResultMap(caseResultMapId), checkedResultMaps)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void handleMergedResultSets(Statement stmt, ResultSetWrapper rsw, ResultMap resultMap, List<Object> multipleResults) throws SQLException {
+        final String[] resultSets = mappedStatement.getResultSets();
+        mergedResultSets = new HashMap<>();
+        try {
+            for (int i = 1; i < resultSets.length; i++) {
+                final ResultSetWrapper childRsw = getNextOpenResultSet(stmt);
+                if (childRsw == null) {
+                    break;
+                }
+                mergedResultSets.put(resultSets[i], new MergedResultSet(childRsw));
+            }
+            handleResultSet(rsw, resultMap, multipleResults, null);
+        } finally {
+            for (MergedResultSet mergedResultSet : mergedResultSets.values()) {
+                closeResultSet(mergedResultSet.rsw.getResultSet());
+            }
+            mergedResultSets = null;
+            cleanUpAfterHandlingResultSet();
+        }
+    }
+
+    private ResultSetWrapper getNextOpenResultSet(Statement stmt) throws SQLException {
+        while (true) {
+            if (stmt.getMoreResults(Statement.KEEP_CURRENT_RESULT)) {
+                final ResultSet rs = stmt.getResultSet();
+                if (rs != null) {
+                    return new ResultSetWrapper(rs, configuration);
+                }
+            } else if (stmt.getUpdateCount() == -1) {
+                return null;
+            }
+        }
+    }
+
+    private void mergeChildren(ResultSet rs, MetaObject metaResultObject, ResultMapping parentMapping) throws SQLException {
+        final MergedResultSet children = mergedResultSets.get(parentMapping.getResultSet());
+        if (children == null) {
+            return;
+        }
+        if (children.parentMapping == null) {
+            children.parentMapping = parentMapping;
+        } else if (!children.parentMapping.equals(parentMapping)) {
+            throw new ExecutorException("Two different properties are mapped to the same resultSet");
+        }
+        final Object[] parentKey = getKeyForMergedResults(rs, parentMapping.getColumn());
+        if (parentKey == null) {
+            return;
+        }
+        if (children.lastParentKey != null) {
+            final int order = compareKeys(parentKey, children.lastParentKey);
+            if (order == 0) {
+                for (Object child : children.lastChildren) {
+                    linkObjects(metaResultObject, parentMapping, child);
+                }
+                return;
+            }
+            // the children of an earlier parent have been skipped already
+            if (order < 0) {
+                throw new ExecutorException("The parents of resultSet '" + parentMapping.getResultSet() + "' are not ordered by "
+                        + parentMapping.getColumn() + ", required as the result sets of the statement are ordered");
+            }
+        }
+        final ResultSet childResultSet = children.rsw.getResultSet();
+        final ResultMap resultMap = configuration.getResultMap(parentMapping.getNestedResultMapId());
+        final List<Object> linkedChildren = new ArrayList<>();
+        while (children.hasRow()) {
+            final Object[] childKey = getKeyForMergedResults(childResultSet, parentMapping.getForeignColumn());
+            if (childKey != null) {
+                if (children.lastChildKey != null && compareKeys(childKey, children.lastChildKey) < 0) {
+                    throw new ExecutorException("The rows of resultSet '" + parentMapping.getResultSet() + "' are not ordered by "
+                            + parentMapping.getForeignColumn() + ", required as the result sets of the statement are ordered");
+                }
+                children.lastChildKey = childKey;
+            }
+            // children without a key or whose parent was not read are skipped
+            final int comparison = childKey == null ? -1 : compareKeys(childKey, parentKey);
+            if (comparison > 0) {
+                break;
+            }
+            if (comparison == 0) {
+                final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(childResultSet, resultMap, null);
+                final Object rowValue = getRowValue(children.rsw, discriminatedResultMap, null);
+                if (rowValue != null) {
+                    linkObjects(metaResultObject, parentMapping, rowValue);
+                    linkedChildren.add(rowValue);
+                }
+            }
+            children.next();
+        }
+        children.lastParentKey = parentKey;
+        children.lastChildren = linkedChildren;
+    }
+
+    private Object[] getKeyForMergedResults(ResultSet rs, String columns) throws SQLException {
+        final String[] columnsArray = columns.split(",");
+        final Object[] key = new Object[columnsArray.length];
+        for (int i = 0; i < columnsArray.length; i++) {
+            key[i] = rs.getObject(columnsArray[i]);
+            if (key[i] == null) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    private static int compareKeys(Object[] key, Object[] otherKey) {
+        for (int i = 0; i < key.length && i < otherKey.length; i++) {
+            final int comparison = compareKeyValues(key[i], otherKey[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(key.length, otherKey.length);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeyValues(Object value, Object otherValue) {
+        if (value instanceof Number && otherValue instanceof Number) {
+            if (isIntegral(value) && isIntegral(otherValue)) {
+                return Long.compare(((Number) value).longValue(), ((Number) otherValue).longValue());
+            }
+            return toBigDecimal((Number) value).compareTo(toBigDecimal((Number) otherValue));
+        }
+        if (value instanceof Comparable && value.getClass().isInstance(otherValue)) {
+            return ((Comparable) value).compareTo(otherValue);
+        }
+        if (otherValue instanceof Comparable && otherValue.getClass().isInstance(value)) {
+            return -((Comparable) otherValue).compareTo(value);
+        }
+        return value.toString().compareTo(otherValue.toString());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        } else if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        } else if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return new BigDecimal(number.toString());
+    }
+
     //
     // INSTANTIATION & CONSTRUCTOR MAPPING
     //
@@ -790,6 +1239,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             if (executor.isCached(nestedQuery, key)) {
                 executor.deferLoad(nestedQuery, metaResultObject, property, key, targetType);
                 value = DEFERRED;
+            } else if (shouldLoadByBatch(propertyMapping)) {
+                final ResultLoaderBatch batch = nestedSelectBatches.computeIfAbsent(propertyMapping, m -> new ResultLoaderBatch(configuration, executor, m));
+                if (propertyMapping.isLazy()) {
+                    lazyLoader.addLoader(property, metaResultObject, batch.addLoader(nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql));
+                } else {
+                    batch.addLoad(metaResultObject, property, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+                }
+                value = DEFERRED;
             } else {
                 final ResultLoader resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
                 if (propertyMapping.isLazy()) {
@@ -803,6 +1260,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return value;
     }
 
+    private boolean shouldLoadByBatch(ResultMapping propertyMapping) {
+        // cursors and custom result handlers hand out each row right away, before an eager batch would be loaded
+        return propertyMapping.getBatchQueryId() != null && readAheadAllowed && (propertyMapping.isLazy() || resultHandler == null);
+    }
+
     private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
         if (resultMapping.isCompositeResult()) {
             return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
@@ -896,16 +1358,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         Object rowValue = previousRowValue;
         while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
             final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-            final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
-            Object partialObject = nestedResultObjects.get(rowKey);
+            final RowKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
             // issue #577 && #542
             if (mappedStatement.isResultOrdered()) {
+                // the rows of a parent come together, so a row either continues the previous parent or starts a new one
+                final Object partialObject = rowKey != RowKey.NULL && rowKey.equals(previousRowKey) ? rowValue : null;
                 if (partialObject == null && rowValue != null) {
+                    // the previous parent is complete, hand it over and forget its children
                     nestedResultObjects.clear();
                     storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
                 }
                 rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
+                previousRowKey = rowKey;
             } else {
+                final Object partialObject = nestedResultObjects.get(rowKey);
                 rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
                 if (partialObject == null) {
                     storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
@@ -915,6 +1381,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
             storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
             previousRowValue = null;
+            previousRowKey = null;
         } else if (rowValue != null) {
             previousRowValue = rowValue;
         }
@@ -924,7 +1391,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     // NESTED RESULT MAP (JOIN MAPPING)
     //
 
-    private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, CacheKey parentRowKey, boolean newObject) {
+    private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, RowKey parentRowKey, boolean newObject) {
         boolean foundValues = false;
         for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
             final String nestedResultMapId = resultMapping.getNestedResultMapId();
@@ -943,8 +1410,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                             continue;
                         }
                     }
-                    final CacheKey rowKey = createRowKey(nestedResultMap, rsw, columnPrefix);
-                    final CacheKey combinedKey = combineKeys(rowKey, parentRowKey);
+                    final RowKey combinedKey = createRowKey(nestedResultMap, rsw, columnPrefix).withParent(parentRowKey);
                     Object rowValue = nestedResultObjects.get(combinedKey);
                     boolean knownValue = rowValue != null;
                     instantiateCollectionPropertyIfAppropriate(resultMapping, metaObject); // mandatory
@@ -1005,37 +1471,34 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     // UNIQUE RESULT KEY
     //
 
-    private CacheKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
-        final CacheKey cacheKey = new CacheKey();
-        cacheKey.update(resultMap.getId());
-        List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
-        if (resultMappings.isEmpty()) {
-            if (Map.class.isAssignableFrom(resultMap.getType())) {
-                createRowKeyForMap(rsw, cacheKey);
-            } else {
-                createRowKeyForUnmappedProperties(resultMap, rsw, cacheKey, columnPrefix);
-            }
-        } else {
-            createRowKeyForMappedProperties(resultMap, rsw, cacheKey, resultMappings, columnPrefix);
+    private RowKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+        if (rowKeyColumnsResultSet != rsw) {
+            rowKeyColumns.clear();
+            rowKeyColumnsResultSet = rsw;
         }
-        if (cacheKey.getUpdateCount() < 2) {
-            return CacheKey.NULL_CACHE_KEY;
+        final Map<String, RowKey.Columns> columnsByPrefix = rowKeyColumns.computeIfAbsent(resultMap, k -> new HashMap<>());
+        RowKey.Columns columns = columnsByPrefix.get(columnPrefix);
+        if (columns == null) {
+            columns = resolveRowKeyColumns(resultMap, rsw, columnPrefix);
+            columnsByPrefix.put(columnPrefix, columns);
         }
-        return cacheKey;
+        return columns.createKey(rsw.getResultSet());
     }
 
-    private CacheKey combineKeys(CacheKey rowKey, CacheKey parentRowKey) {
-        if (rowKey.getUpdateCount() > 1 && parentRowKey.getUpdateCount() > 1) {
-            CacheKey combinedKey;
-            try {
-                combinedKey = rowKey.clone();
-            } catch (CloneNotSupportedException e) {
-                throw new ExecutorException("Error cloning cache key.  Cause: " + e, e);
+    private RowKey.Columns resolveRowKeyColumns(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+        List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
+        if (resultMappings.isEmpty()) {
+            final RowKey.Builder builder = new RowKey.Builder(resultMap.getId(), columnPrefix, false);
+            if (Map.class.isAssignableFrom(resultMap.getType())) {
+                addRowKeyColumnsForMap(rsw, builder);
+            } else {
+                addRowKeyColumnsForUnmappedProperties(resultMap, rsw, builder, columnPrefix);
             }
-            combinedKey.update(parentRowKey);
-            return combinedKey;
+            return builder.build();
         }
-        return CacheKey.NULL_CACHE_KEY;
+        final RowKey.Builder builder = new RowKey.Builder(resultMap.getId(), columnPrefix, configuration.isReturnInstanceForEmptyRow());
+        addRowKeyColumnsForMappedProperties(resultMap, rsw, builder, resultMappings, columnPrefix);
+        return builder.build();
     }
 
     private List<ResultMapping> getResultMappingsForRowKey(ResultMap resultMap) {
@@ -1046,25 +1509,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return resultMappings;
     }
 
-    private void createRowKeyForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
+    private void addRowKeyColumnsForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKey.Builder builder, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
+        List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
         for (ResultMapping resultMapping : resultMappings) {
             if (resultMapping.isSimple()) {
                 final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
-                final TypeHandler<?> th = resultMapping.getTypeHandler();
-                List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
                 // Issue #114
                 if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-                    final Object value = th.getResult(rsw.getResultSet(), column);
-                    if (value != null || configuration.isReturnInstanceForEmptyRow()) {
-                        cacheKey.update(column);
-                        cacheKey.update(value);
-                    }
+                    builder.addColumn(column, rsw.getColumnIndex(column), resultMapping.getTypeHandler());
                 }
             }
         }
     }
 
-    private void createRowKeyForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, String columnPrefix) throws SQLException {
+    private void addRowKeyColumnsForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKey.Builder builder, String columnPrefix) throws SQLException {
         final MetaClass metaType = MetaClass.forClass(resultMap.getType(), reflectorFactory);
         List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
         for (String column : unmappedColumnNames) {
@@ -1078,23 +1536,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 }
             }
             if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-                String value = rsw.getResultSet().getString(column);
-                if (value != null) {
-                    cacheKey.update(column);
-                    cacheKey.update(value);
-                }
+                builder.addColumn(column, rsw.getColumnIndex(column), null);
             }
         }
     }
 
-    private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
-        List<String> columnNames = rsw.getColumnNames();
-        for (String columnName : columnNames) {
-            final String value = rsw.getResultSet().getString(columnName);
-            if (value != null) {
-                cacheKey.update(columnName);
-                cacheKey.update(value);
-            }
+    private void addRowKeyColumnsForMap(ResultSetWrapper rsw, RowKey.Builder builder) {
+        for (String columnName : rsw.getColumnNames()) {
+            builder.addColumn(columnName, rsw.getColumnIndex(columnName), null);
         }
     }
 
@@ -49,11 +49,14 @@ public class ResultSetWrapper {
     private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
     private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
     private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
+    private String columnLayout;
+    private final boolean useColumnLabel;
 
     public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
         super();
         this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
         this.resultSet = rs;
+        this.useColumnLabel = configuration.isUseColumnLabel();
         final ResultSetMetaData metaData = rs.getMetaData();
         final int columnCount = metaData.getColumnCount();
         for (int i = 1; i <= columnCount; i++) {
@@ -63,6 +66,19 @@ public class ResultSetWrapper {
         }
     }
 
+    /**
+     * Wraps rows having the columns of another result set, without reading its metadata again.
+     */
+    ResultSetWrapper(ResultSetWrapper wrapper, ResultSet rs) {
+        this.typeHandlerRegistry = wrapper.typeHandlerRegistry;
+        this.resultSet = rs;
+        this.useColumnLabel = wrapper.useColumnLabel;
+        this.columnNames.addAll(wrapper.columnNames);
+        this.classNames.addAll(wrapper.classNames);
+        this.jdbcTypes.addAll(wrapper.jdbcTypes);
+        this.columnLayout = wrapper.getColumnLayout();
+    }
+
     public ResultSet getResultSet() {
         return resultSet;
     }
@@ -79,6 +95,61 @@ public class ResultSetWrapper {
         return jdbcTypes;
     }
 
+    /**
+     * Describes the columns of the result set, result sets with the same layout are mapped the same way.
+     *
+     * @return the names, JDBC types and class names of the columns
+     * @since 3.5.5
+     */
+    public String getColumnLayout() {
+        if (columnLayout == null) {
+            // the indexes resolved for a layout depend on whether the names are labels
+            StringBuilder layout = new StringBuilder(useColumnLabel ? "label:" : "name:");
+            for (int i = 0; i < columnNames.size(); i++) {
+                layout.append(columnNames.get(i)).append(':').append(jdbcTypes.get(i)).append(':').append(classNames.get(i)).append(',');
+            }
+            columnLayout = layout.toString();
+        }
+        return columnLayout;
+    }
+
+    /**
+     * Gets the index to read a column by instead of its label. Like the JDBC driver resolves a label, the first column
+     * matching it ignoring case wins.
+     *
+     * @param columnName
+     *          the column label
+     * @return the column index starting at 1, -1 if the column is not found or the column names are not labels
+     * @since 3.5.5
+     */
+    public int getColumnIndex(String columnName) {
+        if (useColumnLabel && columnName != null) {
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the class name of a column reported by the result set metadata.
+     *
+     * @param columnName
+     *          the column name
+     * @return the class name, null if the column is not found
+     * @since 3.5.5
+     */
+    public String getClassName(String columnName) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return classNames.get(i);
+            }
+        }
+        return null;
+    }
+
     public JdbcType getJdbcType(String columnName) {
         for (int i = 0; i < columnNames.size(); i++) {
             if (columnNames.get(i).equalsIgnoreCase(columnName)) {
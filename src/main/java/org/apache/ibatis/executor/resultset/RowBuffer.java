@@ -0,0 +1,426 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.type.ArrayTypeHandler;
+import org.apache.ibatis.type.BlobByteObjectArrayTypeHandler;
+import org.apache.ibatis.type.BlobInputStreamTypeHandler;
+import org.apache.ibatis.type.BlobTypeHandler;
+import org.apache.ibatis.type.CharacterTypeHandler;
+import org.apache.ibatis.type.ClobReaderTypeHandler;
+import org.apache.ibatis.type.ClobTypeHandler;
+import org.apache.ibatis.type.EnumTypeHandler;
+import org.apache.ibatis.type.NClobTypeHandler;
+import org.apache.ibatis.type.NStringTypeHandler;
+import org.apache.ibatis.type.OffsetDateTimeTypeHandler;
+import org.apache.ibatis.type.OffsetTimeTypeHandler;
+import org.apache.ibatis.type.ParallelMappingSupported;
+import org.apache.ibatis.type.SqlxmlTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.YearMonthTypeHandler;
+import org.apache.ibatis.type.ZonedDateTimeTypeHandler;
+
+/**
+ * Rows read ahead from a result set, served again through a read-only {@link ResultSet} so that they can be mapped on
+ * another thread than the one owning the connection.
+ * <p>
+ * The values are read with {@link ResultSet#getObject(int)}, LOBs are copied as they do not outlive the row. The typed
+ * getters convert the values read the way drivers commonly do, so the buffer suits drivers returning standard Java
+ * types from {@code getObject}, see {@link #supportsColumns(List)} and {@link #supportsTypeHandler(TypeHandler)}.
+ * <p>
+ * The conversions still differ from a driver in details: {@code getString} returns {@code toString()} of the value,
+ * e.g. the scientific notation of some BigDecimal values and the {@link Timestamp} format for dates, and a value is
+ * converted to another time type in the default time zone. The built-in type handlers are only supported on the
+ * columns they read the same way, see {@link #supportsColumn(TypeHandler, String)}.
+ */
+final class RowBuffer implements InvocationHandler {
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = new HashMap<>();
+
+    static {
+        PRIMITIVE_DEFAULTS.put(boolean.class, false);
+        PRIMITIVE_DEFAULTS.put(byte.class, (byte) 0);
+        PRIMITIVE_DEFAULTS.put(short.class, (short) 0);
+        PRIMITIVE_DEFAULTS.put(int.class, 0);
+        PRIMITIVE_DEFAULTS.put(long.class, 0L);
+        PRIMITIVE_DEFAULTS.put(float.class, 0f);
+        PRIMITIVE_DEFAULTS.put(double.class, 0d);
+    }
+
+    // the classes reported by the result set metadata whose values the getters convert
+    private static final Set<String> SUPPORTED_CLASS_NAMES = new HashSet<>(Arrays.asList(
+            String.class.getName(), Boolean.class.getName(), Byte.class.getName(), Short.class.getName(),
+            Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+            BigDecimal.class.getName(), BigInteger.class.getName(), byte[].class.getName(), "byte[]",
+            java.sql.Date.class.getName(), Time.class.getName(), Timestamp.class.getName(), Clob.class.getName(),
+            Blob.class.getName(), LocalDate.class.getName(), LocalTime.class.getName(), LocalDateTime.class.getName()));
+
+    // the built-in type handlers calling getters the buffer does not reproduce
+    private static final Set<Class<?>> UNSUPPORTED_TYPE_HANDLERS = new HashSet<>(Arrays.asList(
+            ArrayTypeHandler.class, SqlxmlTypeHandler.class, OffsetDateTimeTypeHandler.class, OffsetTimeTypeHandler.class,
+            ZonedDateTimeTypeHandler.class));
+
+    // the classes whose toString() is what drivers return from getString
+    private static final Set<String> STRING_CLASS_NAMES = new HashSet<>(Arrays.asList(
+            String.class.getName(), Clob.class.getName(), Byte.class.getName(), Short.class.getName(),
+            Integer.class.getName(), Long.class.getName(), BigInteger.class.getName()));
+
+    // the built-in type handlers only supported on some column classes, the others convert any standard value
+    private static final Map<Class<?>, Set<String>> TYPE_HANDLER_CLASS_NAMES = new HashMap<>();
+
+    static {
+        for (Class<?> type : Arrays.asList(StringTypeHandler.class, NStringTypeHandler.class, CharacterTypeHandler.class,
+                EnumTypeHandler.class, YearMonthTypeHandler.class)) {
+            TYPE_HANDLER_CLASS_NAMES.put(type, STRING_CLASS_NAMES);
+        }
+        for (Class<?> type : Arrays.asList(ClobTypeHandler.class, NClobTypeHandler.class, ClobReaderTypeHandler.class)) {
+            TYPE_HANDLER_CLASS_NAMES.put(type, Collections.singleton(Clob.class.getName()));
+        }
+        for (Class<?> type : Arrays.asList(BlobTypeHandler.class, BlobByteObjectArrayTypeHandler.class, BlobInputStreamTypeHandler.class)) {
+            TYPE_HANDLER_CLASS_NAMES.put(type, Collections.singleton(Blob.class.getName()));
+        }
+    }
+
+    private final ResultSetMetaData metaData;
+    private final Map<String, Integer> columnIndexes;
+    private final List<Object[]> rows;
+    private int row = -1;
+    private boolean wasNull;
+
+    private RowBuffer(ResultSetMetaData metaData, Map<String, Integer> columnIndexes, List<Object[]> rows) {
+        this.metaData = metaData;
+        this.columnIndexes = columnIndexes;
+        this.rows = rows;
+    }
+
+    /**
+     * Tells whether the values of columns of the given classes can be buffered, vendor types can't be converted.
+     *
+     * @param classNames
+     *          the column class names reported by the result set metadata
+     */
+    static boolean supportsColumns(List<String> classNames) {
+        return SUPPORTED_CLASS_NAMES.containsAll(classNames);
+    }
+
+    /**
+     * Tells whether a type handler gets the same values from the buffer as from the result set. Custom type handlers
+     * may call any getter, so only the built-in ones and the ones annotated with {@link ParallelMappingSupported} are
+     * supported.
+     *
+     * @param typeHandler
+     *          the type handler, null if resolved while mapping
+     */
+    static boolean supportsTypeHandler(TypeHandler<?> typeHandler) {
+        if (typeHandler == null) {
+            return true;
+        }
+        final Class<?> type = typeHandler.getClass();
+        if (type.isAnnotationPresent(ParallelMappingSupported.class)) {
+            return true;
+        }
+        return TypeHandler.class.getPackage().equals(type.getPackage()) && !UNSUPPORTED_TYPE_HANDLERS.contains(type);
+    }
+
+    /**
+     * Tells whether a type handler gets the same value of a column from the buffer as from the result set, e.g. the
+     * string of a BigDecimal or a date column is formatted by the driver.
+     *
+     * @param typeHandler
+     *          the type handler reading the column
+     * @param className
+     *          the column class name reported by the result set metadata, null if the column is not found
+     */
+    static boolean supportsColumn(TypeHandler<?> typeHandler, String className) {
+        if (!supportsTypeHandler(typeHandler)) {
+            return false;
+        }
+        final Set<String> classNames = typeHandler == null ? null : TYPE_HANDLER_CLASS_NAMES.get(typeHandler.getClass());
+        return classNames == null || classNames.contains(className);
+    }
+
+    /**
+     * Reads the current row of a result set.
+     */
+    static Object[] read(ResultSet rs, int columnCount) throws SQLException {
+        final Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Object value = rs.getObject(i + 1);
+            if (value instanceof Clob) {
+                value = new SerialClob((Clob) value);
+            } else if (value instanceof Blob) {
+                value = new SerialBlob((Blob) value);
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Gets the indexes of the columns by upper case label, and by name for the columns whose name is not a label.
+     */
+    static Map<String, Integer> columnIndexes(ResultSetMetaData metaData) throws SQLException {
+        final Map<String, Integer> columnIndexes = new HashMap<>();
+        final int columnCount = metaData.getColumnCount();
+        for (int i = columnCount; i >= 1; i--) {
+            // the first column wins, like in drivers
+            columnIndexes.put(metaData.getColumnLabel(i).toUpperCase(Locale.ENGLISH), i);
+        }
+        for (int i = columnCount; i >= 1; i--) {
+            columnIndexes.putIfAbsent(metaData.getColumnName(i).toUpperCase(Locale.ENGLISH), i);
+        }
+        return Collections.unmodifiableMap(columnIndexes);
+    }
+
+    /**
+     * Creates a result set positioned before the first of the given rows.
+     */
+    static ResultSet newResultSet(ResultSetMetaData metaData, Map<String, Integer> columnIndexes, List<Object[]> rows) {
+        InvocationHandler handler = new RowBuffer(metaData, columnIndexes, rows);
+        ClassLoader cl = ResultSet.class.getClassLoader();
+        return (ResultSet) Proxy.newProxyInstance(cl, new Class[]{ResultSet.class}, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+        try {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                return method.invoke(this, params);
+            }
+            final String name = method.getName();
+            switch (name) {
+                case "next":
+                    return ++row < rows.size();
+                case "wasNull":
+                    return wasNull;
+                case "getMetaData":
+                    return metaData;
+                case "findColumn":
+                    return findColumn((String) params[0]);
+                case "getRow":
+                    return row + 1;
+                case "isClosed":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    break;
+            }
+            if (name.startsWith("get") && params != null && (params[0] instanceof Integer || params[0] instanceof String)
+                    && (params.length == 1 || params[1] instanceof Class || params[1] instanceof Integer)) {
+                final int column = params[0] instanceof Integer ? (Integer) params[0] : findColumn((String) params[0]);
+                final Object value = getValue(column);
+                wasNull = value == null;
+                return convert(value, params.length == 2 && params[1] instanceof Class ? (Class<?>) params[1] : method.getReturnType());
+            }
+            throw new SQLFeatureNotSupportedException("The buffered rows do not support " + name + "()");
+        } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+        }
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+        final Integer column = columnIndexes.get(columnLabel.toUpperCase(Locale.ENGLISH));
+        if (column == null) {
+            throw new SQLException("Column '" + columnLabel + "' not found.");
+        }
+        return column;
+    }
+
+    private Object getValue(int column) throws SQLException {
+        if (row < 0 || row >= rows.size()) {
+            throw new SQLException("No current row.");
+        }
+        final Object[] values = rows.get(row);
+        if (column < 1 || column > values.length) {
+            throw new SQLException("Column index " + column + " out of range.");
+        }
+        return values[column - 1];
+    }
+
+    private static Object convert(Object value, Class<?> type) throws SQLException {
+        if (value == null) {
+            return PRIMITIVE_DEFAULTS.get(type);
+        }
+        if (type.isInstance(value)) {
+            return value;
+        }
+        try {
+            if (type == String.class) {
+                return value instanceof Clob ? ((Clob) value).getSubString(1, (int) ((Clob) value).length()) : value.toString();
+            }
+            if (type == boolean.class || type == Boolean.class) {
+                return value instanceof Number ? ((Number) value).intValue() != 0 : "1".equals(value) || Boolean.parseBoolean(value.toString());
+            }
+            if (PRIMITIVE_DEFAULTS.containsKey(type) || Number.class.isAssignableFrom(type)) {
+                final Number number = value instanceof Number ? (Number) value
+                        : value instanceof Boolean ? (Integer) ((Boolean) value ? 1 : 0)
+                        : value instanceof String ? new BigDecimal(((String) value).trim()) : null;
+                final Object converted = number == null ? null : convertNumber(number, type);
+                if (converted != null) {
+                    return converted;
+                }
+            }
+            final Object converted = convertTemporal(value, type);
+            if (converted != null) {
+                return converted;
+            }
+            if (type == byte[].class && value instanceof Blob) {
+                return ((Blob) value).getBytes(1, (int) ((Blob) value).length());
+            }
+            if (type == InputStream.class) {
+                if (value instanceof byte[]) {
+                    return new ByteArrayInputStream((byte[]) value);
+                } else if (value instanceof Blob) {
+                    return ((Blob) value).getBinaryStream();
+                }
+            }
+            if (type == Reader.class) {
+                if (value instanceof String) {
+                    return new StringReader((String) value);
+                } else if (value instanceof Clob) {
+                    return ((Clob) value).getCharacterStream();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Cannot convert '" + value + "' to " + type.getName() + ". Cause: " + e, e);
+        }
+        throw new SQLException("Cannot convert a value of " + value.getClass().getName() + " to " + type.getName() + ".");
+    }
+
+    private static Object convertNumber(Number number, Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return number.intValue();
+        } else if (type == long.class || type == Long.class) {
+            return number.longValue();
+        } else if (type == short.class || type == Short.class) {
+            return number.shortValue();
+        } else if (type == byte.class || type == Byte.class) {
+            return number.byteValue();
+        } else if (type == double.class || type == Double.class) {
+            return number.doubleValue();
+        } else if (type == float.class || type == Float.class) {
+            return number.floatValue();
+        } else if (type == BigDecimal.class) {
+            return number instanceof BigInteger ? new BigDecimal((BigInteger) number) : new BigDecimal(number.toString());
+        } else if (type == BigInteger.class) {
+            return number instanceof BigDecimal ? ((BigDecimal) number).toBigInteger() : new BigDecimal(number.toString()).toBigInteger();
+        }
+        return null;
+    }
+
+    private static Object convertTemporal(Object value, Class<?> type) {
+        if (type == Timestamp.class) {
+            if (value instanceof java.util.Date) {
+                return new Timestamp(((java.util.Date) value).getTime());
+            } else if (value instanceof LocalDateTime) {
+                return Timestamp.valueOf((LocalDateTime) value);
+            } else if (value instanceof LocalDate) {
+                return Timestamp.valueOf(((LocalDate) value).atStartOfDay());
+            } else if (value instanceof OffsetDateTime) {
+                return Timestamp.from(((OffsetDateTime) value).toInstant());
+            } else if (value instanceof String) {
+                return Timestamp.valueOf((String) value);
+            }
+        } else if (type == java.sql.Date.class) {
+            if (value instanceof java.util.Date) {
+                return new java.sql.Date(((java.util.Date) value).getTime());
+            } else if (value instanceof LocalDate) {
+                return java.sql.Date.valueOf((LocalDate) value);
+            } else if (value instanceof LocalDateTime) {
+                return java.sql.Date.valueOf(((LocalDateTime) value).toLocalDate());
+            } else if (value instanceof String) {
+                return java.sql.Date.valueOf((String) value);
+            }
+        } else if (type == Time.class) {
+            if (value instanceof java.util.Date) {
+                return new Time(((java.util.Date) value).getTime());
+            } else if (value instanceof LocalTime) {
+                return Time.valueOf((LocalTime) value);
+            } else if (value instanceof String) {
+                return Time.valueOf((String) value);
+            }
+        } else if (type == LocalDateTime.class) {
+            if (value instanceof Timestamp) {
+                return ((Timestamp) value).toLocalDateTime();
+            } else if (value instanceof java.sql.Date) {
+                return ((java.sql.Date) value).toLocalDate().atStartOfDay();
+            } else if (value instanceof OffsetDateTime) {
+                return ((OffsetDateTime) value).toLocalDateTime();
+            }
+        } else if (type == LocalDate.class) {
+            if (value instanceof java.sql.Date) {
+                return ((java.sql.Date) value).toLocalDate();
+            } else if (value instanceof Timestamp) {
+                return ((Timestamp) value).toLocalDateTime().toLocalDate();
+            } else if (value instanceof LocalDateTime) {
+                return ((LocalDateTime) value).toLocalDate();
+            }
+        } else if (type == LocalTime.class) {
+            if (value instanceof Time) {
+                return ((Time) value).toLocalTime();
+            } else if (value instanceof Timestamp) {
+                return ((Timestamp) value).toLocalDateTime().toLocalTime();
+            } else if (value instanceof LocalDateTime) {
+                return ((LocalDateTime) value).toLocalTime();
+            }
+        } else if (type == Instant.class) {
+            if (value instanceof Timestamp) {
+                return ((Timestamp) value).toInstant();
+            } else if (value instanceof OffsetDateTime) {
+                return ((OffsetDateTime) value).toInstant();
+            }
+        }
+        return null;
+    }
+
+}
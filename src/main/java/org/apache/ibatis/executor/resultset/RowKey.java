@@ -0,0 +1,190 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * The identity of a row of a nested result map, used to merge the rows of a join into one object.
+ * <p>
+ * A key holds the values of the id columns of its result map, as a primitive long for a single integral id and as a
+ * flat array otherwise, plus a link to the key of the parent object. Unlike a {@link org.apache.ibatis.cache.CacheKey}
+ * it does not grow a list per row, and combining it with a parent key does not copy anything.
+ */
+final class RowKey {
+
+    /**
+     * The key of a row without id values, such rows are never merged.
+     */
+    static final RowKey NULL = new RowKey("", 0, null, null);
+
+    // the result map and column prefix the values belong to
+    private final String shape;
+    private final long id;
+    // null for a single integral id
+    private final Object[] values;
+    private final RowKey parent;
+    private final int hashCode;
+
+    private RowKey(String shape, long id, Object[] values, RowKey parent) {
+        this.shape = shape;
+        this.id = id;
+        this.values = values;
+        this.parent = parent;
+        int hash = shape.hashCode() * 31 + (values == null ? Long.hashCode(id) : Arrays.deepHashCode(values));
+        this.hashCode = parent == null ? hash : hash * 31 + parent.hashCode;
+    }
+
+    /**
+     * Combines this key with the key of the parent object, the same child row belongs to another object under another
+     * parent.
+     *
+     * @return the combined key, {@link #NULL} if either key is
+     */
+    RowKey withParent(RowKey parentKey) {
+        if (this == NULL || parentKey == NULL) {
+            return NULL;
+        }
+        return new RowKey(shape, id, values, parentKey);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof RowKey)) {
+            return false;
+        }
+        final RowKey other = (RowKey) object;
+        return hashCode == other.hashCode
+            && id == other.id
+            && shape.equals(other.shape)
+            && (values == null ? other.values == null : other.values != null && Arrays.deepEquals(values, other.values))
+            && (parent == null ? other.parent == null : parent.equals(other.parent));
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        String key = shape + ":" + (values == null ? String.valueOf(id) : Arrays.deepToString(values));
+        return parent == null ? key : key + "/" + parent;
+    }
+
+    /**
+     * The id columns of a result map in a result set, resolved once per result set.
+     */
+    static final class Columns {
+
+        private final String shape;
+        private final String[] columns;
+        // read by index if positive, by the column label otherwise
+        private final int[] columnIndexes;
+        // null to read the column as a string
+        private final TypeHandler<?>[] typeHandlers;
+        // whether rows whose id columns are all null still get a key
+        private final boolean keepNullValues;
+
+        private Columns(Builder builder) {
+            this.shape = builder.shape;
+            this.columns = builder.columns.toArray(new String[0]);
+            this.columnIndexes = builder.columnIndexes.stream().mapToInt(Integer::intValue).toArray();
+            this.typeHandlers = builder.typeHandlers.toArray(new TypeHandler<?>[0]);
+            this.keepNullValues = builder.keepNullValues;
+        }
+
+        RowKey createKey(ResultSet rs) throws SQLException {
+            final int count = columns.length;
+            if (count == 1 && typeHandlers[0] != null) {
+                final Object value = getValue(rs, 0);
+                if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    return new RowKey(shape, ((Number) value).longValue(), null, null);
+                }
+                if (value == null && !keepNullValues) {
+                    return NULL;
+                }
+                return new RowKey(shape, 0, new Object[] {value}, null);
+            }
+            Object[] values = null;
+            for (int i = 0; i < count; i++) {
+                final Object value = getValue(rs, i);
+                if (value != null || keepNullValues) {
+                    if (values == null) {
+                        values = new Object[count];
+                    }
+                    values[i] = value;
+                }
+            }
+            return values == null ? NULL : new RowKey(shape, 0, values, null);
+        }
+
+        private Object getValue(ResultSet rs, int i) throws SQLException {
+            final int columnIndex = columnIndexes[i];
+            final TypeHandler<?> typeHandler = typeHandlers[i];
+            if (typeHandler == null) {
+                return columnIndex > 0 ? rs.getString(columnIndex) : rs.getString(columns[i]);
+            }
+            if (columnIndex <= 0) {
+                return typeHandler.getResult(rs, columns[i]);
+            }
+            try {
+                return typeHandler.getResult(rs, columnIndex);
+            } catch (ResultMapException e) {
+                if (e.getCause() == null) {
+                    throw e;
+                }
+                throw new ResultMapException("Error attempting to get column '" + columns[i] + "' from result set.  Cause: " + e.getCause(), e.getCause());
+            }
+        }
+    }
+
+    static final class Builder {
+
+        private final String shape;
+        private final boolean keepNullValues;
+        private final List<String> columns = new ArrayList<>();
+        private final List<Integer> columnIndexes = new ArrayList<>();
+        private final List<TypeHandler<?>> typeHandlers = new ArrayList<>();
+
+        Builder(String resultMapId, String columnPrefix, boolean keepNullValues) {
+            this.shape = columnPrefix == null ? resultMapId : resultMapId + "#" + columnPrefix;
+            this.keepNullValues = keepNullValues;
+        }
+
+        Builder addColumn(String column, int columnIndex, TypeHandler<?> typeHandler) {
+            columns.add(column);
+            columnIndexes.add(columnIndex);
+            typeHandlers.add(typeHandler);
+            return this;
+        }
+
+        Columns build() {
+            return new Columns(this);
+        }
+    }
+
+}
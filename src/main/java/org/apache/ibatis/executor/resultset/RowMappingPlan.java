@@ -0,0 +1,228 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapper;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * The compiled mapping of the columns of a result set to the properties of a result map.
+ * <p>
+ * A plan holds the automatic mappings followed by the property mappings present in the result set, with their column
+ * indexes, type handlers and setters resolved, so that mapping a row is a loop over its steps. Plans are immutable and
+ * cached by {@link org.apache.ibatis.session.Configuration} for each {@link Key}.
+ *
+ * @since 3.5.5
+ */
+public final class RowMappingPlan {
+
+    final Step[] steps;
+    // the type whose setters got resolved, null if the values are set through a MetaObject
+    private final Class<?> beanType;
+    private final boolean metaObjectNeeded;
+    final UnknownColumn[] unknownColumns;
+
+    private RowMappingPlan(Builder builder) {
+        this.steps = builder.steps.toArray(new Step[0]);
+        this.beanType = builder.beanType;
+        this.unknownColumns = builder.unknownColumns.toArray(new UnknownColumn[0]);
+        boolean metaObjectNeeded = false;
+        for (Step step : steps) {
+            metaObjectNeeded |= step.mapping != null || step.setter == null;
+        }
+        this.metaObjectNeeded = metaObjectNeeded;
+    }
+
+    /**
+     * @return whether the resolved setters apply to the row value
+     */
+    boolean canInvokeSetters(Object rowValue) {
+        return rowValue.getClass() == beanType;
+    }
+
+    boolean needsMetaObject(Object rowValue) {
+        return metaObjectNeeded || !canInvokeSetters(rowValue);
+    }
+
+    static final class Step {
+        // set for the mappings read by the handler itself, like nested selects
+        final ResultMapping mapping;
+        final String column;
+        // read by index if positive, by the column label otherwise
+        final int columnIndex;
+        final TypeHandler<?> typeHandler;
+        final String property;
+        final boolean primitive;
+        final Invoker setter;
+
+        private Step(ResultMapping mapping, String column, int columnIndex, TypeHandler<?> typeHandler, String property, boolean primitive, Invoker setter) {
+            this.mapping = mapping;
+            this.column = column;
+            this.columnIndex = columnIndex;
+            this.typeHandler = typeHandler;
+            this.property = property;
+            this.primitive = primitive;
+            this.setter = setter;
+        }
+
+        Object getValue(ResultSet rs) throws SQLException {
+            if (columnIndex <= 0) {
+                return typeHandler.getResult(rs, column);
+            }
+            try {
+                return typeHandler.getResult(rs, columnIndex);
+            } catch (ResultMapException e) {
+                // report the column like reading it by label does
+                if (e.getCause() == null) {
+                    throw e;
+                }
+                throw new ResultMapException("Error attempting to get column '" + column + "' from result set.  Cause: " + e.getCause(), e.getCause());
+            }
+        }
+
+        void setValue(Object target, Object value) {
+            try {
+                setter.invoke(target, new Object[] {value});
+            } catch (Throwable t) {
+                Throwable cause = ExceptionUtil.unwrapThrowable(t);
+                throw new ReflectionException("Could not set property '" + property + "' of '" + target.getClass() + "' with value '" + value + "' Cause: " + cause, cause);
+            }
+        }
+    }
+
+    static final class UnknownColumn {
+        final String column;
+        final String property;
+        final Class<?> propertyType;
+
+        private UnknownColumn(String column, String property, Class<?> propertyType) {
+            this.column = column;
+            this.property = property;
+            this.propertyType = propertyType;
+        }
+    }
+
+    static final class Builder {
+
+        private final List<Step> steps = new ArrayList<>();
+        private final List<UnknownColumn> unknownColumns = new ArrayList<>();
+        private final Class<?> beanType;
+        private final MetaClass metaClass;
+
+        Builder(Object rowValue, ReflectorFactory reflectorFactory, ObjectWrapperFactory objectWrapperFactory) {
+            if (rowValue instanceof Map || rowValue instanceof Collection || rowValue instanceof ObjectWrapper
+                    || objectWrapperFactory.hasWrapperFor(rowValue)) {
+                this.beanType = null;
+                this.metaClass = null;
+            } else {
+                this.beanType = rowValue.getClass();
+                this.metaClass = MetaClass.forClass(beanType, reflectorFactory);
+            }
+        }
+
+        Builder addColumn(String column, int columnIndex, TypeHandler<?> typeHandler, String property, boolean primitive) {
+            steps.add(new Step(null, column, columnIndex, typeHandler, property, primitive, resolveSetter(property)));
+            return this;
+        }
+
+        Builder addMapping(ResultMapping mapping, boolean primitive) {
+            steps.add(new Step(mapping, null, -1, null, mapping.getProperty(), primitive, resolveSetter(mapping.getProperty())));
+            return this;
+        }
+
+        Builder addUnknownColumn(String column, String property, Class<?> propertyType) {
+            unknownColumns.add(new UnknownColumn(column, property, propertyType));
+            return this;
+        }
+
+        RowMappingPlan build() {
+            return new RowMappingPlan(this);
+        }
+
+        private Invoker resolveSetter(String property) {
+            // nested and indexed properties are left to the MetaObject
+            if (metaClass == null || property == null || property.indexOf('.') >= 0 || property.indexOf('[') >= 0
+                    || !metaClass.hasSetter(property)) {
+                return null;
+            }
+            return metaClass.getSetInvoker(property);
+        }
+    }
+
+    /**
+     * Identifies a plan: the result map, the column prefix, whether columns are mapped automatically and the layout of
+     * the result set.
+     */
+    public static final class Key {
+
+        private final String resultMapId;
+        private final String columnPrefix;
+        private final boolean autoMapping;
+        private final String columnLayout;
+        private final int hashCode;
+
+        public Key(String resultMapId, String columnPrefix, boolean autoMapping, String columnLayout) {
+            this.resultMapId = resultMapId;
+            this.columnPrefix = columnPrefix;
+            this.autoMapping = autoMapping;
+            this.columnLayout = columnLayout;
+            int hash = resultMapId.hashCode();
+            hash = 31 * hash + (columnPrefix == null ? 0 : columnPrefix.hashCode());
+            hash = 31 * hash + (autoMapping ? 1 : 0);
+            this.hashCode = 31 * hash + columnLayout.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && autoMapping == other.autoMapping && resultMapId.equals(other.resultMapId)
+                    && (columnPrefix == null ? other.columnPrefix == null : columnPrefix.equals(other.columnPrefix))
+                    && columnLayout.equals(other.columnLayout);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return resultMapId + ":" + columnPrefix + ":" + autoMapping + ":" + columnLayout;
+        }
+    }
+
+}
@@ -24,9 +24,14 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.ThreadSafeCache;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.CoalescingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
@@ -46,6 +51,11 @@ public class CacheBuilder {
     private boolean readWrite;
     private Properties properties;
     private boolean blocking;
+    private boolean coalescing;
+    private Long timeToLive;
+    private Long refreshAhead;
+    private Class<? extends CacheSerializer> serializer;
+    private int hotKeys;
 
     public CacheBuilder(String id) {
         this.id = id;
@@ -84,6 +94,77 @@ public class CacheBuilder {
         return this;
     }
 
+    /**
+     * Makes concurrent misses of the same key wait for a single load, which hands its result or failure over to them
+     * as soon as it ends. Takes precedence over {@link #blocking(boolean)}.
+     *
+     * @param coalescing
+     *          whether to coalesce concurrent loads
+     * @return the builder
+     * @see CoalescingCache
+     * @since 3.5.5
+     */
+    public CacheBuilder coalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+    /**
+     * Gives every entry a time to live and reloads the entries read shortly before they expire in the background.
+     *
+     * @param timeToLive
+     *          the time to live in milliseconds, null for entries that do not expire
+     * @return the builder
+     * @see RefreshAheadCache
+     * @since 3.5.5
+     */
+    public CacheBuilder timeToLive(Long timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    /**
+     * Sets how long before an entry expires a read of it triggers a reload. Defaults to a fifth of the time to live.
+     *
+     * @param refreshAhead
+     *          the refresh-ahead window in milliseconds
+     * @return the builder
+     * @see #timeToLive(Long)
+     * @since 3.5.5
+     */
+    public CacheBuilder refreshAhead(Long refreshAhead) {
+        this.refreshAhead = refreshAhead;
+        return this;
+    }
+
+    /**
+     * Sets how a read/write cache copies its values.
+     *
+     * @param serializer
+     *          the serializer type, null for Java serialization
+     * @return the builder
+     * @see SerializedCache#setSerializer(CacheSerializer)
+     * @since 3.5.5
+     */
+    public CacheBuilder serializer(Class<? extends CacheSerializer> serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
+    /**
+     * Sets how many of the most requested keys the statistics of the cache track.
+     *
+     * @param hotKeys
+     *          the number of hot keys, 0 to track none
+     * @return the builder
+     * @see CacheStatistics#getHotKeys()
+     * @since 3.5.5
+     */
+    public CacheBuilder hotKeys(int hotKeys) {
+        this.hotKeys = hotKeys;
+        return this;
+    }
+
     public CacheBuilder properties(Properties properties) {
         this.properties = properties;
         return this;
@@ -91,6 +172,7 @@ public class CacheBuilder {
 
     public Cache build() {
         setDefaultImplementations();
+        CacheStatistics statistics = new CacheStatistics(hotKeys);
         Cache cache = newBaseCacheInstance(implementation, id);
         setCacheProperties(cache);
         // issue #352, do not apply decorators to custom caches
@@ -98,10 +180,15 @@ public class CacheBuilder {
             for (Class<? extends Cache> decorator : decorators) {
                 cache = newCacheDecoratorInstance(decorator, cache);
                 setCacheProperties(cache);
+                setCacheStatistics(cache, statistics);
             }
-            cache = setStandardDecorators(cache);
+            cache = setStandardDecorators(cache, statistics);
+        } else if (cache instanceof ThreadSafeCache) {
+            // thread-safe caches bound their own size, so the eviction decorators are not needed
+            setCacheStatistics(cache, statistics);
+            cache = setStandardDecorators(cache, statistics);
         } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
-            cache = new LoggingCache(cache);
+            cache = new LoggingCache(cache, statistics);
         }
         return cache;
     }
@@ -115,8 +202,9 @@ public class CacheBuilder {
         }
     }
 
-    private Cache setStandardDecorators(Cache cache) {
+    private Cache setStandardDecorators(Cache cache, CacheStatistics statistics) {
         try {
+            boolean threadSafe = cache instanceof ThreadSafeCache;
             MetaObject metaCache = SystemMetaObject.forObject(cache);
             if (size != null && metaCache.hasSetter("size")) {
                 metaCache.setValue("size", size);
@@ -125,12 +213,34 @@ public class CacheBuilder {
                 cache = new ScheduledCache(cache);
                 ((ScheduledCache) cache).setClearInterval(clearInterval);
             }
+            CacheSerializer cacheSerializer = null;
             if (readWrite) {
                 cache = new SerializedCache(cache);
+                ((SerializedCache) cache).setStatistics(statistics);
+                if (serializer != null) {
+                    cacheSerializer = serializer.getDeclaredConstructor().newInstance();
+                    ((SerializedCache) cache).setSerializer(cacheSerializer);
+                }
+            }
+            cache = new LoggingCache(cache, statistics);
+            if (!threadSafe) {
+                cache = new SynchronizedCache(cache);
             }
-            cache = new LoggingCache(cache);
-            cache = new SynchronizedCache(cache);
-            if (blocking) {
+            // expired entries are misses the coalescing or blocking decorator makes concurrent callers wait for
+            if (timeToLive != null) {
+                cache = new RefreshAheadCache(cache);
+                ((RefreshAheadCache) cache).setTimeToLive(timeToLive);
+                if (refreshAhead != null) {
+                    ((RefreshAheadCache) cache).setRefreshAhead(refreshAhead);
+                }
+            }
+            if (coalescing) {
+                cache = new CoalescingCache(cache);
+                ((CoalescingCache) cache).setReadWrite(readWrite);
+                if (cacheSerializer != null) {
+                    ((CoalescingCache) cache).setSerializer(cacheSerializer);
+                }
+            } else if (blocking) {
                 cache = new BlockingCache(cache);
             }
             return cache;
@@ -139,6 +249,13 @@ public class CacheBuilder {
         }
     }
 
+    private void setCacheStatistics(Cache cache, CacheStatistics statistics) {
+        MetaObject metaCache = SystemMetaObject.forObject(cache);
+        if (metaCache.hasSetter("statistics")) {
+            metaCache.setValue("statistics", statistics);
+        }
+    }
+
     private void setCacheProperties(Cache cache) {
         if (properties != null) {
             MetaObject metaCache = SystemMetaObject.forObject(cache);
@@ -16,8 +16,11 @@
 package org.apache.ibatis.mapping;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -25,6 +28,8 @@ import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.parsing.GenericTokenParser;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
@@ -47,6 +52,8 @@ public final class MappedStatement {
     private boolean flushCacheRequired;
     private boolean useCache;
     private boolean resultOrdered;
+    private boolean parallelMapping;
+    private boolean resultSetsOrdered;
     private SqlCommandType sqlCommandType;
     private KeyGenerator keyGenerator;
     private String[] keyProperties;
@@ -56,6 +63,11 @@ public final class MappedStatement {
     private Log statementLog;
     private LanguageDriver lang;
     private String[] resultSets;
+    private String[] cacheTags;
+    private String[] flushTags;
+    // the tags as a set when they do not refer to the parameter
+    private Set<String> staticCacheTags;
+    private Set<String> staticFlushTags;
 
     MappedStatement() {
         // constructor disabled
@@ -144,6 +156,26 @@ public final class MappedStatement {
             return this;
         }
 
+        /**
+         * Sets whether the rows of the statement are mapped on the common fork-join pool, or on the executor set by
+         * {@link Configuration#setParallelMappingExecutor(java.util.concurrent.ExecutorService)}. The rows are read ahead
+         * on the calling thread and mapped in chunks, the results keep the order of the rows.
+         * <p>
+         * Only result maps without nested result maps, nested selects and discriminators are mapped in parallel, and
+         * never for a cursor or multiple result sets. The type handlers run against a copy of the rows read with
+         * {@code getObject}, so the rows are mapped sequentially if a column has a vendor type or if the result map uses
+         * a custom type handler.
+         *
+         * @param parallelMapping
+         *          whether to map the rows in parallel
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder parallelMapping(boolean parallelMapping) {
+            mappedStatement.parallelMapping = parallelMapping;
+            return this;
+        }
+
         public Builder keyGenerator(KeyGenerator keyGenerator) {
             mappedStatement.keyGenerator = keyGenerator;
             return this;
@@ -174,6 +206,53 @@ public final class MappedStatement {
             return this;
         }
 
+        /**
+         * Sets whether the rows of the {@link #resultSets(String) result sets} come ordered by the columns linking them
+         * together, ascending. The children rows are then merged into their parent while the parent rows are read,
+         * instead of keeping every parent until the result sets of the children are read.
+         * <p>
+         * This requires a driver keeping several result sets of a statement open at once, otherwise the result sets are
+         * linked as if they were not ordered. Result maps of ordered result sets cannot have nested result maps.
+         *
+         * @param resultSetsOrdered
+         *          whether the result sets are ordered by their keys
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder resultSetsOrdered(boolean resultSetsOrdered) {
+            mappedStatement.resultSetsOrdered = resultSetsOrdered;
+            return this;
+        }
+
+        /**
+         * Sets the tags of the tables or entities the statement reads. The cached results of the statement are only
+         * removed by statements flushing one of these tags. A tag may refer to a parameter property, as in
+         * {@code order:#{id}}.
+         *
+         * @param cacheTags
+         *          the tags, separated by commas
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder cacheTags(String cacheTags) {
+            mappedStatement.cacheTags = delimitedTagsToArray(cacheTags);
+            return this;
+        }
+
+        /**
+         * Sets the tags of the tables or entities the statement writes. When the cache has to be flushed, only the
+         * results depending on these tags are removed instead of the whole cache.
+         *
+         * @param flushTags
+         *          the tags, separated by commas
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder flushTags(String flushTags) {
+            mappedStatement.flushTags = delimitedTagsToArray(flushTags);
+            return this;
+        }
+
         /**
          * Resul sets.
          *
@@ -194,6 +273,8 @@ public final class MappedStatement {
             assert mappedStatement.sqlSource != null;
             assert mappedStatement.lang != null;
             mappedStatement.resultMaps = Collections.unmodifiableList(mappedStatement.resultMaps);
+            mappedStatement.staticCacheTags = staticTags(mappedStatement.cacheTags);
+            mappedStatement.staticFlushTags = staticTags(mappedStatement.flushTags);
             return mappedStatement;
         }
     }
@@ -266,6 +347,14 @@ public final class MappedStatement {
         return resultOrdered;
     }
 
+    public boolean isParallelMapping() {
+        return parallelMapping;
+    }
+
+    public boolean isResultSetsOrdered() {
+        return resultSetsOrdered;
+    }
+
     public String getDatabaseId() {
         return databaseId;
     }
@@ -301,6 +390,38 @@ public final class MappedStatement {
         return resultSets;
     }
 
+    public String[] getCacheTags() {
+        return cacheTags;
+    }
+
+    public String[] getFlushTags() {
+        return flushTags;
+    }
+
+    /**
+     * Gets the tags the cached results of this statement depend on.
+     *
+     * @param parameterObject
+     *          the parameter the tags referring to a property are resolved against
+     * @return the tags, null if none are declared
+     * @since 3.5.5
+     */
+    public Set<String> getCacheTags(Object parameterObject) {
+        return resolveTags(cacheTags, staticCacheTags, parameterObject);
+    }
+
+    /**
+     * Gets the tags whose cached results this statement makes stale.
+     *
+     * @param parameterObject
+     *          the parameter the tags referring to a property are resolved against
+     * @return the tags, null if none are declared
+     * @since 3.5.5
+     */
+    public Set<String> getFlushTags(Object parameterObject) {
+        return resolveTags(flushTags, staticFlushTags, parameterObject);
+    }
+
     public BoundSql getBoundSql(Object parameterObject) {
         BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
         List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
@@ -322,6 +443,42 @@ public final class MappedStatement {
         return boundSql;
     }
 
+    private Set<String> resolveTags(String[] tags, Set<String> staticTags, Object parameterObject) {
+        if (tags == null || staticTags != null) {
+            return staticTags;
+        }
+        MetaObject metaObject = parameterObject == null || configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())
+                ? null : configuration.newMetaObject(parameterObject);
+        GenericTokenParser parser = new GenericTokenParser("#{", "}",
+                content -> String.valueOf(metaObject == null ? parameterObject : metaObject.getValue(content.trim())));
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String tag : tags) {
+            resolved.add(parser.parse(tag));
+        }
+        return resolved;
+    }
+
+    private static Set<String> staticTags(String[] tags) {
+        if (tags == null) {
+            return null;
+        }
+        for (String tag : tags) {
+            if (tag.contains("#{")) {
+                return null;
+            }
+        }
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(tags)));
+    }
+
+    private static String[] delimitedTagsToArray(String in) {
+        String[] tags = delimitedStringToArray(in);
+        if (tags == null) {
+            return null;
+        }
+        tags = Arrays.stream(tags).map(String::trim).filter(tag -> !tag.isEmpty()).toArray(String[]::new);
+        return tags.length == 0 ? null : tags;
+    }
+
     private static String[] delimitedStringToArray(String in) {
         if (in == null || in.trim().length() == 0) {
             return null;
@@ -45,6 +45,9 @@ public class ResultMapping {
     private String resultSet;
     private String foreignColumn;
     private boolean lazy;
+    private String batchQueryId;
+    private String batchKey;
+    private int batchSize;
 
     ResultMapping() {
     }
@@ -132,6 +135,46 @@ public class ResultMapping {
             return this;
         }
 
+        /**
+         * Sets the statement loading the nested select of many parents at once. It gets the list of the keys the nested
+         * select would get, and returns the rows of all of them.
+         *
+         * @param batchQueryId
+         *          the id of the batch statement
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder batchQueryId(String batchQueryId) {
+            resultMapping.batchQueryId = batchQueryId;
+            return this;
+        }
+
+        /**
+         * Sets the property of the rows of the batch statement holding the key they belong to.
+         *
+         * @param batchKey
+         *          the property, may be a path like {@code blog.id}
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder batchKey(String batchKey) {
+            resultMapping.batchKey = batchKey;
+            return this;
+        }
+
+        /**
+         * Sets how many keys the batch statement gets at most.
+         *
+         * @param batchSize
+         *          the batch size, 0 for the default of 100
+         * @return the builder
+         * @since 3.5.5
+         */
+        public Builder batchSize(int batchSize) {
+            resultMapping.batchSize = batchSize;
+            return this;
+        }
+
         public ResultMapping build() {
             // lock down collections
             resultMapping.flags = Collections.unmodifiableList(resultMapping.flags);
@@ -167,6 +210,14 @@ public class ResultMapping {
                     throw new IllegalStateException("There should be the same number of columns and foreignColumns in property " + resultMapping.property);
                 }
             }
+            if (resultMapping.batchQueryId != null) {
+                if (resultMapping.nestedQueryId == null || !resultMapping.composites.isEmpty()) {
+                    throw new IllegalStateException("A batch select requires a nested select with a single column in property " + resultMapping.property);
+                }
+                if (resultMapping.batchKey == null) {
+                    throw new IllegalStateException("A batch select requires a batchKey in property " + resultMapping.property);
+                }
+            }
         }
 
         private void resolveTypeHandler() {
@@ -251,6 +302,18 @@ public class ResultMapping {
         this.lazy = lazy;
     }
 
+    public String getBatchQueryId() {
+        return batchQueryId;
+    }
+
+    public String getBatchKey() {
+        return batchKey;
+    }
+
+    public int getBatchSize() {
+        return batchSize > 0 ? batchSize : 100;
+    }
+
     public boolean isSimple() {
         return this.nestedResultMapId == null && this.nestedQueryId == null && this.resultSet == null;
     }
@@ -298,6 +361,11 @@ public class ResultMapping {
         sb.append(", resultSet='").append(resultSet).append('\'');
         sb.append(", foreignColumn='").append(foreignColumn).append('\'');
         sb.append(", lazy=").append(lazy);
+        if (batchQueryId != null) {
+            sb.append(", batchQueryId='").append(batchQueryId).append('\'');
+            sb.append(", batchKey='").append(batchKey).append('\'');
+            sb.append(", batchSize=").append(getBatchSize());
+        }
         sb.append('}');
         return sb.toString();
     }
@@ -15,16 +15,23 @@
  */
 package org.apache.ibatis.session;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -34,11 +41,18 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.CompactCacheSerializer;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.JdkCacheSerializer;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.SizeBoundedCache;
+import org.apache.ibatis.cache.impl.WeightBoundedCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
@@ -54,6 +68,7 @@ import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.resultset.RowMappingPlan;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
@@ -79,6 +94,7 @@ import org.apache.ibatis.plugin.InterceptorChain;
 import org.apache.ibatis.reflection.DefaultReflectorFactory;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
@@ -122,11 +138,18 @@ public class Configuration {
     //文件读取器
     protected Class<? extends VFS> vfsImpl;
     protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+    //一级缓存的实现及其大小（为null时使用实现的默认值）
+    protected Class<? extends Cache> localCacheType = PerpetualCache.class;
+    protected Integer localCacheSize;
+    //二级缓存统计中跟踪的热点key数量，0为不跟踪
+    protected int cacheHotKeys;
     protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
     protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
     protected Integer defaultStatementTimeout;
     protected Integer defaultFetchSize;
     protected ResultSetType defaultResultSetType;
+    //并行映射行使用的线程池，为null时使用公共的ForkJoinPool
+    protected ExecutorService parallelMappingExecutor;
     protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
     protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
     protected AutoMappingUnknownColumnBehavior autoMappingUnknownColumnBehavior = AutoMappingUnknownColumnBehavior.NONE;
@@ -183,6 +206,14 @@ public class Configuration {
     //保存当前命名空间引用了其他的哪些命名空间的缓存数据
     protected final Map<String, String> cacheRefMap = new HashMap<>();
 
+    //缓存之间的依赖关系：命名空间 -> 依赖它的命名空间
+    protected final Map<String, Set<String>> cacheDependents = new HashMap<>();
+    //按缓存id解析好的所有（间接）依赖它的缓存
+    protected final Map<String, List<Cache>> dependentCaches = new ConcurrentHashMap<>();
+
+    //编译好的行映射计划，按ResultMap、列前缀和结果集的列布局缓存，满了就清空
+    protected final Map<RowMappingPlan.Key, RowMappingPlan> rowMappingPlans = new ConcurrentHashMap<>();
+
     /**
      * 指定环境
      *
@@ -206,6 +237,12 @@ public class Configuration {
         typeAliasRegistry.registerAlias("LRU", LruCache.class);
         typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
         typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+        typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentCache.class);
+        typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
+        typeAliasRegistry.registerAlias("SIZE_BOUNDED", SizeBoundedCache.class);
+        typeAliasRegistry.registerAlias("WEIGHT_BOUNDED", WeightBoundedCache.class);
+        typeAliasRegistry.registerAlias("JDK", JdkCacheSerializer.class);
+        typeAliasRegistry.registerAlias("COMPACT", CompactCacheSerializer.class);
 
         typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -509,6 +546,23 @@ public class Configuration {
         this.defaultResultSetType = defaultResultSetType;
     }
 
+    public ExecutorService getParallelMappingExecutor() {
+        return parallelMappingExecutor;
+    }
+
+    /**
+     * Sets the threads mapping the rows of the statements with parallel mapping. The rows are mapped on them even if
+     * the machine has a single processor.
+     *
+     * @param parallelMappingExecutor
+     *          the executor, null for the common fork-join pool
+     * @see MappedStatement#isParallelMapping()
+     * @since 3.5.5
+     */
+    public void setParallelMappingExecutor(ExecutorService parallelMappingExecutor) {
+        this.parallelMappingExecutor = parallelMappingExecutor;
+    }
+
     public boolean isUseColumnLabel() {
         return useColumnLabel;
     }
@@ -525,6 +579,78 @@ public class Configuration {
         this.localCacheScope = localCacheScope;
     }
 
+    public Class<? extends Cache> getLocalCacheType() {
+        return localCacheType;
+    }
+
+    /**
+     * Sets the implementation of the local (first level) cache. It must have a constructor taking a String id, like
+     * {@link PerpetualCache} (the default, unbounded), {@link SizeBoundedCache} or {@link WeightBoundedCache}.
+     *
+     * @param localCacheType
+     *          the cache implementation, null keeps the current one
+     * @since 3.5.5
+     */
+    public void setLocalCacheType(Class<? extends Cache> localCacheType) {
+        if (localCacheType != null) {
+            this.localCacheType = localCacheType;
+        }
+    }
+
+    public Integer getLocalCacheSize() {
+        return localCacheSize;
+    }
+
+    /**
+     * Sets the size of the local cache, applied through its {@code size} property. Its meaning depends on the
+     * implementation, e.g. the number of results for {@link SizeBoundedCache} or of rows for {@link WeightBoundedCache}.
+     *
+     * @param localCacheSize
+     *          the size, null for the default of the implementation
+     * @since 3.5.5
+     */
+    public void setLocalCacheSize(Integer localCacheSize) {
+        this.localCacheSize = localCacheSize;
+    }
+
+    public int getCacheHotKeys() {
+        return cacheHotKeys;
+    }
+
+    /**
+     * Sets how many of the most requested keys the statistics of each second level cache track, see
+     * {@link org.apache.ibatis.cache.CacheStatistics#getHotKeys()}. Applies to the caches built afterwards.
+     *
+     * @param cacheHotKeys
+     *          the number of hot keys, 0 to track none
+     * @since 3.5.5
+     */
+    public void setCacheHotKeys(int cacheHotKeys) {
+        this.cacheHotKeys = cacheHotKeys;
+    }
+
+    /**
+     * 创建执行器使用的一级缓存
+     *
+     * @param id
+     * @return
+     */
+    public Cache newLocalCache(String id) {
+        Cache cache;
+        try {
+            cache = localCacheType.getConstructor(String.class).newInstance(id);
+        } catch (Exception e) {
+            throw new CacheException("Could not instantiate local cache implementation (" + localCacheType + "). Cause: " + e, e);
+        }
+        if (localCacheSize != null) {
+            MetaObject metaCache = SystemMetaObject.forObject(cache);
+            if (metaCache.hasSetter("size")) {
+                metaCache.setValue("size", localCacheSize);
+            }
+        }
+        return cache;
+    }
+
     public JdbcType getJdbcTypeForNull() {
         return jdbcTypeForNull;
     }
@@ -702,6 +828,19 @@ public class Configuration {
         return executor;
     }
 
+    /**
+     * Creates a simple executor wrapped by the plugins but not by a {@link CachingExecutor}, for queries loading a value
+     * into the second level cache on their own, like the reloads of a refresh-ahead cache.
+     *
+     * @param transaction
+     *          the transaction of the executor
+     * @return the executor
+     * @since 3.5.5
+     */
+    public Executor newUncachedExecutor(Transaction transaction) {
+        return (Executor) interceptorChain.pluginAll(new SimpleExecutor(this, transaction));
+    }
+
     public void addKeyGenerator(String id, KeyGenerator keyGenerator) {
         keyGenerators.put(id, keyGenerator);
     }
@@ -729,6 +868,7 @@ public class Configuration {
      */
     public void addCache(Cache cache) {
         caches.put(cache.getId(), cache);
+        dependentCaches.clear();
     }
 
     public Collection<String> getCacheNames() {
@@ -775,6 +915,30 @@ public class Configuration {
         return resultMaps.containsKey(id);
     }
 
+    /**
+     * 获取编译好的行映射计划
+     *
+     * @param key
+     * @return 没有编译过则返回null
+     */
+    public RowMappingPlan getRowMappingPlan(RowMappingPlan.Key key) {
+        return rowMappingPlans.get(key);
+    }
+
+    /**
+     * 缓存编译好的行映射计划
+     *
+     * @param key
+     * @param plan
+     */
+    public void addRowMappingPlan(RowMappingPlan.Key key, RowMappingPlan plan) {
+        // 动态SQL可能产生很多种列布局，防止无限增长
+        if (rowMappingPlans.size() >= 4096) {
+            rowMappingPlans.clear();
+        }
+        rowMappingPlans.put(key, plan);
+    }
+
     /**
      * 保存参数映射（目前被废弃）
      *
@@ -924,6 +1088,75 @@ public class Configuration {
 
     public void addCacheRef(String namespace, String referencedNamespace) {
         cacheRefMap.put(namespace, referencedNamespace);
+        dependentCaches.clear();
+    }
+
+    /**
+     * Declares that the cache of a namespace holds data of another namespace, so that flushing the cache of the other
+     * namespace flushes it as well.
+     *
+     * @param namespace
+     *          the namespace whose cache depends on the other one
+     * @param dependsOnNamespace
+     *          the namespace it depends on
+     * @since 3.5.5
+     */
+    public void addCacheDependency(String namespace, String dependsOnNamespace) {
+        synchronized (cacheDependents) {
+            cacheDependents.computeIfAbsent(dependsOnNamespace, k -> new LinkedHashSet<>()).add(namespace);
+        }
+        dependentCaches.clear();
+    }
+
+    /**
+     * Gets the caches depending directly or indirectly on the given one, which are flushed together with it.
+     *
+     * @param cache
+     *          the cache
+     * @return the dependent caches, empty if there are none
+     * @since 3.5.5
+     */
+    public List<Cache> getDependentCaches(Cache cache) {
+        if (cacheDependents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return dependentCaches.computeIfAbsent(cache.getId(), this::resolveDependentCaches);
+    }
+
+    /**
+     * 沿依赖关系广度优先查找，引用了同一缓存（cache-ref）的命名空间视为同一个节点
+     */
+    private List<Cache> resolveDependentCaches(String cacheId) {
+        Cache cache = caches.containsKey(cacheId) ? caches.get(cacheId) : null;
+        List<Cache> result = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(cacheId);
+        synchronized (cacheDependents) {
+            while (!pending.isEmpty()) {
+                String namespace = pending.poll();
+                if (!visited.add(namespace)) {
+                    continue;
+                }
+                for (Map.Entry<String, String> ref : cacheRefMap.entrySet()) {
+                    if (ref.getValue().equals(namespace)) {
+                        pending.add(ref.getKey());
+                    }
+                }
+                for (String dependent : cacheDependents.getOrDefault(namespace, Collections.emptySet())) {
+                    String dependentCacheId = cacheRefMap.getOrDefault(dependent, dependent);
+                    if (caches.containsKey(dependentCacheId)) {
+                        Cache dependentCache = caches.get(dependentCacheId);
+                        if (dependentCache != cache && !result.contains(dependentCache)) {
+                            result.add(dependentCache);
+                        }
+                    }
+                    pending.add(dependent);
+                    pending.add(dependentCacheId);
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
     }
 
     /*
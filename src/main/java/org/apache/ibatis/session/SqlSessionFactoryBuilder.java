@@ -21,8 +21,10 @@ import java.io.Reader;
 import java.util.Properties;
 
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.executor.ErrorContext;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
 
 /**
@@ -143,7 +145,20 @@ public class SqlSessionFactoryBuilder {
      * @return
      */
     public SqlSessionFactory build(Configuration config) {
+        warmUpDataSource(config);
         return new DefaultSqlSessionFactory(config);
     }
 
+    /**
+     * 在后台预热连接池，不阻塞创建
+     * 可通过 {@link PooledDataSource#isReady()} 查询预热是否完成
+     * @param config
+     */
+    private void warmUpDataSource(Configuration config) {
+        Environment environment = config.getEnvironment();
+        if (environment != null && environment.getDataSource() instanceof PooledDataSource) {
+            ((PooledDataSource) environment.getDataSource()).warmUp();
+        }
+    }
+
 }
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that allows the rows read by a custom {@link TypeHandler} to be mapped in parallel.
+ * <p>
+ * Rows mapped in parallel are read ahead and served again by a result set supporting only the typed getters, like
+ * {@code getString}, {@code getInt}, {@code getBigDecimal}, {@code getTimestamp} or {@code getObject(int, Class)}, and
+ * converting the values read the way drivers commonly do, e.g. {@code getString} returns {@code toString()} of the
+ * value. Statements whose type handlers are not built-in nor annotated are mapped sequentially.
+ *
+ * <p>
+ * <b>How to use:</b>
+ * <pre>
+ * &#064;ParallelMappingSupported
+ * public class MoneyTypeHandler extends BaseTypeHandler&lt;Money&gt; {
+ *   // reads the column with getBigDecimal only
+ * }
+ * </pre>
+ *
+ * @see org.apache.ibatis.annotations.Options#parallelMapping()
+ * @since 3.5.5
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ParallelMappingSupported {
+}
@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.apache.ibatis.builder.annotation.MapperAnnotationBuilder;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -94,6 +95,49 @@ class AnnotationMapperBuilderTest {
         assertThat(mappedStatement.getResultSetType()).isEqualTo(ResultSetType.DEFAULT);
     }
 
+    @Test
+    void withCacheTags() {
+        Configuration configuration = new Configuration();
+        MapperAnnotationBuilder builder = new MapperAnnotationBuilder(configuration, Mapper.class);
+        builder.parse();
+
+        MappedStatement mappedStatement = configuration.getMappedStatement("selectWithCacheTags");
+        assertThat(mappedStatement.getCacheTags()).containsExactly("test", "test:#{id}");
+        assertThat(mappedStatement.getCacheTags(7)).containsExactly("test", "test:7");
+        assertThat(mappedStatement.getFlushTags()).isNull();
+        assertThat(mappedStatement.getFlushTags(7)).isNull();
+
+        mappedStatement = configuration.getMappedStatement("updateWithFlushTags");
+        assertThat(mappedStatement.getFlushTags()).containsExactly("test");
+        assertThat(mappedStatement.getFlushTags("name")).containsExactly("test");
+        assertThat(mappedStatement.getCacheTags()).isNull();
+
+        mappedStatement = configuration.getMappedStatement("selectWithoutOptions");
+        assertThat(mappedStatement.getCacheTags(7)).isNull();
+    }
+
+    @Test
+    void withParallelMapping() {
+        Configuration configuration = new Configuration();
+        MapperAnnotationBuilder builder = new MapperAnnotationBuilder(configuration, Mapper.class);
+        builder.parse();
+
+        assertThat(configuration.getMappedStatement("selectWithParallelMapping").isParallelMapping()).isTrue();
+        assertThat(configuration.getMappedStatement("selectWithOptions").isParallelMapping()).isFalse();
+        assertThat(configuration.getMappedStatement("selectWithoutOptions").isParallelMapping()).isFalse();
+    }
+
+    @Test
+    void withResultSetsOrdered() {
+        Configuration configuration = new Configuration();
+        MapperAnnotationBuilder builder = new MapperAnnotationBuilder(configuration, Mapper.class);
+        builder.parse();
+
+        assertThat(configuration.getMappedStatement("selectWithResultSetsOrdered").isResultSetsOrdered()).isTrue();
+        assertThat(configuration.getMappedStatement("selectWithOptions").isResultSetsOrdered()).isFalse();
+        assertThat(configuration.getMappedStatement("selectWithoutOptions").isResultSetsOrdered()).isFalse();
+    }
+
     interface Mapper {
 
         @Insert("insert into test (name) values(#{name})")
@@ -111,6 +155,22 @@ class AnnotationMapperBuilderTest {
         @Select("select * from test")
         String selectWithoutOptions(Integer id);
 
+        @Select("select * from test where id = #{id}")
+        @Options(cacheTags = "test, test:#{id}")
+        String selectWithCacheTags(Integer id);
+
+        @Update("update test set name = #{name}")
+        @Options(flushTags = "test")
+        void updateWithFlushTags(String name);
+
+        @Select("select * from test")
+        @Options(parallelMapping = true)
+        String selectWithParallelMapping();
+
+        @Select("{call blogs_with_posts()}")
+        @Options(statementType = StatementType.CALLABLE, resultSets = "blogs,posts", resultSetsOrdered = true)
+        String selectWithResultSetsOrdered();
+
     }
 
 }
@@ -37,6 +37,8 @@ import java.util.Properties;
 import org.apache.ibatis.builder.mapper.CustomMapper;
 import org.apache.ibatis.builder.typehandler.CustomIntegerTypeHandler;
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.WeightBoundedCache;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Blog;
@@ -91,6 +93,8 @@ class XmlConfigBuilderTest {
             assertThat(config.isMapUnderscoreToCamelCase()).isFalse();
             assertThat(config.isSafeRowBoundsEnabled()).isFalse();
             assertThat(config.getLocalCacheScope()).isEqualTo(LocalCacheScope.SESSION);
+            assertThat(config.getLocalCacheType()).isEqualTo(PerpetualCache.class);
+            assertThat(config.getLocalCacheSize()).isNull();
             assertThat(config.getJdbcTypeForNull()).isEqualTo(JdbcType.OTHER);
             assertThat(config.getLazyLoadTriggerMethods()).isEqualTo(new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString")));
             assertThat(config.isSafeResultHandlerEnabled()).isTrue();
@@ -186,6 +190,9 @@ class XmlConfigBuilderTest {
             assertThat(config.isMapUnderscoreToCamelCase()).isTrue();
             assertThat(config.isSafeRowBoundsEnabled()).isTrue();
             assertThat(config.getLocalCacheScope()).isEqualTo(LocalCacheScope.STATEMENT);
+            assertThat(config.getLocalCacheType()).isEqualTo(WeightBoundedCache.class);
+            assertThat(config.getLocalCacheSize()).isEqualTo(5000);
+            assertThat(((WeightBoundedCache) config.newLocalCache("local")).getMaximumSize()).isEqualTo(5000);
             assertThat(config.getJdbcTypeForNull()).isEqualTo(JdbcType.NULL);
             assertThat(config.getLazyLoadTriggerMethods()).isEqualTo(new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString", "xxx")));
             assertThat(config.isSafeResultHandlerEnabled()).isFalse();
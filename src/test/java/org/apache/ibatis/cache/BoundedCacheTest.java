@@ -0,0 +1,88 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ibatis.cache.impl.SizeBoundedCache;
+import org.apache.ibatis.cache.impl.WeightBoundedCache;
+import org.apache.ibatis.executor.ExecutionPlaceholder;
+import org.junit.jupiter.api.Test;
+
+class BoundedCacheTest {
+
+    @Test
+    void shouldEvictLeastRecentlyUsedResultBeyondSize() {
+        SizeBoundedCache cache = new SizeBoundedCache("local");
+        cache.setSize(3);
+        for (int i = 0; i < 3; i++) {
+            cache.putObject(i, Collections.singletonList(i));
+        }
+        assertNotNull(cache.getObject(0));
+        cache.putObject(3, Collections.singletonList(3));
+        assertNull(cache.getObject(1));
+        assertNotNull(cache.getObject(0));
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void shouldEvictByNumberOfRows() {
+        WeightBoundedCache cache = new WeightBoundedCache("local");
+        cache.setSize(5);
+        cache.putObject("a", Arrays.asList(1, 2, 3));
+        cache.putObject("b", Collections.emptyList());
+        assertEquals(4, cache.getWeight());
+        cache.putObject("c", Arrays.asList(1, 2));
+        assertNull(cache.getObject("a"));
+        assertNotNull(cache.getObject("b"));
+        assertNotNull(cache.getObject("c"));
+        assertEquals(3, cache.getWeight());
+        cache.putObject("d", Arrays.asList(1, 2, 3, 4, 5, 6));
+        assertNull(cache.getObject("d"));
+        assertEquals(0, cache.getWeight());
+        assertEquals(4, cache.getEvictionCount());
+    }
+
+    @Test
+    void shouldNeverEvictPlaceholders() {
+        SizeBoundedCache cache = new SizeBoundedCache("local");
+        cache.setSize(1);
+        cache.putObject("running", ExecutionPlaceholder.EXECUTION_PLACEHOLDER);
+        cache.putObject("a", Collections.singletonList(1));
+        cache.putObject("b", Collections.singletonList(2));
+        assertSame(ExecutionPlaceholder.EXECUTION_PLACEHOLDER, cache.getObject("running"));
+        assertNull(cache.getObject("a"));
+        assertNotNull(cache.getObject("b"));
+    }
+
+    @Test
+    void shouldNotCountRemovalsAsEvictions() {
+        SizeBoundedCache cache = new SizeBoundedCache("local");
+        cache.putObject("a", Collections.singletonList(1));
+        cache.putObject("a", Collections.singletonList(2));
+        cache.removeObject("a");
+        cache.putObject("b", Collections.singletonList(1));
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class CacheDependencyTest {
+
+    @Test
+    void shouldResolveDependentCachesTransitively() {
+        Configuration configuration = new Configuration();
+        Cache blog = addCache(configuration, "blog");
+        Cache post = addCache(configuration, "post");
+        Cache comment = addCache(configuration, "comment");
+        addCache(configuration, "author");
+        configuration.addCacheDependency("post", "blog");
+        configuration.addCacheDependency("comment", "post");
+        configuration.addCacheDependency("blog", "comment");
+
+        assertEquals(Arrays.asList(post, comment), configuration.getDependentCaches(blog));
+        assertEquals(Arrays.asList(comment, blog), configuration.getDependentCaches(post));
+        assertTrue(configuration.getDependentCaches(configuration.getCache("author")).isEmpty());
+    }
+
+    @Test
+    void shouldFollowCacheRefs() {
+        Configuration configuration = new Configuration();
+        Cache blog = addCache(configuration, "blog");
+        Cache post = addCache(configuration, "post");
+        configuration.addCacheRef("blogSummary", "blog");
+        configuration.addCacheRef("postSummary", "post");
+        configuration.addCacheDependency("postSummary", "blogSummary");
+
+        assertEquals(Collections.singletonList(post), configuration.getDependentCaches(blog));
+    }
+
+    @Test
+    void shouldFlushDependentCachesOnCommit() {
+        Configuration configuration = new Configuration();
+        Cache blog = addCache(configuration, "blog");
+        Cache post = addCache(configuration, "post");
+        Cache author = addCache(configuration, "author");
+        configuration.addCacheDependency("post", "blog");
+        post.putObject("post", "post");
+        author.putObject("author", "author");
+
+        TransactionalCacheManager tcm = new TransactionalCacheManager();
+        List<Cache> dependentCaches = configuration.getDependentCaches(blog);
+        tcm.clear(blog, dependentCaches);
+        assertNull(tcm.getObject(post, new CacheKey()));
+        assertEquals("post", post.getObject("post"));
+        tcm.commit();
+        assertNull(post.getObject("post"));
+        assertEquals("author", author.getObject("author"));
+    }
+
+    private Cache addCache(Configuration configuration, String id) {
+        Cache cache = new PerpetualCache(id);
+        configuration.addCache(cache);
+        return cache;
+    }
+
+}
@@ -22,6 +22,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Base64;
 import java.util.Date;
 
 import org.junit.jupiter.api.Assertions;
@@ -87,6 +88,42 @@ class CacheKeyTest {
         assertEquals(key1, key2);
     }
 
+    @Test
+    void shouldTreatIntComponentsLikeBoxedOnes() throws Exception {
+        CacheKey key1 = new CacheKey(2);
+        key1.update("select");
+        key1.update(Integer.MAX_VALUE);
+        CacheKey key2 = new CacheKey();
+        key2.update("select");
+        key2.update(Integer.valueOf(Integer.MAX_VALUE));
+        assertEquals(key1, key2);
+        assertEquals(key2, key1);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertEquals(key1.toString(), key2.toString());
+        CacheKey key3 = new CacheKey(1);
+        key3.update("select");
+        key3.update(0);
+        assertNotEquals(key1, key3);
+        assertEquals(key1, serialize(key1));
+    }
+
+    @Test
+    void shouldGrowBeyondExpectedUpdateCount() throws Exception {
+        CacheKey key1 = new CacheKey(1);
+        CacheKey key2 = new CacheKey(0);
+        for (int i = 0; i < 20; i++) {
+            key1.update(i);
+            key2.update("v" + i);
+        }
+        assertEquals(20, key1.getUpdateCount());
+        assertEquals(20, key2.getUpdateCount());
+        CacheKey clone = key1.clone();
+        assertEquals(key1, clone);
+        clone.update(20);
+        assertNotEquals(key1, clone);
+        assertEquals(20, key1.getUpdateCount());
+    }
+
     @Test
     void serializationExceptionTest() {
         CacheKey cacheKey = new CacheKey();
@@ -103,6 +140,25 @@ class CacheKeyTest {
         Assertions.assertEquals(cacheKey, serialize(cacheKey));
     }
 
+    @Test
+    void shouldReadKeysSerializedInTheFormerForm() throws Exception {
+        // new CacheKey() updated with "id", 1 and null, serialized when the components were held in an ArrayList
+        byte[] serialized = Base64.getDecoder().decode("rO0ABXNyACBvcmcuYXBhY2hlLmliYXRpcy5jYWNoZS5DYWNoZUtleQ/p1bTNM6iCAgAFSgAIY2hlY2tzdW1JAAVjb3VudEkACGhhc2hjb2RlSQAKbXVsdGlwbGllckwACnVwZGF0ZUxpc3R0ABBMamF2YS91dGlsL0xpc3Q7eHAAAAAAAAANHQAAAAMAUzldAAAAJXNyABNqYXZhLnV0aWwuQXJyYXlMaXN0eIHSHZnHYZ0DAAFJAARzaXpleHAAAAADdwQAAAADdAACaWRzcgARamF2YS5sYW5nLkludGVnZXIS4qCk94GHOAIAAUkABXZhbHVleHIAEGphdmEubGFuZy5OdW1iZXKGrJUdC5TgiwIAAHhwAAAAAXB4");
+        CacheKey expected = new CacheKey();
+        expected.update("id");
+        expected.update(1);
+        expected.update(null);
+        CacheKey cacheKey = (CacheKey) new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+        assertEquals(expected, cacheKey);
+        assertEquals(expected.hashCode(), cacheKey.hashCode());
+        assertEquals(expected.toString(), cacheKey.toString());
+        assertEquals(3, cacheKey.getUpdateCount());
+        cacheKey.update(2);
+        expected.update(2);
+        assertEquals(expected, cacheKey);
+        assertEquals(expected, serialize(cacheKey));
+    }
+
     private static <T> T serialize(T object) throws Exception {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         new ObjectOutputStream(baos).writeObject(object);
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class CacheStatisticsTest {
+
+    @Test
+    void shouldCollectStatisticsAcrossDecorators() {
+        Cache cache = new CacheBuilder("default").size(2).readWrite(true).build();
+        CacheStatistics statistics = cache.getStatistics();
+        assertNotNull(statistics);
+
+        cache.putObject("a", "value a");
+        cache.putObject("b", "value b");
+        cache.putObject("c", "value c");
+        assertNull(cache.getObject("a"));
+        assertEquals("value c", cache.getObject("c"));
+        statistics.recordLoad(2000);
+
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(0.5, statistics.getHitRatio());
+        assertEquals(3, statistics.getPutCount());
+        assertEquals(1, statistics.getEvictionCount());
+        assertEquals(2000, statistics.getAverageLoadTime());
+        assertEquals(2, statistics.getSize());
+        assertTrue(statistics.getEstimatedBytes() > 0);
+    }
+
+    @Test
+    void shouldCountEachEntryPutAtOnce() {
+        Cache cache = new CacheBuilder("default").build();
+        Map<Object, Object> entries = new HashMap<>();
+        entries.put("a", "value a");
+        entries.put("b", "value b");
+        cache.putAll(entries, Collections.emptyMap());
+        assertEquals(2, cache.getStatistics().getPutCount());
+    }
+
+    @Test
+    void shouldCountEvictionsOfThreadSafeCache() {
+        Cache cache = new CacheBuilder("default").implementation(ConcurrentCache.class).size(1).readWrite(false).build();
+        cache.putObject("a", "value a");
+        cache.putObject("b", "value b");
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+        assertEquals(-1, cache.getStatistics().getEstimatedBytes());
+    }
+
+    @Test
+    void shouldTrackHotKeys() {
+        Cache cache = new CacheBuilder("default").hotKeys(2).build();
+        for (int i = 0; i < 10000; i++) {
+            cache.getObject("hot");
+            if (i % 2 == 0) {
+                cache.getObject("warm");
+            }
+            cache.getObject("cold" + i);
+        }
+
+        List<CacheStatistics.HotKey> hotKeys = cache.getStatistics().getHotKeys();
+        assertEquals(2, hotKeys.size());
+        assertEquals("hot", hotKeys.get(0).getKey());
+        assertEquals("warm", hotKeys.get(1).getKey());
+        assertTrue(hotKeys.get(0).getRequests() > 5000);
+    }
+
+    @Test
+    void shouldNotTrackHotKeysByDefault() {
+        Cache cache = new CacheBuilder("default").build();
+        cache.getObject("key");
+        assertFalse(cache.getStatistics().isHotKeyTracking());
+        assertTrue(cache.getStatistics().getHotKeys().isEmpty());
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.CoalescingCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class CoalescingCacheTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldShareOneLoad() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new PerpetualCache("default"));
+        assertNull(cache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 3);
+
+        cache.complete("key", "value");
+        for (Future<Object> waiter : waiters) {
+            assertEquals("value", waiter.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void shouldHandCopiesOverWhenReadWrite() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new PerpetualCache("default"));
+        cache.setReadWrite(true);
+        assertNull(cache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 2);
+
+        ArrayList<String> value = new ArrayList<>(Collections.singletonList("value"));
+        cache.complete("key", value);
+        Object first = waiters.get(0).get(5, TimeUnit.SECONDS);
+        Object second = waiters.get(1).get(5, TimeUnit.SECONDS);
+        assertEquals(value, first);
+        assertEquals(value, second);
+        assertNotSame(value, first);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void shouldHandFailureOver() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new PerpetualCache("default"));
+        assertNull(cache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 2);
+
+        SQLException failure = new SQLException("failed");
+        cache.fail("key", failure);
+        for (Future<Object> waiter : waiters) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof CacheException);
+            assertSame(failure, e.getCause().getCause());
+        }
+        // the failed load is gone, the next caller loads again
+        assertNull(executor.submit(() -> cache.getObject("key")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldLetWaitersLoadWhenLoadEndsWithoutResult() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new PerpetualCache("default"));
+        assertNull(cache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 1);
+
+        cache.removeObject("key");
+        assertNull(waiters.get(0).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldShareValueLoadedInTransactionBeforeCommit() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new PerpetualCache("default"));
+        TransactionalCache txCache = new TransactionalCache(cache);
+        assertNull(txCache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 1);
+
+        txCache.putObject("key", "value");
+        assertEquals("value", waiters.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(0, cache.getSize());
+        txCache.commit();
+        assertEquals("value", cache.getObject("key"));
+    }
+
+    @Test
+    void shouldNotShareValueOfSessionThatFlushedTheCache() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new PerpetualCache("default"));
+        TransactionalCache txCache = new TransactionalCache(cache);
+        txCache.clear();
+        assertNull(txCache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 1);
+
+        txCache.putObject("key", "changed value");
+        // the waiter loads the value itself
+        assertNull(waiters.get(0).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldCoalesceLoadsOfExpiredEntry() throws Exception {
+        Cache cache = new CacheBuilder("default").coalescing(true).timeToLive(200L).readWrite(false).build();
+        assertTrue(cache instanceof CoalescingCache);
+        TransactionalCache txCache = new TransactionalCache(cache);
+        txCache.putObject("key", "value");
+        txCache.commit();
+        assertEquals("value", txCache.getObject("key"));
+
+        Thread.sleep(250);
+        assertNull(txCache.getObject("key"));
+        List<Future<Object>> waiters = startWaiters(cache, 1);
+
+        txCache.putObject("key", "reloaded");
+        assertEquals("reloaded", waiters.get(0).get(5, TimeUnit.SECONDS));
+    }
+
+    private List<Future<Object>> startWaiters(Cache cache, int count) throws InterruptedException {
+        List<Future<Object>> waiters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            waiters.add(executor.submit(() -> cache.getObject("key")));
+        }
+        Thread.sleep(100);
+        for (Future<Object> waiter : waiters) {
+            assertFalse(waiter.isDone());
+        }
+        return waiters;
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.CompactCacheSerializer;
+import org.apache.ibatis.cache.impl.JdkCacheSerializer;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.domain.blog.Post;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.jupiter.api.Test;
+
+class CompactCacheSerializerTest {
+
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer();
+
+    @Test
+    void shouldCopyResultsKeepingSharedAndCircularReferences() {
+        List<Blog> blogs = blogs();
+
+        byte[] bytes = serializer.serialize(blogs);
+        @SuppressWarnings("unchecked")
+        List<Blog> copy = (List<Blog>) serializer.deserialize(bytes);
+
+        assertNotSame(blogs, copy);
+        assertEquals(2, copy.size());
+        Blog blog = copy.get(0);
+        assertEquals("Jim Business", blog.getTitle());
+        assertEquals(blogs.get(0).getAuthor(), blog.getAuthor());
+        assertNotSame(blogs.get(0).getAuthor(), blog.getAuthor());
+        assertSame(blog.getAuthor(), copy.get(1).getAuthor());
+        Post post = blog.getPosts().get(0);
+        assertSame(blog, post.getBlog());
+        assertEquals(new Date(1000), post.getCreatedOn());
+        assertEquals(Section.NEWS, post.getSection());
+        assertEquals("Corn nuts", post.getSubject());
+    }
+
+    @Test
+    void shouldBeSmallerThanJavaSerialization() {
+        List<Author> authors = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            authors.add(new Author(i, "author" + i, "********", "author" + i + "@ibatis.apache.org", "", Section.NEWS));
+        }
+        assertTrue(serializer.serialize(authors).length < new JdkCacheSerializer().serialize(authors).length);
+    }
+
+    @Test
+    void shouldCopyPlainValues() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 1);
+        row.put("negative", -42L);
+        row.put("price", new BigDecimal("-12.345"));
+        row.put("name", "ünïcödé 中文");
+        row.put("created", new Timestamp(123456789L));
+        row.put("flags", new boolean[] { true, false });
+        row.put("names", new String[] { "a", null, "b" });
+        row.put("ratio", 0.5d);
+        row.put("none", null);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> copy = (Map<String, Object>) serializer.deserialize(serializer.serialize(row));
+        assertEquals(row.keySet(), copy.keySet());
+        for (String key : Arrays.asList("id", "negative", "price", "name", "created", "ratio")) {
+            assertEquals(row.get(key), copy.get(key), key);
+        }
+        assertArrayEquals((boolean[]) row.get("flags"), (boolean[]) copy.get("flags"));
+        assertArrayEquals((String[]) row.get("names"), (String[]) copy.get("names"));
+        assertNull(copy.get("none"));
+    }
+
+    @Test
+    void shouldCopyResultsThatAreNotSerializable() {
+        Point point = new Point();
+        point.setX(3);
+        point.setY(-4);
+        SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+        cache.setSerializer(serializer);
+
+        cache.putObject("point", point);
+        Point copy = (Point) cache.getObject("point");
+        assertNotSame(point, copy);
+        assertEquals(3, copy.getX());
+        assertEquals(-4, copy.getY());
+        assertEquals(1, cache.getSerializationCount());
+        assertEquals(1, cache.getDeserializationCount());
+        assertTrue(cache.getSerializedBytes() > 0);
+        assertEquals(cache.getSerializedBytes(), cache.getAverageSerializedSize());
+    }
+
+    private List<Blog> blogs() {
+        Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "", Section.NEWS);
+        Blog blog = new Blog(1, "Jim Business", author, new ArrayList<>());
+        Blog other = new Blog(2, "Bob Business", author, new ArrayList<>());
+        for (int i = 0; i < 3; i++) {
+            Post post = new Post();
+            post.setId(i);
+            post.setAuthor(author);
+            post.setBlog(blog);
+            post.setCreatedOn(new Date(1000));
+            post.setSection(Section.NEWS);
+            post.setSubject("Corn nuts");
+            post.setBody("I think if I never smelled another corn nut it would be too soon...");
+            blog.getPosts().add(post);
+        }
+        return new ArrayList<>(Arrays.asList(blog, other));
+    }
+
+    public static class Point {
+
+        private int x;
+        private int y;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+    }
+
+}
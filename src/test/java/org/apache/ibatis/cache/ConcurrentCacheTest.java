@@ -0,0 +1,155 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentCacheTest {
+
+    @Test
+    void shouldEvictEntriesNotReadSinceTheClockPassed() {
+        ConcurrentCache cache = new ConcurrentCache("default");
+        cache.setSize(5);
+        for (int i = 0; i < 5; i++) {
+            cache.putObject(i, i);
+        }
+        assertEquals(0, cache.getObject(0));
+        cache.putObject(5, 5);
+        assertEquals(5, cache.getSize());
+        assertEquals(0, cache.getObject(0));
+        assertNull(cache.getObject(1));
+        assertEquals(5, cache.getObject(5));
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTimeToLive() throws Exception {
+        ConcurrentCache cache = new ConcurrentCache("default");
+        cache.setTimeToLive(50);
+        cache.putObject("a", "a");
+        assertEquals("a", cache.getObject("a"));
+        Thread.sleep(100);
+        assertNull(cache.getObject("a"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void shouldNotAdmitRarelyRequestedEntries() {
+        ConcurrentCache cache = new ConcurrentCache("default");
+        cache.setAdmission("tinylfu");
+        cache.setSize(2);
+        for (int i = 0; i < 3; i++) {
+            cache.getObject("a");
+            cache.getObject("b");
+        }
+        cache.putObject("a", "a");
+        cache.putObject("b", "b");
+        cache.getObject("c");
+        cache.putObject("c", "c");
+        assertNull(cache.getObject("c"));
+        assertEquals("a", cache.getObject("a"));
+        assertEquals("b", cache.getObject("b"));
+    }
+
+    @Test
+    void shouldInvalidateOnlyDependentItems() {
+        ConcurrentCache cache = new ConcurrentCache("default");
+        cache.putObject("blog", "blog", Collections.singleton("blog"));
+        cache.putObject("author", "author", Collections.singleton("author"));
+        cache.putObject("untagged", "untagged");
+        cache.invalidate(Collections.singleton("blog"));
+        assertNull(cache.getObject("blog"));
+        assertNull(cache.getObject("untagged"));
+        assertEquals("author", cache.getObject("author"));
+        // the freed slots are reused
+        for (int i = 0; i < 1024; i++) {
+            cache.putObject(i, i);
+        }
+        assertEquals(1024, cache.getSize());
+    }
+
+    @Test
+    void shouldRemoveItemOnDemand() {
+        Cache cache = new ConcurrentCache("default");
+        cache.putObject(0, 0);
+        assertNotNull(cache.getObject(0));
+        cache.removeObject(0);
+        assertNull(cache.getObject(0));
+        cache.putObject(0, 1);
+        cache.clear();
+        assertNull(cache.getObject(0));
+    }
+
+    @Test
+    void shouldReuseSlotsOfClearedEntries() {
+        ConcurrentCache cache = new ConcurrentCache("default");
+        cache.setSize(5);
+        for (int i = 0; i < 5; i++) {
+            cache.putObject(i, i);
+        }
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        for (int i = 10; i < 15; i++) {
+            cache.putObject(i, i);
+        }
+        assertEquals(5, cache.getSize());
+        for (int i = 10; i < 15; i++) {
+            assertEquals(i, cache.getObject(i));
+        }
+        cache.putObject(15, 15);
+        assertEquals(5, cache.getSize());
+    }
+
+    @Test
+    void shouldStayWithinSizeUnderConcurrentAccess() throws Exception {
+        ConcurrentCache cache = new ConcurrentCache("default");
+        cache.setSize(100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        Integer key = (i * 31 + seed) % 500;
+                        Object value = cache.getObject(key);
+                        if (value == null) {
+                            cache.putObject(key, key);
+                        } else {
+                            assertEquals(key, value);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.getSize() <= 100);
+    }
+
+}
@@ -17,6 +17,10 @@ package org.apache.ibatis.cache;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.junit.jupiter.api.Test;
@@ -36,6 +40,24 @@ class FifoCacheTest {
         assertEquals(5, cache.getSize());
     }
 
+    @Test
+    void shouldRemoveFirstItemsOfBatchBeyondFiveEntries() {
+        FifoCache cache = new FifoCache(new PerpetualCache("default"));
+        cache.setSize(5);
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            entries.put(i, i);
+        }
+        cache.putAll(entries, Collections.emptyMap());
+        assertTrue(cache.getSize() <= 5);
+        assertNull(cache.getObject(2));
+        assertEquals(3, cache.getObject(3));
+        assertEquals(7, cache.getObject(7));
+        cache.putObject(8, 8);
+        assertEquals(5, cache.getSize());
+        assertNull(cache.getObject(3));
+    }
+
     @Test
     void shouldRemoveItemOnDemand() {
         FifoCache cache = new FifoCache(new PerpetualCache("default"));
@@ -58,4 +80,19 @@ class FifoCacheTest {
         assertNull(cache.getObject(4));
     }
 
+    @Test
+    void shouldRemoveFirstItemsBeyondMaxWeight() {
+        FifoCache cache = new FifoCache(new PerpetualCache("default"));
+        cache.setMaxWeight(100);
+        cache.putObject(0, new byte[40]);
+        cache.putObject(1, new byte[40]);
+        assertNotNull(cache.getObject(0));
+        cache.putObject(2, new byte[40]);
+        assertNull(cache.getObject(0));
+        assertNotNull(cache.getObject(1));
+        assertEquals(80, cache.getWeight());
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
 }
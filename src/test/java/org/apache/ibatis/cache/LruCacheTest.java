@@ -17,6 +17,9 @@ package org.apache.ibatis.cache;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.junit.jupiter.api.Test;
@@ -58,4 +61,61 @@ class LruCacheTest {
         assertNull(cache.getObject(4));
     }
 
+    @Test
+    void shouldRemoveLeastRecentlyUsedItemsBeyondMaxWeight() {
+        LruCache cache = new LruCache(new PerpetualCache("default"));
+        cache.setMaxWeight(1000);
+        cache.setRowSize(100);
+        cache.putObject("a", Arrays.asList(1, 2, 3));
+        cache.putObject("b", Arrays.asList(1, 2, 3, 4));
+        assertEquals(700, cache.getWeight());
+        assertNotNull(cache.getObject("a"));
+        cache.putObject("c", Arrays.asList(1, 2, 3, 4, 5));
+        assertNull(cache.getObject("b"));
+        assertNotNull(cache.getObject("a"));
+        assertEquals(800, cache.getWeight());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void shouldNotKeepItemHeavierThanMaxWeight() {
+        LruCache cache = new LruCache(new PerpetualCache("default"));
+        cache.setMaxWeight(1000);
+        cache.setWeigher(LengthWeigher.class.getName());
+        cache.putObject("a", "small");
+        cache.putObject("b", String.join("", Collections.nCopies(1001, "x")));
+        assertNull(cache.getObject("b"));
+        assertEquals("small", cache.getObject("a"));
+        assertEquals(5, cache.getWeight());
+        cache.removeObject("a");
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    void shouldForgetWeightOfInvalidatedItemsWithoutReadingThem() {
+        int[] reads = {0};
+        LruCache cache = new LruCache(new PerpetualCache("default") {
+            @Override
+            public Object getObject(Object key) {
+                reads[0]++;
+                return super.getObject(key);
+            }
+        });
+        cache.setMaxWeight(1000);
+        cache.setRowSize(100);
+        cache.putObject("a", Arrays.asList(1, 2, 3), Collections.singleton("blog"));
+        cache.putObject("b", Arrays.asList(1, 2, 3, 4), Collections.singleton("author"));
+        cache.invalidate(Collections.singleton("blog"));
+        assertEquals(400, cache.getWeight());
+        assertEquals(0, reads[0]);
+    }
+
+    public static class LengthWeigher implements CacheWeigher {
+
+        @Override
+        public long weigh(Object key, Object value) {
+            return value.toString().length();
+        }
+    }
+
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCacheTest {
+
+    @Test
+    void shouldStoreSerializedCopies() {
+        OffHeapCache cache = new OffHeapCache("default");
+        List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+        cache.putObject("key", value);
+        value.add("c");
+        assertEquals(Arrays.asList("a", "b"), cache.getObject("key"));
+        assertNotSame(cache.getObject("key"), cache.getObject("key"));
+    }
+
+    @Test
+    void shouldKeepBytesFromSerializedCache() {
+        Cache cache = new SerializedCache(new OffHeapCache("default"));
+        cache.putObject("key", "value");
+        cache.putObject("null", null);
+        assertEquals("value", cache.getObject("key"));
+        assertNull(cache.getObject("null"));
+    }
+
+    @Test
+    void shouldEvictOldestSlabKeepingReferencedEntries() {
+        OffHeapCache cache = new OffHeapCache("default");
+        cache.setSlabSize(100);
+        cache.setCapacity(200);
+        for (int i = 0; i < 4; i++) {
+            cache.putObject(i, new byte[50]);
+        }
+        assertNotNull(cache.getObject(0));
+        cache.putObject(4, new byte[50]);
+        assertNotNull(cache.getObject(0));
+        assertNull(cache.getObject(1));
+        assertNotNull(cache.getObject(4));
+        assertEquals(1, cache.getEvictionCount());
+        cache.putObject(5, new byte[101]);
+        assertNull(cache.getObject(5));
+    }
+
+    @Test
+    void shouldNotRestoreEntriesInvalidatedWhileReclaimingTheirSlab() {
+        OffHeapCache cache = new OffHeapCache("default");
+        cache.setSlabSize(100);
+        cache.setCapacity(200);
+        InvalidatingKey key = new InvalidatingKey(cache);
+        cache.putObject(key, new byte[50], Collections.singleton("tag"));
+        for (int i = 1; i < 4; i++) {
+            cache.putObject(i, new byte[50]);
+        }
+        assertNotNull(cache.getObject(key));
+        // the slab of the key is reclaimed next, the key is invalidated between its check and its move
+        key.invalidateOnHashCode = 2;
+        cache.putObject(4, new byte[50]);
+        key.invalidateOnHashCode = 0;
+        assertNull(cache.getObject(key));
+        assertNotNull(cache.getObject(4));
+    }
+
+    @Test
+    void shouldRemoveAndClear() {
+        OffHeapCache cache = new OffHeapCache("default");
+        cache.putObject(0, 0);
+        assertEquals(0, cache.removeObject(0));
+        assertNull(cache.getObject(0));
+        assertNull(cache.removeObject(0));
+        cache.putObject("bytes", new byte[] {1, 2});
+        assertArrayEquals(new byte[] {1, 2}, (byte[]) cache.removeObject("bytes"));
+        cache.putObject(1, 1);
+        cache.clear();
+        assertNull(cache.getObject(1));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void shouldReadConsistentValuesWhileWriting() throws Exception {
+        OffHeapCache cache = new OffHeapCache("default");
+        cache.setSlabSize(4096);
+        cache.setCapacity(4096 * 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        int key = (i * 7 + seed) % 300;
+                        Object value = cache.getObject(key);
+                        if (value == null) {
+                            byte[] bytes = new byte[64];
+                            Arrays.fill(bytes, (byte) key);
+                            cache.putObject(key, bytes);
+                        } else {
+                            byte[] bytes = (byte[]) value;
+                            for (byte b : bytes) {
+                                assertEquals((byte) key, b);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static class InvalidatingKey {
+
+        private final OffHeapCache cache;
+        // invalidates the key on the n-th call of hashCode, 0 to never invalidate it
+        private int invalidateOnHashCode;
+
+        InvalidatingKey(OffHeapCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public int hashCode() {
+            if (invalidateOnHashCode > 0 && --invalidateOnHashCode == 0) {
+                cache.invalidate(Collections.singleton("tag"));
+            }
+            return 42;
+        }
+
+    }
+
+}
@@ -17,6 +17,8 @@ package org.apache.ibatis.cache;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Collections;
+
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
@@ -69,4 +71,18 @@ class PerpetualCacheTest {
         assertNull(cache.getObject(4));
     }
 
+    @Test
+    void shouldInvalidateOnlyDependentItems() {
+        Cache cache = new PerpetualCache("default");
+        cache = new SynchronizedCache(new SerializedCache(cache));
+        cache.putObject("blog", "blog", Collections.singleton("blog"));
+        cache.putObject("author", "author", Collections.singleton("author"));
+        cache.putObject("untagged", "untagged");
+        cache.invalidate(Collections.singleton("blog"));
+        assertNull(cache.getObject("blog"));
+        assertNull(cache.getObject("untagged"));
+        assertEquals("author", cache.getObject("author"));
+        assertEquals(1, cache.getSize());
+    }
+
 }
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadCacheTest {
+
+    @Test
+    void shouldServeStaleValueWhileReloading() throws Exception {
+        RefreshAheadCache cache = newCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        cache.putObject("key", "stale");
+        cache.setLoader("key", () -> {
+            started.countDown();
+            proceed.await();
+            done.countDown();
+            return "fresh";
+        });
+
+        Thread.sleep(250);
+        assertEquals("stale", cache.getObject("key"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // expired meanwhile, but the reload is on its way
+        Thread.sleep(200);
+        assertEquals("stale", cache.getObject("key"));
+
+        proceed.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals("fresh", cache.getObject("key"));
+    }
+
+    @Test
+    void shouldExpireEntryNotReadBeforeExpiry() throws Exception {
+        RefreshAheadCache cache = newCache();
+        cache.putObject("key", "value");
+        cache.setLoader("key", () -> "fresh");
+        assertEquals("value", cache.getObject("key"));
+
+        Thread.sleep(350);
+        assertNull(cache.getObject("key"));
+    }
+
+    @Test
+    void shouldDropReloadedValueOfClearedEntry() throws Exception {
+        RefreshAheadCache cache = newCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        cache.putObject("key", "value");
+        cache.setLoader("key", () -> {
+            started.countDown();
+            proceed.await();
+            return "reloaded";
+        });
+
+        Thread.sleep(250);
+        assertEquals("value", cache.getObject("key"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        cache.clear();
+        proceed.countDown();
+        Thread.sleep(100);
+        assertNull(cache.getObject("key"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void shouldDropReloadedValueOfRemovedEntry() throws Exception {
+        RefreshAheadCache cache = newCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        cache.putObject("key", "value");
+        cache.setLoader("key", () -> {
+            started.countDown();
+            proceed.await();
+            return "reloaded";
+        });
+
+        Thread.sleep(250);
+        assertEquals("value", cache.getObject("key"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals("value", cache.removeObject("key"));
+        proceed.countDown();
+        Thread.sleep(100);
+        assertNull(cache.getObject("key"));
+        assertEquals(0, cache.getSize());
+    }
+
+    private RefreshAheadCache newCache() {
+        RefreshAheadCache cache = new RefreshAheadCache(new PerpetualCache("default"));
+        cache.setTimeToLive(300);
+        cache.setRefreshAhead(100);
+        return cache;
+    }
+
+}
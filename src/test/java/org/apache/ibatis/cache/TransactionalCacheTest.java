@@ -0,0 +1,120 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class TransactionalCacheTest {
+
+    private static final Set<String> BLOG = Collections.singleton("blog");
+    private static final Set<String> AUTHOR = Collections.singleton("author");
+
+    @Test
+    void shouldInvalidateDependentEntriesOnCommit() {
+        Cache cache = new PerpetualCache("default");
+        cache.putObject("blog", "blog", BLOG);
+        cache.putObject("author", "author", AUTHOR);
+        TransactionalCache txCache = new TransactionalCache(cache);
+
+        txCache.invalidate(BLOG);
+        assertNull(txCache.getObject("blog", BLOG));
+        assertEquals("author", txCache.getObject("author", AUTHOR));
+        assertEquals("blog", cache.getObject("blog"));
+
+        txCache.putObject("blog", "changed blog", BLOG);
+        txCache.commit();
+        assertEquals("changed blog", cache.getObject("blog"));
+        assertEquals("author", cache.getObject("author"));
+    }
+
+    @Test
+    void shouldDiscardPendingDependentEntries() {
+        Cache cache = new PerpetualCache("default");
+        TransactionalCache txCache = new TransactionalCache(cache);
+
+        txCache.putObject("blog", "blog", BLOG);
+        txCache.putObject("author", "author", AUTHOR);
+        txCache.invalidate(BLOG);
+        txCache.commit();
+        assertNull(cache.getObject("blog"));
+        assertEquals("author", cache.getObject("author"));
+    }
+
+    @Test
+    void shouldNotInvalidateOnRollback() {
+        Cache cache = new PerpetualCache("default");
+        cache.putObject("blog", "blog", BLOG);
+        TransactionalCache txCache = new TransactionalCache(cache);
+
+        txCache.invalidate(BLOG);
+        txCache.rollback();
+        assertEquals("blog", txCache.getObject("blog", BLOG));
+        txCache.commit();
+        assertEquals("blog", cache.getObject("blog"));
+    }
+
+    @Test
+    void shouldPutEntriesOfCommitInOneBatch() throws Exception {
+        PerpetualCache perpetualCache = new PerpetualCache("default");
+        LruCache lruCache = new LruCache(perpetualCache);
+        int[] batches = new int[1];
+        Cache batchCounter = new SynchronizedCache(new SerializedCache(lruCache)) {
+            @Override
+            public synchronized void putAll(Map<Object, Object> entries, Map<Object, Set<String>> tags) {
+                batches[0]++;
+                super.putAll(entries, tags);
+            }
+        };
+        BlockingCache cache = new BlockingCache(batchCounter);
+        TransactionalCache txCache = new TransactionalCache(cache);
+
+        for (int i = 0; i < 4; i++) {
+            assertNull(txCache.getObject(i));
+            txCache.putObject(i, "value" + i, i % 2 == 0 ? BLOG : AUTHOR);
+        }
+        assertNull(txCache.getObject("missed"));
+        txCache.commit();
+        assertEquals(1, batches[0]);
+        assertEquals("value3", cache.getObject(3));
+        lruCache.invalidate(BLOG);
+        assertNull(perpetualCache.getObject(0));
+        assertNotNull(perpetualCache.getObject(1));
+        // the locks taken by the misses got released
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNull(executor.submit(() -> cache.getObject("missed")).get(5, TimeUnit.SECONDS));
+            assertNull(executor.submit(() -> cache.getObject(0)).get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
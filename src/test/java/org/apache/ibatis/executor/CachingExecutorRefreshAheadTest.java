@@ -0,0 +1,106 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMap;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CachingExecutorRefreshAheadTest extends BaseDataTest {
+
+    private static DataSource ds;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        ds = createBlogDataSource();
+    }
+
+    @Test
+    void shouldApplyPluginsToReload() throws Exception {
+        final Configuration config = new Configuration(new Environment("test", new JdbcTransactionFactory(), ds));
+        final ReloadInterceptor interceptor = new ReloadInterceptor();
+        config.addInterceptor(interceptor);
+        final MappedStatement ms = prepareSelectAuthor(config);
+
+        final Executor executor = config.newExecutor(new JdbcTransaction(ds, null, false));
+        try {
+            assertEquals(1, executor.query(ms, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size());
+            executor.commit(true);
+            // the cached result is read within the last 100 ms of its time to live
+            Thread.sleep(250);
+            assertEquals(1, executor.query(ms, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size());
+        } finally {
+            executor.close(false);
+        }
+        assertTrue(interceptor.reloaded.await(5, TimeUnit.SECONDS));
+    }
+
+    private static MappedStatement prepareSelectAuthor(Configuration config) {
+        final ResultMap rm = new ResultMap.Builder(config, "authorMap", HashMap.class, new ArrayList<>()).build();
+        final ParameterMap pm = new ParameterMap.Builder(config, "authorParameterMap", Integer.class, Collections.singletonList(
+                new ParameterMapping.Builder(config, "id", config.getTypeHandlerRegistry().getTypeHandler(int.class)).build())).build();
+        return new MappedStatement.Builder(config, "selectAuthor", new StaticSqlSource(config, "SELECT * FROM author WHERE id = ?"),
+                SqlCommandType.SELECT).parameterMap(pm).resultMaps(Collections.singletonList(rm)).useCache(true)
+                        .cache(new CacheBuilder("author").timeToLive(300L).refreshAhead(100L).build()).build();
+    }
+
+    // the session only calls the query without a cache key, so only the reload is counted
+    @Intercepts(@Signature(type = Executor.class, method = "query",
+            args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}))
+    public static class ReloadInterceptor implements Interceptor {
+
+        private final CountDownLatch reloaded = new CountDownLatch(1);
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            final Object result = invocation.proceed();
+            reloaded.countDown();
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResultLoaderBatchTest {
+
+    private final Configuration configuration = new Configuration();
+    // the keys of each batch statement
+    private final List<List<Object>> batchQueries = new ArrayList<>();
+    // the parameter of each single nested select
+    private final List<Object> singleQueries = new ArrayList<>();
+    private final Set<CacheKey> cachedKeys = new HashSet<>();
+    private final List<Object> deferredLoads = new ArrayList<>();
+    private Executor executor;
+    private MappedStatement nestedQuery;
+
+    @BeforeEach
+    void setUp() {
+        nestedQuery = addStatement("selectKid");
+        final MappedStatement batchQuery = addStatement("selectKids");
+        // returns key % 3 rows per key, with a Long key property whatever the type of the key
+        executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class[] {Executor.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isClosed":
+                    return false;
+                case "isCached":
+                    return cachedKeys.contains((CacheKey) args[1]);
+                case "deferLoad":
+                    deferredLoads.add(((MetaObject) args[1]).getValue("id"));
+                    return null;
+                case "query":
+                    final Collection<?> keys;
+                    if (args[0] == batchQuery) {
+                        batchQueries.add(new ArrayList<>((Collection<?>) ((Map<?, ?>) args[1]).get("list")));
+                        keys = (Collection<?>) ((Map<?, ?>) args[1]).get("list");
+                    } else {
+                        singleQueries.add(args[1]);
+                        keys = Collections.singletonList(args[1]);
+                    }
+                    final List<Object> rows = new ArrayList<>();
+                    for (Object key : keys) {
+                        final long value = ((Number) key).longValue();
+                        for (int i = 0; i < value % 3; i++) {
+                            final Map<String, Object> row = new HashMap<>();
+                            row.put("pid", value);
+                            rows.add(row);
+                        }
+                    }
+                    return rows;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    void shouldLoadEagerLoadsByBatchSize() throws Exception {
+        final ResultLoaderBatch batch = newBatch(3);
+        final List<Map<String, Object>> parents = new ArrayList<>();
+        for (int id = 1; id <= 7; id++) {
+            parents.add(addLoad(batch, id));
+        }
+        // a full batch is loaded right away
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6)), batchQueries);
+        assertNull(parents.get(6).get("kids"));
+
+        batch.loadAll();
+        assertEquals(Collections.singletonList(7), batchQueries.get(2));
+        for (Map<String, Object> parent : parents) {
+            assertKids(parent.get("id"), parent.get("kids"));
+        }
+        assertTrue(singleQueries.isEmpty());
+    }
+
+    @Test
+    void shouldRouteRowsByNormalizedKey() throws Exception {
+        final ResultLoaderBatch batch = newBatch(10);
+        final List<Map<String, Object>> parents = Arrays.asList(addLoad(batch, 1), addLoad(batch, new BigDecimal("2.00")), addLoad(batch, 3L),
+                addLoad(batch, (short) 4), addLoad(batch, 4));
+        batch.loadAll();
+
+        // the key of the last parent is the same number as the one of the previous parent
+        assertEquals(Collections.singletonList(Arrays.asList(1, new BigDecimal("2.00"), 3L, (short) 4)), batchQueries);
+        for (Map<String, Object> parent : parents) {
+            assertKids(parent.get("id"), parent.get("kids"));
+        }
+    }
+
+    @Test
+    void shouldLoadPendingLoadersWithTriggeredLazyLoader() throws Exception {
+        final ResultLoaderBatch batch = newBatch(3);
+        final List<ResultLoader> loaders = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            loaders.add(batch.addLoader(nestedQuery, id, List.class, cacheKey(id), null));
+        }
+        assertTrue(batchQueries.isEmpty());
+
+        assertKids(4, loaders.get(3).loadResult());
+        assertEquals(Collections.singletonList(Arrays.asList(4, 1, 2)), batchQueries);
+        assertKids(1, loaders.get(0).loadResult());
+        assertKids(2, loaders.get(1).loadResult());
+        assertEquals(1, batchQueries.size());
+
+        assertKids(5, loaders.get(4).loadResult());
+        assertKids(3, loaders.get(2).loadResult());
+        assertEquals(Arrays.asList(Arrays.asList(4, 1, 2), Arrays.asList(5, 3)), batchQueries);
+        assertTrue(singleQueries.isEmpty());
+    }
+
+    @Test
+    void shouldNotSelectCachedKeysByBatch() throws Exception {
+        cachedKeys.add(cacheKey(2));
+        cachedKeys.add(cacheKey(5));
+        final ResultLoaderBatch batch = newBatch(3);
+        addLoad(batch, 1);
+        final Map<String, Object> cachedParent = addLoad(batch, 2);
+        addLoad(batch, 3);
+        final ResultLoader cachedLoader = batch.addLoader(nestedQuery, 5, List.class, cacheKey(5), null);
+        final ResultLoader loader = batch.addLoader(nestedQuery, 4, List.class, cacheKey(4), null);
+
+        // like single nested selects, an eager load waits for the cached value and a lazy loader selects it
+        assertEquals(Collections.singletonList(Arrays.asList(1, 3)), batchQueries);
+        assertEquals(Collections.singletonList(2), deferredLoads);
+        assertNull(cachedParent.get("kids"));
+        assertKids(5, cachedLoader.loadResult());
+        assertEquals(Collections.singletonList(5), singleQueries);
+        assertEquals(Arrays.asList(Arrays.asList(1, 3), Collections.singletonList(4)), batchQueries);
+        assertKids(4, loader.loadResult());
+        assertEquals(2, batchQueries.size());
+    }
+
+    @Test
+    void shouldReleaseBatchOnceLoaded() throws Exception {
+        final ResultLoaderBatch batch = newBatch(3);
+        final ResultLoader loaded = batch.addLoader(nestedQuery, 1, List.class, cacheKey(1), null);
+        final List<ResultLoader> pending = new ArrayList<>();
+        for (int id = 2; id <= 5; id++) {
+            pending.add(batch.addLoader(nestedQuery, id, List.class, cacheKey(id), null));
+        }
+        loaded.loadResult();
+
+        // a loaded object must not keep the loaders of the other parents
+        assertNull(batchOf(loaded));
+        assertNull(batchOf(pending.get(0)));
+        assertNull(batchOf(pending.get(1)));
+        assertNotNull(batchOf(pending.get(2)));
+        assertKids(1, loaded.loadResult());
+        assertEquals(1, batchQueries.size());
+    }
+
+    private ResultLoaderBatch newBatch(int batchSize) {
+        final ResultMapping resultMapping = new ResultMapping.Builder(configuration, "kids", "id", configuration.getTypeHandlerRegistry().getUnknownTypeHandler())
+                .javaType(List.class).nestedQueryId("selectKid").batchQueryId("selectKids").batchKey("pid").batchSize(batchSize).build();
+        return new ResultLoaderBatch(configuration, executor, resultMapping);
+    }
+
+    private Map<String, Object> addLoad(ResultLoaderBatch batch, Object id) throws Exception {
+        final Map<String, Object> parent = new HashMap<>();
+        parent.put("id", id);
+        batch.addLoad(configuration.newMetaObject(parent), "kids", nestedQuery, id, List.class, cacheKey(id), null);
+        return parent;
+    }
+
+    private MappedStatement addStatement(String id) {
+        final ResultMap resultMap = new ResultMap.Builder(configuration, id + "-Inline", HashMap.class, new ArrayList<>()).build();
+        final MappedStatement statement = new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "select kids"),
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(resultMap)).build();
+        configuration.addMappedStatement(statement);
+        return statement;
+    }
+
+    private static CacheKey cacheKey(Object id) {
+        return new CacheKey(new Object[] {id});
+    }
+
+    private static void assertKids(Object id, Object kids) {
+        final long key = ((Number) id).longValue();
+        assertEquals(key % 3, ((List<?>) kids).size());
+        for (Object kid : (List<?>) kids) {
+            assertEquals(key, ((Map<?, ?>) kid).get("pid"));
+        }
+    }
+
+    private static Object batchOf(ResultLoader loader) throws Exception {
+        final Field field = loader.getClass().getDeclaredField("batch");
+        field.setAccessible(true);
+        return field.get(loader);
+    }
+
+}
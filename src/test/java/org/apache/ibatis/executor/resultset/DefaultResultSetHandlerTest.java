@@ -15,7 +15,11 @@
  */
 package org.apache.ibatis.executor.resultset;
 
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newStatement;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -31,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.executor.Executor;
@@ -87,7 +92,8 @@ class DefaultResultSetHandlerTest {
         when(rs.getMetaData()).thenReturn(rsmd);
         when(rs.getType()).thenReturn(ResultSet.TYPE_FORWARD_ONLY);
         when(rs.next()).thenReturn(true).thenReturn(false);
-        when(rs.getInt("CoLuMn1")).thenReturn(100);
+        // read by the index of the column labeled CoLuMn1
+        when(rs.getInt(1)).thenReturn(100);
         when(rsmd.getColumnCount()).thenReturn(1);
         when(rsmd.getColumnLabel(1)).thenReturn("CoLuMn1");
         when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
@@ -101,6 +107,55 @@ class DefaultResultSetHandlerTest {
         assertEquals(100, ((HashMap) results.get(0)).get("cOlUmN1"));
     }
 
+    @Test
+    void shouldShareRowMappingPlanBetweenStatements() throws Exception {
+        final MappedStatement ms = getMappedStatement();
+        final Configuration config = ms.getConfiguration();
+
+        when(stmt.getResultSet()).thenReturn(rs);
+        when(rs.getMetaData()).thenReturn(rsmd);
+        when(rs.getType()).thenReturn(ResultSet.TYPE_FORWARD_ONLY);
+        when(rs.next()).thenReturn(true, false, true, false);
+        when(rs.getInt(1)).thenReturn(100, 200);
+        when(rsmd.getColumnCount()).thenReturn(1);
+        when(rsmd.getColumnLabel(1)).thenReturn("CoLuMn1");
+        when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(rsmd.getColumnClassName(1)).thenReturn(Integer.class.getCanonicalName());
+        when(stmt.getConnection()).thenReturn(conn);
+        when(conn.getMetaData()).thenReturn(dbmd);
+        when(dbmd.supportsMultipleResultSets()).thenReturn(false);
+
+        final RowMappingPlan.Key key = new RowMappingPlan.Key("testMap", null, true, new ResultSetWrapper(rs, config).getColumnLayout());
+        List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT).handleResultSets(stmt);
+        assertEquals(100, ((HashMap) results.get(0)).get("cOlUmN1"));
+        final RowMappingPlan plan = config.getRowMappingPlan(key);
+        assertNotNull(plan);
+
+        results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT).handleResultSets(stmt);
+        assertEquals(200, ((HashMap) results.get(0)).get("cOlUmN1"));
+        assertSame(plan, config.getRowMappingPlan(key));
+    }
+
+    @Test
+    void shouldLookUpRowMappingPlanOncePerResultSet() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger();
+        final Configuration config = new Configuration() {
+            @Override
+            public RowMappingPlan getRowMappingPlan(RowMappingPlan.Key key) {
+                lookups.incrementAndGet();
+                return super.getRowMappingPlan(key);
+            }
+        };
+        final MappedStatement ms = new MappedStatement.Builder(config, "testSelect", new StaticSqlSource(config, "some select statement"),
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(new ResultMap.Builder(config, "testMap", HashMap.class,
+                        new ArrayList<>()).build())).build();
+
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT).handleResultSets(
+                newStatement(false, newResultSet(new String[] {"id"}, new Object[] {1}, new Object[] {2}, new Object[] {3})));
+        assertEquals(3, results.size());
+        assertEquals(1, lookups.get());
+    }
+
     @Test
     void shouldThrowExceptionWithColumnName() throws Exception {
         final MappedStatement ms = getMappedStatement();
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newStatement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.junit.jupiter.api.Test;
+
+class MergedResultSetsTest {
+
+    private static final String[] BLOG_COLUMNS = {"id"};
+    private static final String[] POST_COLUMNS = {"id", "blog_id"};
+    private static final String[] COMMENT_COLUMNS = {"id", "post_id"};
+
+    @Test
+    void shouldMergeChildrenAndGrandchildren() throws Exception {
+        assertEquals(Arrays.asList("1[11(100, 101), 12()]", "3[14()]", "3[14()]", "5[15(103)]", "7[]"), handle(newStatement(true, newBlogs())));
+    }
+
+    @Test
+    void shouldMapLikeUnorderedResultSetsWithoutMultipleOpenResults() throws Exception {
+        // the driver cannot keep the result sets open together, so they are read one after another
+        assertEquals(Arrays.asList("1[11(100, 101), 12()]", "3[14()]", "3[14()]", "5[15(103)]", "7[]"), handle(newStatement(false, newBlogs())));
+    }
+
+    @Test
+    void shouldSkipChildrenOfParentsOutOfRowBounds() throws Exception {
+        final Statement stmt = newStatement(true,
+                newResultSet(BLOG_COLUMNS, new Object[] {1}, new Object[] {3}, new Object[] {5}),
+                newResultSet(POST_COLUMNS, new Object[] {11, 1L}, new Object[] {14, 3L}, new Object[] {15, 5L}),
+                newResultSet(COMMENT_COLUMNS, new Object[] {100, 11}, new Object[] {101, 14}, new Object[] {102, 15}));
+        final List<Object> results = new DefaultResultSetHandler(null, getMappedStatement(), null, null, null, new RowBounds(1, 1))
+                .handleResultSets(stmt);
+
+        assertEquals(Collections.singletonList("3[14(101)]"), describe(results));
+    }
+
+    @Test
+    void shouldFailOnChildrenOutOfOrder() {
+        final Statement stmt = newStatement(true,
+                newResultSet(BLOG_COLUMNS, new Object[] {1}, new Object[] {2}, new Object[] {3}),
+                newResultSet(POST_COLUMNS, new Object[] {11, 1L}, new Object[] {12, 3L}, new Object[] {13, 2L}),
+                newResultSet(COMMENT_COLUMNS, new Object[] {100, 11}));
+
+        final ExecutorException e = assertThrows(ExecutorException.class, () -> handle(stmt));
+        assertEquals("The rows of resultSet 'posts' are not ordered by blog_id, required as the result sets of the statement are ordered",
+                e.getMessage());
+    }
+
+    @Test
+    void shouldFailOnParentsOutOfOrder() {
+        final Statement stmt = newStatement(true,
+                newResultSet(BLOG_COLUMNS, new Object[] {1}, new Object[] {3}, new Object[] {2}),
+                newResultSet(POST_COLUMNS, new Object[] {11, 1L}, new Object[] {12, 2L}, new Object[] {13, 3L}),
+                newResultSet(COMMENT_COLUMNS, new Object[] {100, 11}));
+
+        final ExecutorException e = assertThrows(ExecutorException.class, () -> handle(stmt));
+        assertEquals("The parents of resultSet 'posts' are not ordered by id, required as the result sets of the statement are ordered",
+                e.getMessage());
+    }
+
+    private List<String> handle(Statement stmt) throws Exception {
+        return describe(new DefaultResultSetHandler(null, getMappedStatement(), null, null, null, RowBounds.DEFAULT).handleResultSets(stmt));
+    }
+
+    private ResultSet[] newBlogs() {
+        return new ResultSet[] {
+                // blog 3 is read twice
+                newResultSet(BLOG_COLUMNS, new Object[] {1}, new Object[] {3}, new Object[] {3}, new Object[] {5}, new Object[] {7}),
+                // posts 10, 13 and 16 are orphans
+                newResultSet(POST_COLUMNS, new Object[] {10, null}, new Object[] {11, 1L}, new Object[] {12, 1L}, new Object[] {13, 2L},
+                        new Object[] {14, 3L}, new Object[] {15, 5L}, new Object[] {16, 9L}),
+                // comment 102 belongs to an orphan post
+                newResultSet(COMMENT_COLUMNS, new Object[] {100, 11}, new Object[] {101, 11}, new Object[] {102, 13}, new Object[] {103, 15})};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> describe(List<Object> blogs) {
+        final List<String> descriptions = new ArrayList<>();
+        for (Object blog : blogs) {
+            final List<String> posts = new ArrayList<>();
+            for (Map<String, Object> post : children(blog, "posts")) {
+                final List<Object> commentIds = new ArrayList<>();
+                for (Map<String, Object> comment : children(post, "comments")) {
+                    commentIds.add(comment.get("id"));
+                }
+                posts.add(post.get("id") + "(" + commentIds.toString().replaceAll("[\\[\\]]", "") + ")");
+            }
+            descriptions.add(((Map<String, Object>) blog).get("id") + posts.toString());
+        }
+        return descriptions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> children(Object parent, String property) {
+        final List<Map<String, Object>> children = (List<Map<String, Object>>) ((Map<String, Object>) parent).get(property);
+        return children == null ? Collections.emptyList() : children;
+    }
+
+    private MappedStatement getMappedStatement() {
+        final Configuration config = new Configuration();
+        final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
+        final List<ResultFlag> id = Collections.singletonList(ResultFlag.ID);
+        config.addResultMap(new ResultMap.Builder(config, "commentMap", HashMap.class, Collections.singletonList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build())).build());
+        config.addResultMap(new ResultMap.Builder(config, "postMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "comments").javaType(List.class).nestedResultMapId("commentMap")
+                        .resultSet("comments").column("id").foreignColumn("post_id").build())).build());
+        final ResultMap blogMap = new ResultMap.Builder(config, "blogMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "posts").javaType(List.class).nestedResultMapId("postMap")
+                        .resultSet("posts").column("id").foreignColumn("blog_id").build())).build();
+        return new MappedStatement.Builder(config, "selectBlogs", new StaticSqlSource(config, "select blogs"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(blogMap)).resultSets("blogs,posts,comments").resultSetsOrdered(true).build();
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newStatement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Maps a blog/author/posts join of {@value #BLOGS} blogs with {@value #POSTS_PER_BLOG} posts each from an in-memory
+ * result set, and prints the time and the bytes allocated by the best of {@value #RUNS} runs after a warm-up.
+ */
+class NestedResultMapBenchmarkTest {
+
+    private static final int BLOGS = 2000;
+    private static final int POSTS_PER_BLOG = 20;
+    private static final int WARM_UP_RUNS = 10;
+    private static final int RUNS = 10;
+    private static final String[] COLUMNS = {"id", "title", "a_id", "a_username", "p_id", "p_subject"};
+
+    @Disabled("A benchmark to run by hand, it takes a while and only prints its measures")
+    @Test
+    void mapUnorderedJoin() throws Exception {
+        benchmark(false);
+    }
+
+    @Disabled("A benchmark to run by hand, it takes a while and only prints its measures")
+    @Test
+    void mapOrderedJoin() throws Exception {
+        benchmark(true);
+    }
+
+    private void benchmark(boolean resultOrdered) throws Exception {
+        final MappedStatement ms = getMappedStatement(resultOrdered);
+        final Object[][] rows = newRows();
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            map(ms, rows);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long bytes = allocatedBytes();
+            final long start = System.nanoTime();
+            assertEquals(BLOGS, map(ms, rows).size());
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            if (bytes >= 0) {
+                bestBytes = Math.min(bestBytes, allocatedBytes() - bytes);
+            }
+        }
+        System.out.println((resultOrdered ? "resultOrdered" : "unordered") + ": " + bestNanos / 1_000_000 + " ms, "
+                + (bestBytes == Long.MAX_VALUE ? "allocation unknown" : bestBytes / (1024 * 1024) + " MB allocated"));
+    }
+
+    private List<Object> map(MappedStatement ms, Object[][] rows) throws Exception {
+        return new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newResultSet(COLUMNS, rows)));
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private Object[][] newRows() {
+        final Object[][] rows = new Object[BLOGS * POSTS_PER_BLOG][];
+        for (int blog = 0; blog < BLOGS; blog++) {
+            for (int post = 0; post < POSTS_PER_BLOG; post++) {
+                final int postId = blog * POSTS_PER_BLOG + post;
+                rows[postId] = new Object[] {blog, "blog " + blog, blog % 100, "author " + blog % 100, postId, "post " + postId};
+            }
+        }
+        return rows;
+    }
+
+    private MappedStatement getMappedStatement(boolean resultOrdered) {
+        final Configuration config = new Configuration();
+        final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
+        final List<ResultFlag> id = Collections.singletonList(ResultFlag.ID);
+        config.addResultMap(new ResultMap.Builder(config, "authorMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "username", "username", registry.getTypeHandler(String.class)).build())).build());
+        config.addResultMap(new ResultMap.Builder(config, "postMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "subject", "subject", registry.getTypeHandler(String.class)).build())).build());
+        final ResultMap blogMap = new ResultMap.Builder(config, "blogMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "title", "title", registry.getTypeHandler(String.class)).build(),
+                new ResultMapping.Builder(config, "author").nestedResultMapId("authorMap").columnPrefix("a_").build(),
+                new ResultMapping.Builder(config, "posts").javaType(List.class).nestedResultMapId("postMap").columnPrefix("p_").build())).build();
+        return new MappedStatement.Builder(config, "selectBlogs", new StaticSqlSource(config, "select blogs"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(blogMap)).resultOrdered(resultOrdered).build();
+    }
+
+}
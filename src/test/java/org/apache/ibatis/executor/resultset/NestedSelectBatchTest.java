@@ -0,0 +1,145 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newStatement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+
+class NestedSelectBatchTest {
+
+    private final Configuration config = new Configuration();
+    // the parameter of each select of the kids, a list of keys for a batch statement
+    private final List<Object> queries = new ArrayList<>();
+
+    @Test
+    void shouldLoadEagerNestedSelectsByBatch() throws Exception {
+        final MappedStatement ms = getMappedStatement();
+        final List<Object> results = new DefaultResultSetHandler(newExecutor(), ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newParents()));
+
+        // the last batch is loaded once all rows are mapped
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Collections.singletonList(7)), queries);
+        assertKids(results);
+    }
+
+    @Test
+    void shouldSelectOneByOneForResultHandler() throws Exception {
+        final MappedStatement ms = getMappedStatement();
+        final List<Object> handed = new ArrayList<>();
+        new DefaultResultSetHandler(newExecutor(), ms, null, context -> handed.add(context.getResultObject()), null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newParents()));
+
+        // each object is complete when handed over
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), queries);
+        assertKids(handed);
+    }
+
+    private static void assertKids(List<Object> parents) {
+        assertEquals(7, parents.size());
+        for (Object parent : parents) {
+            final Map<?, ?> map = (Map<?, ?>) parent;
+            final long id = ((Number) map.get("id")).longValue();
+            final List<?> kids = (List<?>) map.get("kids");
+            assertEquals(id % 3, kids.size());
+            for (Object kid : kids) {
+                assertEquals(id, ((Map<?, ?>) kid).get("pid"));
+            }
+        }
+    }
+
+    private ResultSet newParents() {
+        final Object[][] rows = new Object[7][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] {i + 1};
+        }
+        return newResultSet(new String[] {"id"}, rows);
+    }
+
+    private Executor newExecutor() {
+        // returns id % 3 kids per parent id, with a Long parent id
+        return (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class[] {Executor.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isClosed":
+                case "isCached":
+                    return false;
+                case "createCacheKey":
+                    return new CacheKey(new Object[] {args[1]});
+                case "query":
+                    final Collection<?> ids;
+                    if (args[1] instanceof Map) {
+                        ids = (Collection<?>) ((Map<?, ?>) args[1]).get("list");
+                        queries.add(new ArrayList<>(ids));
+                    } else {
+                        ids = Collections.singletonList(args[1]);
+                        queries.add(args[1]);
+                    }
+                    final List<Object> kids = new ArrayList<>();
+                    for (Object id : ids) {
+                        final long value = ((Number) id).longValue();
+                        for (int i = 0; i < value % 3; i++) {
+                            final Map<String, Object> kid = new HashMap<>();
+                            kid.put("pid", value);
+                            kids.add(kid);
+                        }
+                    }
+                    return kids;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private MappedStatement getMappedStatement() {
+        addStatement("selectKid", new ResultMap.Builder(config, "kidMap", HashMap.class, new ArrayList<>()).build());
+        addStatement("selectKids", new ResultMap.Builder(config, "kidsMap", HashMap.class, new ArrayList<>()).build());
+        final ResultMap parentMap = new ResultMap.Builder(config, "parentMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", config.getTypeHandlerRegistry().getTypeHandler(Integer.class))
+                        .flags(Collections.singletonList(ResultFlag.ID)).build(),
+                new ResultMapping.Builder(config, "kids", "id", config.getTypeHandlerRegistry().getUnknownTypeHandler()).javaType(List.class)
+                        .nestedQueryId("selectKid").batchQueryId("selectKids").batchKey("pid").batchSize(3).build())).build();
+        return new MappedStatement.Builder(config, "selectParents", new StaticSqlSource(config, "select parents"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(parentMap)).build();
+    }
+
+    private void addStatement(String id, ResultMap resultMap) {
+        config.addMappedStatement(new MappedStatement.Builder(config, id, new StaticSqlSource(config, "select kids"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build());
+    }
+
+}
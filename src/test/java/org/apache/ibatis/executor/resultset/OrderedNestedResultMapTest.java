@@ -0,0 +1,156 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newStatement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.junit.jupiter.api.Test;
+
+class OrderedNestedResultMapTest {
+
+    private static final String[] COLUMNS = {"id", "title", "p_id", "p_subject"};
+
+    @Test
+    void shouldHandEachParentOnceAndComplete() throws Exception {
+        final MappedStatement ms = getMappedStatement(true);
+        final List<String> handed = new ArrayList<>();
+        final DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null,
+                context -> handed.add(describe(context.getResultObject())), null, RowBounds.DEFAULT);
+
+        handler.handleResultSets(newStatement(false, newBlogs()));
+        // each parent is described when handed over, so it already has all of its children
+        assertEquals(Arrays.asList("1[10, 11]", "2[]", "3[12, 13]", "4[14]"), handed);
+    }
+
+    @Test
+    void shouldStopAfterHandingOverParent() throws Exception {
+        final MappedStatement ms = getMappedStatement(true);
+        final List<String> handed = new ArrayList<>();
+        final DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, context -> {
+            handed.add(describe(context.getResultObject()));
+            if (handed.size() == 2) {
+                context.stop();
+            }
+        }, null, RowBounds.DEFAULT);
+
+        handler.handleResultSets(newStatement(false, newBlogs()));
+        assertEquals(Arrays.asList("1[10, 11]", "2[]"), handed);
+    }
+
+    @Test
+    void shouldContinueParentAcrossCursorFetches() throws Exception {
+        final MappedStatement ms = getMappedStatement(true);
+        final DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT);
+
+        final List<String> fetched = new ArrayList<>();
+        try (Cursor<Object> cursor = handler.handleCursorResultSets(newStatement(false, newBlogs()))) {
+            // a fetch reads the first row of the next parent, the next fetch goes on with it
+            for (Object blog : cursor) {
+                fetched.add(describe(blog));
+            }
+        }
+        assertEquals(Arrays.asList("1[10, 11]", "2[]", "3[12, 13]", "4[14]"), fetched);
+    }
+
+    @Test
+    void shouldMatchRowsWithPreviousParentOnly() throws Exception {
+        final MappedStatement ms = getMappedStatement(true);
+        final List<String> handed = new ArrayList<>();
+        final DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null,
+                context -> handed.add(describe(context.getResultObject())), null, RowBounds.DEFAULT);
+
+        // the rows of a parent are expected together, a parent coming back starts a new object
+        handler.handleResultSets(newStatement(false, newResultSet(COLUMNS,
+                new Object[] {1, "one", 10, "ten"},
+                new Object[] {2, "two", 11, "eleven"},
+                new Object[] {1, "one", 12, "twelve"})));
+        assertEquals(Arrays.asList("1[10]", "2[11]", "1[12]"), handed);
+    }
+
+    @Test
+    void shouldGroupUnorderedRowsByParent() throws Exception {
+        final MappedStatement ms = getMappedStatement(false);
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newResultSet(COLUMNS,
+                        new Object[] {1, "one", 10, "ten"},
+                        new Object[] {2, "two", 11, "eleven"},
+                        new Object[] {1, "one", 12, "twelve"})));
+        assertEquals(2, results.size());
+        assertEquals("1[10, 12]", describe(results.get(0)));
+        assertEquals("2[11]", describe(results.get(1)));
+    }
+
+    private ResultSet newBlogs() {
+        return newResultSet(COLUMNS,
+                new Object[] {1, "one", 10, "ten"},
+                new Object[] {1, "one", 11, "eleven"},
+                new Object[] {2, "two", null, null},
+                new Object[] {3, "three", 12, "twelve"},
+                // a repeated row does not add its child twice
+                new Object[] {3, "three", 12, "twelve"},
+                new Object[] {3, "three", 13, "thirteen"},
+                new Object[] {4, "four", 14, "fourteen"});
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String describe(Object blog) {
+        final Map<String, Object> map = (Map<String, Object>) blog;
+        final List<Object> postIds = new ArrayList<>();
+        final List<Map<String, Object>> posts = (List<Map<String, Object>>) map.get("posts");
+        if (posts != null) {
+            for (Map<String, Object> post : posts) {
+                postIds.add(post.get("id"));
+            }
+        }
+        return map.get("id") + postIds.toString();
+    }
+
+    private MappedStatement getMappedStatement(boolean resultOrdered) {
+        final Configuration config = new Configuration();
+        final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
+        final List<ResultFlag> id = Collections.singletonList(ResultFlag.ID);
+        config.addResultMap(new ResultMap.Builder(config, "postMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "subject", "subject", registry.getTypeHandler(String.class)).build())).build());
+        final ResultMap blogMap = new ResultMap.Builder(config, "blogMap", HashMap.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", registry.getTypeHandler(Integer.class)).flags(id).build(),
+                new ResultMapping.Builder(config, "title", "title", registry.getTypeHandler(String.class)).build(),
+                new ResultMapping.Builder(config, "posts").javaType(List.class).nestedResultMapId("postMap").columnPrefix("p_").build())).build();
+        return new MappedStatement.Builder(config, "selectBlogs", new StaticSqlSource(config, "select blogs"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(blogMap)).resultOrdered(resultOrdered).build();
+    }
+
+}
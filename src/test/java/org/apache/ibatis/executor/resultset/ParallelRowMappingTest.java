@@ -0,0 +1,255 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newStatement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.ParallelMappingSupported;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelRowMappingTest {
+
+    private static final int ROWS = 2000;
+
+    // forces parallel mapping whatever the number of processors
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void shouldKeepTheOrderOfTheRows() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newRows()));
+
+        assertEquals(ROWS, results.size());
+        for (int i = 0; i < ROWS; i++) {
+            final Row row = (Row) results.get(i);
+            assertEquals(i, row.id);
+            assertEquals("name" + i, row.name);
+        }
+        assertMappedInParallel(results);
+    }
+
+    @Test
+    void shouldApplyRowBounds() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, new RowBounds(300, 700))
+                .handleResultSets(newStatement(false, newRows()));
+
+        assertEquals(700, results.size());
+        assertEquals(300, ((Row) results.get(0)).id);
+        assertEquals(999, ((Row) results.get(699)).id);
+    }
+
+    @Test
+    void shouldStopWithTheResultContext() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final List<Integer> ids = new ArrayList<>();
+        new DefaultResultSetHandler(null, ms, null, context -> {
+            ids.add(((Row) context.getResultObject()).id);
+            if (context.getResultCount() == 700) {
+                context.stop();
+            }
+        }, null, RowBounds.DEFAULT).handleResultSets(newStatement(false, newRows()));
+
+        assertEquals(700, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, (int) ids.get(i));
+        }
+    }
+
+    @Test
+    void shouldRethrowMappingFailureWithItsType() {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final Object[][] rows = newRowValues();
+        rows[1500][0] = "not a number";
+        final DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT);
+
+        final ResultMapException e = assertThrows(ResultMapException.class,
+                () -> handler.handleResultSets(newStatement(false, newResultSet(new String[] {"id", "name"}, rows))));
+        assertTrue(e.getCause() instanceof SQLException);
+    }
+
+    @Test
+    void shouldMapMultipleResultSetsSequentially() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, "rows");
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newRows()));
+
+        assertMappedSequentially(results);
+    }
+
+    @Test
+    void shouldMapSequentiallyWithCustomTypeHandler() throws Exception {
+        final MappedStatement ms = getMappedStatement(new StringTypeHandler() {
+        }, null);
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newRows()));
+
+        assertMappedSequentially(results);
+    }
+
+    @Test
+    void shouldMapSequentiallyWithVendorColumnType() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final Object[][] rows = newRowValues();
+        final Object[][] rowsWithVendorType = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rowsWithVendorType[i] = Arrays.copyOf(rows[i], 3);
+            rowsWithVendorType[i][2] = new StringBuilder("vendor");
+        }
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newResultSet(new String[] {"id", "name", "extra"}, rowsWithVendorType)));
+
+        assertMappedSequentially(results);
+    }
+
+    @Test
+    void shouldMapInParallelWithAnnotatedCustomTypeHandler() throws Exception {
+        final MappedStatement ms = getMappedStatement(new SupportedStringTypeHandler(), null);
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newRows()));
+
+        assertMappedInParallel(results);
+    }
+
+    @Test
+    void shouldMapSequentiallyWithAutoMappedStringOfNumber() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final Object[][] rows = newRowValues();
+        final Object[][] rowsWithAmount = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rowsWithAmount[i] = Arrays.copyOf(rows[i], 3);
+            rowsWithAmount[i][2] = new BigDecimal("1E+" + i % 3);
+        }
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newResultSet(new String[] {"id", "name", "amount"}, rowsWithAmount)));
+
+        // the driver formats the string of a number column, the buffered rows would not
+        assertMappedSequentially(results);
+        assertEquals("1E+2", ((Row) results.get(2)).amount);
+    }
+
+    @Test
+    void shouldMapInParallelWithAutoMappedStringOfInteger() throws Exception {
+        final MappedStatement ms = getMappedStatement(null, null);
+        final Object[][] rows = newRowValues();
+        final Object[][] rowsWithAmount = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rowsWithAmount[i] = Arrays.copyOf(rows[i], 3);
+            rowsWithAmount[i][2] = i;
+        }
+        final List<Object> results = new DefaultResultSetHandler(null, ms, null, null, null, RowBounds.DEFAULT)
+                .handleResultSets(newStatement(false, newResultSet(new String[] {"id", "name", "amount"}, rowsWithAmount)));
+
+        assertMappedInParallel(results);
+        assertEquals("1999", ((Row) results.get(1999)).amount);
+    }
+
+    private void assertMappedInParallel(List<Object> results) {
+        assertEquals(ROWS, results.size());
+        // the first row resolves the type handlers of the automatic mappings
+        assertEquals(Thread.currentThread().getName(), ((Row) results.get(0)).mappedBy);
+        for (int i = 1; i < ROWS; i++) {
+            assertNotEquals(Thread.currentThread().getName(), ((Row) results.get(i)).mappedBy);
+        }
+    }
+
+    private void assertMappedSequentially(List<Object> results) {
+        assertEquals(ROWS, results.size());
+        for (Object result : results) {
+            assertEquals(Thread.currentThread().getName(), ((Row) result).mappedBy);
+        }
+    }
+
+    private ResultSet newRows() {
+        return newResultSet(new String[] {"id", "name"}, newRowValues());
+    }
+
+    private Object[][] newRowValues() {
+        final Object[][] rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[] {i, "name" + i};
+        }
+        return rows;
+    }
+
+    private MappedStatement getMappedStatement(TypeHandler<String> nameTypeHandler, String resultSets) {
+        final Configuration config = new Configuration();
+        config.setParallelMappingExecutor(pool);
+        final ResultMap resultMap = new ResultMap.Builder(config, "rowMap", Row.class, Arrays.asList(
+                new ResultMapping.Builder(config, "id", "id", config.getTypeHandlerRegistry().getTypeHandler(Integer.class)).build(),
+                new ResultMapping.Builder(config, "name", "name",
+                        nameTypeHandler != null ? nameTypeHandler : config.getTypeHandlerRegistry().getTypeHandler(String.class)).build())).build();
+        return new MappedStatement.Builder(config, "selectRows", new StaticSqlSource(config, "select rows"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).resultSets(resultSets).parallelMapping(true).build();
+    }
+
+    public static class Row {
+
+        private int id;
+        private String name;
+        private String amount;
+        private String mappedBy;
+
+        public void setId(int id) {
+            this.id = id;
+            this.mappedBy = Thread.currentThread().getName();
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setAmount(String amount) {
+            this.amount = amount;
+        }
+    }
+
+    @ParallelMappingSupported
+    public static class SupportedStringTypeHandler extends StringTypeHandler {
+    }
+
+}
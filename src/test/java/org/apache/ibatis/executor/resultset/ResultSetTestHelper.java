@@ -0,0 +1,220 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds in-memory result sets and statements for the tests of the result set handler.
+ */
+class ResultSetTestHelper {
+
+    private ResultSetTestHelper() {
+    }
+
+    /**
+     * Creates a forward only result set. The metadata reports the class of the first non null value of a column, and
+     * the type {@link Types#INTEGER} for an Integer, {@link Types#BIGINT} for a Long, {@link Types#VARCHAR} for a
+     * String and {@link Types#OTHER} otherwise.
+     */
+    static ResultSet newResultSet(String[] columns, Object[]... rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                new TableResultSet(columns, Arrays.asList(rows)));
+    }
+
+    /**
+     * Creates a statement returning the given result sets one after another.
+     *
+     * @param multipleOpenResults
+     *          whether the driver supports keeping the current result set open while getting the next one
+     */
+    static Statement newStatement(boolean multipleOpenResults, ResultSet... resultSets) {
+        DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(),
+                new Class[]{DatabaseMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "supportsMultipleResultSets":
+                            return true;
+                        case "supportsMultipleOpenResults":
+                            return multipleOpenResults;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("getMetaData".equals(method.getName())) {
+                        return metaData;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        int[] current = {0};
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class[]{Statement.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getResultSet":
+                    return current[0] < resultSets.length ? resultSets[current[0]] : null;
+                case "getMoreResults":
+                    if (args == null || (Integer) args[0] != Statement.KEEP_CURRENT_RESULT) {
+                        resultSets[current[0]].close();
+                    } else if (!multipleOpenResults) {
+                        throw new SQLException("Multiple open results are not supported");
+                    }
+                    return ++current[0] < resultSets.length;
+                case "getUpdateCount":
+                    return -1;
+                case "getConnection":
+                    return connection;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static class TableResultSet implements InvocationHandler {
+
+        private final String[] columns;
+        private final List<Object[]> rows;
+        private int row = -1;
+        private boolean wasNull;
+        private boolean closed;
+
+        TableResultSet(String[] columns, List<Object[]> rows) {
+            this.columns = columns;
+            this.rows = new ArrayList<>(rows);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    checkOpen();
+                    return ++row < rows.size();
+                case "getMetaData":
+                    return metaData();
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "wasNull":
+                    return wasNull;
+                case "findColumn":
+                    return indexOf((String) args[0]);
+                case "isClosed":
+                    return closed;
+                case "close":
+                    closed = true;
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "ResultSet" + Arrays.toString(columns);
+                default:
+                    break;
+            }
+            if (!name.startsWith("get") || args == null || args.length == 0) {
+                throw new UnsupportedOperationException(name);
+            }
+            checkOpen();
+            int column = args[0] instanceof String ? indexOf((String) args[0]) : (Integer) args[0];
+            Object value = rows.get(row)[column - 1];
+            wasNull = value == null;
+            switch (name) {
+                case "getObject":
+                    return value;
+                case "getString":
+                    return value == null ? null : value.toString();
+                case "getInt":
+                    return value == null ? 0 : ((Number) value).intValue();
+                case "getLong":
+                    return value == null ? 0L : ((Number) value).longValue();
+                case "getBigDecimal":
+                    return value == null ? null : new BigDecimal(value.toString());
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        }
+
+        private ResultSetMetaData metaData() {
+            return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class[]{ResultSetMetaData.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getColumnCount":
+                                return columns.length;
+                            case "getColumnLabel":
+                            case "getColumnName":
+                                return columns[(Integer) args[0] - 1];
+                            case "getColumnType":
+                                return typeOf((Integer) args[0] - 1);
+                            case "getColumnClassName":
+                                return classNameOf((Integer) args[0] - 1);
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private int typeOf(int column) {
+            switch (classNameOf(column)) {
+                case "java.lang.Integer":
+                    return Types.INTEGER;
+                case "java.lang.Long":
+                    return Types.BIGINT;
+                case "java.lang.String":
+                    return Types.VARCHAR;
+                default:
+                    return Types.OTHER;
+            }
+        }
+
+        private String classNameOf(int column) {
+            for (Object[] values : rows) {
+                if (values[column] != null) {
+                    return values[column].getClass().getName();
+                }
+            }
+            return String.class.getName();
+        }
+
+        private int indexOf(String label) throws SQLException {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].equalsIgnoreCase(label)) {
+                    return i + 1;
+                }
+            }
+            throw new SQLException("Column '" + label + "' not found");
+        }
+
+        private void checkOpen() throws SQLException {
+            if (closed) {
+                throw new SQLException("The result set is closed");
+            }
+        }
+    }
+
+}
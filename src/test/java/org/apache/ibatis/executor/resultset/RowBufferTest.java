@@ -0,0 +1,121 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.type.ArrayTypeHandler;
+import org.apache.ibatis.type.BigDecimalTypeHandler;
+import org.apache.ibatis.type.ClobTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.jupiter.api.Test;
+
+class RowBufferTest {
+
+    @Test
+    void shouldServeBufferedRowsInOrder() throws SQLException {
+        ResultSet rs = newResultSet(new Object[] {1, "one"}, new Object[] {2, null});
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt("ID"));
+        assertEquals("one", rs.getString(2));
+        assertTrue(rs.next());
+        assertEquals(2L, rs.getLong(1));
+        assertNull(rs.getString("name"));
+        assertTrue(rs.wasNull());
+        assertFalse(rs.next());
+    }
+
+    @Test
+    void shouldConvertValuesLikeDrivers() throws SQLException {
+        LocalDateTime now = LocalDateTime.of(2020, 5, 1, 12, 30);
+        ResultSet rs = newResultSet(new Object[] {"42", Timestamp.valueOf(now)});
+        rs.next();
+        assertEquals(42, rs.getInt(1));
+        assertEquals(new BigDecimal("42"), rs.getBigDecimal(1));
+        assertEquals(now, rs.getObject(2, LocalDateTime.class));
+        assertEquals(now.toLocalDate(), rs.getDate(2).toLocalDate());
+    }
+
+    @Test
+    void shouldReturnDefaultsForNullPrimitives() throws SQLException {
+        ResultSet rs = newResultSet(new Object[] {null, null});
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        assertFalse(rs.getBoolean(2));
+        assertTrue(rs.wasNull());
+    }
+
+    @Test
+    void shouldRejectUnknownColumns() throws SQLException {
+        ResultSet rs = newResultSet(new Object[] {1, "one"});
+        rs.next();
+        assertThrows(SQLException.class, () -> rs.getString("missing"));
+        assertThrows(SQLException.class, () -> rs.getString(3));
+        assertThrows(SQLException.class, () -> rs.getTimestamp(1));
+    }
+
+    @Test
+    void shouldServeStreams() throws Exception {
+        ResultSet rs = newResultSet(new Object[] {new byte[] {1, 2}, "text"});
+        rs.next();
+        assertEquals(1, rs.getBinaryStream(1).read());
+        char[] chars = new char[4];
+        assertEquals(4, rs.getCharacterStream("name").read(chars));
+        assertEquals("text", new String(chars));
+    }
+
+    @Test
+    void shouldSupportStandardColumnsAndBuiltInTypeHandlersOnly() {
+        assertTrue(RowBuffer.supportsColumns(Arrays.asList("java.lang.Integer", "java.sql.Timestamp", "[B")));
+        assertFalse(RowBuffer.supportsColumns(Arrays.asList("java.lang.Integer", "oracle.sql.TIMESTAMP")));
+        assertTrue(RowBuffer.supportsTypeHandler(new IntegerTypeHandler()));
+        assertFalse(RowBuffer.supportsTypeHandler(new ArrayTypeHandler()));
+        assertFalse(RowBuffer.supportsTypeHandler(new StringTypeHandler() {
+        }));
+    }
+
+    @Test
+    void shouldSupportStringTypeHandlersOnColumnsFormattedLikeDrivers() {
+        assertTrue(RowBuffer.supportsColumn(new StringTypeHandler(), "java.lang.String"));
+        assertTrue(RowBuffer.supportsColumn(new StringTypeHandler(), "java.lang.Long"));
+        assertFalse(RowBuffer.supportsColumn(new StringTypeHandler(), "java.math.BigDecimal"));
+        assertFalse(RowBuffer.supportsColumn(new StringTypeHandler(), "java.sql.Timestamp"));
+        assertFalse(RowBuffer.supportsColumn(new ClobTypeHandler(), "java.lang.String"));
+        assertTrue(RowBuffer.supportsColumn(new BigDecimalTypeHandler(), "java.math.BigDecimal"));
+    }
+
+    private ResultSet newResultSet(Object[]... rows) {
+        Map<String, Integer> columnIndexes = new HashMap<>();
+        columnIndexes.put("ID", 1);
+        columnIndexes.put("NAME", 2);
+        return RowBuffer.newResultSet(null, columnIndexes, Arrays.asList(rows));
+    }
+
+}
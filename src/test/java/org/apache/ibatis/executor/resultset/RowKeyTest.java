@@ -0,0 +1,134 @@
+/**
+ * Copyright 2009-2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.apache.ibatis.executor.resultset.ResultSetTestHelper.newResultSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.junit.jupiter.api.Test;
+
+class RowKeyTest {
+
+    private final TypeHandlerRegistry registry = new TypeHandlerRegistry();
+    private final TypeHandler<Integer> intHandler = registry.getTypeHandler(Integer.class);
+    private final TypeHandler<String> stringHandler = registry.getTypeHandler(String.class);
+
+    @Test
+    void shouldMatchRowsWithTheSameId() throws SQLException {
+        RowKey.Columns columns = new RowKey.Builder("blog", null, false).addColumn("id", 1, intHandler).build();
+        List<RowKey> keys = createKeys(columns, newResultSet(new String[] {"id"},
+                new Object[] {1}, new Object[] {1}, new Object[] {2}));
+
+        assertEquals(keys.get(0), keys.get(1));
+        assertEquals(keys.get(0).hashCode(), keys.get(1).hashCode());
+        assertNotEquals(keys.get(0), keys.get(2));
+    }
+
+    @Test
+    void shouldNotMergeRowsWithoutIdValues() throws SQLException {
+        RowKey.Columns columns = new RowKey.Builder("blog", null, false).addColumn("id", 1, intHandler).build();
+        List<RowKey> keys = createKeys(columns, newResultSet(new String[] {"id"}, new Object[] {null}));
+
+        assertSame(RowKey.NULL, keys.get(0));
+    }
+
+    @Test
+    void shouldKeepNullIdsWhenReturningInstancesForEmptyRows() throws SQLException {
+        RowKey.Columns columns = new RowKey.Builder("blog", null, true)
+                .addColumn("id", 1, intHandler).addColumn("title", 2, stringHandler).build();
+        List<RowKey> keys = createKeys(columns, newResultSet(new String[] {"id", "title"},
+                new Object[] {null, null}, new Object[] {null, null}, new Object[] {1, null}));
+
+        assertNotEquals(RowKey.NULL, keys.get(0));
+        assertEquals(keys.get(0), keys.get(1));
+        assertNotEquals(keys.get(0), keys.get(2));
+    }
+
+    @Test
+    void shouldCompareAllValuesOfCompositeIds() throws SQLException {
+        RowKey.Columns columns = new RowKey.Builder("post", null, false)
+                .addColumn("blog_id", 1, intHandler).addColumn("code", 2, stringHandler).build();
+        List<RowKey> keys = createKeys(columns, newResultSet(new String[] {"blog_id", "code"},
+                new Object[] {1, "a"}, new Object[] {1, "a"}, new Object[] {1, "b"}, new Object[] {null, "a"},
+                new Object[] {null, null}));
+
+        assertEquals(keys.get(0), keys.get(1));
+        assertNotEquals(keys.get(0), keys.get(2));
+        // a partially null id still identifies the row
+        assertNotEquals(RowKey.NULL, keys.get(3));
+        assertNotEquals(keys.get(0), keys.get(3));
+        assertSame(RowKey.NULL, keys.get(4));
+    }
+
+    @Test
+    void shouldReadColumnsByLabelAndAsStrings() throws SQLException {
+        RowKey.Columns byLabel = new RowKey.Builder("blog", null, false).addColumn("ID", 0, null).build();
+        RowKey.Columns byIndex = new RowKey.Builder("blog", null, false).addColumn("ID", 1, null).build();
+
+        assertEquals(createKeys(byLabel, newResultSet(new String[] {"id"}, new Object[] {7})),
+                createKeys(byIndex, newResultSet(new String[] {"id"}, new Object[] {"7"})));
+    }
+
+    @Test
+    void shouldTellResultMapsAndColumnPrefixesApart() throws SQLException {
+        RowKey blog = createKey(new RowKey.Builder("blog", null, false).addColumn("id", 1, intHandler).build());
+        RowKey author = createKey(new RowKey.Builder("author", null, false).addColumn("id", 1, intHandler).build());
+        RowKey coAuthor = createKey(new RowKey.Builder("author", "co_", false).addColumn("id", 1, intHandler).build());
+
+        assertNotEquals(blog, author);
+        assertNotEquals(author, coAuthor);
+    }
+
+    @Test
+    void shouldLinkChildKeysToTheirParent() throws SQLException {
+        RowKey.Columns blogColumns = new RowKey.Builder("blog", null, false).addColumn("id", 1, intHandler).build();
+        RowKey.Columns postColumns = new RowKey.Builder("post", "p_", false).addColumn("p_id", 2, intHandler).build();
+        ResultSet rs = newResultSet(new String[] {"id", "p_id"},
+                new Object[] {1, 10}, new Object[] {2, 10}, new Object[] {1, 10}, new Object[] {null, 10});
+        List<RowKey> combinedKeys = new ArrayList<>();
+        while (rs.next()) {
+            combinedKeys.add(postColumns.createKey(rs).withParent(blogColumns.createKey(rs)));
+        }
+
+        // the same child row is another object under another parent
+        assertNotEquals(combinedKeys.get(0), combinedKeys.get(1));
+        assertEquals(combinedKeys.get(0), combinedKeys.get(2));
+        assertSame(RowKey.NULL, combinedKeys.get(3));
+        assertSame(RowKey.NULL, RowKey.NULL.withParent(combinedKeys.get(0)));
+    }
+
+    private RowKey createKey(RowKey.Columns columns) throws SQLException {
+        return createKeys(columns, newResultSet(new String[] {"id"}, new Object[] {1})).get(0);
+    }
+
+    private List<RowKey> createKeys(RowKey.Columns columns, ResultSet rs) throws SQLException {
+        List<RowKey> keys = new ArrayList<>();
+        while (rs.next()) {
+            keys.add(columns.createKey(rs));
+        }
+        return keys;
+    }
+
+}
@@ -21,13 +21,26 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolMetricsListener;
+import org.apache.ibatis.datasource.pooled.PoolMode;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.io.Resources;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -75,6 +88,347 @@ class PooledDataSourceTest extends BaseDataTest {
         }
     }
 
+    @Test
+    void shouldProperlyMaintainConcurrentPoolOf3ActiveAnd2IdleConnections() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMode(PoolMode.CONCURRENT);
+            ds.setPoolMaximumActiveConnections(3);
+            ds.setPoolMaximumIdleConnections(2);
+            ds.setPoolTimeToWait(10000);
+            List<Connection> connections = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                connections.add(ds.getConnection());
+            }
+            assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+            for (Connection c : connections) {
+                c.close();
+            }
+            assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+            assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+            assertEquals(3, ds.getPoolState().getRequestCount());
+            assertEquals(0, ds.getPoolState().getBadConnectionCount());
+            assertEquals(0, ds.getPoolState().getHadToWaitCount());
+            assertNotNull(ds.getPoolState().toString());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldKeepExactStatisticsUnderContentionInConcurrentMode() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            ds.setPoolMode(PoolMode.CONCURRENT);
+            ds.setPoolMaximumActiveConnections(4);
+            ds.setPoolMaximumIdleConnections(4);
+            ds.setPoolTimeToWait(10000);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try (Connection c = ds.getConnection()) {
+                            c.getAutoCommit();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(800, ds.getPoolState().getRequestCount());
+            assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+            assertEquals(0, ds.getPoolState().getBadConnectionCount());
+            assertTrue(ds.getPoolState().getIdleConnectionCount() <= 4);
+        } finally {
+            executor.shutdownNow();
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldTimeOutWaitingForConnectionInConcurrentMode() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMode(PoolMode.CONCURRENT);
+            ds.setPoolMaximumActiveConnections(1);
+            ds.setPoolTimeToWait(100);
+            Connection c = ds.getConnection();
+            assertThrows(SQLException.class, ds::getConnection);
+            assertEquals(1, ds.getPoolState().getHadToWaitCount());
+            c.close();
+            assertThrows(SQLException.class, c::getAutoCommit);
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldHandReturnedConnectionsToWaitersInArrivalOrder() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMaximumActiveConnections(1);
+            ds.setPoolTimeToWait(10000);
+            Connection held = ds.getConnection();
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                int n = i;
+                Thread thread = new Thread(() -> {
+                    try (Connection c = ds.getConnection()) {
+                        order.add(n);
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+                while (ds.getPoolState().getWaitingThreadCount() <= i) {
+                    Thread.sleep(10);
+                }
+            }
+            List<Long> waitTimes = ds.getPoolState().getCurrentWaitTimes();
+            assertEquals(3, waitTimes.size());
+            assertTrue(waitTimes.get(0) >= waitTimes.get(2));
+            assertTrue(ds.getPoolState().getLongestCurrentWaitTime() >= waitTimes.get(0));
+            held.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(0, ds.getPoolState().getWaitingThreadCount());
+            assertEquals(3, ds.getPoolState().getHadToWaitCount());
+            assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+            assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+            assertEquals(Arrays.asList(0, 1, 2), order);
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldCreateConnectionForWaiterWhenReturnedConnectionExpiredInConcurrentMode() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMode(PoolMode.CONCURRENT);
+            ds.setPoolMaximumActiveConnections(1);
+            ds.setPoolMaximumLifetime(50);
+            ds.setPoolTimeToWait(10000);
+            Connection held = ds.getConnection();
+            CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+                try (Connection c = ds.getConnection()) {
+                    return c.getAutoCommit();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            while (ds.getPoolState().getWaitingThreadCount() == 0) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(60);
+            // the expired connection is closed, its slot goes to the waiting thread
+            held.close();
+            waiter.get(5, TimeUnit.SECONDS);
+            assertEquals(0, ds.getPoolState().getWaitingThreadCount());
+            assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+            assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldKeepMinimumIdleConnectionsInBackground() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolHousekeepingInterval(20);
+            ds.setPoolMinimumIdleConnections(2);
+            ds.getConnection().close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (ds.getPoolState().getIdleConnectionCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+            assertEquals(0, ds.getPoolState().getBadConnectionCount());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldCloseConnectionsPastMaximumLifetimeOnReturn() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMaximumLifetime(10);
+            Connection c = ds.getConnection();
+            Thread.sleep(20);
+            c.close();
+            assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+            assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldWarmUpInitialConnections() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolInitialSize(3);
+            assertFalse(ds.isReady());
+            assertEquals(3, ds.warmUp().get(10, TimeUnit.SECONDS).intValue());
+            assertTrue(ds.isReady());
+            assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+            assertSame(ds.warmUp(), ds.warmUp());
+            ds.getConnection().close();
+            assertEquals(1, ds.getPoolState().getRequestCount());
+            assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+            ds.forceCloseAll();
+            assertFalse(ds.isReady());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldDropConnectionsWarmedUpWhileClosingAllInConcurrentMode() throws Exception {
+        Properties props = Resources.getResourceAsProperties(JPETSTORE_PROPERTIES);
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        UnpooledDataSource unpooled = new UnpooledDataSource(props.getProperty("driver"), props.getProperty("url"),
+                props.getProperty("username"), props.getProperty("password")) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                connecting.countDown();
+                try {
+                    closed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getConnection();
+            }
+        };
+        PooledDataSource ds = new PooledDataSource(unpooled);
+        try {
+            ds.setPoolMode(PoolMode.CONCURRENT);
+            ds.setPoolInitialSize(1);
+            CompletableFuture<Integer> warmUp = ds.warmUp();
+            assertTrue(connecting.await(10, TimeUnit.SECONDS));
+            ds.forceCloseAll();
+            closed.countDown();
+            assertEquals(0, warmUp.get(10, TimeUnit.SECONDS).intValue());
+            assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+            assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+        } finally {
+            closed.countDown();
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldRecordMetricsAndReportLeakedConnections() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            List<String> leaks = Collections.synchronizedList(new ArrayList<>());
+            List<Long> holdTimes = Collections.synchronizedList(new ArrayList<>());
+            ds.setPoolLeakDetectionThreshold(50);
+            ds.setPoolMetricsListener(new PoolMetricsListener() {
+                @Override
+                public void connectionReturned(long holdTime) {
+                    holdTimes.add(holdTime);
+                }
+
+                @Override
+                public void connectionLeaked(long holdTime, String borrowerThread, StackTraceElement[] borrowerStack) {
+                    leaks.add(borrowerThread);
+                }
+            });
+            ds.getConnection().close();
+            Connection leaked = ds.getConnection();
+            for (int i = 0; i < 100 && leaks.isEmpty(); i++) {
+                Thread.sleep(20);
+            }
+            leaked.close();
+            assertEquals(Collections.singletonList(Thread.currentThread().getName()), leaks);
+            assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+            assertEquals(2, holdTimes.size());
+            assertTrue(holdTimes.get(1) >= 50);
+            assertEquals(2, ds.getPoolState().getCheckoutWaitHistogram().getCount());
+            assertEquals(2, ds.getPoolState().getHoldTimeHistogram().getCount());
+            assertTrue(ds.getPoolState().getHoldTimeHistogram().getMax() >= 50);
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldReusePreparedStatementsAcrossCheckouts() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMaximumActiveConnections(1);
+            ds.setPoolPreparedStatementCacheSize(1);
+            for (int i = 0; i < 3; i++) {
+                try (Connection c = ds.getConnection();
+                     PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM PRODUCT WHERE PRODUCTID = ?")) {
+                    ps.setString(1, "FI-SW-01");
+                    try (ResultSet rs = ps.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals(1, rs.getInt(1));
+                    }
+                }
+            }
+            assertEquals(1, ds.getPoolState().getStatementCacheMissCount());
+            assertEquals(2, ds.getPoolState().getStatementCacheHitCount());
+            try (Connection c = ds.getConnection()) {
+                c.prepareStatement("SELECT * FROM PRODUCT").close();
+            }
+            assertEquals(1, ds.getPoolState().getStatementCacheEvictionCount());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldNotReuseStatementsClosedThroughTheirResultSet() throws Exception {
+        PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+        try {
+            ds.setPoolMaximumActiveConnections(1);
+            ds.setPoolPreparedStatementCacheSize(1);
+            String sql = "SELECT COUNT(*) FROM PRODUCT";
+            try (Connection c = ds.getConnection()) {
+                PreparedStatement ps = c.prepareStatement(sql);
+                // the statement of a result set is the real one, closing it closes the cached statement
+                Statement realStatement = ps.executeQuery().getStatement();
+                ps.close();
+                realStatement.close();
+            }
+            try (Connection c = ds.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                // left open, closed before the statement goes back to the cache
+                ps.executeQuery();
+            }
+            try (Connection c = ds.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+            }
+            assertEquals(2, ds.getPoolState().getStatementCacheMissCount());
+            assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+        } finally {
+            ds.forceCloseAll();
+        }
+    }
+
+    @Test
+    void shouldSelectPoolModeFromFactory() {
+        PooledDataSourceFactory factory = new PooledDataSourceFactory();
+        Properties props = new Properties();
+        props.setProperty("poolMode", "concurrent");
+        factory.setProperties(props);
+        assertEquals(PoolMode.CONCURRENT, ((PooledDataSource) factory.getDataSource()).getPoolMode());
+    }
+
     @Test
     void shouldNotFailCallingToStringOverAnInvalidConnection() throws Exception {
         PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -23,6 +23,9 @@ import java.lang.reflect.Field;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -43,6 +46,16 @@ class CacheBuilderTest {
                 .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
     }
 
+    @Test
+    void testThreadSafeImplementationIsNotSynchronized() {
+        Cache cache = new CacheBuilder("test").implementation(ConcurrentCache.class).addDecorator(LruCache.class)
+                .size(10).readWrite(false).build();
+
+        Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+        ConcurrentCache concurrentCache = unwrap(cache);
+        Assertions.assertThat(concurrentCache.getMaximumSize()).isEqualTo(10);
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T unwrap(Cache cache) {
         Field field;
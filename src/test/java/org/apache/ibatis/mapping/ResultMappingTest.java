@@ -46,4 +46,13 @@ class ResultMappingTest {
                 .build());
     }
 
+    @Test
+    void shouldFailWithAMissingBatchKeyInBatchSelect() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new ResultMapping.Builder(configuration, "prop")
+                .column("id")
+                .nestedQueryId("nested query ID")
+                .batchQueryId("batch query ID")
+                .build());
+    }
+
 }